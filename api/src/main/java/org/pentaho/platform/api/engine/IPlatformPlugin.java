@@ -25,6 +25,7 @@ import org.pentaho.ui.xul.XulOverlay;
 import org.springframework.beans.factory.ListableBeanFactory;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -170,4 +171,14 @@ public interface IPlatformPlugin extends IPluginLifecycleListener {
    * @return list of registered scripts
    */
   List<String> getExternalResourcesForContext( String context );
+
+  /**
+   * Returns the ids of the plugins that have to be started before this one, e.g. because its beans look up objects
+   * published by them.
+   * 
+   * @return the ids of the plugins this plugin depends on, never <code>null</code>
+   */
+  default List<String> getDependencies() {
+    return Collections.emptyList();
+  }
 }
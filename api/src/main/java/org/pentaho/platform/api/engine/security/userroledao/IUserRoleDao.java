@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -22,7 +22,10 @@ package org.pentaho.platform.api.engine.security.userroledao;
 
 import org.pentaho.platform.api.mt.ITenant;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Contract for data access objects that read and write users and roles.
@@ -123,6 +126,33 @@ public interface IUserRoleDao {
    */
   List<IPentahoUser> getUsers( ITenant tenant, boolean includeSubtenants ) throws UncategorizedUserRoleDaoException;
 
+  /**
+   * Retrieve a page of the users from the specified tenant whose name starts with the given filter, along with the
+   * number of users matching it. If the tenant is null then it will search the default tenant. Implementations backed
+   * by a large user store should override this so that only the requested page is loaded.
+   * 
+   * @param tenant
+   * @param nameFilter
+   *          case sensitive prefix of the user names to return, {@code null} or empty for all users
+   * @param offset
+   *          number of matching users to skip
+   * @param limit
+   *          maximum number of users to return, negative for no limit
+   * @return page of pentaho users, ordered by name
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default UserRolePage<IPentahoUser> getUsers( ITenant tenant, String nameFilter, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    String prefix = nameFilter == null ? "" : nameFilter;
+    List<IPentahoUser> matches =
+        getUsers( tenant ).stream().filter( user -> user.getUsername().startsWith( prefix ) ).sorted(
+            Comparator.comparing( IPentahoUser::getUsername ) ).collect( Collectors.toList() );
+    int from = Math.min( Math.max( 0, offset ), matches.size() );
+    int to = limit < 0 ? matches.size() : Math.min( from + limit, matches.size() );
+    return new UserRolePage<IPentahoUser>( new ArrayList<IPentahoUser>( matches.subList( from, to ) ),
+        matches.size() );
+  }
+
   /**
    * Create a role under a specified tenant. If the tenant is null then this role will be created under a default
    * tenant
@@ -200,6 +230,33 @@ public interface IUserRoleDao {
    */
   List<IPentahoRole> getRoles( ITenant tenant, boolean includeSubtenants ) throws UncategorizedUserRoleDaoException;
 
+  /**
+   * Retrieve a page of the roles from the specified tenant whose name starts with the given filter, along with the
+   * number of roles matching it. If the tenant is null then it will search the default tenant. Implementations backed
+   * by a large role store should override this so that only the requested page is loaded.
+   * 
+   * @param tenant
+   * @param nameFilter
+   *          case sensitive prefix of the role names to return, {@code null} or empty for all roles
+   * @param offset
+   *          number of matching roles to skip
+   * @param limit
+   *          maximum number of roles to return, negative for no limit
+   * @return page of pentaho roles, ordered by name
+   * @throws UncategorizedUserRoleDaoException
+   */
+  default UserRolePage<IPentahoRole> getRoles( ITenant tenant, String nameFilter, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    String prefix = nameFilter == null ? "" : nameFilter;
+    List<IPentahoRole> matches =
+        getRoles( tenant ).stream().filter( role -> role.getName().startsWith( prefix ) ).sorted(
+            Comparator.comparing( IPentahoRole::getName ) ).collect( Collectors.toList() );
+    int from = Math.min( Math.max( 0, offset ), matches.size() );
+    int to = limit < 0 ? matches.size() : Math.min( from + limit, matches.size() );
+    return new UserRolePage<IPentahoRole>( new ArrayList<IPentahoRole>( matches.subList( from, to ) ),
+        matches.size() );
+  }
+
   /**
    * Assign list of user names to a particular role in a specified tenant. If the tenant is null, then it will
    * search for this role in a default tenant
@@ -21,7 +21,9 @@
 package org.pentaho.platform.api.repository2.unified;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -558,6 +560,33 @@ public interface IUnifiedRepository {
    */
   boolean hasAccess( final String path, final EnumSet<RepositoryFilePermission> permissions );
 
+  /**
+   * Checks the permissions of several files at once, e.g. of a selection in the repository browser. Each permission
+   * is checked on its own, unlike {@link #hasAccess(String, EnumSet)} which requires all of them.
+   * 
+   * @param paths
+   *          paths to files or folders
+   * @param permissions
+   *          permissions to check
+   * @return for each path, in the order given, the subset of {@code permissions} the user has; empty if the path does
+   *         not exist
+   */
+  default Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Map<String, EnumSet<RepositoryFilePermission>> access =
+        new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+    for ( String path : paths ) {
+      EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+      for ( RepositoryFilePermission permission : permissions ) {
+        if ( hasAccess( path, EnumSet.of( permission ) ) ) {
+          granted.add( permission );
+        }
+      }
+      access.put( path, granted );
+    }
+    return access;
+  }
+
   /**
    * Returns the list of access control entries (ACEs) that will be used to make an access control decision. This
    * method is equivalent to {@code getEffectiveAces(fileId, false)}.
@@ -674,6 +703,30 @@ public interface IUnifiedRepository {
    */
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  /**
+   * Returns the files directly inside the given folder whose metadata item {@code metadataKey} equals {@code value},
+   * e.g. all generated content of a schedule. Hidden files and folders are not returned. Implementations backed by a
+   * searchable store should answer this with a single query instead of reading the metadata of every child.
+   *
+   * @param folderId
+   *          id of folder whose children to search
+   * @param metadataKey
+   *          metadata key, as passed to {@link #setFileMetadata(Serializable, Map)}
+   * @param value
+   *          metadata value to match
+   * @return list of matching files (never {@code null})
+   */
+  default List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String value ) {
+    List<RepositoryFile> matches = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile child : getChildren( folderId ) ) {
+      if ( !child.isFolder() && value.equals( getFileMetadata( child.getId() ).get( metadataKey ) ) ) {
+        matches.add( child );
+      }
+    }
+    return matches;
+  }
+
   /**
    * Returns a list of characters which cannot be used in file/folder names. These characters must be escaped using
    * percent-encoding. Callers may safely cache this value. Note that it is the responsibility of the
@@ -0,0 +1,83 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified.webservices;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a repository tree walked depth first. {@code children} holds the nodes of the page in pre-order (every
+ * folder comes right before its own children); the tree shape is recovered from the paths. {@code file} is the root of
+ * the tree and is only set on the first page. {@code continuationToken} is {@code null} on the last page.
+ */
+@XmlRootElement
+public class RepositoryFileTreePageDto implements Serializable {
+  private static final long serialVersionUID = 2915468413232657123L;
+
+  private RepositoryFileDto file;
+
+  private List<RepositoryFileDto> children;
+
+  private String continuationToken;
+
+  public RepositoryFileTreePageDto() {
+  }
+
+  public RepositoryFileDto getFile() {
+    return file;
+  }
+
+  public void setFile( RepositoryFileDto file ) {
+    this.file = file;
+  }
+
+  public List<RepositoryFileDto> getChildren() {
+    return children;
+  }
+
+  public void setChildren( List<RepositoryFileDto> children ) {
+    this.children = children;
+  }
+
+  public String getContinuationToken() {
+    return continuationToken;
+  }
+
+  public void setContinuationToken( String continuationToken ) {
+    this.continuationToken = continuationToken;
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "RepositoryFileTreePageDto [file=" + file + ", children=" + children + ", continuationToken="
+        + continuationToken + "]";
+  }
+
+  public void afterUnmarshal( Unmarshaller unmarshaller, Object parent ) {
+    if ( children == null ) {
+      children = Collections.<RepositoryFileDto>emptyList();
+    }
+  }
+}
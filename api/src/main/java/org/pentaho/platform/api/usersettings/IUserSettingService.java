@@ -23,7 +23,9 @@ package org.pentaho.platform.api.usersettings;
 import org.pentaho.platform.api.engine.IPentahoInitializer;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface IUserSettingService extends IPentahoInitializer {
   public void deleteUserSettings();
@@ -33,6 +35,20 @@ public interface IUserSettingService extends IPentahoInitializer {
 
   public IUserSetting getUserSetting( String settingName, String defaultValue );
 
+  /**
+   * Reads all the settings of the current user at once, global settings included unless the user has a setting of the
+   * same name. Prefer this over several {@link #getUserSetting(String, String)} calls when many settings are needed.
+   *
+   * @return setting values keyed by setting name
+   */
+  public default Map<String, String> getUserSettingValues() {
+    Map<String, String> values = new LinkedHashMap<String, String>();
+    for ( IUserSetting setting : getUserSettings() ) {
+      values.put( setting.getSettingName(), setting.getSettingValue() );
+    }
+    return values;
+  }
+
   public void setUserSetting( String settingName, String settingValue );
 
   // the implementation should allow only an administrator to set global user settings
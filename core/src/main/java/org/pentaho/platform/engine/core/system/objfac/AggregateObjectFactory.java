@@ -36,6 +36,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -45,11 +48,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * collecting the results. Results are ordered by "priority" attribute if present, with the highest priority object
  * returned in the calls to retrieve a single object.
  * <p/>
+ * Which factories define a given class or key is cached, so repeated lookups only consult the factories that can
+ * answer them. The cache is versioned and dropped whenever a factory is registered or de-registered, or a reference is
+ * registered with or removed from a {@link RuntimeObjectFactory}. OSGI backed factories change without notice and are
+ * always asked. Only the defining factories are cached: the references themselves are still obtained per call, since
+ * they are bound to the session of the lookup. Set the {@value #DISABLE_RESOLUTION_CACHE_PROPERTY} system property to
+ * true to turn the cache off.
+ * <p/>
  * {@inheritDoc}
  * <p/>
  * User: nbaker Date: 1/15/13
  */
 public class AggregateObjectFactory implements IPentahoObjectFactory {
+  public static final String DISABLE_RESOLUTION_CACHE_PROPERTY = "pentaho.objectfactory.disableResolutionCache";
+
   protected final Set<IPentahoObjectFactory> factories =
       Collections.synchronizedSet( new HashSet<IPentahoObjectFactory>() );
   protected IPentahoObjectFactory primaryFactory;
@@ -59,6 +71,18 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   private Lock writeLock = factoryLock.writeLock();
   private Lock readLock = factoryLock.readLock();
 
+  private final AtomicLong registryVersion = new AtomicLong();
+  private final ConcurrentMap<Object, Resolution> resolutionCache = new ConcurrentHashMap<Object, Resolution>();
+  private final AtomicLong resolutionCacheHits = new AtomicLong();
+  private final AtomicLong resolutionCacheMisses = new AtomicLong();
+  private volatile boolean resolutionCacheEnabled = !Boolean.getBoolean( DISABLE_RESOLUTION_CACHE_PROPERTY );
+  private final Runnable registrationListener = new Runnable() {
+    @Override
+    public void run() {
+      invalidateResolutionCache();
+    }
+  };
+
   public AggregateObjectFactory() {
 
   }
@@ -67,6 +91,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     writeLock.lock();
     try {
       factories.add( fact );
+      if ( fact instanceof RuntimeObjectFactory ) {
+        ( (RuntimeObjectFactory) fact ).addRegistrationListener( registrationListener );
+      }
+      invalidateResolutionCache();
     } finally {
       writeLock.unlock();
     }
@@ -89,6 +117,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public boolean deregisterObjectFactory( IPentahoObjectFactory factory ) {
     writeLock.lock();
     try {
+      if ( factory instanceof RuntimeObjectFactory ) {
+        ( (RuntimeObjectFactory) factory ).removeRegistrationListener( registrationListener );
+      }
+      invalidateResolutionCache();
       return factories.remove( factory );
     } finally {
       writeLock.unlock();
@@ -109,12 +141,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     if ( key != null ) {
       readLock.lock();
       try {
-        for ( IPentahoObjectFactory fact : factories ) {
-          if ( fact.objectDefined( key ) ) {
-            T object = fact.get( interfaceClass, key, session );
+        for ( IPentahoObjectFactory fact : getDefiningFactories( key ) ) {
+          T object = fact.get( interfaceClass, key, session );
+          if ( logger.isDebugEnabled() ) {
             logger.debug( MessageFormat.format( "Found object for key: {0} in factory: {1}", key, fact.getName() ) );
-            return object;
           }
+          return object;
         }
       } finally {
         readLock.unlock();
@@ -148,11 +180,11 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public boolean objectDefined( String key ) {
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( key ) ) {
+      for ( IPentahoObjectFactory fact : getDefiningFactories( key ) ) {
+        if ( logger.isDebugEnabled() ) {
           logger.debug( MessageFormat.format( "Object defined for key: {0} in factory: {1}", key, fact.getName() ) );
-          return true;
         }
+        return true;
       }
 
     } finally {
@@ -170,12 +202,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public Class<?> getImplementingClass( String key ) {
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( key ) ) {
+      for ( IPentahoObjectFactory fact : getDefiningFactories( key ) ) {
+        if ( logger.isDebugEnabled() ) {
           logger.debug( MessageFormat.format( "Found implementing class for key: {0} in factory: {1}", key, fact
               .getName() ) );
-          return fact.getImplementingClass( key );
         }
+        return fact.getImplementingClass( key );
       }
     } finally {
       readLock.unlock();
@@ -201,12 +233,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> refs = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( refs != null ) {
-            referenceList.addAll( refs );
-          }
+      for ( IPentahoObjectFactory fact : getDefiningFactories( interfaceClass ) ) {
+        List<IPentahoObjectReference<T>> refs = fact.getObjectReferences( interfaceClass, curSession, properties );
+        if ( refs != null ) {
+          referenceList.addAll( refs );
         }
       }
     } finally {
@@ -234,14 +264,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz ) ) {
-          IPentahoObjectReference<T> found = fact.getObjectReference( clazz, curSession );
-          if ( found != null ) {
-            references.add( found );
-          }
-
+      for ( IPentahoObjectFactory fact : getDefiningFactories( clazz ) ) {
+        IPentahoObjectReference<T> found = fact.getObjectReference( clazz, curSession );
+        if ( found != null ) {
+          references.add( found );
         }
+
       }
     } finally {
       readLock.unlock();
@@ -270,11 +298,9 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     }
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz.getSimpleName() ) ) {
-          T object = fact.get( clazz, clazz.getSimpleName(), session );
-          return object;
-        }
+      for ( IPentahoObjectFactory fact : getDefiningFactories( clazz.getSimpleName() ) ) {
+        T object = fact.get( clazz, clazz.getSimpleName(), session );
+        return object;
       }
     } finally {
       readLock.unlock();
@@ -290,13 +316,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public boolean objectDefined( Class<?> clazz ) {
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz ) ) {
-
+      for ( IPentahoObjectFactory fact : getDefiningFactories( clazz ) ) {
+        if ( logger.isDebugEnabled() ) {
           logger.debug( MessageFormat.format( "Found object for class: {0} in factory: {1}", clazz.getName(), fact
               .getName() ) );
-          return true;
         }
+        return true;
       }
     } finally {
       readLock.unlock();
@@ -312,12 +337,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( found != null ) {
-            references.addAll( found );
-          }
+      for ( IPentahoObjectFactory fact : getDefiningFactories( interfaceClass ) ) {
+        List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
+        if ( found != null ) {
+          references.addAll( found );
         }
       }
     } finally {
@@ -339,6 +362,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public void clear() {
     writeLock.lock();
     try {
+      for ( IPentahoObjectFactory fact : factories ) {
+        if ( fact instanceof RuntimeObjectFactory ) {
+          ( (RuntimeObjectFactory) fact ).removeRegistrationListener( registrationListener );
+        }
+      }
+      invalidateResolutionCache();
       this.factories.clear();
     } finally {
       writeLock.unlock();
@@ -395,12 +424,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
     readLock.lock();
     try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( found != null ) {
-            referenceSet.addAll( found );
-          }
+      for ( IPentahoObjectFactory fact : getDefiningFactories( interfaceClass ) ) {
+        List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
+        if ( found != null ) {
+          referenceSet.addAll( found );
         }
       }
     } finally {
@@ -414,6 +441,103 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     return referenceList;
   }
 
+  /**
+   * Drops all cached resolutions. Called whenever the set of factories or the references of a runtime factory change;
+   * custom factories that change their definitions at runtime should call it too.
+   */
+  public void invalidateResolutionCache() {
+    registryVersion.incrementAndGet();
+    resolutionCache.clear();
+  }
+
+  public boolean isResolutionCacheEnabled() {
+    return resolutionCacheEnabled;
+  }
+
+  public void setResolutionCacheEnabled( boolean resolutionCacheEnabled ) {
+    this.resolutionCacheEnabled = resolutionCacheEnabled;
+    invalidateResolutionCache();
+  }
+
+  /**
+   * @return number of lookups answered from the resolution cache
+   */
+  public long getResolutionCacheHits() {
+    return resolutionCacheHits.get();
+  }
+
+  /**
+   * @return number of lookups that had to ask every registered factory
+   */
+  public long getResolutionCacheMisses() {
+    return resolutionCacheMisses.get();
+  }
+
+  /**
+   * Returns the factories which define the given class or key, in iteration order. Must be called holding the read
+   * lock.
+   *
+   * @param lookup a {@link Class} or a {@link String} key
+   */
+  private List<IPentahoObjectFactory> getDefiningFactories( Object lookup ) {
+    if ( !resolutionCacheEnabled ) {
+      return scanFactories( lookup, false );
+    }
+    // read the version before the entry, an entry stored by a lookup racing an invalidation is never used
+    long version = registryVersion.get();
+    Resolution resolution = resolutionCache.get( lookup );
+    if ( resolution != null && resolution.version == version ) {
+      resolutionCacheHits.incrementAndGet();
+    } else {
+      resolutionCacheMisses.incrementAndGet();
+      resolution = new Resolution( version, scanFactories( lookup, true ) );
+      resolutionCache.put( lookup, resolution );
+    }
+
+    List<IPentahoObjectFactory> defining = new ArrayList<IPentahoObjectFactory>( resolution.candidates.size() );
+    for ( IPentahoObjectFactory fact : resolution.candidates ) {
+      if ( !isDynamic( fact ) || isDefined( fact, lookup ) ) {
+        defining.add( fact );
+      }
+    }
+    return defining;
+  }
+
+  /**
+   * @param includeDynamic keep factories whose answer cannot be cached without asking them
+   */
+  private List<IPentahoObjectFactory> scanFactories( Object lookup, boolean includeDynamic ) {
+    List<IPentahoObjectFactory> found = new ArrayList<IPentahoObjectFactory>();
+    for ( IPentahoObjectFactory fact : factories ) {
+      if ( includeDynamic && isDynamic( fact ) || isDefined( fact, lookup ) ) {
+        found.add( fact );
+      }
+    }
+    return found;
+  }
+
+  private static boolean isDefined( IPentahoObjectFactory fact, Object lookup ) {
+    return lookup instanceof Class ? fact.objectDefined( (Class<?>) lookup ) : fact.objectDefined( (String) lookup );
+  }
+
+  /**
+   * OSGI backed factories resolve against the service registry, which changes without notifying this class.
+   */
+  private static boolean isDynamic( IPentahoObjectFactory fact ) {
+    return fact instanceof OSGIObjectFactory
+        || fact instanceof OSGIRuntimeObjectFactory && ( (OSGIRuntimeObjectFactory) fact ).isOsgiInitialized();
+  }
+
+  private static class Resolution {
+    private final long version;
+    private final List<IPentahoObjectFactory> candidates;
+
+    Resolution( long version, List<IPentahoObjectFactory> candidates ) {
+      this.version = version;
+      this.candidates = candidates;
+    }
+  }
+
   @Override
   public String getName() {
     return getClass().getSimpleName();
@@ -73,8 +73,16 @@ public class OSGIRuntimeObjectFactory extends RuntimeObjectFactory {
       }
     }
     osgiInitialized.set( true );
+    // lookups are answered from the service registry from now on
+    fireRegistrationChanged();
 
+  }
 
+  /**
+   * @return true once lookups are answered from the OSGI service registry instead of the local registry
+   */
+  public boolean isOsgiInitialized() {
+    return this.bundleContext != null && osgiInitialized.get();
   }
 
   public <T> IPentahoObjectRegistration registerReference( final IPentahoObjectReference<?> reference,
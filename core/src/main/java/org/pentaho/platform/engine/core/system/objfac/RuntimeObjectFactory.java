@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class supports the registration of Object implementations as well as {@link IPentahoObjectReference }s at
@@ -56,6 +57,7 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
       Multimaps.synchronizedSetMultimap( HashMultimap
           .<Class, IPentahoObjectReference<?>>create() );
 
+  private final List<Runnable> registrationListeners = new CopyOnWriteArrayList<Runnable>();
 
   public RuntimeObjectFactory() {
 
@@ -139,6 +141,7 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
     for ( Class<?> aClass : classes ) {
       registry.get( aClass ).add( reference );
     }
+    fireRegistrationChanged();
     return new ObjectRegistration( reference, Arrays.asList( classes ) );
 
   }
@@ -406,6 +409,23 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
     }
   }
 
+  /**
+   * Adds a listener run after every reference registration or removal.
+   */
+  public void addRegistrationListener( Runnable listener ) {
+    registrationListeners.add( listener );
+  }
+
+  public void removeRegistrationListener( Runnable listener ) {
+    registrationListeners.remove( listener );
+  }
+
+  protected void fireRegistrationChanged() {
+    for ( Runnable listener : registrationListeners ) {
+      listener.run();
+    }
+  }
+
   /**
    * Handle returned when an object or reference is registered. Supports de-registration.
    */
@@ -433,6 +453,7 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
       for ( Class<?> aClass : publishedClasses ) {
         registry.get( aClass ).remove( reference );
       }
+      fireRegistrationChanged();
 
     }
   }
@@ -0,0 +1,141 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services;
+
+import org.dom4j.Document;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed action sequence documents, shared by all sessions through the {@link #CACHE_REGION} region of the platform
+ * cache. A document is keyed by the id, version and modification date of its repository file, so an update to the
+ * file is never answered from the cache. Documents are cached before they are localized, as the message bundles they
+ * are localized from are separate files.
+ * <p>
+ * The cache holds its own copy of each document and hands out copies, as callers are free to change the document
+ * they get.
+ */
+public class ActionSequenceDocumentCache {
+
+  public static final String CACHE_REGION = "action-sequence-documents"; //$NON-NLS-1$
+
+  private static final ActionSequenceDocumentCache instance = new ActionSequenceDocumentCache();
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong parseCount = new AtomicLong();
+
+  private final AtomicLong totalParseNanos = new AtomicLong();
+
+  public static ActionSequenceDocumentCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return the key of the file's document, or <code>null</code> if the file carries nothing that would tell an
+   *         update apart
+   */
+  public String getKey( final RepositoryFile file ) {
+    if ( file.getId() == null || ( file.getVersionId() == null && file.getLastModifiedDate() == null ) ) {
+      return null;
+    }
+    return file.getId() + "|" + file.getVersionId() + "|" //$NON-NLS-1$ //$NON-NLS-2$
+        + ( file.getLastModifiedDate() == null ? "" : file.getLastModifiedDate().getTime() ); //$NON-NLS-1$
+  }
+
+  /**
+   * @return a copy of the cached document, or <code>null</code> if there is none
+   */
+  public Document get( final String key ) {
+    ICacheManager cacheManager = key == null ? null : getCacheRegion();
+    Object document = cacheManager == null ? null : cacheManager.getFromRegionCache( CACHE_REGION, key );
+    if ( document instanceof Document ) {
+      hitCount.incrementAndGet();
+      return (Document) ( (Document) document ).clone();
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Caches a copy of a document that was just read.
+   * 
+   * @param parseNanos
+   *          how long reading and parsing the document took
+   */
+  public void put( final String key, final Document document, final long parseNanos ) {
+    parseCount.incrementAndGet();
+    totalParseNanos.addAndGet( parseNanos );
+    ICacheManager cacheManager = key == null ? null : getCacheRegion();
+    if ( cacheManager != null ) {
+      cacheManager.putInRegionCache( CACHE_REGION, key, document.clone() );
+    }
+  }
+
+  public void clear() {
+    ICacheManager cacheManager = getCacheManager();
+    if ( cacheManager != null && cacheManager.cacheEnabled( CACHE_REGION ) ) {
+      cacheManager.clearRegionCache( CACHE_REGION );
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the share of lookups answered from the cache, between 0 and 1
+   */
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long lookups = hits + missCount.get();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * @return the average time, in milliseconds, it took to read and parse a document that wasn't cached
+   */
+  public double getAverageParseMillis() {
+    long parses = parseCount.get();
+    return parses == 0 ? 0 : totalParseNanos.get() / 1000000d / parses;
+  }
+
+  protected ICacheManager getCacheManager() {
+    return PentahoSystem.getCacheManager( null );
+  }
+
+  private ICacheManager getCacheRegion() {
+    ICacheManager cacheManager = getCacheManager();
+    if ( cacheManager != null && !cacheManager.cacheEnabled( CACHE_REGION ) ) {
+      cacheManager.addCacheRegion( CACHE_REGION );
+    }
+    return cacheManager;
+  }
+}
@@ -111,32 +111,44 @@ public class ActionSequenceJCRHelper {
     Document document = null;
     SimpleRepositoryFileData data = null;
     if ( file != null ) {
-      data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
-      if ( data != null ) {
-        try {
-          document = XmlDom4JHelper.getDocFromStream( data.getStream() );
-        } catch ( Throwable t ) {
+      ActionSequenceDocumentCache documentCache = getDocumentCache();
+      String cacheKey = documentCache.getKey( file );
+      document = documentCache.get( cacheKey );
+      if ( document == null ) {
+        long start = System.nanoTime();
+        data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+        if ( data != null ) {
+          try {
+            document = XmlDom4JHelper.getDocFromStream( data.getStream() );
+          } catch ( Throwable t ) {
+            logger.error( Messages.getInstance().getErrorString(
+                "ActionSequenceJCRHelper.ERROR_0017_INVALID_XML_DOCUMENT", documentPath ), t ); //$NON-NLS-1$
+            return null;
+          }
+        } else {
           logger.error( Messages.getInstance().getErrorString(
-              "ActionSequenceJCRHelper.ERROR_0017_INVALID_XML_DOCUMENT", documentPath ), t ); //$NON-NLS-1$
+              "ActionSequenceJCRHelper.ERROR_0019_NO_DATA_IN_FILE", file.getName() ) ); //$NON-NLS-1$
           return null;
         }
-      } else {
-        logger.error( Messages.getInstance().getErrorString(
-            "ActionSequenceJCRHelper.ERROR_0019_NO_DATA_IN_FILE", file.getName() ) ); //$NON-NLS-1$
-        return null;
-      }
-      if ( ( document == null ) && ( file != null ) && ( data != null ) ) {
-        // the document exists but cannot be parsed
-        logger.error( Messages.getInstance().getErrorString(
-            "ActionSequenceJCRHelper.ERROR_0009_INVALID_DOCUMENT", documentPath ) ); //$NON-NLS-1$
-        return null;
+        if ( ( document == null ) && ( file != null ) && ( data != null ) ) {
+          // the document exists but cannot be parsed
+          logger.error( Messages.getInstance().getErrorString(
+              "ActionSequenceJCRHelper.ERROR_0009_INVALID_DOCUMENT", documentPath ) ); //$NON-NLS-1$
+          return null;
+        }
+        documentCache.put( cacheKey, document, System.nanoTime() - start );
       }
+      // the message bundles are read on every call, they can change without the action sequence changing
       localizeDoc( document, file );
     }
 
     return document;
   }
 
+  protected ActionSequenceDocumentCache getDocumentCache() {
+    return ActionSequenceDocumentCache.getInstance();
+  }
+
   public String getURL( String filePath ) {
     RepositoryFile file = repository.getFile( filePath );
     if ( file == null || !file.getName().endsWith( ".url" ) ) { //$NON-NLS-1$
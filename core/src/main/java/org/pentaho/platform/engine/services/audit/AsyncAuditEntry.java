@@ -0,0 +1,390 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.core.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records audit entries off the auditing thread. Entries are put on a bounded queue and a single background thread
+ * hands them to the {@link IBatchAuditEntry} destination in batches of up to {@link #setBatchSize(int) batchSize}
+ * entries, waiting at most {@link #setFlushIntervalMillis(long) flushIntervalMillis} for a batch to fill up.
+ * <p>
+ * What happens when the queue is full is decided by the {@link OverflowPolicy}. Entries still queued when
+ * {@link #shutdown()} is called are written before it returns, and the destination is then closed. Queue depth, entry
+ * counts and batch latency are exposed through getters for monitoring.
+ */
+public class AsyncAuditEntry implements IAuditEntry {
+
+  /**
+   * What to do with an entry when the queue is full
+   */
+  public enum OverflowPolicy {
+    /** The auditing thread waits until the queue has room */
+    BLOCK,
+    /** The auditing thread writes the entry itself, bypassing the queue */
+    CALLER_RUNS,
+    /** The entry is dropped, and counted in {@link AsyncAuditEntry#getDroppedCount()} */
+    DISCARD
+  }
+
+  private static final String WRITER_THREAD_NAME = "pentaho-audit-writer"; //$NON-NLS-1$
+
+  private static final long SHUTDOWN_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+  private final IBatchAuditEntry delegate;
+
+  private int queueCapacity = 10000;
+
+  private int batchSize = 100;
+
+  private long flushIntervalMillis = 1000;
+
+  private long shutdownTimeoutMillis = 30000;
+
+  private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+  private BlockingQueue<AuditRecord> queue;
+
+  private Thread writer;
+
+  private volatile boolean shutdown;
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  private final AtomicLong failedCount = new AtomicLong();
+
+  private final AtomicLong batchCount = new AtomicLong();
+
+  private final AtomicLong totalBatchNanos = new AtomicLong();
+
+  private volatile long lastBatchNanos;
+
+  private volatile long maxBatchNanos;
+
+  public AsyncAuditEntry( final IBatchAuditEntry delegate ) {
+    this.delegate = delegate;
+  }
+
+  public IBatchAuditEntry getDelegate() {
+    return delegate;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @param queueCapacity
+   *          the number of entries that can wait to be written; only applies before the first entry is audited
+   */
+  public void setQueueCapacity( final int queueCapacity ) {
+    this.queueCapacity = Math.max( 1, queueCapacity );
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize
+   *          the maximum number of entries written together
+   */
+  public void setBatchSize( final int batchSize ) {
+    this.batchSize = Math.max( 1, batchSize );
+  }
+
+  public long getFlushIntervalMillis() {
+    return flushIntervalMillis;
+  }
+
+  /**
+   * @param flushIntervalMillis
+   *          the longest an entry waits for its batch to fill up before it is written
+   */
+  public void setFlushIntervalMillis( final long flushIntervalMillis ) {
+    this.flushIntervalMillis = Math.max( 1, flushIntervalMillis );
+  }
+
+  public long getShutdownTimeoutMillis() {
+    return shutdownTimeoutMillis;
+  }
+
+  /**
+   * @param shutdownTimeoutMillis
+   *          how long {@link #shutdown()} waits for the queued entries to be written
+   */
+  public void setShutdownTimeoutMillis( final long shutdownTimeoutMillis ) {
+    this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public void setOverflowPolicy( final OverflowPolicy overflowPolicy ) {
+    this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.CALLER_RUNS : overflowPolicy;
+  }
+
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration ) throws AuditException {
+
+    AuditRecord record =
+        new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue,
+            messageNumValue, duration );
+    BlockingQueue<AuditRecord> recordQueue = getQueue();
+    if ( recordQueue == null ) {
+      // shut down, nothing left to hand the entry to
+      writeNow( record );
+      return;
+    }
+    if ( recordQueue.offer( record ) ) {
+      return;
+    }
+    switch ( overflowPolicy ) {
+      case BLOCK:
+        try {
+          while ( !recordQueue.offer( record, flushIntervalMillis, TimeUnit.MILLISECONDS ) ) {
+            if ( shutdown ) {
+              writeNow( record );
+              return;
+            }
+          }
+        } catch ( InterruptedException ex ) {
+          Thread.currentThread().interrupt();
+          throw new AuditException( ex );
+        }
+        break;
+      case DISCARD:
+        if ( droppedCount.getAndIncrement() == 0 ) {
+          Logger.warn( getClass().getName(), Messages.getInstance().getString(
+              "AUDASYNC.WARN_QUEUE_FULL_DISCARDING", String.valueOf( queueCapacity ) ) ); //$NON-NLS-1$
+        }
+        break;
+      default:
+        writeNow( record );
+    }
+  }
+
+  /**
+   * Stops taking entries, writes those still queued, stops the background thread and closes the destination. Entries
+   * audited afterwards are written on the auditing thread.
+   */
+  public void shutdown() {
+    Thread writerThread;
+    synchronized ( this ) {
+      shutdown = true;
+      writerThread = writer;
+    }
+    if ( writerThread != null ) {
+      try {
+        writerThread.join( shutdownTimeoutMillis );
+      } catch ( InterruptedException ex ) {
+        Thread.currentThread().interrupt();
+      }
+      if ( writerThread.isAlive() ) {
+        Logger.warn( getClass().getName(), Messages.getInstance().getString(
+            "AUDASYNC.WARN_SHUTDOWN_TIMEOUT", String.valueOf( queue.size() ) ) ); //$NON-NLS-1$
+      } else {
+        // entries that made it in while the writer was finishing
+        List<AuditRecord> rest = new ArrayList<AuditRecord>();
+        queue.drainTo( rest );
+        if ( !rest.isEmpty() ) {
+          write( rest );
+        }
+      }
+    }
+    delegate.close();
+  }
+
+  /**
+   * @return the number of entries waiting to be written
+   */
+  public int getQueueDepth() {
+    BlockingQueue<AuditRecord> recordQueue = queue;
+    return recordQueue == null ? 0 : recordQueue.size();
+  }
+
+  /**
+   * @return the number of entries written, whether queued or not
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return the number of entries dropped because the queue was full
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return the number of entries the destination failed to write
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return the number of batches handed to the destination
+   */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  public double getLastBatchMillis() {
+    return lastBatchNanos / 1000000d;
+  }
+
+  public double getMaxBatchMillis() {
+    return maxBatchNanos / 1000000d;
+  }
+
+  public double getAverageBatchMillis() {
+    long batches = batchCount.get();
+    return batches == 0 ? 0 : totalBatchNanos.get() / 1000000d / batches;
+  }
+
+  /**
+   * Starts the background thread on first use.
+   * 
+   * @return the queue, or <code>null</code> after {@link #shutdown()}
+   */
+  private synchronized BlockingQueue<AuditRecord> getQueue() {
+    if ( shutdown ) {
+      return null;
+    }
+    if ( writer == null ) {
+      queue = new ArrayBlockingQueue<AuditRecord>( queueCapacity );
+      writer = new Thread( new Runnable() {
+        public void run() {
+          drain();
+        }
+      }, WRITER_THREAD_NAME );
+      writer.setDaemon( true );
+      writer.start();
+    }
+    return queue;
+  }
+
+  private void drain() {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( batchSize );
+    while ( true ) {
+      try {
+        AuditRecord first = poll( TimeUnit.MILLISECONDS.toNanos( flushIntervalMillis ) );
+        if ( first == null ) {
+          if ( shutdown && queue.isEmpty() ) {
+            return;
+          }
+          continue;
+        }
+        batch.add( first );
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( flushIntervalMillis );
+        while ( batch.size() < batchSize ) {
+          queue.drainTo( batch, batchSize - batch.size() );
+          long remaining = deadline - System.nanoTime();
+          if ( batch.size() >= batchSize || remaining <= 0 || shutdown ) {
+            break;
+          }
+          AuditRecord next = poll( remaining );
+          if ( next == null ) {
+            break;
+          }
+          batch.add( next );
+        }
+      } catch ( InterruptedException ex ) {
+        // write what was gathered and let shutdown decide whether to go on
+        Thread.interrupted();
+      }
+      if ( !batch.isEmpty() ) {
+        write( batch );
+        batch = new ArrayList<AuditRecord>( batchSize );
+      }
+    }
+  }
+
+  /**
+   * Waits for the next entry, in slices so that a shutdown does not wait out a long flush interval.
+   */
+  private AuditRecord poll( final long nanos ) throws InterruptedException {
+    long deadline = System.nanoTime() + nanos;
+    long remaining = nanos;
+    while ( remaining > 0 ) {
+      AuditRecord record = queue.poll( Math.min( remaining, SHUTDOWN_CHECK_NANOS ), TimeUnit.NANOSECONDS );
+      if ( record != null || shutdown ) {
+        return record;
+      }
+      remaining = deadline - System.nanoTime();
+    }
+    return null;
+  }
+
+  private void write( final List<AuditRecord> batch ) {
+    long start = System.nanoTime();
+    try {
+      delegate.auditBatch( batch );
+      writtenCount.addAndGet( batch.size() );
+    } catch ( Exception ex ) {
+      failedCount.addAndGet( batch.size() );
+      Logger.error( getClass().getName(), Messages.getInstance().getErrorString(
+          "AUDASYNC.ERROR_0001_BATCH_FAILED", String.valueOf( batch.size() ) ), ex ); //$NON-NLS-1$
+    } finally {
+      recordLatency( System.nanoTime() - start );
+    }
+  }
+
+  private void writeNow( final AuditRecord record ) throws AuditException {
+    long start = System.nanoTime();
+    try {
+      delegate.auditBatch( Collections.singletonList( record ) );
+      writtenCount.incrementAndGet();
+    } catch ( AuditException ex ) {
+      failedCount.incrementAndGet();
+      throw ex;
+    } finally {
+      recordLatency( System.nanoTime() - start );
+    }
+  }
+
+  private void recordLatency( final long nanos ) {
+    batchCount.incrementAndGet();
+    totalBatchNanos.addAndGet( nanos );
+    lastBatchNanos = nanos;
+    if ( nanos > maxBatchNanos ) {
+      maxBatchNanos = nanos;
+    }
+  }
+}
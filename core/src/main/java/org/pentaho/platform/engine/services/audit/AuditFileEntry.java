@@ -21,7 +21,6 @@
 package org.pentaho.platform.engine.services.audit;
 
 import org.pentaho.platform.api.engine.AuditException;
-import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.logging.Logger;
@@ -33,7 +32,9 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author mbatchel
@@ -41,7 +42,7 @@ import java.util.Date;
  *         TODO To change the template for this generated type comment go to Window - Preferences - Java - Code
  *         Style - Code Templates
  */
-public class AuditFileEntry implements IAuditEntry {
+public class AuditFileEntry implements IBatchAuditEntry {
   private static final String auditDirPath = "system/logs/audit"; //$NON-NLS-1$
 
   private static final String auditFileName = PentahoSystem.getSystemSetting(
@@ -49,6 +50,12 @@ public class AuditFileEntry implements IAuditEntry {
 
   private static File auditFile = null;
 
+  private static final Object writerLock = new Object();
+
+  private static BufferedWriter writer = null;
+
+  private static File writerFile = null;
+
   private static String ID_SEPARATOR = PentahoSystem.getSystemSetting( "audit/id_separator", "\t" ); //$NON-NLS-1$ //$NON-NLS-2$
 
   private static final SimpleDateFormat auditDateFormat = new SimpleDateFormat( PentahoSystem.getSystemSetting(
@@ -69,45 +76,89 @@ public class AuditFileEntry implements IAuditEntry {
     }
   }
 
-  public synchronized void auditAll( final String jobId, final String instId, final String objId, final String objType,
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration ) throws AuditException {
 
-    if ( AuditFileEntry.auditFile == null ) {
+    auditBatch( Collections.singletonList( new AuditRecord( jobId, instId, objId, objType, actor, messageType,
+        messageName, messageTxtValue, messageNumValue, duration ) ) );
+  }
+
+  /**
+   * Appends one line per entry to the audit log and flushes once for the whole batch. The log stays open between
+   * calls, and is reopened if it was moved or removed in the meantime.
+   */
+  public void auditBatch( final List<AuditRecord> records ) throws AuditException {
+
+    if ( AuditFileEntry.auditFile == null || records.isEmpty() ) {
       return;
     }
-    try {
-      BufferedWriter fw = new BufferedWriter( new FileWriter( AuditFileEntry.auditFile, true ) );
+    synchronized ( AuditFileEntry.writerLock ) {
       try {
-        Date dt = new Date();
-        fw.write( AuditFileEntry.auditDateFormat.format( dt ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( jobId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( instId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( actor ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageName ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageTxtValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageNumValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( duration ) );
-        fw.newLine();
-      } finally {
+        BufferedWriter fw = getWriter();
+        for ( AuditRecord record : records ) {
+          fw.write( AuditFileEntry.auditDateFormat.format( new Date( record.getTimestamp() ) ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getJobId() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getInstId() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getObjId() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getObjType() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getActor() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getMessageType() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getMessageName() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getMessageTxtValue() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getMessageNumValue() ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.getDuration() ) );
+          fw.newLine();
+        }
         fw.flush();
-        fw.close();
+      } catch ( IOException ex ) {
+        closeWriter();
+        throw new AuditException( ex );
+      }
+    }
+  }
+
+  /**
+   * Closes the audit log. It is opened again by the next entry.
+   */
+  @Override
+  public void close() {
+    synchronized ( AuditFileEntry.writerLock ) {
+      closeWriter();
+    }
+  }
+
+  private static BufferedWriter getWriter() throws IOException {
+    if ( AuditFileEntry.writer != null
+        && ( !AuditFileEntry.auditFile.equals( AuditFileEntry.writerFile ) || !AuditFileEntry.writerFile.exists() ) ) {
+      closeWriter();
+    }
+    if ( AuditFileEntry.writer == null ) {
+      AuditFileEntry.writer = new BufferedWriter( new FileWriter( AuditFileEntry.auditFile, true ) );
+      AuditFileEntry.writerFile = AuditFileEntry.auditFile;
+    }
+    return AuditFileEntry.writer;
+  }
+
+  private static void closeWriter() {
+    if ( AuditFileEntry.writer != null ) {
+      try {
+        AuditFileEntry.writer.close();
+      } catch ( IOException ex ) {
+        Logger.error( AuditFileEntry.class.getName(), ex.getMessage(), ex );
       }
-    } catch ( IOException ex ) {
-      throw new AuditException( ex );
+      AuditFileEntry.writer = null;
+      AuditFileEntry.writerFile = null;
     }
   }
 
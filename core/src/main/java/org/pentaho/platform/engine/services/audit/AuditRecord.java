@@ -0,0 +1,108 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import java.math.BigDecimal;
+
+/**
+ * One audit entry, as passed to {@link org.pentaho.platform.api.engine.IAuditEntry#auditAll}. The time of the audit
+ * is captured when the record is created, so entries written later in a batch keep the time they happened at.
+ */
+public final class AuditRecord {
+  private final String jobId;
+  private final String instId;
+  private final String objId;
+  private final String objType;
+  private final String actor;
+  private final String messageType;
+  private final String messageName;
+  private final String messageTxtValue;
+  private final BigDecimal messageNumValue;
+  private final double duration;
+  private final long timestamp;
+
+  public AuditRecord( final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration ) {
+    this( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue, messageNumValue, duration,
+        System.currentTimeMillis() );
+  }
+
+  public AuditRecord( final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration, final long timestamp ) {
+    this.jobId = jobId;
+    this.instId = instId;
+    this.objId = objId;
+    this.objType = objType;
+    this.actor = actor;
+    this.messageType = messageType;
+    this.messageName = messageName;
+    this.messageTxtValue = messageTxtValue;
+    this.messageNumValue = messageNumValue;
+    this.duration = duration;
+    this.timestamp = timestamp;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getInstId() {
+    return instId;
+  }
+
+  public String getObjId() {
+    return objId;
+  }
+
+  public String getObjType() {
+    return objType;
+  }
+
+  public String getActor() {
+    return actor;
+  }
+
+  public String getMessageType() {
+    return messageType;
+  }
+
+  public String getMessageName() {
+    return messageName;
+  }
+
+  public String getMessageTxtValue() {
+    return messageTxtValue;
+  }
+
+  public BigDecimal getMessageNumValue() {
+    return messageNumValue;
+  }
+
+  public double getDuration() {
+    return duration;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
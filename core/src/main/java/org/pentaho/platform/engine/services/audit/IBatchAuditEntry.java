@@ -0,0 +1,51 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import java.util.List;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+
+/**
+ * An audit destination able to record many entries in one go, such as a single JDBC batch or a single write to the
+ * audit log. {@link AsyncAuditEntry} hands the entries it has queued to such a destination.
+ */
+public interface IBatchAuditEntry extends IAuditEntry {
+
+  /**
+   * Records the entries, in order.
+   * 
+   * @param records
+   *          the entries to record
+   * @throws AuditException
+   *           if the entries could not be recorded
+   */
+  public void auditBatch( List<AuditRecord> records ) throws AuditException;
+
+  /**
+   * Releases what the destination keeps open between batches, such as the audit log. Entries recorded afterwards
+   * open it again. Does nothing by default.
+   */
+  public default void close() {
+  }
+
+}
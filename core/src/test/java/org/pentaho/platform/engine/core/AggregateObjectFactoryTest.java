@@ -22,17 +22,34 @@ package org.pentaho.platform.engine.core;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
-
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.pentaho.platform.api.engine.IMimeTypeListener;
 import org.pentaho.platform.api.engine.IPentahoDefinableObjectFactory;
+import org.pentaho.platform.api.engine.IPentahoObjectFactory;
+import org.pentaho.platform.api.engine.IPentahoObjectRegistration;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.core.system.objfac.AggregateObjectFactory;
+import org.pentaho.platform.engine.core.system.objfac.OSGIObjectFactory;
+import org.pentaho.platform.engine.core.system.objfac.RuntimeObjectFactory;
 import org.pentaho.platform.engine.core.system.objfac.StandaloneObjectFactory;
 import org.pentaho.platform.engine.core.system.objfac.StandaloneSpringPentahoObjectFactory;
 import org.pentaho.platform.engine.core.system.objfac.spring.PublishedBeanRegistry;
@@ -199,4 +216,118 @@ public class AggregateObjectFactoryTest {
     assertEquals( 0, PublishedBeanRegistry.getRegisteredFactories().size() );
 
   }
+
+  @Test
+  public void testResolutionCacheSkipsFactoriesNotDefiningType() throws Exception {
+    IPentahoObjectFactory other = mock( IPentahoObjectFactory.class );
+    RuntimeObjectFactory runtime = new RuntimeObjectFactory();
+    GoodObject good = new GoodObject();
+    runtime.registerObject( good );
+
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory( other );
+    aggFactory.registerObjectFactory( runtime );
+
+    StandaloneSession session = new StandaloneSession();
+    for ( int i = 0; i < 3; i++ ) {
+      assertSame( good, aggFactory.get( GoodObject.class, session ) );
+    }
+    verify( other, times( 1 ) ).objectDefined( GoodObject.class );
+    verify( other, never() ).getObjectReferences( any( Class.class ), any(), any() );
+    assertEquals( 1, aggFactory.getResolutionCacheMisses() );
+    assertEquals( 2, aggFactory.getResolutionCacheHits() );
+  }
+
+  @Test
+  public void testResolutionCacheInvalidatedByRegistrations() throws Exception {
+    RuntimeObjectFactory runtime = new RuntimeObjectFactory();
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory( runtime );
+    StandaloneSession session = new StandaloneSession();
+
+    // a negative answer is cached as well, and must not survive a registration
+    assertEquals( false, aggFactory.objectDefined( GoodObject.class ) );
+    IPentahoObjectRegistration registration = runtime.registerObject( new GoodObject() );
+    assertTrue( aggFactory.objectDefined( GoodObject.class ) );
+
+    registration.remove();
+    assertEquals( false, aggFactory.objectDefined( GoodObject.class ) );
+
+    RuntimeObjectFactory runtime2 = new RuntimeObjectFactory();
+    GoodObject good = new GoodObject();
+    runtime2.registerObject( good );
+    aggFactory.registerObjectFactory( runtime2 );
+    assertSame( good, aggFactory.get( GoodObject.class, session ) );
+
+    aggFactory.deregisterObjectFactory( runtime2 );
+    assertEquals( false, aggFactory.objectDefined( GoodObject.class ) );
+    // de-registered factories no longer invalidate the cache
+    long misses = aggFactory.getResolutionCacheMisses();
+    runtime2.registerObject( new GoodObject() );
+    aggFactory.objectDefined( GoodObject.class );
+    assertEquals( misses, aggFactory.getResolutionCacheMisses() );
+  }
+
+  @Test
+  public void testResolutionCacheAlwaysAsksOsgiFactories() throws Exception {
+    OSGIObjectFactory osgi = mock( OSGIObjectFactory.class );
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory( osgi );
+
+    when( osgi.objectDefined( GoodObject.class ) ).thenReturn( false );
+    assertEquals( false, aggFactory.objectDefined( GoodObject.class ) );
+    when( osgi.objectDefined( GoodObject.class ) ).thenReturn( true );
+    assertTrue( aggFactory.objectDefined( GoodObject.class ) );
+  }
+
+  @Test
+  public void testResolutionCacheDisabled() throws Exception {
+    IPentahoObjectFactory other = mock( IPentahoObjectFactory.class );
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.setResolutionCacheEnabled( false );
+    aggFactory.registerObjectFactory( other );
+
+    aggFactory.objectDefined( GoodObject.class );
+    aggFactory.objectDefined( GoodObject.class );
+    verify( other, times( 2 ) ).objectDefined( GoodObject.class );
+    assertEquals( 0, aggFactory.getResolutionCacheHits() );
+    assertEquals( 0, aggFactory.getResolutionCacheMisses() );
+  }
+
+  @Test
+  public void testConcurrentCachedLookups() throws Exception {
+    final RuntimeObjectFactory runtime = new RuntimeObjectFactory();
+    final GoodObject good = new GoodObject();
+    runtime.registerObject( good );
+    final AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory( runtime );
+
+    final int threads = 8;
+    final int lookups = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for ( int i = 0; i < threads; i++ ) {
+        results.add( executor.submit( new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            StandaloneSession session = new StandaloneSession();
+            for ( int j = 0; j < lookups; j++ ) {
+              if ( aggFactory.get( GoodObject.class, session ) != good ) {
+                return false;
+              }
+            }
+            return true;
+          }
+        } ) );
+      }
+      for ( Future<Boolean> result : results ) {
+        assertTrue( result.get() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals( threads * lookups, aggFactory.getResolutionCacheHits() + aggFactory.getResolutionCacheMisses() );
+    assertTrue( aggFactory.getResolutionCacheMisses() <= threads );
+  }
 }
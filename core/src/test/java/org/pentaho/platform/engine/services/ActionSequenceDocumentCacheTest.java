@@ -0,0 +1,99 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+
+@SuppressWarnings( "nls" )
+public class ActionSequenceDocumentCacheTest {
+
+  private ActionSequenceDocumentCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new ActionSequenceDocumentCache() {
+      @Override
+      protected ICacheManager getCacheManager() {
+        return SimpleMapCacheManager.getInstance();
+      }
+    };
+    cache.clear();
+  }
+
+  private static RepositoryFile file( String versionId, long lastModified ) {
+    return new RepositoryFile.Builder( "fileId", "test.xaction" ).versionId( versionId ).lastModificationDate(
+        new Date( lastModified ) ).build();
+  }
+
+  @Test
+  public void testHitReturnsCopy() {
+    String key = cache.getKey( file( "1.0", 1000 ) );
+    assertNull( cache.get( key ) );
+
+    Document document = DocumentHelper.createDocument();
+    document.addElement( "action-sequence" ).addElement( "title" ).setText( "Title" );
+    cache.put( key, document, 2000000 );
+    // changes made by the caller after the fact don't reach the cache
+    document.getRootElement().element( "title" ).setText( "Changed" );
+
+    Document cached = cache.get( key );
+    assertNotNull( cached );
+    assertEquals( "Title", cached.getRootElement().elementText( "title" ) );
+    assertNotSame( cached, cache.get( key ) );
+
+    assertEquals( 2, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+    assertEquals( 2d / 3, cache.getHitRate(), 0.0001 );
+    assertEquals( 2, cache.getAverageParseMillis(), 0.0001 );
+  }
+
+  @Test
+  public void testKeyFollowsVersion() {
+    String key = cache.getKey( file( "1.0", 1000 ) );
+    assertEquals( key, cache.getKey( file( "1.0", 1000 ) ) );
+    assertNotEquals( key, cache.getKey( file( "1.1", 1000 ) ) );
+    assertNotEquals( key, cache.getKey( file( "1.0", 2000 ) ) );
+  }
+
+  @Test
+  public void testFileWithoutVersionIsNotCached() {
+    RepositoryFile file = new RepositoryFile.Builder( "fileId", "test.xaction" ).build();
+    String key = cache.getKey( file );
+    assertNull( key );
+
+    cache.put( key, DocumentHelper.createDocument(), 1000 );
+    assertNull( cache.get( key ) );
+  }
+}
@@ -0,0 +1,179 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.engine.services.audit.AsyncAuditEntry;
+import org.pentaho.platform.engine.services.audit.AuditRecord;
+import org.pentaho.platform.engine.services.audit.IBatchAuditEntry;
+
+import java.math.BigDecimal;
+
+@SuppressWarnings( "nls" )
+public class AsyncAuditEntryTest {
+
+  private static class RecordingAuditEntry implements IBatchAuditEntry {
+    private final List<List<AuditRecord>> batches = new ArrayList<List<AuditRecord>>();
+
+    private final List<String> threads = new ArrayList<String>();
+
+    private CountDownLatch release = new CountDownLatch( 0 );
+
+    private int closed;
+
+    private int countWhenClosed = -1;
+
+    public void auditAll( String jobId, String instId, String objId, String objType, String actor,
+        String messageType, String messageName, String messageTxtValue, BigDecimal messageNumValue, double duration )
+      throws AuditException {
+      throw new UnsupportedOperationException();
+    }
+
+    public void auditBatch( List<AuditRecord> records ) throws AuditException {
+      try {
+        release.await();
+      } catch ( InterruptedException e ) {
+        throw new AuditException( e );
+      }
+      synchronized ( this ) {
+        batches.add( new ArrayList<AuditRecord>( records ) );
+        threads.add( Thread.currentThread().getName() );
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      closed++;
+      countWhenClosed = count();
+    }
+
+    synchronized int count() {
+      int count = 0;
+      for ( List<AuditRecord> batch : batches ) {
+        count += batch.size();
+      }
+      return count;
+    }
+  }
+
+  private static void audit( AsyncAuditEntry entry, int i ) {
+    entry.auditAll( "job", "inst" + i, "obj", "type", "actor", "messageType", "messageName", "text",
+        BigDecimal.ONE, i );
+  }
+
+  @Test
+  public void testEntriesAreWrittenInBatchesAndFlushedOnShutdown() {
+    RecordingAuditEntry delegate = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry( delegate );
+    entry.setBatchSize( 10 );
+    entry.setFlushIntervalMillis( 60000 );
+    for ( int i = 0; i < 95; i++ ) {
+      audit( entry, i );
+    }
+    entry.shutdown();
+
+    assertEquals( 95, delegate.count() );
+    assertEquals( 95, entry.getWrittenCount() );
+    assertEquals( 0, entry.getQueueDepth() );
+    for ( List<AuditRecord> batch : delegate.batches ) {
+      assertTrue( batch.size() <= 10 );
+    }
+    // order is kept
+    int i = 0;
+    for ( List<AuditRecord> batch : delegate.batches ) {
+      for ( AuditRecord record : batch ) {
+        assertEquals( "inst" + i++, record.getInstId() );
+      }
+    }
+  }
+
+  @Test
+  public void testDestinationIsClosedOnceAllEntriesAreWritten() {
+    RecordingAuditEntry delegate = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry( delegate );
+    entry.setBatchSize( 10 );
+    entry.setFlushIntervalMillis( 60000 );
+    for ( int i = 0; i < 25; i++ ) {
+      audit( entry, i );
+    }
+    entry.shutdown();
+
+    assertEquals( 1, delegate.closed );
+    assertEquals( 25, delegate.countWhenClosed );
+  }
+
+  @Test
+  public void testPartialBatchIsWrittenAfterFlushInterval() throws Exception {
+    RecordingAuditEntry delegate = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry( delegate );
+    entry.setBatchSize( 100 );
+    entry.setFlushIntervalMillis( 50 );
+    audit( entry, 0 );
+    audit( entry, 1 );
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( delegate.count() < 2 && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( 2, delegate.count() );
+    assertEquals( "pentaho-audit-writer", delegate.threads.get( 0 ) );
+    entry.shutdown();
+  }
+
+  @Test
+  public void testDiscardWhenFull() {
+    RecordingAuditEntry delegate = new RecordingAuditEntry();
+    delegate.release = new CountDownLatch( 1 );
+    AsyncAuditEntry entry = new AsyncAuditEntry( delegate );
+    entry.setQueueCapacity( 5 );
+    entry.setBatchSize( 1 );
+    entry.setOverflowPolicy( AsyncAuditEntry.OverflowPolicy.DISCARD );
+    // the writer holds at most one entry while blocked, so at least 14 of these don't fit
+    for ( int i = 0; i < 20; i++ ) {
+      audit( entry, i );
+    }
+    assertTrue( entry.getDroppedCount() >= 14 );
+    delegate.release.countDown();
+    entry.shutdown();
+    assertEquals( 20, delegate.count() + entry.getDroppedCount() );
+  }
+
+  @Test
+  public void testCallerRunsWhenFull() {
+    RecordingAuditEntry delegate = new RecordingAuditEntry();
+    AsyncAuditEntry entry = new AsyncAuditEntry( delegate );
+    entry.setQueueCapacity( 1 );
+    entry.setOverflowPolicy( AsyncAuditEntry.OverflowPolicy.CALLER_RUNS );
+    entry.shutdown();
+    // after shutdown, and whenever the queue is full, the caller writes the entry itself
+    audit( entry, 0 );
+    assertEquals( 1, delegate.count() );
+    assertEquals( Thread.currentThread().getName(), delegate.threads.get( 0 ) );
+    assertEquals( 0, entry.getDroppedCount() );
+  }
+}
@@ -50,6 +50,7 @@ import org.pentaho.ui.xul.XulOverlay;
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -124,6 +125,24 @@ public class PentahoSystemPluginManagerIT extends DefaultPluginManagerIT {
 
   }
 
+  @Test
+  public void testParallelBootstrap() throws Exception {
+    init0();
+    microPlatform.start();
+
+    PluginMessageLogger.clear();
+    System.setProperty( PentahoSystemPluginManager.BOOTSTRAP_THREADS_PROPERTY, "4" );
+    try {
+      pluginManager.reload();
+    } finally {
+      System.clearProperty( PentahoSystemPluginManager.BOOTSTRAP_THREADS_PROPERTY );
+    }
+
+    assertEquals( "Wrong number of overlays", 3, PentahoSystem.getAll( XulOverlay.class ).size() );
+    Map<String, Long> startupTimes = ( (PentahoSystemPluginManager) pluginManager ).getPluginStartupTimes();
+    assertTrue( startupTimes.keySet().containsAll( pluginManager.getRegisteredPlugins() ) );
+  }
+
   @Test
   public void testPerspectiveUnRegistration() throws Exception {
     PentahoSystem.clearObjectFactory();
@@ -55,6 +55,7 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -528,9 +529,15 @@ public class FileServiceIT {
   public void testDoGetCanAccessList() {
     String permissions = RepositoryFilePermission.READ.ordinal() + "|" + RepositoryFilePermission.WRITE.ordinal() + "|"
       + RepositoryFilePermission.DELETE.ordinal();
-    doReturn( true ).when( fileService.repository ).hasAccess( nullable( String.class ), any( EnumSet.class ) );
+    Map<String, EnumSet<RepositoryFilePermission>> access = new HashMap<String, EnumSet<RepositoryFilePermission>>();
+    access.put( "/pathId", EnumSet.of( RepositoryFilePermission.READ, RepositoryFilePermission.DELETE ) );
+    doReturn( access ).when( fileService.repository ).hasAccess( anyList(), any( EnumSet.class ) );
     List<Setting> settings = fileService.doGetCanAccessList( "pathId", permissions );
-    assertTrue( settings.size() > 0 );
+    assertEquals( 3, settings.size() );
+    assertEquals( "true", settings.get( 0 ).getValue() );
+    assertEquals( "false", settings.get( 1 ).getValue() );
+    assertEquals( "true", settings.get( 2 ).getValue() );
+    verify( fileService.repository, never() ).hasAccess( nullable( String.class ), any( EnumSet.class ) );
   }
 
   @Test
@@ -540,11 +547,18 @@ public class FileServiceIT {
     paths.add( "path2" );
     paths.add( "path3" );
 
-    doReturn( true ).when( fileService.repository ).hasAccess( nullable( String.class ), any( EnumSet.class ) );
+    Map<String, EnumSet<RepositoryFilePermission>> access = new HashMap<String, EnumSet<RepositoryFilePermission>>();
+    access.put( "/path1", EnumSet.allOf( RepositoryFilePermission.class ) );
+    access.put( "/path2", EnumSet.of( RepositoryFilePermission.READ ) );
+    access.put( "/path3", EnumSet.noneOf( RepositoryFilePermission.class ) );
+    doReturn( access ).when( fileService.repository ).hasAccess( anyList(), any( EnumSet.class ) );
     List<Setting> settings = fileService.doGetPathsAccessList( new StringListWrapper( paths ) );
-    assertTrue( settings.size() > 0 );
+    assertEquals( 6, settings.size() );
+    assertEquals( "path2", settings.get( 5 ).getName() );
+    assertEquals( String.valueOf( RepositoryFilePermission.READ.ordinal() ), settings.get( 5 ).getValue() );
+    verify( fileService.repository, times( 1 ) ).hasAccess( anyList(), any( EnumSet.class ) );
 
-    doReturn( false ).when( fileService.repository ).hasAccess( nullable( String.class ), any( EnumSet.class ) );
+    doReturn( Collections.emptyMap() ).when( fileService.repository ).hasAccess( anyList(), any( EnumSet.class ) );
     settings = fileService.doGetPathsAccessList( new StringListWrapper( paths ) );
     assertEquals( 0, settings.size() );
   }
@@ -1438,15 +1452,12 @@ public class FileServiceIT {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetCurrentUserDir();
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+      .getChildrenByMetadata( userFolder, PentahoJcrConstants.PHO_CONTENTCREATOR, pathId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -1497,15 +1508,12 @@ public class FileServiceIT {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetUserDir( user );
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+      .getChildrenByMetadata( userFolder, PentahoJcrConstants.PHO_CONTENTCREATOR, pathId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -1557,15 +1565,12 @@ public class FileServiceIT {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( lineageId ).when( mockedFileMetadata ).get( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetCurrentUserDir();
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+      .getChildrenByMetadata( userFolder, QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID, lineageId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
@@ -39,27 +40,55 @@ import java.util.concurrent.ThreadFactory;
  * Wrapper for the AsyncEventBus class.
  * <p/>
  * The methods of AsyncEventBus use internal synchronization, so this singleton is thread-safe
+ * <p/>
+ * When created with a shard count, events are dispatched by a {@link ShardedEventDispatcher} instead: a fixed number
+ * of worker threads with bounded queues and an overflow policy, and no lock taken on {@link #post}.
  */
 public class MonitoringService implements IMonitoringService {
 
   private Logger logger = LoggerFactory.getLogger( MonitoringService.class );
 
-  private AsyncEventBus asyncEventBus; // asynchronous dispatching of events
+  private EventBus asyncEventBus; // asynchronous dispatching of events
+
+  private ShardedEventDispatcher dispatcher;
 
 
   public MonitoringService() {
+    this( null );
+  }
 
-    asyncEventBus = new AsyncEventBus( Executors.newCachedThreadPool(
-        new ThreadFactory() {
-          @Override
-          public Thread newThread( Runnable r ) {
-            Thread thread = Executors.defaultThreadFactory().newThread( r );
-            thread.setDaemon( true );
-            thread.setName( "MonitoringService pool" );
-            return thread;
+  /**
+   * Creates a service dispatching over {@code shards} worker threads.
+   *
+   * @param shards         number of worker threads
+   * @param queueCapacity  capacity of the queue of each worker
+   * @param overflowPolicy what to do with events posted while a queue is full
+   * @param sampleRate     for {@link ShardedEventDispatcher.OverflowPolicy#SAMPLE}, one in this many overflowing events
+   *                       is kept
+   */
+  public MonitoringService( int shards, int queueCapacity, ShardedEventDispatcher.OverflowPolicy overflowPolicy,
+                            int sampleRate ) {
+    this( new ShardedEventDispatcher( shards, queueCapacity, overflowPolicy, sampleRate ) );
+  }
+
+  private MonitoringService( ShardedEventDispatcher dispatcher ) {
+
+    this.dispatcher = dispatcher;
+    if ( dispatcher != null ) {
+      asyncEventBus = new DispatcherEventBus( dispatcher );
+    } else {
+      asyncEventBus = new AsyncEventBus( Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+              Thread thread = Executors.defaultThreadFactory().newThread( r );
+              thread.setDaemon( true );
+              thread.setName( "MonitoringService pool" );
+              return thread;
+            }
           }
-        }
-    ) );
+      ) );
+    }
 
     // register the bus with PentahoSystem
     PentahoSystem.registerReference(
@@ -80,9 +109,17 @@ public class MonitoringService implements IMonitoringService {
    * @param subscriber IMonitoringSubscriber event handler
    */
   @Override
-  public synchronized <T extends IMonitoringSubscriber> void register( T subscriber ) {
+  public <T extends IMonitoringSubscriber> void register( T subscriber ) {
     logger.debug( "registering subscriber " + ( subscriber != null ? subscriber.getSubscriberId() : "null" ) );
-    getAsyncEventBus().register( subscriber );
+    if ( dispatcher != null ) {
+      if ( subscriber != null ) {
+        dispatcher.register( subscriber, subscriber.getSubscriberId() );
+      }
+      return;
+    }
+    synchronized ( this ) {
+      getAsyncEventBus().register( subscriber );
+    }
   }
 
   /**
@@ -91,9 +128,15 @@ public class MonitoringService implements IMonitoringService {
    * @param subscriber IMonitoringSubscriber event handler
    */
   @Override
-  public synchronized <T extends IMonitoringSubscriber> void unregister( T subscriber ) {
+  public <T extends IMonitoringSubscriber> void unregister( T subscriber ) {
     logger.debug( "unregistering subscriber " + ( subscriber != null ? subscriber.getSubscriberId() : "null" ) );
-    getAsyncEventBus().unregister( subscriber );
+    if ( dispatcher != null ) {
+      dispatcher.unregister( subscriber );
+      return;
+    }
+    synchronized ( this ) {
+      getAsyncEventBus().unregister( subscriber );
+    }
   }
 
   /**
@@ -102,12 +145,31 @@ public class MonitoringService implements IMonitoringService {
    * @param event IMonitoringEvent event object
    */
   @Override
-  public synchronized <T extends IMonitoringEvent> void post( T event ) {
-    logger.debug( "posting event " + ( event != null ? event.getId() : "null" ) );
-    getAsyncEventBus().post( event );
+  public <T extends IMonitoringEvent> void post( T event ) {
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "posting event " + ( event != null ? event.getId() : "null" ) );
+    }
+    if ( dispatcher != null ) {
+      dispatcher.post( event );
+      return;
+    }
+    synchronized ( this ) {
+      getAsyncEventBus().post( event );
+    }
   }
 
-  private AsyncEventBus getAsyncEventBus() {
+  /**
+   * Per subscriber delivery, drop and lag metrics, keyed by subscriber id. Empty unless the service dispatches over
+   * shards.
+   */
+  public Map<String, ShardedEventDispatcher.SubscriberMetrics> getSubscriberMetrics() {
+    if ( dispatcher == null ) {
+      return Collections.emptyMap();
+    }
+    return dispatcher.getSubscriberMetrics();
+  }
+
+  private EventBus getAsyncEventBus() {
     return asyncEventBus;
   }
 
@@ -122,4 +184,33 @@ public class MonitoringService implements IMonitoringService {
     }
   }
 
+  /**
+   * The event bus published in PentahoSystem when dispatching over shards, so that code posting to the bus directly
+   * reaches the same subscribers.
+   */
+  private static class DispatcherEventBus extends EventBus {
+    private final ShardedEventDispatcher dispatcher;
+
+    DispatcherEventBus( ShardedEventDispatcher dispatcher ) {
+      super( "monitoring" );
+      this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void register( Object object ) {
+      dispatcher.register( object, object instanceof IMonitoringSubscriber
+          ? ( (IMonitoringSubscriber) object ).getSubscriberId() : null );
+    }
+
+    @Override
+    public void unregister( Object object ) {
+      dispatcher.unregister( object );
+    }
+
+    @Override
+    public void post( Object event ) {
+      dispatcher.post( event );
+    }
+  }
+
 }
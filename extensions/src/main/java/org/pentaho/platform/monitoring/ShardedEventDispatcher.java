@@ -0,0 +1,395 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.monitoring;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches events to guava {@link Subscribe} handlers over a fixed number of worker shards.
+ * <p/>
+ * Each subscriber is pinned to one shard, so its events are handled in posting order by a single thread. Every shard
+ * owns a bounded queue; what happens when it is full is decided by the {@link OverflowPolicy}. Posting takes no lock:
+ * the subscriber list is copy-on-write and only the subscribers handling the event type get a delivery.
+ */
+public class ShardedEventDispatcher {
+
+  /**
+   * What {@link #post(Object)} does when the queue of a subscriber's shard is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * drop the new event
+     */
+    DROP,
+    /**
+     * wait for room in the queue; posts from the shard workers themselves fall back to {@link #DROP}
+     */
+    BLOCK,
+    /**
+     * keep one in every {@code sampleRate} overflowing events, evicting the oldest queued event to make room
+     */
+    SAMPLE
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger( ShardedEventDispatcher.class );
+
+  private final Shard[] shards;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final int sampleRate;
+
+  private final List<Channel> channels = new CopyOnWriteArrayList<Channel>();
+
+  private final AtomicInteger nextShard = new AtomicInteger();
+
+  private volatile boolean running = true;
+
+  /**
+   * @param shardCount    number of worker threads
+   * @param queueCapacity capacity of the queue of each shard
+   * @param policy        what to do with events posted while a shard queue is full
+   * @param sampleRate    for {@link OverflowPolicy#SAMPLE}, one in this many overflowing events is kept
+   */
+  public ShardedEventDispatcher( int shardCount, int queueCapacity, OverflowPolicy policy, int sampleRate ) {
+    if ( shardCount <= 0 || queueCapacity <= 0 || sampleRate <= 0 ) {
+      throw new IllegalArgumentException( "shardCount, queueCapacity and sampleRate must be positive" );
+    }
+    this.overflowPolicy = policy != null ? policy : OverflowPolicy.DROP;
+    this.sampleRate = sampleRate;
+    this.shards = new Shard[ shardCount ];
+    for ( int i = 0; i < shardCount; i++ ) {
+      shards[ i ] = new Shard( i, queueCapacity );
+    }
+  }
+
+  /**
+   * Registers all {@link Subscribe} methods of {@code subscriber}. Registering the same instance twice has no effect.
+   */
+  public synchronized void register( Object subscriber, String subscriberId ) {
+    if ( subscriber == null || findChannel( subscriber ) != null ) {
+      return;
+    }
+    Shard shard = shards[ Math.abs( nextShard.getAndIncrement() % shards.length ) ];
+    channels.add( new Channel( subscriber, subscriberId, shard ) );
+  }
+
+  public synchronized void unregister( Object subscriber ) {
+    Channel channel = findChannel( subscriber );
+    if ( channel != null ) {
+      channel.active = false;
+      channels.remove( channel );
+    }
+  }
+
+  /**
+   * Queues {@code event} for every subscriber handling its type. Events nobody handles are wrapped in a
+   * {@link DeadEvent}, as the guava event bus does.
+   */
+  public void post( Object event ) {
+    if ( event == null || !running ) {
+      return;
+    }
+    boolean delivered = false;
+    for ( Channel channel : channels ) {
+      if ( channel.handles( event.getClass() ) ) {
+        delivered = true;
+        channel.shard.enqueue( new Delivery( channel, event ) );
+      }
+    }
+    if ( !delivered && !( event instanceof DeadEvent ) ) {
+      post( new DeadEvent( this, event ) );
+    }
+  }
+
+  /**
+   * @return a snapshot of the metrics of every registered subscriber, keyed by subscriber id
+   */
+  public Map<String, SubscriberMetrics> getSubscriberMetrics() {
+    Map<String, SubscriberMetrics> metrics = new LinkedHashMap<String, SubscriberMetrics>();
+    for ( Channel channel : channels ) {
+      metrics.put( channel.subscriberId, channel.snapshot() );
+    }
+    return metrics;
+  }
+
+  /**
+   * Stops the shard workers. Queued events are discarded.
+   */
+  public void shutdown() {
+    running = false;
+    for ( Shard shard : shards ) {
+      shard.worker.interrupt();
+    }
+  }
+
+  private Channel findChannel( Object subscriber ) {
+    for ( Channel channel : channels ) {
+      if ( channel.subscriber == subscriber ) {
+        return channel;
+      }
+    }
+    return null;
+  }
+
+  private boolean isWorkerThread() {
+    Thread current = Thread.currentThread();
+    for ( Shard shard : shards ) {
+      if ( shard.worker == current ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Point-in-time metrics of one subscriber.
+   */
+  public static class SubscriberMetrics {
+    private final int shard;
+    private final long delivered;
+    private final long dropped;
+    private final long pending;
+    private final long lastLagMillis;
+    private final long maxLagMillis;
+
+    SubscriberMetrics( int shard, long delivered, long dropped, long pending, long lastLagMillis,
+                       long maxLagMillis ) {
+      this.shard = shard;
+      this.delivered = delivered;
+      this.dropped = dropped;
+      this.pending = pending;
+      this.lastLagMillis = lastLagMillis;
+      this.maxLagMillis = maxLagMillis;
+    }
+
+    public int getShard() {
+      return shard;
+    }
+
+    /**
+     * @return events handed to the subscriber
+     */
+    public long getDelivered() {
+      return delivered;
+    }
+
+    /**
+     * @return events discarded by the overflow policy
+     */
+    public long getDropped() {
+      return dropped;
+    }
+
+    /**
+     * @return events queued but not yet handed to the subscriber
+     */
+    public long getPending() {
+      return pending;
+    }
+
+    /**
+     * @return time the last delivered event spent in the queue
+     */
+    public long getLastLagMillis() {
+      return lastLagMillis;
+    }
+
+    public long getMaxLagMillis() {
+      return maxLagMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "shard=" + shard + ", delivered=" + delivered + ", dropped=" + dropped + ", pending=" + pending
+          + ", lastLagMillis=" + lastLagMillis + ", maxLagMillis=" + maxLagMillis;
+    }
+  }
+
+  /**
+   * A registered subscriber together with the event types it handles and its counters.
+   */
+  private static class Channel {
+    private final Object subscriber;
+    private final String subscriberId;
+    private final Shard shard;
+    private final Set<Class<?>> handledTypes = new HashSet<Class<?>>();
+    private final ConcurrentMap<Class<?>, Boolean> handlesCache = new ConcurrentHashMap<Class<?>, Boolean>();
+    // synchronous bus holding only this subscriber, it resolves and invokes the handler methods
+    private final EventBus bus;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    private volatile boolean active = true;
+
+    Channel( Object subscriber, String subscriberId, Shard shard ) {
+      this.subscriber = subscriber;
+      this.subscriberId = subscriberId != null ? subscriberId : subscriber.getClass().getName();
+      this.shard = shard;
+      for ( Class<?> type : TypeToken.of( subscriber.getClass() ).getTypes().rawTypes() ) {
+        for ( Method method : type.getDeclaredMethods() ) {
+          if ( method.isAnnotationPresent( Subscribe.class ) && method.getParameterTypes().length == 1 ) {
+            handledTypes.add( method.getParameterTypes()[ 0 ] );
+          }
+        }
+      }
+      this.bus = new EventBus( this.subscriberId );
+      bus.register( subscriber );
+    }
+
+    boolean handles( Class<?> eventType ) {
+      Boolean handles = handlesCache.get( eventType );
+      if ( handles == null ) {
+        handles = Boolean.FALSE;
+        for ( Class<?> handledType : handledTypes ) {
+          if ( handledType.isAssignableFrom( eventType ) ) {
+            handles = Boolean.TRUE;
+            break;
+          }
+        }
+        handlesCache.put( eventType, handles );
+      }
+      return handles;
+    }
+
+    void deliver( Delivery delivery ) {
+      pending.decrementAndGet();
+      if ( !active ) {
+        return;
+      }
+      long lag = System.nanoTime() - delivery.enqueuedNanos;
+      lastLagNanos = lag;
+      if ( lag > maxLagNanos ) {
+        maxLagNanos = lag;
+      }
+      delivered.incrementAndGet();
+      bus.post( delivery.event );
+    }
+
+    SubscriberMetrics snapshot() {
+      return new SubscriberMetrics( shard.index, delivered.get(), dropped.get(), pending.get(),
+          TimeUnit.NANOSECONDS.toMillis( lastLagNanos ), TimeUnit.NANOSECONDS.toMillis( maxLagNanos ) );
+    }
+  }
+
+  private static class Delivery {
+    private final Channel channel;
+    private final Object event;
+    private final long enqueuedNanos = System.nanoTime();
+
+    Delivery( Channel channel, Object event ) {
+      this.channel = channel;
+      this.event = event;
+    }
+  }
+
+  private class Shard implements Runnable {
+    private final int index;
+    private final BlockingQueue<Delivery> queue;
+    private final AtomicLong overflows = new AtomicLong();
+    private final Thread worker;
+
+    Shard( int index, int capacity ) {
+      this.index = index;
+      this.queue = new ArrayBlockingQueue<Delivery>( capacity );
+      this.worker = new Thread( this, "MonitoringService shard " + index );
+      worker.setDaemon( true );
+      worker.start();
+    }
+
+    void enqueue( Delivery delivery ) {
+      Channel channel = delivery.channel;
+      channel.pending.incrementAndGet();
+      if ( queue.offer( delivery ) || overflow( delivery ) ) {
+        return;
+      }
+      channel.pending.decrementAndGet();
+      channel.dropped.incrementAndGet();
+    }
+
+    private boolean overflow( Delivery delivery ) {
+      switch ( overflowPolicy ) {
+        case BLOCK:
+          if ( isWorkerThread() ) {
+            return false;
+          }
+          try {
+            queue.put( delivery );
+            return true;
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        case SAMPLE:
+          if ( overflows.incrementAndGet() % sampleRate != 0 ) {
+            return false;
+          }
+          Delivery evicted = queue.poll();
+          if ( evicted != null ) {
+            evicted.channel.pending.decrementAndGet();
+            evicted.channel.dropped.incrementAndGet();
+          }
+          return queue.offer( delivery );
+        default:
+          return false;
+      }
+    }
+
+    @Override
+    public void run() {
+      while ( running ) {
+        Delivery delivery;
+        try {
+          delivery = queue.take();
+        } catch ( InterruptedException e ) {
+          break;
+        }
+        try {
+          delivery.channel.deliver( delivery );
+        } catch ( RuntimeException e ) {
+          logger.error( "Error dispatching event to subscriber " + delivery.channel.subscriberId, e );
+        }
+      }
+    }
+  }
+}
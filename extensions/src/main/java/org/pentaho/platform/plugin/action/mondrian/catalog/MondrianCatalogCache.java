@@ -21,18 +21,20 @@ package org.pentaho.platform.plugin.action.mondrian.catalog;
 
 import java.io.Serializable;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * represents the entire regional cache structure for caching Mondrian Catalogs.  The cache is optimized so it can be
  * built incrementally, one catalog at a time, or fully depending upon demands.  The {@Link MondrianCatalogCacheState}
  * tracks whether and and when the cache was fully loaded.
+ * <p>
+ * Catalogs are held in a concurrent map so that lookups never wait for a catalog being loaded or removed.
  */
 public class MondrianCatalogCache implements Serializable {
 
   private MondrianCatalogCacheState mondrianCatalogCacheState = new MondrianCatalogCacheState();
-  private Map<String, MondrianCatalog> catalogs = new HashMap<>();
+  private Map<String, MondrianCatalog> catalogs = new ConcurrentHashMap<>();
 
   public MondrianCatalogCacheState getMondrianCatalogCacheState() {
     return mondrianCatalogCacheState;
@@ -48,15 +50,27 @@ public class MondrianCatalogCache implements Serializable {
   }
 
   public void setCatalogs( Map<String, MondrianCatalog> catalogs ) {
-    this.catalogs = catalogs;
+    this.catalogs = new ConcurrentHashMap<>( catalogs );
   }
 
   public void putCatalog( String key, MondrianCatalog catalog ) {
-    catalogs.put( key, catalog );
+    if ( key != null && catalog != null ) {
+      catalogs.put( key, catalog );
+    }
   }
 
   public MondrianCatalog getCatalog( String context ) {
-    return catalogs.get( context );
+    return context == null ? null : catalogs.get( context );
+  }
+
+  public boolean containsCatalog( String context ) {
+    return context != null && catalogs.containsKey( context );
+  }
+
+  public void removeCatalog( String context ) {
+    if ( context != null ) {
+      catalogs.remove( context );
+    }
   }
 
   public void setFullLoad() {
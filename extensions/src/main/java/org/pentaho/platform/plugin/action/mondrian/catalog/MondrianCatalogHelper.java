@@ -109,6 +109,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Reads in file containing Mondrian data sources and catalogs. (Contains code copied from <code>XmlaServlet</code>.)
@@ -142,10 +148,40 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    */
   private final boolean useLegacyDbName;
 
-  private IAclNodeHelper aclHelper;
+  private volatile IAclNodeHelper aclHelper;
 
   @VisibleForTesting
-  MondrianCatalogRepositoryHelper catalogRepositoryHelper;
+  volatile MondrianCatalogRepositoryHelper catalogRepositoryHelper;
+
+  /**
+   * Catalog loads in progress, keyed by cache generation, locale and catalog name. A request for a catalog that is
+   * already being loaded waits for that load instead of starting its own; loads of different catalogs run in parallel.
+   */
+  private final ConcurrentMap<String, CompletableFuture<Void>> inFlightLoads = new ConcurrentHashMap<>();
+
+  /**
+   * Serializes catalog imports, removals and reloads. Catalog lookups never take it.
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /**
+   * Guards the creation of the catalog cache region and of the cache of each locale.
+   */
+  private final Object regionLock = new Object();
+
+  /**
+   * Bumped on {@link #reInit(IPentahoSession)}, so that a load started after the reload doesn't wait for one started
+   * before it, which fills the cache the reload dropped.
+   */
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
+  private final Map<String, Long> catalogLoadMillis = new ConcurrentHashMap<>();
+
+  private final AtomicLong catalogLoadCount = new AtomicLong();
+
+  private final AtomicLong sharedLoadCount = new AtomicLong();
+
+  private final AtomicLong writeContentionCount = new AtomicLong();
 
   public static final String MONDRIAN_DATASOURCE_FOLDER = "mondrian"; //$NON-NLS-1$
 
@@ -265,7 +301,7 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
 
   // ~ Methods =========================================================================================================
 
-  protected synchronized void init( final IPentahoSession pentahoSession ) {
+  protected void init( final IPentahoSession pentahoSession ) {
     // First check if the catalogs are initialized and fully loaded for the current locale
     MondrianCatalogCache mondrianCatalogCache = getCacheForRegion( pentahoSession );
     if ( mondrianCatalogCache.getMondrianCatalogCacheState().isFullyLoaded() ) {
@@ -277,18 +313,94 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     }
     // By default, we will use the system to load all schemas into the cache.
     // access to these schemas is controlled later via the hasAccess() method
-    loadCatalogsIntoCache( makeDataSources(), PentahoSessionHolder.getSession() );
+    loadOnce( cacheGeneration.get(), "all", //$NON-NLS-1$
+        () -> loadCatalogsIntoCache( makeDataSources(), PentahoSessionHolder.getSession() ) );
   }
 
   @Override
-  public synchronized void reInit( final IPentahoSession pentahoSession ) {
-    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
-    if ( cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
-      cacheMgr.clearRegionCache( MONDRIAN_CATALOG_CACHE_REGION );
+  public void reInit( final IPentahoSession pentahoSession ) {
+    lockForWrite();
+    try {
+      cacheGeneration.incrementAndGet();
+      final ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
+      if ( cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
+        cacheMgr.clearRegionCache( MONDRIAN_CATALOG_CACHE_REGION );
+      }
+    } finally {
+      writeLock.unlock();
     }
     init( pentahoSession );
   }
 
+  /**
+   * @return the time in milliseconds it took to read and parse the schema of each catalog, as of its last load
+   */
+  public Map<String, Long> getCatalogLoadTimes() {
+    return Collections.unmodifiableMap( new HashMap<>( catalogLoadMillis ) );
+  }
+
+  /**
+   * @return the number of catalog schemas read and parsed
+   */
+  public long getCatalogLoadCount() {
+    return catalogLoadCount.get();
+  }
+
+  /**
+   * @return the number of requests that waited for a load of the same catalog started by another request, instead of
+   *         loading it again
+   */
+  public long getSharedLoadCount() {
+    return sharedLoadCount.get();
+  }
+
+  /**
+   * @return the number of catalog imports, removals and reloads that had to wait for another one to finish
+   */
+  public long getWriteContentionCount() {
+    return writeContentionCount.get();
+  }
+
+  private void lockForWrite() {
+    if ( !writeLock.tryLock() ) {
+      writeContentionCount.incrementAndGet();
+      writeLock.lock();
+    }
+  }
+
+  /**
+   * Runs the load unless the same one, for the same locale and cache generation, is already in progress, in which case
+   * it waits for that one to finish and fails the same way it did.
+   */
+  private void loadOnce( final long generation, final String loadName, final Runnable load ) {
+    final String key = generation + "\t" + getLocale() + "\t" + loadName; //$NON-NLS-1$ //$NON-NLS-2$
+    final CompletableFuture<Void> pending = new CompletableFuture<>();
+    final CompletableFuture<Void> inFlight = inFlightLoads.putIfAbsent( key, pending );
+    if ( inFlight != null ) {
+      sharedLoadCount.incrementAndGet();
+      try {
+        inFlight.join();
+      } catch ( CompletionException e ) {
+        if ( e.getCause() instanceof RuntimeException ) {
+          throw (RuntimeException) e.getCause();
+        } else if ( e.getCause() instanceof Error ) {
+          throw (Error) e.getCause();
+        }
+        throw new MondrianCatalogServiceException( e.getCause() );
+      }
+      return;
+    }
+    try {
+      load.run();
+      pending.complete( null );
+    } catch ( RuntimeException | Error e ) {
+      pending.completeExceptionally( e );
+      throw e;
+    } finally {
+      inFlightLoads.remove( key, pending );
+    }
+  }
+
   private static Locale getLocale() {
     final Locale locale = LocaleHelper.getLocale();
     if ( locale != null ) {
@@ -572,8 +684,8 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    * use the in memory session value of input stream (used by test harness)
    */
   @Override
-  public synchronized void addCatalog( final MondrianCatalog catalog, final boolean overwrite,
-                                       final IPentahoSession pentahoSession ) throws MondrianCatalogServiceException {
+  public void addCatalog( final MondrianCatalog catalog, final boolean overwrite,
+                          final IPentahoSession pentahoSession ) throws MondrianCatalogServiceException {
     String mondrianSchema = (String) pentahoSession.getAttribute( "MONDRIAN_SCHEMA_XML_CONTENT" ); //$NON-NLS-1$
     InputStream schemaInputStream = IOUtils.toInputStream( mondrianSchema );
     addCatalog( schemaInputStream, catalog, overwrite, pentahoSession );
@@ -599,10 +711,21 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    * @throws MondrianCatalogServiceException
    */
   @Override
-  public synchronized void addCatalog( InputStream schemaInputStream, final MondrianCatalog catalog,
-                                       final boolean overwrite, RepositoryFileAcl acl,
-                                       final IPentahoSession pentahoSession )
+  public void addCatalog( InputStream schemaInputStream, final MondrianCatalog catalog,
+                          final boolean overwrite, RepositoryFileAcl acl,
+                          final IPentahoSession pentahoSession )
       throws MondrianCatalogServiceException {
+    lockForWrite();
+    try {
+      addCatalogLocked( schemaInputStream, catalog, overwrite, acl, pentahoSession );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void addCatalogLocked( InputStream schemaInputStream, final MondrianCatalog catalog,
+                                 final boolean overwrite, RepositoryFileAcl acl,
+                                 final IPentahoSession pentahoSession ) {
     if ( MondrianCatalogHelper.logger.isDebugEnabled() ) {
       MondrianCatalogHelper.logger.debug( "addCatalog" ); //$NON-NLS-1$
     }
@@ -694,21 +817,35 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     return PentahoSystem.get( IUnifiedRepository.class );
   }
 
-  protected synchronized MondrianCatalogRepositoryHelper getMondrianCatalogRepositoryHelper() {
-    if ( catalogRepositoryHelper == null ) {
-      catalogRepositoryHelper = new MondrianCatalogRepositoryHelper( PentahoSystem.get( IUnifiedRepository.class ) );
+  protected MondrianCatalogRepositoryHelper getMondrianCatalogRepositoryHelper() {
+    MondrianCatalogRepositoryHelper helper = catalogRepositoryHelper;
+    if ( helper == null ) {
+      synchronized ( this ) {
+        helper = catalogRepositoryHelper;
+        if ( helper == null ) {
+          helper = new MondrianCatalogRepositoryHelper( PentahoSystem.get( IUnifiedRepository.class ) );
+          catalogRepositoryHelper = helper;
+        }
+      }
     }
-    return catalogRepositoryHelper;
+    return helper;
   }
 
-  protected synchronized IAclNodeHelper getAclHelper() {
-    if ( aclHelper == null ) {
-      aclHelper = new JcrAclNodeHelper( PentahoSystem.get( IUnifiedRepository.class ) );
+  protected IAclNodeHelper getAclHelper() {
+    IAclNodeHelper helper = aclHelper;
+    if ( helper == null ) {
+      synchronized ( this ) {
+        helper = aclHelper;
+        if ( helper == null ) {
+          helper = new JcrAclNodeHelper( PentahoSystem.get( IUnifiedRepository.class ) );
+          aclHelper = helper;
+        }
+      }
     }
-    return aclHelper;
+    return helper;
   }
 
-  public synchronized void setAclHelper( IAclNodeHelper helper ) {
+  public void setAclHelper( IAclNodeHelper helper ) {
     aclHelper = helper;
   }
 
@@ -765,7 +902,16 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   }
 
   @Deprecated
-  protected synchronized void writeDataSources( DataSources dataSources ) {
+  protected void writeDataSources( DataSources dataSources ) {
+    lockForWrite();
+    try {
+      writeDataSourcesLocked( dataSources );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void writeDataSourcesLocked( DataSources dataSources ) {
 
     File dataSourcesFile;
     try {
@@ -1159,6 +1305,15 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     if ( MondrianCatalogHelper.logger.isDebugEnabled() ) {
       MondrianCatalogHelper.logger.debug( "removeCatalog" ); //$NON-NLS-1$
     }
+    lockForWrite();
+    try {
+      removeCatalogLocked( catalogName, pentahoSession );
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void removeCatalogLocked( final String catalogName, final IPentahoSession pentahoSession ) {
     MondrianCatalog catalog = getCatalog( catalogName, pentahoSession );
 
     if ( catalog == null ) {
@@ -1188,8 +1343,8 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     MondrianCatalogCache mondrianCatalogCache =
       (MondrianCatalogCache) PentahoSystem.getCacheManager( pentahoSession ).getFromRegionCache(
         MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString() );
-    mondrianCatalogCache.getCatalogs().remove( catalog.getDefinition() );
-    mondrianCatalogCache.getCatalogs().remove( catalog.getName() );
+    mondrianCatalogCache.removeCatalog( catalog.getDefinition() );
+    mondrianCatalogCache.removeCatalog( catalog.getName() );
 
   }
 
@@ -1201,17 +1356,23 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     return builder.parse( is );
   }
 
-  private synchronized void loadCatalogIntoCache( String catalogName, final IPentahoSession pentahoSession ) {
+  private void loadCatalogIntoCache( final String catalogName, final IPentahoSession pentahoSession ) {
 
-    ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
-    MondrianCatalogCache mondrianCatalogCache = getCacheForRegion( cacheMgr );
-    if ( mondrianCatalogCache.getCatalogs().containsKey( catalogName ) ) {
+    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
+    if ( getCacheForRegion( cacheMgr ).containsCatalog( catalogName ) ) {
       return;  //We already have it
     }
 
-    findDatasourceWithCatalog( catalogName, mondrianCatalogCache );
-    cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+    loadOnce( cacheGeneration.get(), "catalog:" + catalogName, () -> { //$NON-NLS-1$
+      MondrianCatalogCache cache = getCacheForRegion( cacheMgr );
+      if ( cache.containsCatalog( catalogName ) ) {
+        return; // loaded by a request that finished while this one was getting here
+      }
+      // fills the cache held by the region; if reInit cleared the region meanwhile, the stale cache is just dropped
+      findDatasourceWithCatalog( catalogName, cache );
+    } );
 
+    MondrianCatalogCache mondrianCatalogCache = getCacheForRegion( cacheMgr );
     if ( mondrianCatalogCache.getCatalog( catalogName ) == null && !mondrianCatalogCache.getMondrianCatalogCacheState()
       .isFullyLoaded() && isCatalogDefinitionString( catalogName ) ) {
       //We could not find quickly by name, but if its a definition string perhaps we can find it with a full load
@@ -1226,23 +1387,35 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   }
 
   private MondrianCatalogCache getCacheForRegion( final ICacheManager cacheMgr ) {
-    // Create the cache region if necessary.
-    if ( !cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
-      // Create the region
-      cacheMgr.addCacheRegion( MONDRIAN_CATALOG_CACHE_REGION );
-    }
-
-    MondrianCatalogCache mondrianCatalogCache =
-      (MondrianCatalogCache) cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION,
-        getLocale().toString() );
+    MondrianCatalogCache mondrianCatalogCache = getCacheFromRegion( cacheMgr );
     if ( mondrianCatalogCache == null ) {
-      mondrianCatalogCache = new MondrianCatalogCache();
-      cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+      // loads of different catalogs run in parallel; they must all fill the same cache
+      synchronized ( regionLock ) {
+        mondrianCatalogCache = getCacheFromRegion( cacheMgr );
+        if ( mondrianCatalogCache == null ) {
+          mondrianCatalogCache = new MondrianCatalogCache();
+          cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+        }
+      }
     }
 
     return mondrianCatalogCache;
   }
 
+  private MondrianCatalogCache getCacheFromRegion( final ICacheManager cacheMgr ) {
+    // Create the cache region if necessary.
+    if ( !cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
+      synchronized ( regionLock ) {
+        if ( !cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
+          // Create the region
+          cacheMgr.addCacheRegion( MONDRIAN_CATALOG_CACHE_REGION );
+        }
+      }
+    }
+    return (MondrianCatalogCache) cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION,
+      getLocale().toString() );
+  }
+
   private void findDatasourceWithCatalog( String catalogName, MondrianCatalogCache mondrianCatalogCache ) {
 
     IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
@@ -1301,6 +1474,7 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
 
         // try catch here so the whole thing doesn't blow up if one datasource is configured incorrectly.
         MondrianSchema schema = null;
+        long start = System.currentTimeMillis();
         try {
           schema = makeSchema( getCatalogAsString( pentahoSession, catalog ) );
 
@@ -1313,6 +1487,10 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
         }
 
         MondrianCatalog mondrianCatalog = createMondrianCatalog( catalog, schema );
+        catalogLoadCount.incrementAndGet();
+        if ( mondrianCatalog.getName() != null ) {
+          catalogLoadMillis.put( mondrianCatalog.getName(), System.currentTimeMillis() - start );
+        }
         mondrianCatalogCache.putCatalog( mondrianCatalog.getName(), mondrianCatalog );
         mondrianCatalogCache.putCatalog( mondrianCatalog.getDefinition(), mondrianCatalog );
 
@@ -133,32 +133,37 @@ public class PentahoPlatformExporter extends ZipExportProcessor {
 
     zos = new ZipOutputStream( new FileOutputStream( exportFile ) );
 
-    exportFileContent( exportRepositoryFile );
-    exportDatasources();
-    exportMondrianSchemas();
-    exportMetadataModels();
-    exportSchedules();
-    exportUsersAndRoles();
-    exportMetastore();
-
-    if ( this.withManifest ) {
-      // write manifest to zip output stream
-      ZipEntry entry = new ZipEntry( EXPORT_MANIFEST_FILENAME );
-      zos.putNextEntry( entry );
-
-      // pass output stream to manifest class for writing
-      try {
-        getExportManifest().toXml( zos );
-      } catch ( Exception e ) {
-        // todo: add to messages.properties
-        log.error( "Error generating export XML" );
+    beginExport();
+    try {
+      exportFileContent( exportRepositoryFile );
+      exportDatasources();
+      exportMondrianSchemas();
+      exportMetadataModels();
+      exportSchedules();
+      exportUsersAndRoles();
+      exportMetastore();
+
+      if ( this.withManifest ) {
+        // write manifest to zip output stream
+        ZipEntry entry = new ZipEntry( EXPORT_MANIFEST_FILENAME );
+        zos.putNextEntry( entry );
+
+        // pass output stream to manifest class for writing
+        try {
+          getExportManifest().toXml( zos );
+        } catch ( Exception e ) {
+          // todo: add to messages.properties
+          log.error( "Error generating export XML" );
+        }
+
+        zos.closeEntry();
       }
 
-      zos.closeEntry();
+      zos.close();
+    } finally {
+      endExport( exportFile );
     }
 
-    zos.close();
-
     // clean up
     exportManifest = null;
     zos = null;
@@ -21,6 +21,7 @@
 package org.pentaho.platform.plugin.services.importer;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.platform.api.mimetype.IPlatformMimeResolver;
 import org.pentaho.platform.api.repository2.unified.IPlatformImportBundle;
@@ -74,6 +75,25 @@ public class LocaleFilesProcessor {
     localeFiles = new ArrayList<LocaleFileDescriptor>();
   }
 
+  /**
+   * Same as {@link #isLocaleFile(IRepositoryFileBundle, String, byte[])}, but only reads the content of the bundle
+   * when its name makes it a locale file candidate.
+   */
+  public boolean isLocaleFile( IRepositoryFileBundle file, String parentPath ) throws IOException {
+    String fileName = file.getFile().getName();
+    if ( ImportSession.getSession().getManifest() != null && ImportSession.getSession().getManifest().getManifestInformation().getManifestVersion() != null ) {
+      fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
+    }
+    if ( !fileName.endsWith( PROPERTIES_EXT ) && !fileName.endsWith( LOCALE_EXT ) && !fileName.equals( XML_LOCALE ) ) {
+      return false;
+    }
+    byte[] bytes;
+    try ( InputStream inputStream = file.getInputStream() ) {
+      bytes = IOUtils.toByteArray( inputStream );
+    }
+    return isLocaleFile( file, parentPath, bytes );
+  }
+
   /**
    * 
    * @param file
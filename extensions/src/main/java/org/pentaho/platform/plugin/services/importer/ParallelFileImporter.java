@@ -0,0 +1,324 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.logging.Log;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+import org.pentaho.platform.plugin.services.messages.Messages;
+import org.pentaho.platform.util.messages.LocaleHelper;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports the files of a solution archive over a pool of worker threads.
+ * <p/>
+ * Files are grouped in stages by mime type and the stages run one after the other, so that data sources are in the
+ * repository before the Mondrian schemas, transformations and reports that reference them. Within a stage the first
+ * file of every folder is imported on the calling thread, which creates the folder if the archive had no entry for it;
+ * the remaining files of the stage are then imported concurrently. Worker threads run with the pentaho session, the
+ * security context, the locale and the import log of the calling thread, and each gets a {@link ImportSession#fork()
+ * fork} of the import session that is merged back when its file is done.
+ * <p/>
+ * The first failing file stops the import: files not yet started are skipped and the failure is rethrown by
+ * {@link #run()}.
+ */
+public class ParallelFileImporter {
+
+  /**
+   * Imports one file.
+   */
+  public interface ImportTask {
+    void importFile() throws Exception;
+  }
+
+  /**
+   * Mime types of each stage, in import order. Files of any other type are imported in a last stage.
+   */
+  public static final List<List<String>> DEFAULT_STAGES = Arrays.asList(
+    Arrays.asList( "text/xmi+xml", "application/vnd.pentaho.metastore" ), //$NON-NLS-1$ //$NON-NLS-2$
+    Arrays.asList( "application/vnd.pentaho.mondrian+xml" ), //$NON-NLS-1$
+    Arrays.asList( "application/vnd.pentaho.transformation", "application/vnd.pentaho.job" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+  private final IPlatformImporter importer;
+
+  private final int threads;
+
+  private final Log log;
+
+  private final List<List<String>> stages;
+
+  private final List<List<Entry>> entries = new ArrayList<>();
+
+  // mime type -> { files, nanos }, only touched under its own lock
+  private final Map<String, long[]> timings = new TreeMap<>();
+
+  private final AtomicInteger completed = new AtomicInteger();
+
+  private volatile boolean failed;
+
+  private int total;
+
+  /**
+   * @param importer the importer whose import log the worker threads join
+   * @param threads  number of worker threads
+   * @param log      receives progress and timing; usually the log of the current {@link ImportSession}
+   */
+  public ParallelFileImporter( IPlatformImporter importer, int threads, Log log ) {
+    this( importer, threads, log, DEFAULT_STAGES );
+  }
+
+  public ParallelFileImporter( IPlatformImporter importer, int threads, Log log, List<List<String>> stages ) {
+    if ( threads <= 0 ) {
+      throw new IllegalArgumentException( "threads must be positive" ); //$NON-NLS-1$
+    }
+    this.importer = importer;
+    this.threads = threads;
+    this.log = log;
+    this.stages = stages;
+    for ( int i = 0; i <= stages.size(); i++ ) {
+      entries.add( new ArrayList<>() );
+    }
+  }
+
+  /**
+   * Queues a file for {@link #run()}.
+   *
+   * @param mimeType   mime type of the file, decides its stage
+   * @param folderPath repository path of the folder receiving the file
+   * @param task       imports the file
+   */
+  public void add( String mimeType, String folderPath, ImportTask task ) {
+    entries.get( stageOf( mimeType ) ).add( new Entry( mimeType, folderPath, task ) );
+    total++;
+  }
+
+  /**
+   * Imports all queued files and logs the import throughput and the time spent per mime type.
+   */
+  public void run() throws PlatformImportException, IOException {
+    long start = System.currentTimeMillis();
+    Context context = new Context( importer );
+    Set<String> knownFolders = new HashSet<>();
+    AtomicInteger workers = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool( threads, runnable -> {
+      Thread thread = new Thread( runnable, "ParallelFileImporter-" + workers.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    } );
+    try {
+      for ( List<Entry> stage : entries ) {
+        List<Entry> concurrent = new ArrayList<>();
+        for ( Entry entry : stage ) {
+          if ( !knownFolders.add( entry.folderPath ) ) {
+            concurrent.add( entry );
+            continue;
+          }
+          try {
+            importEntry( entry );
+          } catch ( Exception e ) {
+            rethrow( e );
+          }
+        }
+        importConcurrently( executor, context, concurrent );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    logSummary( System.currentTimeMillis() - start );
+  }
+
+  private void importConcurrently( ExecutorService executor, Context context, List<Entry> stage )
+    throws PlatformImportException, IOException {
+    ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>( executor );
+    for ( Entry entry : stage ) {
+      completion.submit( () -> {
+        if ( !failed ) {
+          context.attach();
+          try {
+            importEntry( entry );
+          } finally {
+            context.detach();
+          }
+        }
+        return null;
+      } );
+    }
+    Throwable failure = null;
+    long lastProgress = System.currentTimeMillis();
+    for ( int i = 0; i < stage.size(); i++ ) {
+      Future<Void> done;
+      try {
+        done = completion.take();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        failed = true;
+        throw new PlatformImportException( e.getMessage() );
+      }
+      try {
+        done.get();
+      } catch ( ExecutionException e ) {
+        failed = true;
+        if ( failure == null ) {
+          failure = e.getCause();
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      if ( System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL_MILLIS ) {
+        lastProgress = System.currentTimeMillis();
+        log.info( Messages.getInstance().getString( "ParallelFileImporter.Progress", //$NON-NLS-1$
+          String.valueOf( completed.get() ), String.valueOf( total ) ) );
+      }
+    }
+    if ( failure != null ) {
+      rethrow( failure );
+    }
+  }
+
+  private static void rethrow( Throwable failure ) throws PlatformImportException, IOException {
+    if ( failure instanceof PlatformImportException ) {
+      throw (PlatformImportException) failure;
+    } else if ( failure instanceof IOException ) {
+      throw (IOException) failure;
+    } else if ( failure instanceof RuntimeException ) {
+      throw (RuntimeException) failure;
+    } else if ( failure instanceof Error ) {
+      throw (Error) failure;
+    } else {
+      throw new PlatformImportException( failure.getMessage() );
+    }
+  }
+
+  private void importEntry( Entry entry ) throws Exception {
+    long start = System.nanoTime();
+    try {
+      entry.task.importFile();
+    } finally {
+      long nanos = System.nanoTime() - start;
+      synchronized ( timings ) {
+        long[] timing = timings.computeIfAbsent( String.valueOf( entry.mimeType ), mime -> new long[ 2 ] );
+        timing[ 0 ]++;
+        timing[ 1 ] += nanos;
+      }
+      completed.incrementAndGet();
+    }
+  }
+
+  private void logSummary( long elapsedMillis ) {
+    long perSecond = elapsedMillis > 0 ? completed.get() * 1000L / elapsedMillis : completed.get();
+    log.info( Messages.getInstance().getString( "ParallelFileImporter.Summary", String.valueOf( completed.get() ), //$NON-NLS-1$
+      String.valueOf( elapsedMillis ), String.valueOf( perSecond ), String.valueOf( threads ) ) );
+    synchronized ( timings ) {
+      for ( Map.Entry<String, long[]> timing : timings.entrySet() ) {
+        log.info( Messages.getInstance().getString( "ParallelFileImporter.HandlerTiming", timing.getKey(), //$NON-NLS-1$
+          String.valueOf( timing.getValue()[ 0 ] ),
+          String.valueOf( TimeUnit.NANOSECONDS.toMillis( timing.getValue()[ 1 ] ) ) ) );
+      }
+    }
+  }
+
+  private int stageOf( String mimeType ) {
+    for ( int i = 0; i < stages.size(); i++ ) {
+      if ( stages.get( i ).contains( mimeType ) ) {
+        return i;
+      }
+    }
+    return stages.size();
+  }
+
+  private static class Entry {
+    private final String mimeType;
+    private final String folderPath;
+    private final ImportTask task;
+
+    Entry( String mimeType, String folderPath, ImportTask task ) {
+      this.mimeType = mimeType;
+      this.folderPath = folderPath;
+      this.task = task;
+    }
+  }
+
+  /**
+   * The thread bound state of the calling thread, installed on a worker for the duration of one file.
+   */
+  private static class Context {
+    private final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+    private final Locale locale = LocaleHelper.getLocale();
+    private final ImportSession importSession = ImportSession.getSession();
+    private final IRepositoryImportLogger importLogger;
+    private final Object importJob;
+    private final ThreadLocal<ImportSession> forked = new ThreadLocal<>();
+
+    Context( IPlatformImporter importer ) {
+      // resolve the log on the calling thread, forks share it
+      importSession.getLogger();
+      importLogger = importer != null ? importer.getRepositoryImportLogger() : null;
+      importJob = importLogger != null ? importLogger.getCurrentJob() : null;
+    }
+
+    void attach() {
+      PentahoSessionHolder.setSession( pentahoSession );
+      SecurityContextHolder.setContext( securityContext );
+      LocaleHelper.setLocale( locale );
+      if ( importJob != null ) {
+        importLogger.joinJob( importJob );
+      }
+      ImportSession session = importSession.fork();
+      forked.set( session );
+      ImportSession.setSession( session );
+    }
+
+    void detach() {
+      importSession.merge( forked.get() );
+      forked.remove();
+      ImportSession.clearSession();
+      if ( importJob != null ) {
+        importLogger.leaveJob();
+      }
+      LocaleHelper.setLocale( null );
+      SecurityContextHolder.clearContext();
+      PentahoSessionHolder.removeSession();
+    }
+  }
+}
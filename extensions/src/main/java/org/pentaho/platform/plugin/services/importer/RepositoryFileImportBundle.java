@@ -333,6 +333,13 @@ public class RepositoryFileImportBundle implements IPlatformImportBundle {
       return this;
     }
 
+    /**
+     * @return the mime type set on the bundle being built, null if none was set yet
+     */
+    public String getMime() {
+      return bundle.getMimeType();
+    }
+
     /**
      * @param applyAclSettings
      * @see org.pentaho.platform.plugin.services.importer.RepositoryFileImportBundle#setApplyAclSettings(boolean)
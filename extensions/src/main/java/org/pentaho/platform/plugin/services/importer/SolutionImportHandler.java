@@ -20,7 +20,6 @@
 
 package org.pentaho.platform.plugin.services.importer;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -40,6 +39,7 @@ import javax.ws.rs.core.Response;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.pentaho.database.model.IDatabaseConnection;
@@ -66,6 +66,7 @@ import org.pentaho.platform.engine.core.system.TenantUtils;
 import org.pentaho.platform.plugin.services.importexport.DatabaseConnectionConverter;
 import org.pentaho.platform.plugin.services.importexport.ExportFileNameEncoder;
 import org.pentaho.platform.plugin.services.importexport.ExportManifestUserSetting;
+import org.pentaho.platform.plugin.services.importexport.HeapUsage;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
 import org.pentaho.platform.plugin.services.importexport.ImportSession.ManifestFile;
 import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
@@ -103,6 +104,9 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   private List<IMimeType> mimeTypes;
   private boolean overwriteFile;
   private List<IRepositoryFileBundle> files;
+  // entries of the zip being imported, spilled to disk so they can be streamed and read more than once
+  private List<File> tempFiles;
+  private int importThreads = 1;
 
   public SolutionImportHandler( List<IMimeType> mimeTypes ) {
     this.mimeTypes = mimeTypes;
@@ -121,6 +125,18 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   @Override
   public void importFile( IPlatformImportBundle bundle ) throws PlatformImportException, DomainIdNullException,
     DomainAlreadyExistsException, DomainStorageException, IOException {
+    HeapUsage heapUsage = HeapUsage.start();
+    try {
+      importZipBundle( bundle );
+    } finally {
+      deleteTempFiles();
+      getLogger().info( Messages.getInstance().getString( "SolutionImportHandler.HeapUsage",
+        heapUsage.getUsedMegabytes(), heapUsage.getCollectionCount(), heapUsage.getCollectionMillis() ) );
+    }
+  }
+
+  private void importZipBundle( IPlatformImportBundle bundle ) throws PlatformImportException, DomainIdNullException,
+    DomainAlreadyExistsException, DomainStorageException, IOException {
 
     RepositoryFileImportBundle importBundle = (RepositoryFileImportBundle) bundle;
     if ( !processZip( bundle.getInputStream() ) ) {
@@ -134,6 +150,8 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     IPlatformImporter importer = PentahoSystem.get( IPlatformImporter.class );
 
     cachedImports = new HashMap<>();
+    ParallelFileImporter parallelImporter =
+      importThreads > 1 ? new ParallelFileImporter( importer, importThreads, getLogger() ) : null;
 
     //Process Manifest Settings
     ExportManifest manifest = getImportSession().getManifest();
@@ -199,11 +217,13 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
 
       if ( cachedImports.containsKey( repositoryFilePath ) ) {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
         RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
-        builder.input( new ByteArrayInputStream( bytes ) );
-
-        importer.importFile( build( builder ) );
+        if ( parallelImporter != null ) {
+          parallelImporter.add( builder.getMime(), RepositoryFilenameUtils.getFullPathNoEndSeparator(
+            repositoryFilePath ), () -> importCachedFile( importer, builder, fileBundle ) );
+        } else {
+          importCachedFile( importer, builder, fileBundle );
+        }
         continue;
       }
 
@@ -223,15 +243,17 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         fileName = repositoryFilePath;
         repositoryFilePath = importBundle.getPath();
       } else {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        bundleInputStream = new ByteArrayInputStream( bytes );
         // If is locale file store it for later processing.
-        if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
+        if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath() ) ) {
           getLogger().trace( Messages.getInstance()
             .getString( "SolutionImportHandler.SkipLocaleFile",  repositoryFilePath ) );
           continue;
         }
-        bundleBuilder.input( bundleInputStream );
+        // the entry was spilled to a temp file by processZip, stream it from there
+        if ( parallelImporter == null ) {
+          bundleInputStream = fileBundle.getInputStream();
+          bundleBuilder.input( bundleInputStream );
+        }
         bundleBuilder.mime( solutionHelper.getMime( fileName ) );
 
         String filePath =
@@ -279,15 +301,29 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
       }
 
-      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
-      importer.importFile( platformImportBundle );
+      if ( parallelImporter != null && !fileBundle.getFile().isFolder() ) {
+        // folders were imported in order above, the file goes to the worker pool and opens its entry there
+        String manifestKey = sourcePath;
+        parallelImporter.add( bundleBuilder.getMime(), repositoryFilePath,
+          () -> importBundleFile( importer, bundleBuilder, fileBundle, manifestKey ) );
+        continue;
+      }
 
-      if ( bundleInputStream != null ) {
-        bundleInputStream.close();
-        bundleInputStream = null;
+      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
+      try {
+        importer.importFile( platformImportBundle );
+      } finally {
+        if ( bundleInputStream != null ) {
+          bundleInputStream.close();
+          bundleInputStream = null;
+        }
       }
     }
 
+    if ( parallelImporter != null ) {
+      parallelImporter.run();
+    }
+
     if ( manifest != null ) {
       importSchedules( manifest.getScheduleList() );
     }
@@ -300,6 +336,24 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     return schedulerResource.getAllJobs();
   }
 
+  private void importCachedFile( IPlatformImporter importer, RepositoryFileImportBundle.Builder builder,
+                                 IRepositoryFileBundle fileBundle ) throws PlatformImportException, IOException {
+    try ( InputStream cachedInputStream = fileBundle.getInputStream() ) {
+      builder.input( cachedInputStream );
+      importer.importFile( build( builder ) );
+    }
+  }
+
+  private void importBundleFile( IPlatformImporter importer, RepositoryFileImportBundle.Builder bundleBuilder,
+                                 IRepositoryFileBundle fileBundle, String manifestKey )
+    throws PlatformImportException, IOException {
+    getImportSession().setCurrentManifestKey( manifestKey );
+    try ( InputStream bundleInputStream = fileBundle.getInputStream() ) {
+      bundleBuilder.input( bundleInputStream );
+      importer.importFile( build( bundleBuilder ) );
+    }
+  }
+
   private RepositoryFile getFile( IPlatformImportBundle importBundle, IRepositoryFileBundle fileBundle ) {
     String repositoryFilePath =
         repositoryPathConcat( importBundle.getPath(), fileBundle.getPath(), fileBundle.getFile().getName() );
@@ -685,8 +739,22 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     return path;
   }
 
+  /**
+   * Resets the peak usage of the heap memory pools so the peak reached during this import can be logged. The pools are
+   * shared by the whole JVM, so imports running at the same time see each other's allocations.
+   */
+  private void deleteTempFiles() {
+    if ( tempFiles != null ) {
+      for ( File tempFile : tempFiles ) {
+        FileUtils.deleteQuietly( tempFile );
+      }
+      tempFiles = null;
+    }
+  }
+
   private boolean processZip( InputStream inputStream ) {
     this.files = new ArrayList<>();
+    this.tempFiles = new ArrayList<>();
     try ( ZipInputStream zipInputStream = new ZipInputStream( inputStream ) ) {
       FileService fileService = new FileService();
       ZipEntry entry = zipInputStream.getNextEntry();
@@ -711,6 +779,7 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 
           tempFile = File.createTempFile( "zip", null );
           tempFile.deleteOnExit();
+          tempFiles.add( tempFile );
           try ( FileOutputStream fos = new FileOutputStream( tempFile ) ) {
             IOUtils.copy( zipInputStream, fos );
           }
@@ -748,9 +817,7 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   }
 
   private void initializeAclManifest( IRepositoryFileBundle file ) {
-    try {
-      byte[] bytes = IOUtils.toByteArray( file.getInputStream() );
-      ByteArrayInputStream in = new ByteArrayInputStream( bytes );
+    try ( InputStream in = file.getInputStream() ) {
       getImportSession().setManifest( ExportManifest.fromXml( in ) );
     } catch ( Exception e ) {
       getLogger().trace( e );
@@ -788,4 +855,17 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   public void setOverwriteFile( boolean overwriteFile ) {
     this.overwriteFile = overwriteFile;
   }
+
+  public int getImportThreads() {
+    return importThreads;
+  }
+
+  /**
+   * @param importThreads number of threads importing the files of an archive. With more than one, files are imported
+   *                      concurrently by a {@link ParallelFileImporter}; the default of one imports them in archive
+   *                      order on the calling thread.
+   */
+  public void setImportThreads( int importThreads ) {
+    this.importThreads = importThreads;
+  }
 }
@@ -0,0 +1,86 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap usage of an import or export: the heap in use at the end, and the garbage collections run since
+ * the start. Nothing JVM wide is reset, so monitoring tools and concurrent work are not affected, but the collections
+ * of concurrent work are included in the figures.
+ */
+public class HeapUsage {
+
+  private final long startCollections;
+
+  private final long startCollectionMillis;
+
+  private HeapUsage() {
+    startCollections = getCollections();
+    startCollectionMillis = getCollectionTime();
+  }
+
+  /**
+   * Starts measuring.
+   */
+  public static HeapUsage start() {
+    return new HeapUsage();
+  }
+
+  /**
+   * @return the heap in use, in megabytes
+   */
+  public long getUsedMegabytes() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / ( 1024 * 1024 );
+  }
+
+  /**
+   * @return the number of garbage collections since {@link #start()}
+   */
+  public long getCollectionCount() {
+    return getCollections() - startCollections;
+  }
+
+  /**
+   * @return the time spent in garbage collection since {@link #start()}, in milliseconds
+   */
+  public long getCollectionMillis() {
+    return getCollectionTime() - startCollectionMillis;
+  }
+
+  private static long getCollections() {
+    long count = 0;
+    for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+      // -1 when the collector doesn't report it
+      count += Math.max( 0, collector.getCollectionCount() );
+    }
+    return count;
+  }
+
+  private static long getCollectionTime() {
+    long millis = 0;
+    for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() ) {
+      millis += Math.max( 0, collector.getCollectionTime() );
+    }
+    return millis;
+  }
+}
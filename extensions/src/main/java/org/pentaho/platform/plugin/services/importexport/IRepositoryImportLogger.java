@@ -120,4 +120,30 @@ public interface IRepositoryImportLogger extends Log {
    * @return true if the logger is present.
    */
   boolean hasLogger();
+
+  /**
+   * Returns the job started on the current thread so that worker threads of the same import can write to it through
+   * {@link #joinJob(Object)}.
+   * 
+   * @return the current job, or null if none is running or the implementation does not share jobs across threads.
+   */
+  default Object getCurrentJob() {
+    return null;
+  }
+
+  /**
+   * Associates the current thread with a job obtained from {@link #getCurrentJob()} on the thread that started it.
+   * 
+   * @param job
+   *          The job to join.
+   */
+  default void joinJob( Object job ) {
+  }
+
+  /**
+   * Detaches the current thread from the job it joined. The job itself keeps running until {@link #endJob()} is called
+   * on the thread that started it.
+   */
+  default void leaveJob() {
+  }
 }
@@ -69,6 +69,42 @@ public class ImportSession {
     return session;
   }
 
+  /**
+   * Makes {@code session} the import session of the current thread.
+   */
+  public static void setSession( ImportSession session ) {
+    sessions.set( session );
+  }
+
+  /**
+   * Creates a session for a worker thread of a parallel import. It shares the manifest, the ACL flags and the log of
+   * this session but starts with empty collections; hand it back to {@link #merge(ImportSession)} once the worker is
+   * done.
+   */
+  public ImportSession fork() {
+    ImportSession forked = new ImportSession();
+    forked.log = log;
+    forked.isNotRunningImport = isNotRunningImport;
+    forked.manifest = manifest;
+    forked.applyAclSettings = applyAclSettings;
+    forked.retainOwnership = retainOwnership;
+    forked.overwriteAclSettings = overwriteAclSettings;
+    synchronized ( this ) {
+      forked.foldersCreatedImplicitly.addAll( foldersCreatedImplicitly );
+    }
+    return forked;
+  }
+
+  /**
+   * Adds the files and folders recorded by a session obtained from {@link #fork()} to this session.
+   */
+  public synchronized void merge( ImportSession forked ) {
+    skippedFiles.addAll( forked.skippedFiles );
+    foldersCreatedImplicitly.addAll( forked.foldersCreatedImplicitly );
+    importedRepositoryFiles.addAll( forked.importedRepositoryFiles );
+    importedScheduleJobIds.addAll( forked.importedScheduleJobIds );
+  }
+
   /**
    * Clear out any collections, most likely before starting a new import
    */
@@ -93,6 +93,23 @@ public class Log4JRepositoryImportLogger implements IRepositoryImportLogger {
     return ( repositoryImportLog.get() == null ) ? false : true;
   }
 
+  @Override
+  public Object getCurrentJob() {
+    return repositoryImportLog.get();
+  }
+
+  @Override
+  public void joinJob( Object job ) {
+    if ( job instanceof Log4JRepositoryImportLog ) {
+      repositoryImportLog.set( (Log4JRepositoryImportLog) job );
+    }
+  }
+
+  @Override
+  public void leaveJob() {
+    repositoryImportLog.remove();
+  }
+
   @Override
   public void debug( Object arg0 ) {
     getLogger().debug( arg0 );
@@ -22,6 +22,7 @@ package org.pentaho.platform.plugin.services.importexport;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,9 +35,13 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifest;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestFormatException;
+import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -46,11 +51,19 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -68,6 +81,27 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
   private static final int SAFETY_TMP_FILE_SIZE = 50;
 
+  /**
+   * System property holding the number of threads fetching file content and ACLs ahead of the zip writer. With more
+   * than one, the manifest entities are also spooled to a temporary file while the export runs.
+   */
+  public static final String PREFETCH_THREADS_PROPERTY = "pentaho.export.prefetchThreads";
+
+  // prefetched content up to this size is kept in memory, larger content waits in a temp file
+  private static final int PREFETCH_MEMORY_THRESHOLD = 1024 * 1024;
+
+  protected int prefetchThreads = Integer.getInteger( PREFETCH_THREADS_PROPERTY, 1 );
+
+  private ExecutorService prefetchExecutor;
+
+  private long exportStartMillis;
+
+  private long exportedFiles;
+
+  private long exportedBytes;
+
+  private HeapUsage heapUsage;
+
   /**
    * Encapsulates the logic of registering import handlers, generating the manifest, and performing the export
    */
@@ -128,6 +162,7 @@ public class ZipExportProcessor extends BaseExportProcessor {
       throw new FileNotFoundException( "JCR file not found: " + this.path );
     }
 
+    beginExport();
     try ( ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( exportFile ) ) ) {
       if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
         exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
@@ -158,6 +193,8 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
         zos.closeEntry();
       }
+    } finally {
+      endExport( exportFile );
     }
 
     // clean up
@@ -166,6 +203,53 @@ public class ZipExportProcessor extends BaseExportProcessor {
     return exportFile;
   }
 
+  /**
+   * Resets the export statistics and, when {@link #getPrefetchThreads()} is more than one, starts the prefetch threads
+   * and spools the manifest entities. Every call must be paired with {@link #endExport(File)}.
+   */
+  protected void beginExport() throws ExportException, IOException {
+    exportStartMillis = System.currentTimeMillis();
+    exportedFiles = 0;
+    exportedBytes = 0;
+    heapUsage = HeapUsage.start();
+    if ( prefetchThreads > 1 ) {
+      if ( this.withManifest ) {
+        try {
+          getExportManifest().spoolEntities();
+        } catch ( ExportManifestFormatException e ) {
+          throw new ExportException( e.getMessage() );
+        }
+      }
+      AtomicInteger threads = new AtomicInteger();
+      prefetchExecutor = Executors.newFixedThreadPool( prefetchThreads, runnable -> {
+        Thread thread = new Thread( runnable, "ZipExportProcessor-prefetch-" + threads.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    }
+  }
+
+  /**
+   * Stops the prefetch threads, deletes the manifest spool and logs the export statistics.
+   */
+  protected void endExport( File exportFile ) {
+    if ( prefetchExecutor != null ) {
+      prefetchExecutor.shutdownNow();
+      prefetchExecutor = null;
+    }
+    if ( exportManifest != null ) {
+      exportManifest.releaseEntitySpool();
+    }
+    long elapsedMillis = Math.max( 1, System.currentTimeMillis() - exportStartMillis );
+    log.info( Messages.getInstance().getString( "ZipExportProcessor.ExportStatistics", String.valueOf( exportedFiles ),
+        String.valueOf( exportedBytes / 1024 ), String.valueOf( exportFile.length() / 1024 ),
+        String.valueOf( elapsedMillis ), String.valueOf( exportedBytes / 1024 * 1000 / elapsedMillis ),
+        String.valueOf( heapUsage != null ? heapUsage.getUsedMegabytes() : 0 ),
+        String.valueOf( heapUsage != null ? heapUsage.getCollectionCount() : 0 ),
+        String.valueOf( heapUsage != null ? heapUsage.getCollectionMillis() : 0 ),
+        String.valueOf( prefetchThreads ) ) );
+  }
+
   /**
    * @param repositoryFile
    * @param outputStream
@@ -187,7 +271,8 @@ public class ZipExportProcessor extends BaseExportProcessor {
           String zipEntryName = getFixedZipEntryName( repositoryFile, filePath );
           ZipEntry entry = new ZipEntry( zipEntryName );
           zos.putNextEntry( entry );
-          IOUtils.copy( is, outputStream );
+          exportedBytes += IOUtils.copyLarge( is, outputStream );
+          exportedFiles++;
           zos.closeEntry();
           createLocales( repositoryFile, filePath, repositoryFile.isFolder(), outputStream );
         }
@@ -202,9 +287,14 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @throws ExportException
    */
   protected void addToManifest( RepositoryFile repositoryFile ) throws ExportException {
+    if ( this.withManifest ) {
+      addToManifest( repositoryFile, getUnifiedRepository().getAcl( repositoryFile.getId() ) );
+    }
+  }
+
+  private void addToManifest( RepositoryFile repositoryFile, RepositoryFileAcl fileAcl ) throws ExportException {
     if ( this.withManifest ) {
       // add this entity to the manifest
-      RepositoryFileAcl fileAcl = getUnifiedRepository().getAcl( repositoryFile.getId() );
       try {
         getExportManifest().add( repositoryFile, fileAcl );
       } catch ( ExportManifestFormatException e ) {
@@ -223,30 +313,64 @@ public class ZipExportProcessor extends BaseExportProcessor {
     addToManifest( repositoryDir );
     List<RepositoryFile> children = getUnifiedRepository().getChildren( new RepositoryRequest(
         String.valueOf( repositoryDir.getId() ), true, 1, null ) );
-    for ( RepositoryFile repositoryFile : children ) {
-      // exclude 'etc' folder - datasources and etc.
-      if ( isExportCandidate( repositoryFile.getPath() ) ) {
-        if ( repositoryFile.isFolder() ) {
-          if ( outputStream.getClass().isAssignableFrom( ZipOutputStream.class ) ) {
-            ZipOutputStream zos = (ZipOutputStream) outputStream;
-            String zipEntryName = getFixedZipEntryName( repositoryFile, filePath );
-            ZipEntry entry = new ZipEntry( zipEntryName );
-            zos.putNextEntry( entry );
-          }
-          exportDirectory( repositoryFile, outputStream, filePath );
-        } else {
-          try {
-            exportFile( repositoryFile, outputStream, filePath );
-          } catch ( ZipException e ) {
-            // possible duplicate entry, log it and continue on with the other files in the directory
-            log.debug( e.getMessage(), e );
+    Prefetch prefetch = prefetchExecutor != null ? new Prefetch( children, filePath ) : null;
+    try {
+      for ( RepositoryFile repositoryFile : children ) {
+        // exclude 'etc' folder - datasources and etc.
+        if ( isExportCandidate( repositoryFile.getPath() ) ) {
+          if ( repositoryFile.isFolder() ) {
+            if ( outputStream.getClass().isAssignableFrom( ZipOutputStream.class ) ) {
+              ZipOutputStream zos = (ZipOutputStream) outputStream;
+              String zipEntryName = getFixedZipEntryName( repositoryFile, filePath );
+              ZipEntry entry = new ZipEntry( zipEntryName );
+              zos.putNextEntry( entry );
+            }
+            exportDirectory( repositoryFile, outputStream, filePath );
+          } else {
+            try {
+              if ( prefetch != null ) {
+                exportPrefetchedFile( prefetch.take(), outputStream, filePath );
+              } else {
+                exportFile( repositoryFile, outputStream, filePath );
+              }
+            } catch ( ZipException e ) {
+              // possible duplicate entry, log it and continue on with the other files in the directory
+              log.debug( e.getMessage(), e );
+            }
           }
         }
       }
+    } finally {
+      if ( prefetch != null ) {
+        prefetch.close();
+      }
     }
     createLocales( repositoryDir, filePath, repositoryDir.isFolder(), outputStream );
   }
 
+  /**
+   * Writes a file fetched by a {@link Prefetch} the way {@link #exportFile(RepositoryFile, OutputStream, String)}
+   * would have.
+   */
+  private void exportPrefetchedFile( PrefetchedFile prefetched, OutputStream outputStream, String filePath )
+    throws ExportException, IOException {
+    ZipOutputStream zos = (ZipOutputStream) outputStream;
+    RepositoryFile repositoryFile = prefetched.file;
+    try {
+      for ( DeferredFileOutputStream content : prefetched.contents ) {
+        addToManifest( repositoryFile, prefetched.acl );
+        zos.putNextEntry( new ZipEntry( getFixedZipEntryName( repositoryFile, filePath ) ) );
+        content.writeTo( outputStream );
+        exportedBytes += content.getByteCount();
+        exportedFiles++;
+        zos.closeEntry();
+        createLocales( repositoryFile, filePath, repositoryFile.isFolder(), outputStream );
+      }
+    } finally {
+      prefetched.discard();
+    }
+  }
+
   protected boolean isExportCandidate( String path ) {
     return !ClientRepositoryPaths.getEtcFolderPath().equals( path );
   }
@@ -438,4 +562,145 @@ public class ZipExportProcessor extends BaseExportProcessor {
   public void setExportManifest( ExportManifest exportManifest ) {
     this.exportManifest = exportManifest;
   }
+
+  public int getPrefetchThreads() {
+    return prefetchThreads;
+  }
+
+  /**
+   * @param prefetchThreads number of threads fetching file content and ACLs ahead of the zip writer; 1 exports the
+   *                        files one by one
+   */
+  public void setPrefetchThreads( int prefetchThreads ) {
+    this.prefetchThreads = prefetchThreads;
+  }
+
+  /**
+   * Content and ACL of a file, fetched ahead of the zip writer. Content larger than
+   * {@link #PREFETCH_MEMORY_THRESHOLD} waits in a temp file.
+   */
+  private static class PrefetchedFile {
+    private final RepositoryFile file;
+    private final List<DeferredFileOutputStream> contents = new ArrayList<>();
+    private RepositoryFileAcl acl;
+
+    PrefetchedFile( RepositoryFile file ) {
+      this.file = file;
+    }
+
+    void discard() {
+      for ( DeferredFileOutputStream content : contents ) {
+        if ( !content.isInMemory() && content.getFile() != null ) {
+          content.getFile().delete();
+        }
+      }
+      contents.clear();
+    }
+  }
+
+  /**
+   * Fetches the files of one folder on the prefetch threads, keeping at most two files per thread in flight. Files are
+   * handed to the zip writer by {@link #take()} in folder order.
+   */
+  private class Prefetch implements Closeable {
+    private final Iterator<RepositoryFile> files;
+    private final Deque<Future<PrefetchedFile>> pending = new ArrayDeque<>();
+    private final String filePath;
+    private final IPentahoSession session = getSession();
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+    Prefetch( List<RepositoryFile> children, String filePath ) {
+      List<RepositoryFile> candidates = new ArrayList<>();
+      for ( RepositoryFile child : children ) {
+        if ( !child.isFolder() && isExportCandidate( child.getPath() ) ) {
+          candidates.add( child );
+        }
+      }
+      this.files = candidates.iterator();
+      this.filePath = filePath;
+      for ( int i = 0; i < prefetchThreads * 2 && submitNext(); i++ ) {
+        // fill the window
+      }
+    }
+
+    private boolean submitNext() {
+      if ( !files.hasNext() ) {
+        return false;
+      }
+      RepositoryFile file = files.next();
+      pending.add( prefetchExecutor.submit( () -> fetch( file ) ) );
+      return true;
+    }
+
+    PrefetchedFile take() throws ExportException, IOException {
+      Future<PrefetchedFile> next = pending.poll();
+      submitNext();
+      try {
+        return next.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new ExportException( e.getMessage(), e );
+      } catch ( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        if ( cause instanceof ExportException ) {
+          throw (ExportException) cause;
+        } else if ( cause instanceof IOException ) {
+          throw (IOException) cause;
+        } else if ( cause instanceof RuntimeException ) {
+          throw (RuntimeException) cause;
+        }
+        throw new ExportException( cause.getMessage(), cause );
+      }
+    }
+
+    private PrefetchedFile fetch( RepositoryFile file ) throws Exception {
+      PentahoSessionHolder.setSession( session );
+      SecurityContextHolder.setContext( securityContext );
+      PrefetchedFile prefetched = new PrefetchedFile( file );
+      try {
+        for ( ExportHandler exportHandler : exportHandlerList ) {
+          try ( InputStream is = exportHandler.doExport( file, filePath ) ) {
+            if ( is != null ) {
+              DeferredFileOutputStream content =
+                new DeferredFileOutputStream( PREFETCH_MEMORY_THRESHOLD, EXPORT_TEMP_FILENAME_PREFIX, ".tmp", null );
+              prefetched.contents.add( content );
+              try {
+                IOUtils.copyLarge( is, content );
+              } finally {
+                content.close();
+              }
+            }
+          }
+        }
+        if ( withManifest && !prefetched.contents.isEmpty() ) {
+          prefetched.acl = getUnifiedRepository().getAcl( file.getId() );
+        }
+        return prefetched;
+      } catch ( Exception e ) {
+        prefetched.discard();
+        throw e;
+      } finally {
+        SecurityContextHolder.clearContext();
+        PentahoSessionHolder.removeSession();
+      }
+    }
+
+    /**
+     * Waits for the files still in flight and discards them.
+     */
+    @Override
+    public void close() {
+      for ( Future<PrefetchedFile> future : pending ) {
+        try {
+          future.get().discard();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch ( ExecutionException e ) {
+          // a failed fetch already cleaned up after itself
+        }
+      }
+      pending.clear();
+    }
+  }
 }
@@ -52,6 +52,7 @@ import javax.xml.transform.Source;
 import javax.xml.transform.sax.SAXSource;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -77,6 +78,7 @@ public class ExportManifest {
   private List<RoleExport> roleExports = new ArrayList<>();
   private List<ExportManifestUserSetting> globalUserSettings = new ArrayList<>();
   private ExportManifestMetaStore metaStore;
+  private ExportManifestEntitySpool entitySpool;
 
   public ExportManifest() {
     this.exportManifestEntities = new HashMap<>();
@@ -122,12 +124,49 @@ public class ExportManifest {
 
   private void add( ExportManifestEntity exportManifestEntity ) throws ExportManifestFormatException {
     if ( exportManifestEntity.isValid() ) {
+      if ( entitySpool != null ) {
+        entitySpool.add( exportManifestEntity.getPath(), exportManifestEntity.getExportManifestEntityDto() );
+        return;
+      }
       exportManifestEntities.put( exportManifestEntity.getPath(), exportManifestEntity );
     } else {
       throw new ExportManifestFormatException( "Invalid Manifest Entry" );
     }
   }
 
+  /**
+   * Writes the entities added from now on to a temporary file instead of keeping them in memory. Spooled entities are
+   * not returned by {@link #getExportManifestEntity(String)}. They are written ordered by path, and the last one added
+   * for a path wins, as for the entities kept in memory.
+   * Call {@link #releaseEntitySpool()} once the manifest has been written.
+   */
+  public synchronized void spoolEntities() throws IOException, ExportManifestFormatException {
+    if ( entitySpool == null ) {
+      entitySpool = new ExportManifestEntitySpool();
+      for ( ExportManifestEntity exportManifestEntity : exportManifestEntities.values() ) {
+        entitySpool.add( exportManifestEntity.getPath(), exportManifestEntity.getExportManifestEntityDto() );
+      }
+      exportManifestEntities.clear();
+    }
+  }
+
+  /**
+   * Deletes the temporary file started by {@link #spoolEntities()}.
+   */
+  public synchronized void releaseEntitySpool() {
+    if ( entitySpool != null ) {
+      entitySpool.close();
+      entitySpool = null;
+    }
+  }
+
+  /**
+   * @return the number of entities in the manifest, spooled or not
+   */
+  public int getEntityCount() {
+    return exportManifestEntities.size() + ( entitySpool != null ? entitySpool.size() : 0 );
+  }
+
   /**
    * Return entire map of export manifest entities
    *
@@ -210,6 +249,14 @@ public class ExportManifest {
     for ( String path : ts ) {
       rawEntityList.add( exportManifestEntities.get( path ).getExportManifestEntityDto() );
     }
+    if ( entitySpool != null ) {
+      // entities are read back from the spool one at a time while the dto is marshalled
+      try {
+        rawExportManifest.setExportManifestEntity( entitySpool.getEntities() );
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
 
     rawExportManifest.getExportManifestMetadata().addAll( this.metadataList );
     rawExportManifest.getExportManifestMondrian().addAll( this.mondrianList );
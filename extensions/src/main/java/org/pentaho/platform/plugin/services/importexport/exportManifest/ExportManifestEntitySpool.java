@@ -0,0 +1,284 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importexport.exportManifest;
+
+import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestDto;
+import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestEntityDto;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.AbstractSequentialList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Keeps the entities of an {@link ExportManifest} in a temporary file instead of in memory. Entities are marshalled as
+ * they are added, and only the position of each one in the file is kept. {@link #getEntities()} reads them back one
+ * at a time, ordered by path, while the manifest is marshalled, so the manifest of a large export never holds more
+ * than one entity in memory.
+ * <p/>
+ * As with the entities the manifest keeps in memory, the last entity added for a path wins.
+ */
+class ExportManifestEntitySpool implements Closeable {
+
+  private static final QName ENTITY = new QName( "http://www.pentaho.com/schema/", "ExportManifestEntity" );
+
+  private static final String ENCODING = "UTF-8";
+
+  private final JAXBContext jaxbContext;
+
+  private final File file;
+
+  /**
+   * Offset and length in the file of the last entity added for each path
+   */
+  private final TreeMap<String, long[]> positions = new TreeMap<>();
+
+  private final List<Closeable> readers = new ArrayList<>();
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+  private OutputStream outputStream;
+
+  private Marshaller marshaller;
+
+  private long length;
+
+  ExportManifestEntitySpool() throws IOException {
+    file = File.createTempFile( "exportManifest", ".xml" );
+    file.deleteOnExit();
+    try {
+      jaxbContext = JAXBContext.newInstance( ExportManifestDto.class );
+      marshaller = jaxbContext.createMarshaller();
+      marshaller.setProperty( Marshaller.JAXB_FRAGMENT, Boolean.TRUE );
+      marshaller.setProperty( Marshaller.JAXB_ENCODING, ENCODING );
+      outputStream = new BufferedOutputStream( new FileOutputStream( file ) );
+    } catch ( JAXBException e ) {
+      close();
+      throw new IOException( e );
+    }
+  }
+
+  /**
+   * Spools the entity of {@code path}, replacing the one spooled for it before if any.
+   */
+  synchronized void add( String path, ExportManifestEntityDto entity ) throws ExportManifestFormatException {
+    if ( outputStream == null ) {
+      throw new IllegalStateException( "Spool was already read" );
+    }
+    buffer.reset();
+    try {
+      marshaller.marshal( new JAXBElement<>( ENTITY, ExportManifestEntityDto.class, entity ), buffer );
+      buffer.writeTo( outputStream );
+    } catch ( JAXBException | IOException e ) {
+      throw new ExportManifestFormatException( e.getMessage(), e );
+    }
+    positions.put( path, new long[] { length, buffer.size() } );
+    length += buffer.size();
+  }
+
+  synchronized int size() {
+    return positions.size();
+  }
+
+  /**
+   * Ends writing and returns the spooled entities, ordered by path. The list can only be iterated; every iteration
+   * reads the file again.
+   */
+  synchronized List<ExportManifestEntityDto> getEntities() throws IOException {
+    finishWriting();
+    final List<long[]> entities = new ArrayList<>( positions.values() );
+    return new AbstractSequentialList<ExportManifestEntityDto>() {
+      @Override
+      public int size() {
+        return entities.size();
+      }
+
+      @Override
+      public ListIterator<ExportManifestEntityDto> listIterator( int index ) {
+        if ( index != 0 ) {
+          throw new UnsupportedOperationException();
+        }
+        return new EntityIterator( entities );
+      }
+    };
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      finishWriting();
+    } catch ( IOException e ) {
+      // the file is deleted below anyway
+    }
+    for ( Closeable reader : readers ) {
+      closeQuietly( reader );
+    }
+    readers.clear();
+    file.delete();
+  }
+
+  private void finishWriting() throws IOException {
+    if ( outputStream == null ) {
+      return;
+    }
+    try {
+      outputStream.close();
+    } finally {
+      outputStream = null;
+      marshaller = null;
+    }
+  }
+
+  private static void closeQuietly( Closeable closeable ) {
+    try {
+      if ( closeable != null ) {
+        closeable.close();
+      }
+    } catch ( IOException e ) {
+      // nothing to do
+    }
+  }
+
+  /**
+   * Reads the spooled entities at the given positions, unmarshalling one entity per {@link #next()}.
+   */
+  private class EntityIterator implements ListIterator<ExportManifestEntityDto>, Closeable {
+    private final List<long[]> entities;
+    private final XMLInputFactory factory;
+    private RandomAccessFile input;
+    private Unmarshaller unmarshaller;
+    private int index;
+
+    EntityIterator( List<long[]> entities ) {
+      this.entities = entities;
+      try {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+        factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+        input = new RandomAccessFile( file, "r" );
+        unmarshaller = jaxbContext.createUnmarshaller();
+        synchronized ( ExportManifestEntitySpool.this ) {
+          readers.add( this );
+        }
+      } catch ( IOException | JAXBException e ) {
+        close();
+        throw new IllegalStateException( e );
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if ( index < entities.size() ) {
+        return true;
+      }
+      close();
+      return false;
+    }
+
+    @Override
+    public ExportManifestEntityDto next() {
+      if ( !hasNext() ) {
+        throw new NoSuchElementException();
+      }
+      long[] position = entities.get( index++ );
+      XMLStreamReader reader = null;
+      try {
+        byte[] bytes = new byte[ (int) position[ 1 ] ];
+        input.seek( position[ 0 ] );
+        input.readFully( bytes );
+        reader = factory.createXMLStreamReader( new ByteArrayInputStream( bytes ), ENCODING );
+        return unmarshaller.unmarshal( reader, ExportManifestEntityDto.class ).getValue();
+      } catch ( IOException | XMLStreamException | JAXBException e ) {
+        close();
+        throw new IllegalStateException( e );
+      } finally {
+        if ( reader != null ) {
+          try {
+            reader.close();
+          } catch ( XMLStreamException e ) {
+            // nothing to do
+          }
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      closeQuietly( input );
+      input = null;
+    }
+
+    @Override
+    public int nextIndex() {
+      return index;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+      return false;
+    }
+
+    @Override
+    public ExportManifestEntityDto previous() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int previousIndex() {
+      return index - 1;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void set( ExportManifestEntityDto entity ) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add( ExportManifestEntityDto entity ) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -269,6 +269,15 @@ public class ExportManifestDto {
     return this.exportManifestEntity;
   }
 
+  /**
+   * Sets the value of the exportManifestEntity property.
+   *
+   * @param value allowed object is {@link List }
+   */
+  public void setExportManifestEntity( List<ExportManifestEntityDto> value ) {
+    this.exportManifestEntity = value;
+  }
+
   /**
    * <p/>
    * Java class for anonymous complex type.
@@ -24,8 +24,11 @@ import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.model.Category;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalColumn;
 import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
 import org.pentaho.metadata.model.concept.IConcept;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
@@ -42,6 +45,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -49,6 +53,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -61,6 +66,14 @@ import static java.util.Optional.ofNullable;
 /**
  * This is the platform implementation which provides session-based caching for an existing {@link
  * IMetadataDomainRepository}.
+ * <p>
+ * With {@code system.shareMetadataDomains} enabled, sessions don't hold a secured copy of their own. The domain read
+ * from the delegate is cached once, and the secured view of it is shared by all sessions whose user has the same
+ * access to its models, categories, tables and columns. A session only caches the key of the shared view it was
+ * handed, and the view itself is handed out, so callers must not change it.
+ * <p>
+ * The keys cached for each domain and session are tracked, so purging a domain or a session doesn't scan the region.
+ * Keys of entries the cache has dropped on its own are pruned from the sets a purge touches.
  *
  * @author Jordan Ganoff (jganoff@pentaho.com)
  */
@@ -81,12 +94,18 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
 
   ICacheManager cacheManager;
   boolean domainIdsCacheEnabled = true;
+  boolean sharedDomainsEnabled = false;
 
   int numberOfThreads = DEFAULT_NUMBER_OF_THREADS;
 
   private final IMetadataDomainRepository delegate;
   private static final String DOMAIN_CACHE_KEY_PREDICATE = "domain-id-cache-for-session:";
 
+  // the region is shared by all instances, and so are the indexes of what is in it
+  private static final Map<String, Set<Object>> keysByDomainId = new ConcurrentHashMap<>();
+  private static final Map<String, Set<Object>> keysBySessionId = new ConcurrentHashMap<>();
+  private static final Set<String> domainIdsKeys = ConcurrentHashMap.newKeySet();
+
   /**
    * this as a public class so that if necessary someone can get access to a session key and clear the cache in their
    * own way via javascript rule / etc
@@ -138,6 +157,49 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     }
   }
 
+  /**
+   * Key of a domain shared across sessions: the domain as the delegate returned it when {@code access} is
+   * <code>null</code>, otherwise its secured view for users with the given access to its concepts
+   */
+  public static class SharedCacheKey implements Serializable {
+    private static final long serialVersionUID = -3320407614651428236L;
+    public String domainId;
+    public BitSet access;
+
+    protected SharedCacheKey() {
+    }
+
+    public SharedCacheKey( String domainId, BitSet access ) {
+      this.domainId = domainId;
+      this.access = access;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( o == null || getClass() != o.getClass() ) {
+        return false;
+      }
+      SharedCacheKey cacheKey = (SharedCacheKey) o;
+      return ( domainId != null ? domainId.equals( cacheKey.domainId ) : cacheKey.domainId == null )
+        && ( access != null ? access.equals( cacheKey.access ) : cacheKey.access == null );
+    }
+
+    @Override
+    public int hashCode() {
+      int result = domainId != null ? domainId.hashCode() : 0;
+      result = 31 * result + ( access != null ? access.hashCode() : 0 );
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "(" + domainId + "," + access + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+  }
+
   /**
    * Wraps the provided domain repository to provide session-based caching of domains.
    */
@@ -165,6 +227,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       String enableDomainIdCache = systemConfig.getProperty( "system.enableDomainIdCache" );
       domainIdsCacheEnabled = ( enableDomainIdCache == null ) || Boolean.valueOf( enableDomainIdCache );
       numberOfThreads = getNumberOfThreads( systemConfig );
+      sharedDomainsEnabled = Boolean.parseBoolean( systemConfig.getProperty( "system.shareMetadataDomains" ) );
     }
   }
 
@@ -270,7 +333,9 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   public Domain getDomain( final String id ) {
     final IPentahoSession session = PentahoSessionHolder.getSession();
     final CacheKey key = new CacheKey( session.getId(), id );
-    Domain domain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, key );
+    Object cached = cacheManager.getFromRegionCache( CACHE_REGION, key );
+    Domain domain = (Domain) ( cached instanceof SharedCacheKey
+      ? cacheManager.getFromRegionCache( CACHE_REGION, cached ) : cached );
     if ( domain != null ) {
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Found domain in cache: " + key ); //$NON-NLS-1$
@@ -285,6 +350,9 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       }
       return domain;
     }
+    if ( sharedDomainsEnabled ) {
+      return getSharedDomain( id, key );
+    }
     domain = delegate.getDomain( id );
     if ( domain != null ) {
 
@@ -298,64 +366,183 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Caching domain by session: " + key ); //$NON-NLS-1$
       }
-      cacheManager.putInRegionCache( CACHE_REGION, key, domain );
+      putInRegionCache( id, key, domain );
     }
     return domain;
   }
 
+  /**
+   * Returns the secured view of a domain for the current session, and caches its key for the session. The view is
+   * shared with every session that has the same access to the domain's concepts, and must not be changed.
+   */
+  private Domain getSharedDomain( final String id, final CacheKey sessionKey ) {
+    final SharedCacheKey key = new SharedCacheKey( id, null );
+    Domain domain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, key );
+    if ( domain == null ) {
+      domain = delegate.getDomain( id );
+      if ( domain == null ) {
+        return null;
+      }
+      putInRegionCache( id, key, domain );
+    } else if ( !hasAccessFor( id ) ) {
+      return null;
+    }
+
+    final SharedCacheKey secureKey = new SharedCacheKey( id, getAccess( domain ) );
+    Domain secureDomain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, secureKey );
+    if ( secureDomain == null ) {
+      secureDomain = new SecurityHelper().createSecureDomain( this, domain );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Caching shared domain: " + secureKey ); //$NON-NLS-1$
+      }
+      putInRegionCache( id, secureKey, secureDomain );
+    }
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Caching shared domain key by session: " + sessionKey ); //$NON-NLS-1$
+    }
+    putInRegionCache( id, sessionKey, secureKey );
+    return secureDomain;
+  }
+
+  /**
+   * @return which of the models, categories, tables and columns of the domain the current session can read, in the
+   *         order they appear in
+   */
+  BitSet getAccess( final Domain domain ) {
+    BitSet access = new BitSet();
+    int i = 0;
+    for ( LogicalModel model : domain.getLogicalModels() ) {
+      access.set( i++, hasAccess( ACCESS_TYPE_READ, model ) );
+      for ( Category category : model.getCategories() ) {
+        access.set( i++, hasAccess( ACCESS_TYPE_READ, category ) );
+        for ( LogicalColumn column : category.getLogicalColumns() ) {
+          access.set( i++, hasAccess( ACCESS_TYPE_READ, column ) );
+        }
+      }
+      for ( LogicalTable table : model.getLogicalTables() ) {
+        access.set( i++, hasAccess( ACCESS_TYPE_READ, table ) );
+        for ( LogicalColumn column : table.getLogicalColumns() ) {
+          access.set( i++, hasAccess( ACCESS_TYPE_READ, column ) );
+        }
+      }
+    }
+    return access;
+  }
+
+  /**
+   * Caches a domain, or the key of the shared domain a session was handed, and records its key for the domain and,
+   * for a session's key, for the session.
+   */
+  private void putInRegionCache( final String domainId, final Object key, final Object value ) {
+    cacheManager.putInRegionCache( CACHE_REGION, key, value );
+    addToIndex( keysByDomainId, domainId, key );
+    if ( key instanceof CacheKey ) {
+      addToIndex( keysBySessionId, ( (CacheKey) key ).sessionId, key );
+    }
+  }
+
+  private static void addToIndex( final Map<String, Set<Object>> index, final String id, final Object key ) {
+    index.compute( indexKey( id ), ( k, keys ) -> {
+      Set<Object> indexKeys = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+      indexKeys.add( key );
+      return indexKeys;
+    } );
+  }
+
+  /**
+   * Removes a purged key from an index, along with the keys of the set whose entries the cache has evicted or expired
+   * on its own. The set is dropped once it is empty.
+   */
+  private void removeFromIndex( final Map<String, Set<Object>> index, final String id, final Object key ) {
+    index.computeIfPresent( indexKey( id ), ( k, keys ) -> {
+      keys.remove( key );
+      keys.removeIf( indexedKey -> cacheManager.getFromRegionCache( CACHE_REGION, indexedKey ) == null );
+      return keys.isEmpty() ? null : keys;
+    } );
+  }
+
+  private static String indexKey( final String id ) {
+    return id == null ? "" : id; //$NON-NLS-1$
+  }
+
+  private static void clearIndexes() {
+    keysByDomainId.clear();
+    keysBySessionId.clear();
+    domainIdsKeys.clear();
+  }
+
   /**
    * Remove all cache entries whose domain's id is equal to {@code domainId}.
    *
    * @param domainId Domain id to remove from cache
    */
   private void purgeDomain( final String domainId ) {
-    forAllKeys( new CacheIteratorCallback() {
-      @Override
-      public Boolean call( ICacheManager cacheManager, CacheKey key ) {
-        if ( domainId == null ? key.domainId == null : domainId.equals( key.domainId ) ) {
-          cacheManager.removeFromRegionCache( CACHE_REGION, key );
+    Set<Object> keys = keysByDomainId.remove( indexKey( domainId ) );
+    if ( keys != null ) {
+      for ( Object key : keys ) {
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Removing domain from cache: " + key ); //$NON-NLS-1$
+        }
+        cacheManager.removeFromRegionCache( CACHE_REGION, key );
+        if ( key instanceof CacheKey ) {
+          removeFromIndex( keysBySessionId, ( (CacheKey) key ).sessionId, key );
         }
-        return true; // continue
       }
-    } );
+    }
     removeDomainFromIDCache( domainId );
   }
 
   @Override
   public void reloadDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    removeSharedDomains();
     clearDomainIdsFromCache();
+    clearIndexes();
     delegate.reloadDomains();
   }
 
   @Override
   public void flushDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    removeSharedDomains();
     clearDomainIdsFromCache();
+    clearIndexes();
     delegate.flushDomains();
   }
 
   protected void flushDomains( final IPentahoSession session ) {
-    forAllKeysInSession( session, REMOVE_ALL_CALLBACK );
+    Set<Object> keys = keysBySessionId.remove( indexKey( session.getId() ) );
+    if ( keys != null ) {
+      for ( Object key : keys ) {
+        REMOVE_ALL_CALLBACK.call( cacheManager, (CacheKey) key );
+        removeFromIndex( keysByDomainId, ( (CacheKey) key ).domainId, key );
+      }
+    }
     clearDomainIdsFromCache( session );
   }
 
+  /**
+   * Removes the domains shared across sessions, which {@link #forAllKeys(CacheIteratorCallback)} doesn't visit.
+   */
+  private void removeSharedDomains() {
+    for ( Set<Object> keys : keysByDomainId.values() ) {
+      for ( Object key : keys ) {
+        if ( key instanceof SharedCacheKey ) {
+          cacheManager.removeFromRegionCache( CACHE_REGION, key );
+        }
+      }
+    }
+  }
+
   /**
    * Remove domain ID cache for all sessions
    */
   protected void clearDomainIdsFromCache() {
     try {
-      Set<?> cachedObjects = cacheManager.getAllKeysFromRegionCache( CACHE_REGION );
-      if ( cachedObjects != null ) {
-        for ( Object k : cachedObjects ) {
-          if ( k instanceof String ) {
-            String key = (String) k;
-            if ( key != null && key.startsWith( DOMAIN_CACHE_KEY_PREDICATE ) ) {
-              cacheManager.removeFromRegionCache( CACHE_REGION, key );
-            }
-          }
-        }
+      for ( String key : domainIdsKeys ) {
+        cacheManager.removeFromRegionCache( CACHE_REGION, key );
       }
+      domainIdsKeys.clear();
     } catch ( Throwable e ) {
       // due to a known issue in hibernate cache
       // the getAll* methods of ICacheManager throw a NullPointerException if
@@ -377,6 +564,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     if ( cacheManager.getFromRegionCache( CACHE_REGION, key ) != null ) {
       cacheManager.removeFromRegionCache( CACHE_REGION, key );
     }
+    domainIdsKeys.remove( key );
   }
 
   /**
@@ -405,17 +593,13 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
    */
   private void removeDomainFromIDCache( String domainId ) {
     try {
-      Set<?> cachedObjects = cacheManager.getAllKeysFromRegionCache( CACHE_REGION );
-      if ( cachedObjects != null ) {
-        for ( Object k : cachedObjects ) {
-          if ( k instanceof String ) {
-            String key = (String) k;
-            if ( key != null && key.startsWith( DOMAIN_CACHE_KEY_PREDICATE ) ) {
-              Set<String> domainIds = (Set<String>) cacheManager.getFromRegionCache( CACHE_REGION, key );
-              domainIds.remove( domainId );
-              cacheManager.putInRegionCache( CACHE_REGION, key, domainIds );
-            }
-          }
+      for ( String key : domainIdsKeys ) {
+        Set<String> domainIds = (Set<String>) cacheManager.getFromRegionCache( CACHE_REGION, key );
+        if ( domainIds == null ) {
+          domainIdsKeys.remove( key );
+        } else {
+          domainIds.remove( domainId );
+          cacheManager.putInRegionCache( CACHE_REGION, key, domainIds );
         }
       }
     } catch ( Throwable e ) {
@@ -559,6 +743,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     domainIds = delegateGetDomainIds.get();
     if ( domainIdsCacheEnabled ) {
       cacheManager.putInRegionCache( CACHE_REGION, domainKey, new HashSet<>( domainIds ) );
+      domainIdsKeys.add( domainKey );
     }
     return domainIds;
   }
@@ -87,10 +87,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An IPluginManager implementation based on registering objects to the PentahoSystem and querying for them there. This
@@ -107,12 +116,20 @@ public class PentahoSystemPluginManager implements IPluginManager {
   public static final String PLUGIN_ID = "plugin-id";
   public static final String SETTINGS_PREFIX = "settings/";
 
+  /**
+   * System property with the number of threads plugins are started on during a reload. Defaults to 1, starting them
+   * one after the other.
+   */
+  public static final String BOOTSTRAP_THREADS_PROPERTY = "pentaho.plugins.bootstrapThreads";
+
   private final Multimap<String, IPentahoObjectRegistration> handleRegistry =
       Multimaps.synchronizedMultimap( ArrayListMultimap
           .<String, IPentahoObjectRegistration>create() );
   private ISystemConfig systemConfig = PentahoSystem.get( ISystemConfig.class );
   private Logger logger = LoggerFactory.getLogger( getClass() );
   private Set<IPluginManagerListener> listeners = new HashSet<IPluginManagerListener>();
+  private final Object bootstrapLock = new Object();
+  private volatile Map<String, Long> pluginStartupTimes = Collections.emptyMap();
 
   private static void createAndRegisterLifecycleListeners( IPlatformPlugin plugin, ClassLoader loader )
       throws PlatformPluginRegistrationException {
@@ -257,8 +274,123 @@ public class PentahoSystemPluginManager implements IPluginManager {
       anyErrors = true;
     }
 
+    providedPlugins = orderByDependencies( providedPlugins );
+    Map<String, Long> startupTimes = new ConcurrentHashMap<String, Long>();
+    if ( !bootstrapPlugins( providedPlugins, startupTimes ) ) {
+      anyErrors = true;
+    }
+
     for ( IPlatformPlugin plugin : providedPlugins ) {
+      long start = System.currentTimeMillis();
       try {
+        registerPlugin( plugin );
+      } catch ( Throwable t ) {
+        // this has been logged already
+        anyErrors = true;
+        String msg =
+            Messages.getInstance().getErrorString(
+                "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() );
+        org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, t );
+        PluginMessageLogger.add( msg );
+      }
+      addStartupTime( startupTimes, plugin, System.currentTimeMillis() - start );
+    }
+    setPluginStartupTimes( startupTimes );
+
+    IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
+    if ( svcManager != null ) {
+      try {
+        svcManager.initServices();
+      } catch ( ServiceInitializationException e ) {
+        String msg = Messages.getInstance()
+            .getErrorString( "PluginManager.ERROR_0022_SERVICE_INITIALIZATION_FAILED" );
+        org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, e );
+        PluginMessageLogger.add( msg );
+      }
+    }
+
+    for ( IPluginManagerListener listener : listeners ) {
+      listener.onReload();
+    }
+
+    return !anyErrors;
+  }
+
+  /**
+   * Creates the class loader, bean factory and object factory of each plugin and publishes them to PentahoSystem. With
+   * more than one {@link #BOOTSTRAP_THREADS_PROPERTY bootstrap thread} plugins are started concurrently, each one once
+   * all the plugins it {@link IPlatformPlugin#getDependencies() depends on} are done.
+   *
+   * @return <code>false</code> if any plugin failed to start
+   */
+  private boolean bootstrapPlugins( List<IPlatformPlugin> plugins, Map<String, Long> startupTimes ) {
+    int threads = Math.min( getBootstrapThreads(), plugins.size() );
+    if ( threads <= 1 ) {
+      boolean success = true;
+      for ( IPlatformPlugin plugin : plugins ) {
+        success &= bootstrapPlugin( plugin, startupTimes );
+      }
+      return success;
+    }
+
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    ExecutorService executor = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "pentaho-plugin-bootstrap-" + count.incrementAndGet() ); //$NON-NLS-1$
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    final AtomicBoolean success = new AtomicBoolean( true );
+    Map<String, CompletableFuture<Void>> started = new HashMap<String, CompletableFuture<Void>>();
+    List<CompletableFuture<Void>> all = new ArrayList<CompletableFuture<Void>>();
+    try {
+      // plugins are in dependency order, so the plugins one depends on already have their future
+      for ( final IPlatformPlugin plugin : plugins ) {
+        List<CompletableFuture<Void>> dependencies = new ArrayList<CompletableFuture<Void>>();
+        for ( String dependency : plugin.getDependencies() ) {
+          if ( started.containsKey( dependency ) ) {
+            dependencies.add( started.get( dependency ) );
+          }
+        }
+        CompletableFuture<Void> future =
+            CompletableFuture.allOf( dependencies.toArray( new CompletableFuture[ dependencies.size() ] ) )
+                .thenRunAsync( () -> {
+                  PentahoSessionHolder.setSession( session );
+                  try {
+                    if ( !bootstrapPlugin( plugin, startupTimes ) ) {
+                      success.set( false );
+                    }
+                  } finally {
+                    PentahoSessionHolder.removeSession();
+                  }
+                }, executor );
+        if ( plugin.getId() != null ) {
+          started.putIfAbsent( plugin.getId(), future );
+        }
+        all.add( future );
+      }
+      CompletableFuture.allOf( all.toArray( new CompletableFuture[ all.size() ] ) ).join();
+    } finally {
+      executor.shutdown();
+    }
+    return success.get();
+  }
+
+  /**
+   * Starts one plugin. Building the class loader and refreshing the bean factory may run alongside other plugins;
+   * publishing to PentahoSystem is done one plugin at a time.
+   *
+   * @return <code>false</code> if the plugin failed to start, which has been logged
+   */
+  private boolean bootstrapPlugin( IPlatformPlugin plugin, Map<String, Long> startupTimes ) {
+    long start = System.currentTimeMillis();
+    try {
+      final ClassLoader classloader;
+      synchronized ( bootstrapLock ) {
         IPlatformPlugin existingPlugin =
             PentahoSystem.get( IPlatformPlugin.class, null, Collections.singletonMap( PLUGIN_ID, plugin.getId() ) );
         if ( existingPlugin != null ) {
@@ -266,7 +398,7 @@ public class PentahoSystemPluginManager implements IPluginManager {
               "PluginManager.ERROR_0024_PLUGIN_ALREADY_LOADED_BY_SAME_NAME", plugin.getId() ) );
         }
 
-        final ClassLoader classloader = createClassloader( plugin );
+        classloader = createClassloader( plugin );
 
         // Register the classloader, Spring App Context and Object Factory with PentahoSystem
         IPentahoObjectRegistration handle = PentahoSystem.registerReference(
@@ -283,15 +415,17 @@ public class PentahoSystemPluginManager implements IPluginManager {
                 ClassLoader.class
             );
         registerReference( plugin.getId(), handle );
+      }
 
-        final GenericApplicationContext beanFactory = createBeanFactory( plugin, classloader );
+      final GenericApplicationContext beanFactory = createBeanFactory( plugin, classloader );
 
-        final StandaloneSpringPentahoObjectFactory pentahoFactory =
-            new StandaloneSpringPentahoObjectFactory( "Plugin Factory ( " + plugin.getId() + " )" );
-        pentahoFactory.init( null, beanFactory );
-        beanFactory.refresh();
+      final StandaloneSpringPentahoObjectFactory pentahoFactory =
+          new StandaloneSpringPentahoObjectFactory( "Plugin Factory ( " + plugin.getId() + " )" );
+      pentahoFactory.init( null, beanFactory );
+      beanFactory.refresh();
 
-        handle =
+      synchronized ( bootstrapLock ) {
+        IPentahoObjectRegistration handle =
             PentahoSystem.registerReference(
                 new SingletonPentahoObjectReference.Builder<GenericApplicationContext>(
                     GenericApplicationContext.class )
@@ -309,52 +443,98 @@ public class PentahoSystemPluginManager implements IPluginManager {
                 IPentahoObjectFactory.class
             );
         registerReference( plugin.getId(), handle );
-
-
-      } catch ( Throwable t ) {
-        // this has been logged already
-        anyErrors = true;
-        String msg =
-            Messages.getInstance().getErrorString(
-                "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() );
-        org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, t );
-        PluginMessageLogger.add( msg );
       }
+      return true;
+    } catch ( Throwable t ) {
+      // this has been logged already
+      String msg =
+          Messages.getInstance().getErrorString(
+              "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() );
+      org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, t );
+      PluginMessageLogger.add( msg );
+      return false;
+    } finally {
+      addStartupTime( startupTimes, plugin, System.currentTimeMillis() - start );
     }
+  }
 
-
-    for ( IPlatformPlugin plugin : providedPlugins ) {
-      try {
-        registerPlugin( plugin );
-      } catch ( Throwable t ) {
-        // this has been logged already
-        anyErrors = true;
-        String msg =
-            Messages.getInstance().getErrorString(
-                "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() );
-        org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, t );
-        PluginMessageLogger.add( msg );
+  /**
+   * Orders plugins so that each one comes after the plugins it depends on, keeping the provided order otherwise.
+   * Dependencies on plugins that aren't provided, and those closing a cycle, are logged and ignored.
+   */
+  List<IPlatformPlugin> orderByDependencies( List<IPlatformPlugin> plugins ) {
+    Map<String, IPlatformPlugin> pluginsById = new HashMap<String, IPlatformPlugin>();
+    for ( IPlatformPlugin plugin : plugins ) {
+      if ( plugin.getId() != null ) {
+        pluginsById.putIfAbsent( plugin.getId(), plugin );
       }
-
     }
+    Set<IPlatformPlugin> visited = Collections.newSetFromMap( new IdentityHashMap<IPlatformPlugin, Boolean>() );
+    Set<IPlatformPlugin> visiting = Collections.newSetFromMap( new IdentityHashMap<IPlatformPlugin, Boolean>() );
+    List<IPlatformPlugin> ordered = new ArrayList<IPlatformPlugin>( plugins.size() );
+    for ( IPlatformPlugin plugin : plugins ) {
+      addInDependencyOrder( plugin, pluginsById, visited, visiting, ordered );
+    }
+    return ordered;
+  }
 
-    IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
-    if ( svcManager != null ) {
-      try {
-        svcManager.initServices();
-      } catch ( ServiceInitializationException e ) {
-        String msg = Messages.getInstance()
-            .getErrorString( "PluginManager.ERROR_0022_SERVICE_INITIALIZATION_FAILED" );
-        org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, e );
-        PluginMessageLogger.add( msg );
+  private void addInDependencyOrder( IPlatformPlugin plugin, Map<String, IPlatformPlugin> pluginsById,
+                                     Set<IPlatformPlugin> visited, Set<IPlatformPlugin> visiting,
+                                     List<IPlatformPlugin> ordered ) {
+    if ( visited.contains( plugin ) ) {
+      return;
+    }
+    visiting.add( plugin );
+    for ( String dependency : plugin.getDependencies() ) {
+      IPlatformPlugin required = pluginsById.get( dependency );
+      if ( required == null ) {
+        logger.warn( MessageFormat.format( "Plugin {0} depends on plugin {1}, which is not available",
+            plugin.getId(), dependency ) );
+      } else if ( visiting.contains( required ) ) {
+        logger.warn( MessageFormat.format( "Ignoring cyclic dependency of plugin {0} on plugin {1}",
+            plugin.getId(), dependency ) );
+      } else {
+        addInDependencyOrder( required, pluginsById, visited, visiting, ordered );
       }
     }
+    visiting.remove( plugin );
+    visited.add( plugin );
+    ordered.add( plugin );
+  }
 
-    for ( IPluginManagerListener listener : listeners ) {
-      listener.onReload();
+  private static void addStartupTime( Map<String, Long> startupTimes, IPlatformPlugin plugin, long millis ) {
+    if ( plugin.getId() != null ) {
+      startupTimes.merge( plugin.getId(), millis, Long::sum );
     }
+  }
 
-    return !anyErrors;
+  private void setPluginStartupTimes( Map<String, Long> startupTimes ) {
+    List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>( startupTimes.entrySet() );
+    entries.sort( Collections.reverseOrder( Map.Entry.comparingByValue() ) );
+    Map<String, Long> sorted = new LinkedHashMap<String, Long>();
+    StringBuilder report = new StringBuilder();
+    for ( Map.Entry<String, Long> entry : entries ) {
+      sorted.put( entry.getKey(), entry.getValue() );
+      report.append( report.length() == 0 ? "" : ", " ).append( entry.getKey() ).append( '=' ) //$NON-NLS-1$ //$NON-NLS-2$
+          .append( entry.getValue() );
+    }
+    pluginStartupTimes = Collections.unmodifiableMap( sorted );
+    logger.info( "Plugin startup times in ms, slowest first: " + report ); //$NON-NLS-1$
+  }
+
+  /**
+   * @return the time, in milliseconds, each plugin took to start during the last reload, slowest first
+   */
+  public Map<String, Long> getPluginStartupTimes() {
+    return pluginStartupTimes;
+  }
+
+  int getBootstrapThreads() {
+    try {
+      return Math.max( 1, Integer.parseInt( System.getProperty( BOOTSTRAP_THREADS_PROPERTY, "1" ) ) ); //$NON-NLS-1$
+    } catch ( NumberFormatException e ) {
+      return 1;
+    }
   }
 
   @SuppressWarnings( "unchecked" )
@@ -79,6 +79,8 @@ public class PlatformPlugin implements IPlatformPlugin, IPentahoInitializer {
 
   private Map<String, List<String>> externalResources = new HashMap<String, List<String>>();
 
+  private List<String> dependencies = new ArrayList<String>();
+
   public PlatformPlugin() {
   }
 
@@ -257,4 +259,12 @@ public class PlatformPlugin implements IPlatformPlugin, IPentahoInitializer {
   public void addPluginPerspective( IPluginPerspective perspective ) {
     perspectives.add( perspective );
   }
+
+  public void addDependency( String pluginId ) {
+    dependencies.add( pluginId );
+  }
+
+  public List<String> getDependencies() {
+    return Collections.unmodifiableList( dependencies );
+  }
 }
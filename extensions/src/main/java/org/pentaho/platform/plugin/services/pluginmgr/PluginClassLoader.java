@@ -27,12 +27,22 @@ import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 /**
  * A custom implementation of {@link URLClassLoader} for Pentaho Platform Plugins. It is used to load plugin jars and
@@ -41,6 +51,10 @@ import java.util.List;
  * Note: {@link PluginClassLoader} will search for jar files in a 'lib' subdirectory under the pluginDir provided in the
  * constructor. Class and other resources will be visible to this classloader in either the root directory of the plugin
  * or in the lib folder.
+ * <p>
+ * The folders holding entries of the plugin jars are indexed once, when the classloader is created, so that looking up
+ * a class or resource the plugin doesn't have, e.g. a platform class in override mode, is answered without searching
+ * the jars. Nothing is remembered of the plain directories, so classes and resources added to them later are found.
  * 
  * @author aphillips
  */
@@ -51,6 +65,14 @@ public class PluginClassLoader extends URLClassLoader {
 
   private boolean overrideLoad = false;
 
+  /**
+   * Every folder holding a jar entry, "a/b" for "a/b/C.class" along with "a" and "", or <code>null</code> if the jars
+   * couldn't be indexed and every lookup has to search them
+   */
+  private final Set<String> jarFolders;
+
+  private final List<File> directories = new ArrayList<File>();
+
   /**
    * Creates a class loader for loading plugin classes and discovering resources. Jars must be located in
    * [pluginDir]/lib.
@@ -63,6 +85,7 @@ public class PluginClassLoader extends URLClassLoader {
   public PluginClassLoader( final File pluginDir, ClassLoader parent ) {
     super( getPluginUrls( pluginDir ), parent );
     this.pluginDir = pluginDir;
+    this.jarFolders = indexUrls();
     if ( log.isDebugEnabled() ) {
       log.debug( "URLs for this classloader:" ); //$NON-NLS-1$
       for ( URL url : getURLs() ) {
@@ -144,6 +167,89 @@ public class PluginClassLoader extends URLClassLoader {
     return pluginDir;
   }
 
+  /**
+   * Collects the folders of the plugin jars and the plain directories on the classpath. Jars that can't be read are
+   * skipped, as {@link URLClassLoader} skips them as well.
+   */
+  private Set<String> indexUrls() {
+    Set<String> folders = new HashSet<String>();
+    for ( URL url : getURLs() ) {
+      File file;
+      try {
+        file = new File( url.toURI() );
+      } catch ( URISyntaxException | IllegalArgumentException e ) {
+        return null;
+      }
+      if ( file.isDirectory() ) {
+        directories.add( file );
+        continue;
+      }
+      try ( JarFile jar = new JarFile( file ) ) {
+        Manifest manifest = jar.getManifest();
+        if ( manifest != null && manifest.getMainAttributes().containsKey( Attributes.Name.CLASS_PATH ) ) {
+          // the jar pulls in more jars of its own
+          return null;
+        }
+        Enumeration<JarEntry> entries = jar.entries();
+        while ( entries.hasMoreElements() ) {
+          String folder = getFolder( entries.nextElement().getName() );
+          while ( folders.add( folder ) && !folder.isEmpty() ) {
+            folder = getFolder( folder );
+          }
+        }
+      } catch ( IOException e ) {
+        log.debug( MessageFormat.format( "skipping unreadable jar {0} in index of {1}", file, this ), e ); //$NON-NLS-1$
+      }
+    }
+    return folders;
+  }
+
+  /**
+   * @return the folder part of a resource name, "a/b" for "a/b/c.txt" or "a/b/"
+   */
+  private static String getFolder( String name ) {
+    int end = name.endsWith( "/" ) ? name.length() - 1 : name.length(); //$NON-NLS-1$
+    int slash = name.lastIndexOf( '/', end - 1 );
+    return slash < 0 ? "" : name.substring( 0, slash ); //$NON-NLS-1$
+  }
+
+  /**
+   * @return <code>false</code> if none of the jars and directories of this classloader can hold the resource
+   */
+  protected boolean mayHaveResource( String name ) {
+    if ( jarFolders == null || name.startsWith( "/" ) ) { //$NON-NLS-1$
+      return true;
+    }
+    String folder = name.endsWith( "/" ) ? name.substring( 0, name.length() - 1 ) : getFolder( name ); //$NON-NLS-1$
+    if ( jarFolders.contains( folder ) ) {
+      return true;
+    }
+    for ( File directory : directories ) {
+      if ( new File( directory, name ).exists() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected Class<?> findClass( String name ) throws ClassNotFoundException {
+    if ( !mayHaveResource( name.replace( '.', '/' ) + ".class" ) ) { //$NON-NLS-1$
+      throw new ClassNotFoundException( name );
+    }
+    return super.findClass( name );
+  }
+
+  @Override
+  public URL findResource( String name ) {
+    return mayHaveResource( name ) ? super.findResource( name ) : null;
+  }
+
+  @Override
+  public Enumeration<URL> findResources( String name ) throws IOException {
+    return mayHaveResource( name ) ? super.findResources( name ) : Collections.<URL>emptyEnumeration();
+  }
+
   @Override
   public Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
     synchronized ( this ) {
@@ -150,6 +150,7 @@ public class SystemPathXmlPluginProvider implements IPluginProvider {
     processWebservices( plugin, doc );
     processExternalResources( plugin, doc );
     processPerspectives( plugin, doc );
+    processDependencies( plugin, doc );
 
     String listenerCount = ( StringUtils.isEmpty( plugin.getLifecycleListenerClassname() ) ) ? "0" : "1"; //$NON-NLS-1$//$NON-NLS-2$
 
@@ -210,6 +211,17 @@ public class SystemPathXmlPluginProvider implements IPluginProvider {
     }
   }
 
+  protected void processDependencies( PlatformPlugin plugin, Document doc ) {
+    List<?> nodes = doc.selectNodes( "/plugin/dependencies/dependency" ); //$NON-NLS-1$
+    for ( Object obj : nodes ) {
+      Element node = (Element) obj;
+      String pluginId = node.attributeValue( "plugin" ); //$NON-NLS-1$
+      if ( !StringUtils.isEmpty( pluginId ) ) {
+        plugin.addDependency( pluginId );
+      }
+    }
+  }
+
   protected void processLifecycleListeners( PlatformPlugin plugin, Document doc ) {
     Element node = (Element) doc.selectSingleNode( "//lifecycle-listener" ); //$NON-NLS-1$
     if ( node != null ) {
@@ -64,6 +64,7 @@ import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAclDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreePageDto;
 import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
 import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
@@ -1750,6 +1751,70 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetTree( pathId, depth, filter, showHidden, includeAcls, includeSystemFolders );
   }
 
+  /**
+   * Retrieve one page of the recursive list of children of the selected repository file.
+   *
+   * <p>Unlike <code>tree</code>, the server never builds the whole tree: nodes are listed depth first, at most
+   * <code>pageSize</code> per request, and the response carries a continuation token to fetch the next page. Nodes are
+   * returned as a flat list in which every folder comes right before its own children, ordered by name within a
+   * folder. The root file is only returned on the first page; the continuation token is absent on the last one.</p>
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/tree/page?depth=-1&pageSize=500&filter=*|FOLDERS
+   * </p>
+   *
+   * @param pathId            The path from the root folder to the root node of the tree to return using colon characters
+   *                          in place of / or \ characters. To clarify /path/to/file, the encoded pathId would be
+   *                          :path:to:file.
+   * @param depth             How many level should the search go. -1 (the default) walks the whole tree.
+   * @param filter            Filter to be applied to the listing of each folder, with the same syntax as
+   *                          <code>children</code>. Only listed folders are descended into.
+   * @param showHidden        Include or exclude hidden files from the file list.
+   * @param includeAcls       Include permission information about the file in the output.
+   * @param pageSize          Maximum number of nodes returned in the page.
+   * @param continuationToken The continuation token of the previous page; omit it to get the first page.
+   *
+   * @return A RepositoryFileTreePageDto object containing the nodes of the page and the continuation token.
+   *
+   * <p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *  &lt;repositoryFileTreePageDto&gt;
+   *  &lt;children&gt;
+   *  &lt;folder&gt;true&lt;/folder&gt;
+   *  &lt;name&gt;admin&lt;/name&gt;
+   *  &lt;path&gt;/public/admin&lt;/path&gt;
+   *  &lt;/children&gt;
+   *  &lt;continuationToken&gt;ZDovcHVibGljL2FkbWlu&lt;/continuationToken&gt;
+   *  &lt;/repositoryFileTreePageDto&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "{pathId : .+}/tree/page" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the page of the tree." ),
+    @ResponseCode ( code = 400, condition = "Invalid page size or continuation token." ),
+    @ResponseCode ( code = 404, condition = "The root file does not exist or is not readable." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public RepositoryFileTreePageDto doGetTreePage( @PathParam ( "pathId" ) String pathId,
+                                                  @DefaultValue ( "-1" ) @QueryParam ( "depth" ) Integer depth,
+                                                  @QueryParam ( "filter" ) String filter,
+                                                  @QueryParam ( "showHidden" ) Boolean showHidden,
+                                                  @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls,
+                                                  @DefaultValue ( "500" ) @QueryParam ( "pageSize" ) int pageSize,
+                                                  @QueryParam ( "continuationToken" ) String continuationToken ) {
+    RepositoryFileTreePageDto page;
+    try {
+      page = fileService.doGetTreePage( pathId, depth, filter, showHidden, includeAcls, pageSize, continuationToken );
+    } catch ( IllegalArgumentException e ) {
+      throw new WebApplicationException( e, Response.Status.BAD_REQUEST );
+    }
+    if ( page == null ) {
+      throw new WebApplicationException( Response.Status.NOT_FOUND );
+    }
+    return page;
+  }
+
   /**
    * Retrieve a list of child files from the selected repository path of the repository.
    *
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -31,6 +31,8 @@ import java.util.List;
 public class UserListWrapper {
   List<String> users = new ArrayList<String>();
 
+  Integer totalCount;
+
   public UserListWrapper() {
   }
 
@@ -56,4 +58,15 @@ public class UserListWrapper {
       this.users.addAll( users );
     }
   }
+
+  /**
+   * @return the number of matches of a paged search, or {@code null} if the list isn't paged
+   */
+  public Integer getTotalCount() {
+    return totalCount;
+  }
+
+  public void setTotalCount( Integer totalCount ) {
+    this.totalCount = totalCount;
+  }
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2020 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
@@ -260,10 +261,15 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
    * Returns the list of users in the platform's repository.
    *
    * <p><b>Example Request:</b><br />
-   * GET pentaho/api/userroledao/users
+   * GET pentaho/api/userroledao/users<br />
+   * GET pentaho/api/userroledao/users?filter=su&amp;offset=0&amp;limit=50
    * </p>
    *
-   * @return List of users in the platform.
+   * @param filter Only return the users whose name starts with this prefix, case sensitive.
+   * @param offset The number of matching users to skip.
+   * @param limit  The maximum number of users to return, all of them if negative.
+   *
+   * @return List of users in the platform. A filtered or paged list also holds the total number of matching users.
    *
    * <p><b>Example Response:</b>
    * <pre function="syntax.xml">
@@ -282,15 +288,25 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
       @ResponseCode ( code = 200, condition = "Successfully returned the list of users." ),
       @ResponseCode ( code = 500, condition = "An error occurred in the platform while trying to access the list of users." )
     } )
-  public UserListWrapper getUsers() throws WebApplicationException {
+  public UserListWrapper getUsers( @QueryParam( "filter" ) String filter,
+                                   @DefaultValue( "0" ) @QueryParam( "offset" ) int offset,
+                                   @DefaultValue( "-1" ) @QueryParam( "limit" ) int limit )
+    throws WebApplicationException {
     try {
-      return userRoleDaoService.getUsers();
+      if ( StringUtils.isEmpty( filter ) && offset <= 0 && limit < 0 ) {
+        return userRoleDaoService.getUsers();
+      }
+      return userRoleDaoService.getUsers( filter, offset, limit );
     } catch ( Exception e ) {
       logger.warn( e.getMessage(), e );
       throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
     }
   }
 
+  public UserListWrapper getUsers() throws WebApplicationException {
+    return getUsers( null, 0, -1 );
+  }
+
   /**
    * Gets the roles for the given user.
    *
@@ -469,10 +485,15 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
    * Returns the list of roles in the platform's repository.
    *
    * <p><b>Example Request:</b><br />
-   *    GET pentaho/api/userroledao/roles
+   *    GET pentaho/api/userroledao/roles<br />
+   *    GET pentaho/api/userroledao/roles?filter=power&amp;offset=0&amp;limit=50
    * </p>
    *
-   * @return List of roles in the platform.
+   * @param filter Only return the roles whose name starts with this prefix, case sensitive.
+   * @param offset The number of matching roles to skip.
+   * @param limit  The maximum number of roles to return, all of them if negative.
+   *
+   * @return List of roles in the platform. A filtered or paged list also holds the total number of matching roles.
    *
    * <p><b>Example Response:</b></p>
    * <pre function="syntax.xml">
@@ -486,14 +507,23 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     @ResponseCode ( code = 200, condition = "Successfully retrieved the list of roles." ),
     @ResponseCode ( code = 500, condition = "The system was not able to return the list of roles." )
     } )
-  public RoleListWrapper getRoles() throws Exception {
+  public RoleListWrapper getRoles( @QueryParam( "filter" ) String filter,
+                                   @DefaultValue( "0" ) @QueryParam( "offset" ) int offset,
+                                   @DefaultValue( "-1" ) @QueryParam( "limit" ) int limit ) throws Exception {
     try {
-      return userRoleDaoService.getRoles();
+      if ( StringUtils.isEmpty( filter ) && offset <= 0 && limit < 0 ) {
+        return userRoleDaoService.getRoles();
+      }
+      return userRoleDaoService.getRoles( filter, offset, limit );
     } catch ( UncategorizedUserRoleDaoException e ) {
       throw new WebApplicationException( Response.Status.INTERNAL_SERVER_ERROR );
     }
   }
 
+  public RoleListWrapper getRoles() throws Exception {
+    return getRoles( null, 0, -1 );
+  }
+
   /**
    * Retrieves list of users for the selected role. The role must be a valid role in the system. Must have administrative privileges to access this.
    *
@@ -32,18 +32,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.channels.IllegalSelectorException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -100,6 +105,7 @@ import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileAc
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreePageDto;
 import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
@@ -263,32 +269,60 @@ public class FileService {
 
   public List<Setting> doGetCanAccessList( String pathId, String permissions ) {
     StringTokenizer tokenizer = new StringTokenizer( permissions, "|" );
-    ArrayList<Setting> permMap = new ArrayList<Setting>();
+    List<Integer> perms = new ArrayList<Integer>();
+    EnumSet<RepositoryFilePermission> permissionSet = EnumSet.noneOf( RepositoryFilePermission.class );
     while ( tokenizer.hasMoreTokens() ) {
       Integer perm = Integer.valueOf( tokenizer.nextToken() );
-      EnumSet<RepositoryFilePermission> permission = EnumSet.of( RepositoryFilePermission.values()[perm] );
-      permMap.add( new Setting( perm.toString(), new Boolean( getRepository()
-        .hasAccess( idToPath( pathId ), permission ) ).toString() ) );
+      perms.add( perm );
+      permissionSet.add( RepositoryFilePermission.values()[perm] );
+    }
+    ArrayList<Setting> permMap = new ArrayList<Setting>();
+    if ( perms.isEmpty() ) {
+      return permMap;
+    }
+    String path = idToPath( pathId );
+    EnumSet<RepositoryFilePermission> granted =
+      getRepository().hasAccess( Collections.singletonList( path ), permissionSet ).get( path );
+    for ( Integer perm : perms ) {
+      boolean hasAccess = granted != null && granted.contains( RepositoryFilePermission.values()[perm] );
+      permMap.add( new Setting( perm.toString(), Boolean.toString( hasAccess ) ) );
     }
     return permMap;
   }
 
+  /**
+   * Checks the READ, WRITE, DELETE, ACL_MANAGEMENT and ALL permissions of all the paths with one call to the
+   * repository.
+   *
+   * @param pathsWrapper colon separated paths of the repository files
+   * @return a setting, named after the path, for every permission the user has on that path
+   */
   public List<Setting> doGetPathsAccessList( StringListWrapper pathsWrapper ) {
     List<Setting> pathsPermissonsSettings = new ArrayList<Setting>();
 
-    String permissions =
-      RepositoryFilePermission.READ.ordinal() + "|" + RepositoryFilePermission.WRITE.ordinal() + "|"
-        + RepositoryFilePermission.DELETE.ordinal() + "|" + RepositoryFilePermission.ACL_MANAGEMENT.ordinal() + "|"
-        + RepositoryFilePermission.ALL.ordinal();
+    EnumSet<RepositoryFilePermission> permissions =
+      EnumSet.of( RepositoryFilePermission.READ, RepositoryFilePermission.WRITE, RepositoryFilePermission.DELETE,
+        RepositoryFilePermission.ACL_MANAGEMENT, RepositoryFilePermission.ALL );
 
     List<String> paths = pathsWrapper.getStrings();
+    if ( paths == null || paths.isEmpty() ) {
+      return pathsPermissonsSettings;
+    }
+    List<String> repositoryPaths = new ArrayList<String>( paths.size() );
     for ( String path : paths ) {
-      List<Setting> permList = doGetCanAccessList( path, permissions );
-      for ( Setting perm : permList ) {
-        if ( Boolean.parseBoolean( perm.getValue() ) ) {
+      repositoryPaths.add( idToPath( path ) );
+    }
+    Map<String, EnumSet<RepositoryFilePermission>> access = getRepository().hasAccess( repositoryPaths, permissions );
+    for ( int i = 0; i < paths.size(); i++ ) {
+      EnumSet<RepositoryFilePermission> granted = access.get( repositoryPaths.get( i ) );
+      if ( granted == null ) {
+        continue;
+      }
+      for ( RepositoryFilePermission permission : permissions ) {
+        if ( granted.contains( permission ) ) {
           Setting setting = new Setting();
-          setting.setName( path );
-          setting.setValue( perm.getName() );
+          setting.setName( paths.get( i ) );
+          setting.setValue( String.valueOf( permission.ordinal() ) );
           pathsPermissonsSettings.add( setting );
         }
       }
@@ -1469,6 +1503,143 @@ public class FileService {
     return tree;
   }
 
+  /**
+   * Returns one page of the tree below {@code pathId}, walking it depth first and holding only the folder listings on
+   * the path to the current node instead of the whole tree. Children of each folder are listed with {@code filter} the
+   * same way {@link #doGetChildren} does, and listed folders are descended into until {@code depth} is reached. Within
+   * a folder nodes are ordered by name so that a page can be resumed from the last node of the previous one, even when
+   * that node has been deleted in between.
+   *
+   * @param pageSize          maximum number of nodes in the page
+   * @param continuationToken token of the previous page, or {@code null} for the first page
+   * @return the page, or {@code null} if the root folder does not exist or is not readable
+   * @throws IllegalArgumentException if the page size is not positive, or the continuation token is malformed or does
+   *                                  not belong to {@code pathId}
+   */
+  public RepositoryFileTreePageDto doGetTreePage( String pathId, Integer depth, String filter, Boolean showHidden,
+                                                  Boolean includeAcls, int pageSize, String continuationToken ) {
+    if ( pageSize <= 0 ) {
+      throw new IllegalArgumentException( "Page size must be positive" ); //$NON-NLS-1$
+    }
+    String path = pathId == null ? FileUtils.PATH_SEPARATOR : idToPath( pathId );
+    RepositoryFileDto root = getRepoWs().getFile( path );
+    if ( root == null ) {
+      return null;
+    }
+    int maxDepth = depth == null ? -1 : depth;
+    Collator collator = getCollator( Collator.PRIMARY );
+
+    Deque<ListIterator<RepositoryFileDto>> stack = new ArrayDeque<ListIterator<RepositoryFileDto>>();
+    RepositoryFileTreePageDto page = new RepositoryFileTreePageDto();
+    if ( continuationToken == null ) {
+      page.setFile( root );
+      if ( maxDepth != 0 ) {
+        stack.push( getSortedChildren( root, showHidden, filter, includeAcls, collator ).listIterator() );
+      }
+    } else {
+      resumeTreePage( root, decodeTreePageToken( continuationToken, root.getPath() ), maxDepth, showHidden, filter,
+        includeAcls, collator, stack );
+    }
+
+    List<RepositoryFileDto> nodes = new ArrayList<RepositoryFileDto>( Math.min( pageSize, 1024 ) );
+    RepositoryFileDto last = null;
+    while ( nodes.size() < pageSize && !stack.isEmpty() ) {
+      ListIterator<RepositoryFileDto> level = stack.peek();
+      if ( !level.hasNext() ) {
+        stack.pop();
+        continue;
+      }
+      last = level.next();
+      nodes.add( last );
+      if ( last.isFolder() && ( maxDepth < 0 || stack.size() < maxDepth ) ) {
+        stack.push( getSortedChildren( last, showHidden, filter, includeAcls, collator ).listIterator() );
+      }
+    }
+    while ( !stack.isEmpty() && !stack.peek().hasNext() ) {
+      stack.pop();
+    }
+    page.setChildren( nodes );
+    if ( !stack.isEmpty() && last != null ) {
+      page.setContinuationToken( encodeTreePageToken( last ) );
+    }
+    return page;
+  }
+
+  /**
+   * Rebuilds the listing stack for the node named by a continuation token: every ancestor level is positioned right
+   * after the child leading to that node and, if the node is a folder within depth, its own children are stacked on
+   * top since they come next in depth first order.
+   */
+  private void resumeTreePage( RepositoryFileDto root, String[] token, int maxDepth, Boolean showHidden, String filter,
+                               Boolean includeAcls, Collator collator, Deque<ListIterator<RepositoryFileDto>> stack ) {
+    String relativePath = token[ 1 ].substring( root.getPath().length() );
+    String[] names = StringUtils.split( relativePath, FileUtils.PATH_SEPARATOR );
+    RepositoryFileDto folder = root;
+    for ( int i = 0; i < names.length && folder != null; i++ ) {
+      List<RepositoryFileDto> children = getSortedChildren( folder, showHidden, filter, includeAcls, collator );
+      int next = 0;
+      RepositoryFileDto match = null;
+      while ( next < children.size() ) {
+        int cmp = compareNames( collator, children.get( next ).getName(), names[ i ] );
+        if ( cmp == 0 ) {
+          match = children.get( next );
+        }
+        if ( cmp > 0 ) {
+          break;
+        }
+        next++;
+      }
+      stack.push( children.listIterator( next ) );
+      folder = match != null && match.isFolder() ? match : null;
+    }
+    boolean lastWasFolder = "d".equals( token[ 0 ] );
+    if ( folder != null && lastWasFolder && ( maxDepth < 0 || names.length < maxDepth ) ) {
+      stack.push( getSortedChildren( folder, showHidden, filter, includeAcls, collator ).listIterator() );
+    }
+  }
+
+  private List<RepositoryFileDto> getSortedChildren( RepositoryFileDto folder, Boolean showHidden, String filter,
+                                                     Boolean includeAcls, final Collator collator ) {
+    List<RepositoryFileDto> children =
+      getRepoWs().getChildrenFromRequest( getRepositoryRequest( folder, showHidden, filter, includeAcls ) );
+    if ( children == null ) {
+      return Collections.emptyList();
+    }
+    Collections.sort( children, new Comparator<RepositoryFileDto>() {
+      @Override
+      public int compare( RepositoryFileDto file1, RepositoryFileDto file2 ) {
+        return compareNames( collator, file1.getName(), file2.getName() );
+      }
+    } );
+    return children;
+  }
+
+  private static int compareNames( Collator collator, String name1, String name2 ) {
+    int cmp = collator.compare( name1, name2 );
+    return cmp != 0 ? cmp : name1.compareTo( name2 ); // use lexical order if equals ignore case
+  }
+
+  static String encodeTreePageToken( RepositoryFileDto last ) {
+    String token = ( last.isFolder() ? "d:" : "f:" ) + last.getPath(); //$NON-NLS-1$ //$NON-NLS-2$
+    return Base64.getUrlEncoder().withoutPadding().encodeToString( token.getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  static String[] decodeTreePageToken( String continuationToken, String rootPath ) {
+    String token;
+    try {
+      token = new String( Base64.getUrlDecoder().decode( continuationToken ), StandardCharsets.UTF_8 );
+    } catch ( IllegalArgumentException e ) {
+      throw new IllegalArgumentException( "Malformed continuation token", e ); //$NON-NLS-1$
+    }
+    String[] parts = token.split( ":", 2 ); //$NON-NLS-1$
+    String prefix = rootPath.endsWith( FileUtils.PATH_SEPARATOR ) ? rootPath : rootPath + FileUtils.PATH_SEPARATOR;
+    if ( parts.length != 2 || !( "d".equals( parts[ 0 ] ) || "f".equals( parts[ 0 ] ) ) //$NON-NLS-1$ //$NON-NLS-2$
+      || !parts[ 1 ].startsWith( prefix ) ) {
+      throw new IllegalArgumentException( "Continuation token does not belong to " + rootPath ); //$NON-NLS-1$
+    }
+    return parts;
+  }
+
   public void sortByLocaleTitle( final Collator collator, final RepositoryFileTreeDto tree ) {
 
     if ( tree == null || tree.getChildren() == null || tree.getChildren().size() <= 0 ) {
@@ -1554,15 +1725,13 @@ public class FileService {
 
     RepositoryFile workspaceFolder = getRepository().getFile( userDir );
     if ( workspaceFolder != null ) {
-      List<RepositoryFile> children = getRepository().getChildren( workspaceFolder.getId() );
+      if ( targetComparator == null ) {
+        return content;
+      }
+      List<RepositoryFile> children =
+        getRepository().getChildrenByMetadata( workspaceFolder.getId(), metadataConstant, targetComparator );
       for ( RepositoryFile child : children ) {
-        if ( !child.isFolder() ) {
-          Map<String, Serializable> fileMetadata = getRepository().getFileMetadata( child.getId() );
-          String creatorId = (String) fileMetadata.get( metadataConstant );
-          if ( creatorId != null && creatorId.equals( targetComparator ) ) {
-            content.add( toFileDto( child, null, false ) );
-          }
-        }
+        content.add( toFileDto( child, null, false ) );
       }
     } else {
       logger.error( Messages.getInstance().getString( "FileResource.WORKSPACE_FOLDER_NOT_FOUND", userDir ) );
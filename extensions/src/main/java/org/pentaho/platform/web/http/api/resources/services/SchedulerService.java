@@ -37,6 +37,7 @@ import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -530,16 +531,13 @@ public class SchedulerService {
     // changed to get name via the current session
     final Boolean canAdminister = canAdminister( session );
 
-    List<Job> jobs = getScheduler().getJobs( new IJobFilter() {
-      @Override
-      public boolean accept( Job job ) {
-        if ( canAdminister ) {
-          return !IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
-        }
-        return principalName.equals( job.getUserName() );
-      }
-    } );
-    return jobs;
+    JobQuery query = new JobQuery();
+    if ( canAdminister ) {
+      query.setBlockout( false );
+    } else {
+      query.setUserName( principalName );
+    }
+    return getScheduler().queryJobs( query );
   }
 
   protected Boolean canAdminister() {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -31,6 +31,7 @@ import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
 import org.pentaho.platform.api.engine.security.userroledao.NotFoundException;
 import org.pentaho.platform.api.engine.security.userroledao.UncategorizedUserRoleDaoException;
+import org.pentaho.platform.api.engine.security.userroledao.UserRolePage;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -79,6 +80,18 @@ public class UserRoleDaoService {
     return new UserListWrapper( getRoleDao().getUsers() );
   }
 
+  /**
+   * Returns a page of the users of the current tenant whose name starts with the filter, along with the number of
+   * matches.
+   */
+  public UserListWrapper getUsers( String nameFilter, int offset, int limit ) throws Exception {
+    ITenant tenant = TenantUtils.getCurrentTenant();
+    UserRolePage<IPentahoUser> page = getRoleDao().getUsers( tenant, nameFilter, offset, limit );
+    UserListWrapper users = new UserListWrapper( page.getItems() );
+    users.setTotalCount( page.getTotalCount() );
+    return users;
+  }
+
   public RoleListWrapper getRolesForUser( String user ) throws UncategorizedUserRoleDaoException {
     if ( canAdminister() ) { // Fix for PPP-3840
       ITenant tenant = TenantUtils.getCurrentTenant();
@@ -147,6 +160,18 @@ public class UserRoleDaoService {
     return new RoleListWrapper( getRoleDao().getRoles() );
   }
 
+  /**
+   * Returns a page of the roles of the current tenant whose name starts with the filter, along with the number of
+   * matches.
+   */
+  public RoleListWrapper getRoles( String nameFilter, int offset, int limit ) throws UncategorizedUserRoleDaoException {
+    ITenant tenant = TenantUtils.getCurrentTenant();
+    UserRolePage<IPentahoRole> page = getRoleDao().getRoles( tenant, nameFilter, offset, limit );
+    RoleListWrapper roles = new RoleListWrapper( page.getItems() );
+    roles.setTotalCount( page.getTotalCount() );
+    return roles;
+  }
+
   public UserListWrapper getRoleMembers( String roleName ) throws UncategorizedUserRoleDaoException, SecurityException {
     if ( canAdminister() ) {
       return new UserListWrapper( getRoleDao().getRoleMembers( TenantUtils.getCurrentTenant(), roleName ) );
@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.web.http.filters;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentException;
@@ -30,6 +31,7 @@ import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
@@ -51,17 +53,30 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * If the request is searching for a webcontext.js, it writes out the content of the webcontext.js
+ * <p>
+ * The parts of the script that are the same for every session are rendered once and kept until the plugins are
+ * reloaded. Responses carry an ETag computed from everything the script is made of, so a browser revalidating with
+ * If-None-Match gets a 304 without the script being rendered again.
  */
 public class PentahoWebContextFilter implements Filter {
 
@@ -98,13 +113,42 @@ public class PentahoWebContextFilter implements Filter {
 
   private String ssoEnabled = null;
 
-  // Changed to not do so much work for every request
-  private static final ThreadLocal<byte[]> THREAD_LOCAL_REQUIRE_SCRIPT = new ThreadLocal<>();
   protected static ICacheManager cache = PentahoSystem.getCacheManager( null );
 
   private LazyInitializer<String> lazyServicesPath;
   private ConfigurationAdminNonOsgiProxy configurationAdminProxy;
 
+  // tells the ETags of this server run apart from those handed out before a restart
+  private final String eTagSeed = Long.toString( System.currentTimeMillis() );
+  private final AtomicLong staticFragmentsVersion = new AtomicLong();
+  private volatile StaticFragments staticFragments;
+  private boolean listeningToPluginReloads;
+
+  /**
+   * The session independent parts of webcontext.js, ready to be written out.
+   */
+  static final class StaticFragments {
+    private final long version;
+    private final String requireCfg;
+    private final String reservedChars;
+    private final String reservedCharsDisplay;
+    private final String reservedCharsRegexPattern;
+    private byte[] requireCfgBytes;
+    private byte[] requireScriptBytes;
+    private byte[] reservedCharsBytes;
+    // external resources of the contexts plugins contribute to
+    private final ConcurrentMap<String, List<String>> externalResources = new ConcurrentHashMap<>();
+
+    StaticFragments( long version, String requireCfg, String reservedChars, String reservedCharsDisplay,
+                     String reservedCharsRegexPattern ) {
+      this.version = version;
+      this.requireCfg = requireCfg;
+      this.reservedChars = reservedChars;
+      this.reservedCharsDisplay = reservedCharsDisplay;
+      this.reservedCharsRegexPattern = reservedCharsRegexPattern;
+    }
+  }
+
   @Override
   public void init( FilterConfig filterConfig ) throws ServletException {
     this.configurationAdminProxy = new ConfigurationAdminNonOsgiProxy();
@@ -146,9 +190,24 @@ public class PentahoWebContextFilter implements Filter {
       httpRequest.setAttribute( FILTER_APPLIED, Boolean.TRUE );
 
       try {
+        StaticFragments fragments = getStaticFragments();
+        HashMap<String, String> webContextVariables = getWebContextVariables( httpRequest );
+
+        // Any subclass can add more information to webcontext.js
+        ByteArrayOutputStream customInfo = new ByteArrayOutputStream();
+        addCustomInfo( customInfo );
+
+        String eTag = getETag( fragments, webContextVariables, httpRequest, customInfo.toByteArray() );
+        httpResponse.setHeader( "ETag", eTag ); //$NON-NLS-1$
+        // the script holds session details, so it may only be kept by the browser and always has to be revalidated
+        httpResponse.setHeader( "Cache-Control", "private, no-cache" ); //$NON-NLS-1$ //$NON-NLS-2$
+        if ( matchesETag( httpRequest.getHeader( "If-None-Match" ), eTag ) ) { //$NON-NLS-1$
+          httpResponse.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+          return;
+        }
+
         response.setContentType( "text/javascript" );
         OutputStream out = response.getOutputStream();
-        HashMap<String, String> webContextVariables = getWebContextVariables( httpRequest );
 
         out.write( initialCommentBytes );
 
@@ -162,7 +221,7 @@ public class PentahoWebContextFilter implements Filter {
 
         printWebContextVar( out, webContextVariables, "active_theme" );
 
-        printWebContextVar( out, webContextVariables, "requireCfg", false, false );
+        out.write( fragments.requireCfgBytes );
 
         // This var will enable correct redirect in Session Expire Dialog for a SSO scenario
         if ( getSsoEnabled() != null ) {
@@ -175,13 +234,7 @@ public class PentahoWebContextFilter implements Filter {
         // Let all plugins contribute to the RequireJS config
         printResourcesForContext( REQUIRE_JS, out, httpRequest, false );
 
-        byte[] requireScriptBytes = THREAD_LOCAL_REQUIRE_SCRIPT.get();
-        if ( requireScriptBytes == null ) {
-          printDocumentWrite( out, REQUIREJS_LOCATION );
-          printDocumentWrite( out, REQUIREJS_CONFIG_LOCATION );
-        } else {
-          out.write( requireScriptBytes );
-        }
+        out.write( fragments.requireScriptBytes );
 
         printWebContextVar( out, webContextVariables, "SESSION_NAME" );
 
@@ -194,11 +247,7 @@ public class PentahoWebContextFilter implements Filter {
 
         printWebContextVar( out, webContextVariables, "DEFAULT_FOLDER" );
 
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS" );
-
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS_DISPLAY" );
-
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS_REGEX_PATTERN", true, false );
+        out.write( fragments.reservedCharsBytes );
 
         boolean noOsgiRequireConfig = "true".equals( request.getParameter( "noOsgiRequireConfig" ) );
         if ( !noOsgiRequireConfig && !"anonymousUser".equals( getSession().getName() ) ) {
@@ -226,8 +275,7 @@ public class PentahoWebContextFilter implements Filter {
           }
         }
 
-        // Any subclass can add more information to webcontext.js
-        addCustomInfo( out );
+        customInfo.writeTo( out );
 
         out.close();
         return;
@@ -294,8 +342,9 @@ public class PentahoWebContextFilter implements Filter {
 
   HashMap<String, String> getWebContextVariables( HttpServletRequest request ) throws IOException {
     HashMap<String, String> map = new HashMap<>();
+    StaticFragments fragments = getStaticFragments();
 
-    map.put( "requireCfg", getRequireCfgVar() );                             // Global JS variable
+    map.put( "requireCfg", fragments.requireCfg );                           // Global JS variable
     map.put( "ssoEnabled", getSsoEnabled() );                                // Global JS variable
 
     map.put( "application", getApplicationVar( request ) );                  // Internal variable
@@ -310,9 +359,9 @@ public class PentahoWebContextFilter implements Filter {
     map.put( "HOME_FOLDER", getHomeFolderVar() );                            // Global JS environment variable
     map.put( "DEFAULT_FOLDER", getDefaultFolderVar() );                      // Global JS environment variable
 
-    map.put( "RESERVED_CHARS", getReservedCharsVar() );                      // Global JS environment variable
-    map.put( "RESERVED_CHARS_DISPLAY", getReservedCharsDisplayVar() );       // Global JS environment variable
-    map.put( "RESERVED_CHARS_REGEX_PATTERN", getReservedRegexPatternVar() ); // Global JS environment variable
+    map.put( "RESERVED_CHARS", fragments.reservedChars );                    // Global JS environment variable
+    map.put( "RESERVED_CHARS_DISPLAY", fragments.reservedCharsDisplay );     // Global JS environment variable
+    map.put( "RESERVED_CHARS_REGEX_PATTERN", fragments.reservedCharsRegexPattern ); // Global JS environment variable
 
     map.put( PLATFORM_OSGI_BRIDGE_ID, getOsgiBridgePath( request ) );        // Internal variable
     map.put( SERVICES_CONTEXT_PROPERTY, getServicesPath() );                 // Internal variable
@@ -457,8 +506,6 @@ public class PentahoWebContextFilter implements Filter {
   private void printResourcesForContext( String contextName, OutputStream out, HttpServletRequest request,
                                          boolean printCssOnly ) throws IOException {
 
-    IPluginManager pluginManager = getPluginManager();
-
     String reqStr = "";
     Map paramMap = request.getParameterMap();
 
@@ -485,7 +532,7 @@ public class PentahoWebContextFilter implements Filter {
       reqStr = sb.toString(); // get the request string.
     }
 
-    List<String> externalResources = pluginManager.getExternalResourcesForContext( contextName );
+    List<String> externalResources = getExternalResourcesForContext( contextName );
     out.write( ( "\n<!-- Injecting web resources defined in by plugins as external-resources for: "
       + Encode.forHtml( contextName ) + "-->" ).getBytes() );
 
@@ -507,6 +554,20 @@ public class PentahoWebContextFilter implements Filter {
 
   }
 
+  private List<String> getExternalResourcesForContext( String contextName ) throws IOException {
+    StaticFragments fragments = getStaticFragments();
+    List<String> externalResources = fragments.externalResources.get( contextName );
+    if ( externalResources == null ) {
+      externalResources = getPluginManager().getExternalResourcesForContext( contextName );
+      // the context name comes from the request, so only those plugins contribute to are kept
+      if ( externalResources != null && !externalResources.isEmpty() ) {
+        externalResources = new ArrayList<>( externalResources );
+        fragments.externalResources.putIfAbsent( contextName, externalResources );
+      }
+    }
+    return externalResources;
+  }
+
   private void printWebContextVar( OutputStream out, HashMap<String, String> webContextVariables,
                                    String variable ) throws IOException {
     printWebContextVar( out, webContextVariables, variable, true, true );
@@ -590,6 +651,110 @@ public class PentahoWebContextFilter implements Filter {
   }
   // endregion
 
+  StaticFragments getStaticFragments() throws IOException {
+    StaticFragments fragments = staticFragments;
+    if ( fragments == null ) {
+      listenToPluginReloads();
+      fragments = new StaticFragments( staticFragmentsVersion.incrementAndGet(), getRequireCfgVar(),
+        getReservedCharsVar(), getReservedCharsDisplayVar(), getReservedRegexPatternVar() );
+
+      HashMap<String, String> variables = new HashMap<>();
+      variables.put( "requireCfg", fragments.requireCfg );
+      variables.put( "RESERVED_CHARS", fragments.reservedChars );
+      variables.put( "RESERVED_CHARS_DISPLAY", fragments.reservedCharsDisplay );
+      variables.put( "RESERVED_CHARS_REGEX_PATTERN", fragments.reservedCharsRegexPattern );
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      printWebContextVar( out, variables, "requireCfg", false, false );
+      fragments.requireCfgBytes = out.toByteArray();
+
+      out.reset();
+      printDocumentWrite( out, REQUIREJS_LOCATION );
+      printDocumentWrite( out, REQUIREJS_CONFIG_LOCATION );
+      fragments.requireScriptBytes = out.toByteArray();
+
+      out.reset();
+      printWebContextVar( out, variables, "RESERVED_CHARS" );
+      printWebContextVar( out, variables, "RESERVED_CHARS_DISPLAY" );
+      printWebContextVar( out, variables, "RESERVED_CHARS_REGEX_PATTERN", true, false );
+      fragments.reservedCharsBytes = out.toByteArray();
+
+      staticFragments = fragments;
+    }
+    return fragments;
+  }
+
+  private synchronized void listenToPluginReloads() {
+    if ( !listeningToPluginReloads ) {
+      IPluginManager pluginManager = getPluginManager();
+      if ( pluginManager != null ) {
+        pluginManager.addPluginManagerListener( new IPluginManagerListener() {
+          @Override
+          public void onReload() {
+            staticFragments = null;
+          }
+        } );
+        listeningToPluginReloads = true;
+      }
+    }
+  }
+
+  /**
+   * Digests everything webcontext.js is rendered from: the static fragments, the per request variables, the request
+   * parameters and whatever a subclass adds.
+   */
+  String getETag( StaticFragments fragments, Map<String, String> webContextVariables, HttpServletRequest request,
+                  byte[] customInfo ) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance( "SHA-1" ); //$NON-NLS-1$
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+    update( digest, eTagSeed );
+    update( digest, Long.toString( fragments.version ) );
+    update( digest, getSsoEnabled() );
+    for ( Map.Entry<String, String> entry : new TreeMap<>( webContextVariables ).entrySet() ) {
+      update( digest, entry.getKey() );
+      update( digest, entry.getValue() );
+    }
+    Map<String, String[]> parameters = request.getParameterMap();
+    if ( parameters != null ) {
+      for ( Map.Entry<String, String[]> entry : new TreeMap<>( parameters ).entrySet() ) {
+        update( digest, entry.getKey() );
+        for ( String value : entry.getValue() ) {
+          update( digest, value );
+        }
+      }
+    }
+    digest.update( customInfo );
+    return "\"" + Hex.encodeHexString( digest.digest() ) + "\"";
+  }
+
+  private static void update( MessageDigest digest, String value ) {
+    if ( value != null ) {
+      digest.update( value.getBytes( StandardCharsets.UTF_8 ) );
+    }
+    // keeps ("ab", "c") and ("a", "bc") apart
+    digest.update( (byte) 0 );
+  }
+
+  static boolean matchesETag( String ifNoneMatch, String eTag ) {
+    if ( ifNoneMatch == null ) {
+      return false;
+    }
+    for ( String candidate : ifNoneMatch.split( "," ) ) {
+      candidate = candidate.trim();
+      if ( candidate.startsWith( "W/" ) ) {
+        candidate = candidate.substring( 2 );
+      }
+      if ( candidate.equals( eTag ) || "*".equals( candidate ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private String getServicesPath() {
     try {
       return this.lazyServicesPath.get();
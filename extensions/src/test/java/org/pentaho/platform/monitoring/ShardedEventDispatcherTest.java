@@ -0,0 +1,178 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.monitoring;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.Subscribe;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedEventDispatcherTest {
+
+  private ShardedEventDispatcher dispatcher;
+
+  @After
+  public void teardown() {
+    if ( dispatcher != null ) {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  public void testDeliversOnlyToHandlersOfEventType() throws Exception {
+    dispatcher = new ShardedEventDispatcher( 2, 16, ShardedEventDispatcher.OverflowPolicy.DROP, 1 );
+    StringSubscriber strings = new StringSubscriber( 2 );
+    IntegerSubscriber integers = new IntegerSubscriber();
+    dispatcher.register( strings, "strings" );
+    dispatcher.register( integers, "integers" );
+
+    dispatcher.post( "a" );
+    dispatcher.post( "b" );
+
+    assertTrue( strings.received.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( "a", strings.events.get( 0 ) );
+    assertEquals( "b", strings.events.get( 1 ) );
+    assertEquals( 0, integers.events.size() );
+    assertEquals( 0, dispatcher.getSubscriberMetrics().get( "integers" ).getDelivered() );
+  }
+
+  @Test
+  public void testUnhandledEventIsPostedAsDeadEvent() throws Exception {
+    dispatcher = new ShardedEventDispatcher( 1, 16, ShardedEventDispatcher.OverflowPolicy.DROP, 1 );
+    DeadEventSubscriber dead = new DeadEventSubscriber();
+    dispatcher.register( dead, "dead" );
+
+    dispatcher.post( 42 );
+
+    assertTrue( dead.received.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 42, dead.events.get( 0 ).getEvent() );
+  }
+
+  @Test
+  public void testDropPolicyCountsDroppedEvents() throws Exception {
+    dispatcher = new ShardedEventDispatcher( 1, 1, ShardedEventDispatcher.OverflowPolicy.DROP, 1 );
+    BlockingSubscriber blocking = new BlockingSubscriber();
+    dispatcher.register( blocking, "blocking" );
+
+    dispatcher.post( "first" );
+    assertTrue( blocking.started.await( 5, TimeUnit.SECONDS ) );
+    dispatcher.post( "queued" );
+    dispatcher.post( "dropped" );
+
+    ShardedEventDispatcher.SubscriberMetrics metrics = dispatcher.getSubscriberMetrics().get( "blocking" );
+    assertEquals( 1, metrics.getDropped() );
+    assertEquals( 1, metrics.getPending() );
+    blocking.release.countDown();
+  }
+
+  @Test
+  public void testSamplePolicyEvictsOldestEvent() throws Exception {
+    dispatcher = new ShardedEventDispatcher( 1, 1, ShardedEventDispatcher.OverflowPolicy.SAMPLE, 2 );
+    BlockingSubscriber blocking = new BlockingSubscriber();
+    dispatcher.register( blocking, "blocking" );
+
+    dispatcher.post( "first" );
+    assertTrue( blocking.started.await( 5, TimeUnit.SECONDS ) );
+    dispatcher.post( "evicted" );
+    dispatcher.post( "dropped" );
+    dispatcher.post( "sampled" );
+    blocking.release.countDown();
+
+    assertTrue( blocking.done.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( "first", blocking.events.get( 0 ) );
+    assertEquals( "sampled", blocking.events.get( 1 ) );
+    assertEquals( 2, dispatcher.getSubscriberMetrics().get( "blocking" ).getDropped() );
+  }
+
+  @Test
+  public void testUnregisteredSubscriberReceivesNothing() throws Exception {
+    dispatcher = new ShardedEventDispatcher( 1, 16, ShardedEventDispatcher.OverflowPolicy.BLOCK, 1 );
+    StringSubscriber strings = new StringSubscriber( 1 );
+    DeadEventSubscriber dead = new DeadEventSubscriber();
+    dispatcher.register( strings, "strings" );
+    dispatcher.register( dead, "dead" );
+    dispatcher.unregister( strings );
+
+    dispatcher.post( "a" );
+
+    assertTrue( dead.received.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, strings.events.size() );
+    assertEquals( 1, dispatcher.getSubscriberMetrics().size() );
+  }
+
+  public static class StringSubscriber {
+    final List<String> events = new CopyOnWriteArrayList<String>();
+    final CountDownLatch received;
+
+    StringSubscriber( int expected ) {
+      received = new CountDownLatch( expected );
+    }
+
+    @Subscribe
+    public void handle( String event ) {
+      events.add( event );
+      received.countDown();
+    }
+  }
+
+  public static class IntegerSubscriber {
+    final List<Integer> events = new CopyOnWriteArrayList<Integer>();
+
+    @Subscribe
+    public void handle( Integer event ) {
+      events.add( event );
+    }
+  }
+
+  public static class DeadEventSubscriber {
+    final List<DeadEvent> events = new CopyOnWriteArrayList<DeadEvent>();
+    final CountDownLatch received = new CountDownLatch( 1 );
+
+    @Subscribe
+    public void handle( DeadEvent event ) {
+      events.add( event );
+      received.countDown();
+    }
+  }
+
+  public static class BlockingSubscriber {
+    final List<String> events = new CopyOnWriteArrayList<String>();
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final CountDownLatch done = new CountDownLatch( 2 );
+
+    @Subscribe
+    public void handle( String event ) throws InterruptedException {
+      events.add( event );
+      started.countDown();
+      release.await( 5, TimeUnit.SECONDS );
+      done.countDown();
+    }
+  }
+}
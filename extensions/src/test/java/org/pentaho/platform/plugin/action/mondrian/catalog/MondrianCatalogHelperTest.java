@@ -39,6 +39,7 @@ import org.pentaho.platform.api.repository2.unified.data.node.DataNode;
 import org.pentaho.platform.api.repository2.unified.data.node.DataProperty;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
 import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper;
 import org.pentaho.platform.util.XmlTestConstants;
 import org.xml.sax.SAXException;
@@ -47,13 +48,18 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.StringBufferInputStream;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Collections.singletonList;
@@ -221,6 +227,65 @@ public class MondrianCatalogHelperTest {
     }
   }
 
+  @Test( timeout = 10000 )
+  public void testConcurrentRequestsShareOneCatalogLoad() throws Exception {
+    SimpleMapCacheManager.getInstance().clearRegionCache( MondrianCatalogHelper.MONDRIAN_CATALOG_CACHE_REGION );
+    setupDsObjects();
+    dsList.dataSources[0].catalogs.catalogs[0].name = "shared";
+    dsList.dataSources[0].catalogs.catalogs[0].definition = "mondrian:/shared";
+
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicInteger schemaReads = new AtomicInteger();
+    final MondrianCatalogHelper helper = new MondrianCatalogHelper() {
+      @Override
+      protected boolean hasAccess( MondrianCatalog cat, RepositoryFilePermission permission ) {
+        return true;
+      }
+
+      @Override
+      protected DataSourcesConfig.DataSources parseDataSourcesUrl( URL dataSourcesConfigUrl ) {
+        return dsList;
+      }
+
+      @Override
+      protected String getCatalogAsString( IPentahoSession ps, Catalog catalog ) throws Exception {
+        schemaReads.incrementAndGet();
+        release.await();
+        return "";
+      }
+
+      @Override
+      protected MondrianSchema makeSchema( String catalogStr ) {
+        return null;
+      }
+    };
+    helper.setDataSourcesConfig( "file:/datasources.xml" );
+
+    int threads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool( threads );
+    try {
+      List<Future<MondrianCatalog>> results = new ArrayList<>();
+      for ( int i = 0; i < threads; i++ ) {
+        results.add( executorService.submit( () -> helper.getCatalog( "shared", null ) ) );
+      }
+      // all but the loading request wait for its load
+      while ( helper.getSharedLoadCount() < threads - 1 ) {
+        Thread.sleep( 10 );
+      }
+      release.countDown();
+
+      for ( Future<MondrianCatalog> result : results ) {
+        assertEquals( "shared", result.get().getName() );
+      }
+      assertEquals( 1, schemaReads.get() );
+      assertEquals( 1, helper.getCatalogLoadCount() );
+      Assert.assertTrue( helper.getCatalogLoadTimes().containsKey( "shared" ) );
+    } finally {
+      executorService.shutdownNow();
+      SimpleMapCacheManager.getInstance().clearRegionCache( MondrianCatalogHelper.MONDRIAN_CATALOG_CACHE_REGION );
+    }
+  }
+
   private void setupDsObjects() {
     dsList = new DataSourcesConfig.DataSources();
 
@@ -33,6 +33,7 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryContentConverterH
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.core.mimetype.MimeType;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
 import org.pentaho.platform.plugin.services.importexport.Log4JRepositoryImportLogger;
 import org.pentaho.platform.plugin.services.importexport.RepositoryFileBundle;
 
@@ -49,6 +50,9 @@ import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 
 /**
@@ -200,6 +204,21 @@ public class LocaleFilesProcessorTest {
     assertFalse( localeFilesProcessor.isXMLlocale( new ByteArrayInputStream( xml.getBytes() ) ) );
   }
 
+  @Test
+  public void isLocaleFileReadsOnlyLocaleCandidates() throws Exception {
+    localeFilesProcessor = new LocaleFilesProcessor();
+    IRepositoryFileBundle report = mock( IRepositoryFileBundle.class );
+    when( report.getFile() ).thenReturn( new RepositoryFile.Builder( "report.prpt" ).build() );
+    assertFalse( localeFilesProcessor.isLocaleFile( report, "/" ) );
+    verify( report, never() ).getInputStream();
+
+    IRepositoryFileBundle locale = mock( IRepositoryFileBundle.class );
+    when( locale.getFile() ).thenReturn( new RepositoryFile.Builder( "report.prpt.locale" ).build() );
+    when( locale.getPath() ).thenReturn( "/" );
+    when( locale.getInputStream() ).thenReturn( new ByteArrayInputStream( "file.title=Report".getBytes() ) );
+    assertTrue( localeFilesProcessor.isLocaleFile( locale, "/" ) );
+  }
+
   private boolean processIsLocalFile( String fileName, StringBuffer localeContent ) throws Exception {
     RepositoryFile file = new RepositoryFile.Builder( fileName ).build();
     RepositoryFileBundle repoFileBundle =
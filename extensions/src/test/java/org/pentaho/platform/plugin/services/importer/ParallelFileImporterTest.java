@@ -0,0 +1,139 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class ParallelFileImporterTest {
+
+  private static final String XMI = "text/xmi+xml";
+  private static final String MONDRIAN = "application/vnd.pentaho.mondrian+xml";
+  private static final String PRPT = "application/vnd.pentaho.prpt";
+
+  private IPlatformImporter importer;
+  private Log log;
+
+  @Before
+  public void setUp() {
+    importer = mock( IPlatformImporter.class );
+    log = mock( Log.class );
+    ImportSession.iPlatformImporter = importer;
+    ImportSession.getSession().initialize();
+  }
+
+  @After
+  public void tearDown() {
+    ImportSession.clearSession();
+    ImportSession.iPlatformImporter = null;
+  }
+
+  @Test
+  public void testStagesRunInDependencyOrder() throws Exception {
+    ParallelFileImporter parallelImporter = new ParallelFileImporter( importer, 4, log );
+    List<String> order = Collections.synchronizedList( new ArrayList<>() );
+    for ( int i = 0; i < 10; i++ ) {
+      parallelImporter.add( PRPT, "/public/reports", () -> order.add( PRPT ) );
+      parallelImporter.add( MONDRIAN, "/etc/mondrian", () -> order.add( MONDRIAN ) );
+      parallelImporter.add( XMI, "/etc/metadata", () -> order.add( XMI ) );
+    }
+
+    parallelImporter.run();
+
+    assertEquals( 30, order.size() );
+    assertEquals( 9, order.lastIndexOf( XMI ) );
+    assertEquals( 10, order.indexOf( MONDRIAN ) );
+    assertEquals( 19, order.lastIndexOf( MONDRIAN ) );
+    assertEquals( 20, order.indexOf( PRPT ) );
+  }
+
+  @Test
+  public void testFirstFileOfFolderIsImportedOnCallingThread() throws Exception {
+    ParallelFileImporter parallelImporter = new ParallelFileImporter( importer, 2, log );
+    Thread caller = Thread.currentThread();
+    List<Thread> threads = Collections.synchronizedList( new ArrayList<>() );
+    for ( int i = 0; i < 5; i++ ) {
+      parallelImporter.add( PRPT, "/public/a", () -> threads.add( Thread.currentThread() ) );
+    }
+
+    parallelImporter.run();
+
+    assertEquals( 5, threads.size() );
+    assertSame( caller, threads.get( 0 ) );
+    for ( Thread thread : threads.subList( 1, threads.size() ) ) {
+      assertTrue( thread != caller );
+    }
+  }
+
+  @Test
+  public void testWorkersRecordIntoCallerImportSession() throws Exception {
+    ImportSession callerSession = ImportSession.getSession();
+    callerSession.setApplyAclSettings( true );
+    ParallelFileImporter parallelImporter = new ParallelFileImporter( importer, 3, log );
+    Set<ImportSession> workerSessions = ConcurrentHashMap.newKeySet();
+    for ( int i = 0; i < 6; i++ ) {
+      String file = "/public/file" + i;
+      parallelImporter.add( PRPT, "/public", () -> {
+        ImportSession session = ImportSession.getSession();
+        assertTrue( session.isApplyAclSettings() );
+        workerSessions.add( session );
+        session.getSkippedFiles().add( file );
+      } );
+    }
+
+    parallelImporter.run();
+
+    assertEquals( 6, callerSession.getSkippedFiles().size() );
+    assertTrue( workerSessions.size() > 1 );
+  }
+
+  @Test
+  public void testFailureIsRethrown() throws Exception {
+    ParallelFileImporter parallelImporter = new ParallelFileImporter( importer, 2, log );
+    parallelImporter.add( PRPT, "/public", () -> {
+    } );
+    parallelImporter.add( PRPT, "/public", () -> {
+      throw new PlatformImportException( "broken" );
+    } );
+
+    try {
+      parallelImporter.run();
+      fail();
+    } catch ( PlatformImportException e ) {
+      assertEquals( "broken", e.getMessage() );
+    }
+  }
+}
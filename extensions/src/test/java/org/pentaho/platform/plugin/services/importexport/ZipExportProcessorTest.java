@@ -341,6 +341,27 @@ public class ZipExportProcessorTest {
     assertEquals( "entries count", expectedEntries.length, zipEntriesFiles.size() );
   }
 
+  @Test
+  public void testPerformExport_withManifestAndPrefetch() throws Exception {
+    String expFolderPath = "/home/test user/two words/";
+    ZipExportProcessor zipMF = new ZipExportProcessor( expFolderPath, repo, true );
+    zipMF.setPrefetchThreads( 2 );
+
+    exportHandler.setConverters( assignConverterForExt( defaultConverter, "prpt" ) );
+    zipMF.addExportHandler( exportHandler );
+
+    File result = zipMF.performExport( repo.getFile( expFolderPath ) );
+
+    Set<String> zipEntriesFiles = extractZipEntries( result );
+    final String[] expectedEntries =
+        new String[] { "two+words/eval+%28%2B%29%25.prpt", "two+words/eval+%28%2B%29%25.prpt_en.locale",
+          "two+words/index_en.locale", "exportManifest.xml" };
+    for ( String e : expectedEntries ) {
+      assertTrue( "expected entry: [" + e + "]", zipEntriesFiles.contains( e ) );
+    }
+    assertEquals( "entries count", expectedEntries.length, zipEntriesFiles.size() );
+  }
+
   private Map<String, Converter> assignConverterForExt( Converter conv, String... exts ) {
     final Map<String, Converter> converters = new HashMap<String, Converter>();
     for ( String ext : exts ) {
@@ -33,6 +33,7 @@ import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings
 import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseConnection;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.DatabaseType;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestDto;
+import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestEntityDto;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestMetadata;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestMondrian;
 import org.pentaho.platform.web.http.api.resources.JobScheduleRequest;
@@ -44,6 +45,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -168,6 +170,37 @@ public class ExportManifestTest extends TestCase {
     }
   }
 
+  public void testSpooledEntitiesRoundTrip() throws Exception {
+    exportManifest.spoolEntities();
+    try {
+      exportManifest.add( createMockRepositoryFile( "/dir1/dir2/file2", false ), null );
+      exportManifest.add( createMockRepositoryFile( "/dir1/dir2/file2", true ), null );
+      exportManifest.add( createMockRepositoryFile( "/dir1/dir2/file0", false ), null );
+      assertNull( exportManifest.getExportManifestEntity( "dir2" ) );
+      assertEquals( 4, exportManifest.getEntityCount() );
+
+      // ordered by path as in memory, and the last entity added for a path wins
+      List<String> paths = new ArrayList<>();
+      for ( ExportManifestEntityDto entity : exportManifest.getExportManifestDto().getExportManifestEntity() ) {
+        paths.add( entity.getPath() );
+      }
+      assertEquals( Arrays.asList( "dir2", "dir2/file0", "dir2/file1", "dir2/file2" ), paths );
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      exportManifest.toXml( out );
+      ExportManifest importManifest = ExportManifest.fromXml( new ByteArrayInputStream( out.toByteArray() ) );
+
+      assertEquals( 4, importManifest.getExportManifestEntities().size() );
+      assertTrue( importManifest.getExportManifestEntity( "dir2" ).getEntityMetaData().isIsFolder() );
+      assertNotNull( importManifest.getExportManifestEntity( "dir2/file1" ) );
+      assertTrue( importManifest.getExportManifestEntity( "dir2/file2" ).getEntityMetaData().isIsFolder() );
+      assertEquals( 1, importManifest.getMondrianList().size() );
+      assertEquals( 1, importManifest.getUserExports().size() );
+    } finally {
+      exportManifest.releaseEntitySpool();
+    }
+  }
+
   public void testUnMarshal() {
     String xml = XmlToString();
     ExportManifest importManifest = null;
@@ -26,6 +26,8 @@ import org.junit.Test;
 
 import org.mockito.Mockito;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.IConcept;
 import org.pentaho.metadata.repository.IMetadataDomainRepository;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IConfiguration;
@@ -33,6 +35,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.config.SystemConfig;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.test.platform.plugin.services.metadata.MockSessionAwareMetadataDomainRepository;
 import org.powermock.api.mockito.PowerMockito;
@@ -55,6 +58,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -477,6 +481,100 @@ public class SessionCachingMetadataDomainRepositoryTest {
     assertTrue( actualExecuteTasks.contains( 6 ) );
   }
 
+  private SessionCachingMetadataDomainRepository createSharingRepository( IMetadataDomainRepository delegate,
+                                                                          ICacheManager cacheManager ) {
+    Domain domain = new Domain();
+    domain.setId( "shared" );
+    LogicalModel model = new LogicalModel();
+    model.setId( "model" );
+    domain.addLogicalModel( model );
+    when( delegate.getDomain( "shared" ) ).thenReturn( domain );
+    // suzy can't see the model, everybody else can
+    when( delegate.hasAccess( Mockito.anyInt(), Mockito.any( IConcept.class ) ) ).thenAnswer(
+        invocation -> !"suzy".equals( PentahoSessionHolder.getSession().getName() ) );
+
+    SessionCachingMetadataDomainRepository repo =
+        new SessionCachingMetadataDomainRepository( delegate, cacheManager, true, 1 );
+    repo.sharedDomainsEnabled = true;
+    return repo;
+  }
+
+  @Test
+  public void testSharedDomainsAreSharedBySessionsWithSameAccess() {
+    IMetadataDomainRepository delegate = mock( IMetadataDomainRepository.class );
+    SessionCachingMetadataDomainRepository repo = createSharingRepository( delegate, new SimpleMapCacheManager() );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin", "session-1" ) );
+    Domain first = repo.getDomain( "shared" );
+    PentahoSessionHolder.setSession( new StandaloneSession( "pat", "session-2" ) );
+    Domain second = repo.getDomain( "shared" );
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy", "session-3" ) );
+    Domain restricted = repo.getDomain( "shared" );
+
+    assertEquals( 1, first.getLogicalModels().size() );
+    assertEquals( 1, second.getLogicalModels().size() );
+    assertEquals( 0, restricted.getLogicalModels().size() );
+    // the domain is read from the delegate once
+    verify( delegate, times( 1 ) ).getDomain( "shared" );
+
+    // sessions with the same access are handed the same view
+    assertSame( first, second );
+    assertNotSame( first, restricted );
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin", "session-1" ) );
+    assertSame( first, repo.getDomain( "shared" ) );
+  }
+
+  @Test
+  public void testSessionCachesKeyOfSharedDomain() {
+    IMetadataDomainRepository delegate = mock( IMetadataDomainRepository.class );
+    SimpleMapCacheManager cacheManager = new SimpleMapCacheManager();
+    SessionCachingMetadataDomainRepository repo = createSharingRepository( delegate, cacheManager );
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin", "session-7" ) );
+    repo.getDomain( "shared" );
+
+    Object cached = cacheManager.getFromRegionCache( SessionCachingMetadataDomainRepository.CACHE_REGION,
+        new SessionCachingMetadataDomainRepository.CacheKey( "session-7", "shared" ) );
+    assertTrue( cached instanceof SessionCachingMetadataDomainRepository.SharedCacheKey );
+    assertSame( repo.getDomain( "shared" ),
+        cacheManager.getFromRegionCache( SessionCachingMetadataDomainRepository.CACHE_REGION, cached ) );
+  }
+
+  @Test
+  public void testPurgeUsesIndexInsteadOfRegionScan() {
+    IMetadataDomainRepository delegate = mock( IMetadataDomainRepository.class );
+    ICacheManager cacheManager = mock( ICacheManager.class );
+    SessionCachingMetadataDomainRepository repo = createSharingRepository( delegate, cacheManager );
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin", "session-1" ) );
+    repo.getDomain( "shared" );
+
+    repo.removeDomain( "shared" );
+
+    verify( cacheManager, times( 0 ) ).getAllKeysFromRegionCache( Mockito.anyString() );
+    verify( cacheManager ).removeFromRegionCache( SessionCachingMetadataDomainRepository.CACHE_REGION,
+        new SessionCachingMetadataDomainRepository.CacheKey( "session-1", "shared" ) );
+    verify( cacheManager ).removeFromRegionCache( SessionCachingMetadataDomainRepository.CACHE_REGION,
+        new SessionCachingMetadataDomainRepository.SharedCacheKey( "shared", null ) );
+  }
+
+  @Test
+  public void testLogoutRemovesSessionEntriesOnly() {
+    IMetadataDomainRepository delegate = mock( IMetadataDomainRepository.class );
+    SimpleMapCacheManager cacheManager = new SimpleMapCacheManager();
+    SessionCachingMetadataDomainRepository repo = createSharingRepository( delegate, cacheManager );
+    StandaloneSession session = new StandaloneSession( "admin", "session-4" );
+    PentahoSessionHolder.setSession( session );
+    Domain domain = repo.getDomain( "shared" );
+
+    repo.onLogout( session );
+
+    assertNull( cacheManager.getFromRegionCache( SessionCachingMetadataDomainRepository.CACHE_REGION,
+        new SessionCachingMetadataDomainRepository.CacheKey( "session-4", "shared" ) ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin", "session-5" ) );
+    // the shared domain is still cached
+    assertSame( domain, repo.getDomain( "shared" ) );
+    verify( delegate, times( 1 ) ).getDomain( "shared" );
+  }
+
   public ISystemConfig createSystemConfigTestObject( Properties properties ) throws Exception {
     IConfiguration configuration = Mockito.mock( IConfiguration.class );
     PowerMockito.when( configuration.getId() ).thenReturn( "system" );
@@ -0,0 +1,76 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PentahoSystemPluginManagerTest {
+
+  private static PlatformPlugin plugin( String id, String... dependencies ) {
+    PlatformPlugin plugin = new PlatformPlugin();
+    plugin.setId( id );
+    for ( String dependency : dependencies ) {
+      plugin.addDependency( dependency );
+    }
+    return plugin;
+  }
+
+  private static List<String> ids( List<IPlatformPlugin> plugins ) {
+    List<String> ids = new ArrayList<String>();
+    for ( IPlatformPlugin plugin : plugins ) {
+      ids.add( plugin.getId() );
+    }
+    return ids;
+  }
+
+  @Test
+  public void testOrderByDependencies() {
+    List<IPlatformPlugin> plugins =
+        Arrays.<IPlatformPlugin>asList( plugin( "a", "c" ), plugin( "b" ), plugin( "c", "b" ), plugin( "d" ) );
+
+    assertEquals( Arrays.asList( "b", "c", "a", "d" ),
+        ids( new PentahoSystemPluginManager().orderByDependencies( plugins ) ) );
+  }
+
+  @Test
+  public void testOrderKeepsProvidedOrderWithoutDependencies() {
+    List<IPlatformPlugin> plugins = Arrays.<IPlatformPlugin>asList( plugin( "c" ), plugin( "a" ), plugin( "b" ) );
+
+    assertEquals( Arrays.asList( "c", "a", "b" ),
+        ids( new PentahoSystemPluginManager().orderByDependencies( plugins ) ) );
+  }
+
+  @Test
+  public void testMissingAndCyclicDependenciesAreIgnored() {
+    List<IPlatformPlugin> plugins =
+        Arrays.<IPlatformPlugin>asList( plugin( "a", "b" ), plugin( "b", "a", "missing" ), plugin( "c" ) );
+
+    assertEquals( Arrays.asList( "b", "a", "c" ),
+        ids( new PentahoSystemPluginManager().orderByDependencies( plugins ) ) );
+  }
+}
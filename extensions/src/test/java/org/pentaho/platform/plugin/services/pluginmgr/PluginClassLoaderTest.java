@@ -0,0 +1,132 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings( "nls" )
+public class PluginClassLoaderTest {
+
+  private static final int JARS = 10;
+
+  private static final int ENTRIES_PER_JAR = 20;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File pluginDir;
+
+  @Before
+  public void setUp() throws IOException {
+    pluginDir = temporaryFolder.newFolder( "plugin" );
+    File libDir = new File( pluginDir, "lib" );
+    assertTrue( libDir.mkdir() );
+    for ( int i = 0; i < JARS; i++ ) {
+      try ( JarOutputStream jar = new JarOutputStream( new FileOutputStream( new File( libDir, "lib" + i + ".jar" ) ) ) ) {
+        jar.putNextEntry( new JarEntry( "org/example/lib" + i + "/" ) );
+        for ( int j = 0; j < ENTRIES_PER_JAR; j++ ) {
+          jar.putNextEntry( new JarEntry( "org/example/lib" + i + "/resource" + j + ".properties" ) );
+          jar.write( ( "value=" + j ).getBytes( "UTF-8" ) );
+        }
+      }
+    }
+    File resources = new File( pluginDir, "resources" );
+    assertTrue( resources.mkdir() );
+    assertTrue( new File( resources, "settings.properties" ).createNewFile() );
+  }
+
+  @Test
+  public void testFindsResourcesOfJarsAndDirectories() throws IOException {
+    PluginClassLoader loader = new PluginClassLoader( pluginDir, getClass().getClassLoader() );
+
+    assertNotNull( loader.findResource( "org/example/lib7/resource3.properties" ) );
+    assertNotNull( loader.findResource( "resources/settings.properties" ) );
+    assertEquals( 1, Collections.list( loader.findResources( "org/example/lib7/" ) ).size() );
+
+    assertNull( loader.findResource( "org/example/lib7/missing.properties" ) );
+    assertNull( loader.findResource( "org/other/resource3.properties" ) );
+    assertFalse( loader.findResources( "org/other/" ).hasMoreElements() );
+
+    // files added to a plugin directory later on are found
+    assertTrue( new File( pluginDir, "resources/added.properties" ).createNewFile() );
+    assertNotNull( loader.findResource( "resources/added.properties" ) );
+  }
+
+  @Test
+  public void testOverrideModeFallsBackToParent() throws ClassNotFoundException {
+    PluginClassLoader loader = new PluginClassLoader( pluginDir, getClass().getClassLoader() );
+    loader.setOverrideLoad( true );
+
+    assertSame( PluginClassLoaderTest.class, loader.loadClass( PluginClassLoaderTest.class.getName() ) );
+    try {
+      loader.loadClass( "org.example.lib7.Missing" );
+      fail( "Exception expected" );
+    } catch ( ClassNotFoundException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFindsClassesAddedToPluginDirectoryAfterMiss() throws Exception {
+    PluginClassLoader loader = new PluginClassLoader( pluginDir, getClass().getClassLoader() );
+    String name = Added.class.getName();
+    try {
+      loader.findClass( name );
+      fail( "Exception expected" );
+    } catch ( ClassNotFoundException e ) {
+      // expected
+    }
+
+    String resource = name.replace( '.', '/' ) + ".class";
+    File classFile = new File( pluginDir, resource );
+    assertTrue( classFile.getParentFile().mkdirs() );
+    try ( InputStream in = getClass().getClassLoader().getResourceAsStream( resource ) ) {
+      Files.copy( in, classFile.toPath() );
+    }
+
+    Class<?> added = loader.findClass( name );
+    assertEquals( name, added.getName() );
+    assertSame( loader, added.getClassLoader() );
+  }
+
+  public static class Added {
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -85,6 +85,15 @@ public class UserRoleDaoResourceTest {
     assertEquals( userListWrapper, userRoleResource.getUsers() );
   }
 
+  @Test
+  public void testGetUsersPaged() throws Exception {
+    UserListWrapper userListWrapper = new UserListWrapper( new ArrayList<IPentahoUser>() );
+    when( userRoleService.getUsers( "su", 0, 50 ) ).thenReturn( userListWrapper );
+
+    assertEquals( userListWrapper, userRoleResource.getUsers( "su", 0, 50 ) );
+    verify( userRoleService, times( 0 ) ).getUsers();
+  }
+
   @Test
   public void testGetUsersError() throws Exception {
     try {
@@ -282,6 +291,15 @@ public class UserRoleDaoResourceTest {
     assertEquals( roleListWrapper, userRoleResource.getRoles() );
   }
 
+  @Test
+  public void testGetRolesPaged() throws Exception {
+    RoleListWrapper roleListWrapper = new RoleListWrapper( new ArrayList<IPentahoRole>() );
+    when( userRoleService.getRoles( null, 100, 50 ) ).thenReturn( roleListWrapper );
+
+    assertEquals( roleListWrapper, userRoleResource.getRoles( null, 100, 50 ) );
+    verify( userRoleService, times( 0 ) ).getRoles();
+  }
+
   @Test
   public void testGetRolesError() throws Exception {
     try {
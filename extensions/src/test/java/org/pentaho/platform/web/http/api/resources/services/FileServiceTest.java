@@ -31,7 +31,9 @@ import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.engine.ISystemSettings;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreePageDto;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
@@ -41,11 +43,17 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
@@ -529,6 +537,82 @@ public class FileServiceTest {
     assertEquals(fileService.doGetCanEdit(), "true" );
   }
 
+  @Test
+  public void testDoGetTreePage_ResumesDepthFirst() {
+    mockTreePageRepository();
+
+    RepositoryFileTreePageDto page = fileService.doGetTreePage( ":", -1, null, false, false, 2, null );
+    assertEquals( "/", page.getFile().getPath() );
+    assertEquals( Arrays.asList( "/a", "/a/a1" ), paths( page.getChildren() ) );
+    assertNotNull( page.getContinuationToken() );
+
+    page = fileService.doGetTreePage( ":", -1, null, false, false, 2, page.getContinuationToken() );
+    assertNull( page.getFile() );
+    assertEquals( Arrays.asList( "/a/a2", "/b" ), paths( page.getChildren() ) );
+    assertNull( page.getContinuationToken() );
+  }
+
+  @Test
+  public void testDoGetTreePage_ResumesAfterFolder() {
+    mockTreePageRepository();
+
+    RepositoryFileTreePageDto page = fileService.doGetTreePage( ":", -1, null, false, false, 1, null );
+    assertEquals( Arrays.asList( "/a" ), paths( page.getChildren() ) );
+
+    page = fileService.doGetTreePage( ":", -1, null, false, false, 10, page.getContinuationToken() );
+    assertEquals( Arrays.asList( "/a/a1", "/a/a2", "/b" ), paths( page.getChildren() ) );
+  }
+
+  @Test
+  public void testDoGetTreePage_Depth() {
+    mockTreePageRepository();
+
+    RepositoryFileTreePageDto page = fileService.doGetTreePage( ":", 1, null, false, false, 10, null );
+    assertEquals( Arrays.asList( "/a", "/b" ), paths( page.getChildren() ) );
+    assertNull( page.getContinuationToken() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testDoGetTreePage_ForeignToken() {
+    mockTreePageRepository();
+    String token = FileService.encodeTreePageToken( treePageFile( "/elsewhere/x", false ) );
+
+    fileService.doGetTreePage( ":a", -1, null, false, false, 10, token );
+  }
+
+  private void mockTreePageRepository() {
+    final Map<String, List<RepositoryFileDto>> children = new HashMap<>();
+    children.put( "/", new ArrayList<>( Arrays.asList( treePageFile( "/b", false ), treePageFile( "/a", true ) ) ) );
+    children.put( "/a", new ArrayList<>( Arrays.asList( treePageFile( "/a/a2", false ),
+      treePageFile( "/a/a1", false ) ) ) );
+    DefaultUnifiedRepositoryWebService repoWs = mock( DefaultUnifiedRepositoryWebService.class );
+    when( repoWs.getFile( "/" ) ).thenReturn( treePageFile( "/", true ) );
+    when( repoWs.getFile( "/a" ) ).thenReturn( treePageFile( "/a", true ) );
+    when( repoWs.getChildrenFromRequest( any( RepositoryRequest.class ) ) ).thenAnswer( invocation -> {
+      RepositoryRequest request = invocation.getArgument( 0 );
+      List<RepositoryFileDto> list = children.get( request.getPath() );
+      return list == null ? new ArrayList<RepositoryFileDto>() : new ArrayList<>( list );
+    } );
+    doReturn( repoWs ).when( fileService ).getRepoWs();
+  }
+
+  private RepositoryFileDto treePageFile( String path, boolean folder ) {
+    RepositoryFileDto file = new RepositoryFileDto();
+    file.setId( path );
+    file.setPath( path );
+    file.setName( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    file.setFolder( folder );
+    return file;
+  }
+
+  private List<String> paths( List<RepositoryFileDto> files ) {
+    List<String> paths = new ArrayList<>();
+    for ( RepositoryFileDto file : files ) {
+      paths.add( file.getPath() );
+    }
+    return paths;
+  }
+
   private static String encode( String pathControlCharacter ) throws UnsupportedEncodingException {
     return URLEncoder.encode( pathControlCharacter, UTF_8 );
   }
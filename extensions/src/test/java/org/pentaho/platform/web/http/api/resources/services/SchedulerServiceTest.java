@@ -53,6 +53,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
@@ -65,6 +66,7 @@ import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
@@ -608,7 +610,7 @@ public class SchedulerServiceTest {
     doReturn( true ).when( schedulerService ).canAdminister( mockPentahoSession );
     List<Job> mockJobs = new ArrayList<>();
     mockJobs.add( mock( Job.class ) );
-    doReturn( mockJobs ).when( schedulerService.scheduler ).getJobs( any( IJobFilter.class ) );
+    doReturn( mockJobs ).when( schedulerService.scheduler ).queryJobs( any( JobQuery.class ) );
 
     List<Job> jobs = schedulerService.getJobs();
 
@@ -617,7 +619,27 @@ public class SchedulerServiceTest {
     verify( schedulerService, times( 1 ) ).getSession();
     verify( mockPentahoSession, times( 1 ) ).getName();
     verify( schedulerService, times( 1 ) ).canAdminister( mockPentahoSession );
-    verify( schedulerService.scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
+    ArgumentCaptor<JobQuery> query = ArgumentCaptor.forClass( JobQuery.class );
+    verify( schedulerService.scheduler, times( 1 ) ).queryJobs( query.capture() );
+    assertEquals( Boolean.FALSE, query.getValue().getBlockout() );
+    assertNull( query.getValue().getUserName() );
+  }
+
+  @Test
+  public void testGetJobsNonAdmin() throws Exception {
+    IPentahoSession mockPentahoSession = mock( IPentahoSession.class );
+
+    doReturn( mockPentahoSession ).when( schedulerService ).getSession();
+    doReturn( "suzy" ).when( mockPentahoSession ).getName();
+    doReturn( false ).when( schedulerService ).canAdminister( mockPentahoSession );
+    doReturn( new ArrayList<Job>() ).when( schedulerService.scheduler ).queryJobs( any( JobQuery.class ) );
+
+    schedulerService.getJobs();
+
+    ArgumentCaptor<JobQuery> query = ArgumentCaptor.forClass( JobQuery.class );
+    verify( schedulerService.scheduler, times( 1 ) ).queryJobs( query.capture() );
+    assertEquals( "suzy", query.getValue().getUserName() );
+    assertNull( query.getValue().getBlockout() );
   }
 
   @Test
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -35,6 +35,7 @@ import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
 import org.pentaho.platform.api.engine.security.userroledao.NotFoundException;
 import org.pentaho.platform.api.engine.security.userroledao.UncategorizedUserRoleDaoException;
+import org.pentaho.platform.api.engine.security.userroledao.UserRolePage;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -122,6 +123,20 @@ public class UserRoleDaoServiceTest {
     assertEquals( wrapUserList.getUsers(), userRoleService.getUsers().getUsers() );
   }
 
+  @Test
+  public void testGetUsersPaged() throws Exception {
+    IPentahoUser user = mock( IPentahoUser.class );
+    when( user.getUsername() ).thenReturn( "suzy" );
+    IUserRoleDao roleDao = mock( IUserRoleDao.class );
+    when( roleDao.getUsers( nullable( ITenant.class ), eq( "su" ), eq( 0 ), eq( 1 ) ) ).thenReturn(
+        new UserRolePage<IPentahoUser>( Arrays.asList( user ), 3 ) );
+    PentahoSystem.registerObject( roleDao );
+
+    UserListWrapper users = userRoleService.getUsers( "su", 0, 1 );
+    assertEquals( Arrays.asList( "suzy" ), users.getUsers() );
+    assertEquals( Integer.valueOf( 3 ), users.getTotalCount() );
+  }
+
   @Test
   public void testGetRolesForUser() {
     List<IPentahoRole> roleList = new ArrayList<>();
@@ -342,6 +357,20 @@ public class UserRoleDaoServiceTest {
     userRoleService.deleteUsers( users );
   }
 
+  @Test
+  public void testGetRolesPaged() throws Exception {
+    IPentahoRole role = mock( IPentahoRole.class );
+    when( role.getName() ).thenReturn( "Power User" );
+    IUserRoleDao roleDao = mock( IUserRoleDao.class );
+    when( roleDao.getRoles( nullable( ITenant.class ), eq( "pow" ), eq( 10 ), eq( 10 ) ) ).thenReturn(
+        new UserRolePage<IPentahoRole>( Arrays.asList( role ), 11 ) );
+    PentahoSystem.registerObject( roleDao );
+
+    RoleListWrapper roles = userRoleService.getRoles( "pow", 10, 10 );
+    assertEquals( Arrays.asList( "Power User" ), roles.getRoles() );
+    assertEquals( Integer.valueOf( 11 ), roles.getTotalCount() );
+  }
+
   @Test
   public void testGetRoles() throws Exception {
     List<IPentahoRole> roleList = new ArrayList<>();
@@ -24,6 +24,7 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.pentaho.platform.api.engine.IApplicationContext;
 import org.pentaho.platform.api.engine.ICacheManager;
@@ -32,6 +33,7 @@ import org.pentaho.platform.api.engine.IPentahoObjectReference;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.engine.ISystemSettings;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
@@ -57,13 +59,16 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -474,6 +479,53 @@ public class PentahoWebContextFilterTest {
     assertTrue( this.requirejsManagerInitIsCalled( response, null ) );
   }
 
+  @Test
+  public void testRevalidationWithMatchingETagIsNotModified() throws ServletException, IOException {
+    executeWebContextFilter();
+    String eTag = getETag();
+
+    this.mockResponseOutputStream.reset();
+    when( this.mockRequest.getHeader( "If-None-Match" ) ).thenReturn( "\"other\", " + eTag );
+    final String response = executeWebContextFilter();
+
+    assertEquals( "", response );
+    verify( this.mockResponse ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+  }
+
+  @Test
+  public void testETagChangesWithSessionVariables() throws ServletException, IOException {
+    executeWebContextFilter();
+    String eTag = getETag();
+
+    Locale previousLocaleOverride = LocaleHelper.getThreadLocaleOverride();
+    LocaleHelper.setThreadLocaleOverride( Locale.forLanguageTag( "pt-PT" ) );
+    try {
+      Mockito.reset( this.mockResponse );
+      when( this.mockResponse.getOutputStream() ).thenReturn( mock( ServletOutputStream.class ) );
+      when( this.mockRequest.getHeader( "If-None-Match" ) ).thenReturn( eTag );
+      executeWebContextFilter();
+
+      assertNotEquals( eTag, getETag() );
+      verify( this.mockResponse, never() ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+    } finally {
+      LocaleHelper.setThreadLocaleOverride( previousLocaleOverride );
+    }
+  }
+
+  @Test
+  public void testStaticFragmentsAreRenderedOncePerPluginReload() throws ServletException, IOException {
+    executeWebContextFilter();
+    executeWebContextFilter();
+    verify( this.pentahoWebContextFilter, times( 1 ) ).getRequireWaitTime();
+
+    ArgumentCaptor<IPluginManagerListener> listener = ArgumentCaptor.forClass( IPluginManagerListener.class );
+    verify( this.pentahoWebContextFilter.getPluginManager() ).addPluginManagerListener( listener.capture() );
+    listener.getValue().onReload();
+
+    executeWebContextFilter();
+    verify( this.pentahoWebContextFilter, times( 2 ) ).getRequireWaitTime();
+  }
+
   // region Auxiliary Methods
   private boolean responseSetsContextPathGlobal( String response, String contextRoot ) {
     return response.contains( getWebContextVarDefinition( "CONTEXT_PATH", contextRoot ) );
@@ -503,6 +555,12 @@ public class PentahoWebContextFilterTest {
     return this.mockResponseOutputStream.toString( "UTF-8" );
   }
 
+  private String getETag() {
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass( String.class );
+    verify( this.mockResponse, Mockito.atLeastOnce() ).setHeader( eq( "ETag" ), eTag.capture() );
+    return eTag.getValue();
+  }
+
   private String escapeEnvironmentVariable( String value ) {
     return "\"" + StringEscapeUtils.escapeJavaScript( value ) + "\"";
   }
@@ -37,6 +37,7 @@ import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.jcr.security.Privilege;
 
@@ -565,6 +566,39 @@ public class DefaultUnifiedRepositoryAuthorizationIT extends DefaultUnifiedRepos
         .of( RepositoryFilePermission.READ ) ) );
   }
 
+  @Test
+  public void testHasAccessInBatch() throws Exception {
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY );
+    String doesNotExist = ClientRepositoryPaths.getRootFolderPath() + "doesnotexist";
+    List<String> paths =
+        Arrays.asList( homePath, ClientRepositoryPaths.getPublicFolderPath(), ClientRepositoryPaths.getHomeFolderPath(),
+            doesNotExist );
+    EnumSet<RepositoryFilePermission> permissions = EnumSet.allOf( RepositoryFilePermission.class );
+
+    Map<String, EnumSet<RepositoryFilePermission>> access = repo.hasAccess( paths, permissions );
+
+    assertEquals( paths, new ArrayList<String>( access.keySet() ) );
+    assertTrue( access.get( homePath ).contains( RepositoryFilePermission.READ ) );
+    assertTrue( access.get( doesNotExist ).isEmpty() );
+    // the batch agrees with checking every path and permission on its own
+    for ( String path : paths ) {
+      for ( RepositoryFilePermission permission : permissions ) {
+        assertEquals( path + " " + permission, repo.hasAccess( path, EnumSet.of( permission ) ), access.get( path )
+            .contains( permission ) );
+      }
+    }
+  }
+
   @Test
   public void testGetEffectiveAces() throws Exception {
     loginAsSysTenantAdmin();
@@ -1987,6 +1987,51 @@ public class DefaultUnifiedRepositoryContentIT extends DefaultUnifiedRepositoryB
     assertEquals( value5, savedMap.get( key5 ) );
   }
 
+  @Test
+  public void testGetChildrenByMetadata() throws Exception {
+    String key = "lineage-id";
+
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+
+    final String parentFolderPath = ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY );
+    RepositoryFile parentFolder = repo.getFile( parentFolderPath );
+    RepositoryFile subFolder =
+        repo.createFolder( parentFolder.getId(), new RepositoryFile.Builder( "sub" ).folder( true ).build(), null );
+
+    RepositoryFile match1 = createSampleFile( parentFolderPath, "output1.sample", "s", true, 1 );
+    RepositoryFile match2 = createSampleFile( parentFolderPath, "output2.sample", "s", true, 1 );
+    RepositoryFile other = createSampleFile( parentFolderPath, "output3.sample", "s", true, 1 );
+    RepositoryFile nested = createSampleFile( subFolder.getPath(), "output4.sample", "s", true, 1 );
+
+    Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+    metadataMap.put( key, "schedule1" );
+    repo.setFileMetadata( match1.getId(), metadataMap );
+    repo.setFileMetadata( match2.getId(), metadataMap );
+    repo.setFileMetadata( nested.getId(), metadataMap );
+    metadataMap.put( key, "schedule2" );
+    repo.setFileMetadata( other.getId(), metadataMap );
+
+    List<RepositoryFile> children = repo.getChildrenByMetadata( parentFolder.getId(), key, "schedule1" );
+    assertEquals( 2, children.size() );
+    assertEquals( "output1.sample", children.get( 0 ).getName() );
+    assertEquals( "output2.sample", children.get( 1 ).getName() );
+
+    children = repo.getChildrenByMetadata( parentFolder.getId(), key, "schedule2" );
+    assertEquals( 1, children.size() );
+    assertEquals( other.getId(), children.get( 0 ).getId() );
+
+    assertTrue( repo.getChildrenByMetadata( parentFolder.getId(), key, "schedule3" ).isEmpty() );
+  }
+
   @Test
   public void testFileCreator() throws Exception {
     loginAsSysTenantAdmin();
@@ -0,0 +1,160 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.DefaultUnifiedRepositoryBase;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManager;
+import org.springframework.extensions.jcr.JcrCallback;
+
+/**
+ * Checks that {@link JcrRepositoryFileTreeWalker} returns the same trees as the recursive traversal and logs the time
+ * taken by each on a generated folder structure.
+ */
+@SuppressWarnings( "nls" )
+public class JcrRepositoryFileTreeWalkerIT extends DefaultUnifiedRepositoryBase {
+
+  private static final Log logger = LogFactory.getLog( JcrRepositoryFileTreeWalkerIT.class );
+
+  private static final int FOLDERS = 10;
+
+  private static final int FILES_PER_FOLDER = 20;
+
+  private static final int ROUNDS = 5;
+
+  private IRepositoryAccessVoterManager accessVoterManager;
+
+  @Before
+  public void beforeTest() {
+    IRepositoryVersionManager mockRepositoryVersionManager = mock( IRepositoryVersionManager.class );
+    when( mockRepositoryVersionManager.isVersioningEnabled( anyString() ) ).thenReturn( false );
+    when( mockRepositoryVersionManager.isVersionCommentEnabled( anyString() ) ).thenReturn( false );
+    JcrRepositoryFileUtils.setRepositoryVersionManager( mockRepositoryVersionManager );
+    accessVoterManager = new RepositoryAccessVoterManager( authorizationPolicy, repositoryAdminUsername );
+  }
+
+  @Test
+  public void testWalkerMatchesRecursiveTraversal() throws Exception {
+    String homePath = createTree();
+    String[] filters = { null, "*", "*.sample", "file1*", "*|FOLDERS", "*|FILES" };
+    for ( String filter : filters ) {
+      RepositoryRequest request = new RepositoryRequest( homePath, true, -1, filter );
+      assertEquals( "filter " + filter, describe( getTree( request, true ) ), describe( getTree( request, false ) ) );
+    }
+  }
+
+  @Test
+  public void testWalkerTiming() throws Exception {
+    String homePath = createTree();
+    RepositoryRequest request = new RepositoryRequest( homePath, true, -1, "file1*" );
+    // warm up both paths before measuring
+    getTree( request, true );
+    getTree( request, false );
+
+    long recursiveNanos = 0;
+    long walkerNanos = 0;
+    for ( int i = 0; i < ROUNDS; i++ ) {
+      long start = System.nanoTime();
+      getTree( request, true );
+      recursiveNanos += System.nanoTime() - start;
+      start = System.nanoTime();
+      getTree( request, false );
+      walkerNanos += System.nanoTime() - start;
+    }
+    logger.info( String.format( "getTree over %d files: recursive %d ms, walker %d ms (avg of %d rounds)",
+        FOLDERS * FILES_PER_FOLDER, recursiveNanos / ROUNDS / 1000000, walkerNanos / ROUNDS / 1000000, ROUNDS ) );
+  }
+
+  private String createTree() throws Exception {
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+
+    RepositoryFile home = repo.getFile( ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY ) );
+    for ( int i = 0; i < FOLDERS; i++ ) {
+      RepositoryFile folder =
+          repo.createFolder( home.getId(), new RepositoryFile.Builder( "folder" + i ).folder( true ).build(), null );
+      for ( int j = 0; j < FILES_PER_FOLDER; j++ ) {
+        createSampleFile( folder.getPath(), "file" + j + ".sample", "data", false, j );
+      }
+    }
+    return home.getPath();
+  }
+
+  private RepositoryFileTree getTree( final RepositoryRequest request, final boolean recursive ) {
+    return (RepositoryFileTree) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        String absPath = pathConversionHelper.relToAbs( request.getPath() );
+        ILockHelper lockHelper = mock( ILockHelper.class );
+        return recursive
+            ? JcrRepositoryFileUtils.getTreeRecursive( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+                absPath, request, accessVoterManager )
+            : new JcrRepositoryFileTreeWalker( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+                request, accessVoterManager ).walk( session.getNode( JcrStringHelper.pathEncode( absPath ) ),
+                request.getDepth() );
+      }
+    } );
+  }
+
+  private List<String> describe( RepositoryFileTree tree ) {
+    List<String> paths = new ArrayList<>();
+    describe( tree, paths );
+    return paths;
+  }
+
+  private void describe( RepositoryFileTree tree, List<String> paths ) {
+    paths.add( tree.getFile().getPath() );
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        describe( child, paths );
+      }
+    }
+  }
+}
@@ -14,13 +14,12 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.apache.jackrabbit.core.security.authorization.acl;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.cache.GrowingLRUMap;
@@ -29,24 +28,38 @@ import org.apache.jackrabbit.core.security.authorization.AccessControlModificati
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.ILogoutListener;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
+import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>CachingEntryCollector</code> extends <code>PentahoEntryCollector</code> by keeping a cache of ACEs per access
  * controlled nodeId.
  * <p/>
+ * The ACEs of a node only depend on the user through the magic ACEs, which are granted to the user according to the
+ * logical roles bound to its runtime roles, within its tenant. Entries are therefore cached per tenant and set of
+ * logical roles, and shared by all the users that have them. Entries that name the user itself, e.g. as the result of
+ * a magic ACE, are cached per session instead. Cached entries are invalidated on ACL changes only.
+ * <p/>
  * This class is a copy of the one in trunk of Jackrabbit. Backported here for performance reasons.
  */
 public class CachingPentahoEntryCollector extends PentahoEntryCollector {
@@ -56,11 +69,27 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    */
   private static final Logger log = LoggerFactory.getLogger( CachingEntryCollector.class );
   public static final String ENTRY_COLLECTOR = "ENTRY_COLLECTOR";
+  public static final String ENTRY_COLLECTOR_PRINCIPALS = "ENTRY_COLLECTOR_PRINCIPALS";
+  private static final String NO_SESSION = "";
   private final ICacheManager cacheManager;
 
+  /**
+   * Entries shared by all sessions of the same tenant and logical roles
+   */
+  private final ConcurrentMap<String, EntryCache> sharedCaches = new ConcurrentHashMap<String, EntryCache>();
+
+  /**
+   * Entries specific to the user of a session, held in the session cache
+   */
+  private final Set<EntryCache> sessionCaches =
+      Collections.synchronizedSet( Collections.newSetFromMap( new WeakHashMap<EntryCache, Boolean>() ) );
+
+  private final ConcurrentMap<String, ConcurrentMap<NodeId, FutureEntries>> futuresByRoles =
+      new ConcurrentHashMap<String, ConcurrentMap<NodeId, FutureEntries>>();
 
-  private final Map<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>> futuresBySession = Collections
-      .synchronizedMap( new LRUMap<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>>( 512, 128 ) );
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
 
   /**
    * Create a new instance.
@@ -87,38 +116,147 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
   }
 
   private void flushCachesOfSession( IPentahoSession iPentahoSession ) {
-
+    EntryCache cache = (EntryCache) cacheManager.getFromSessionCache( iPentahoSession, ENTRY_COLLECTOR );
+    if ( cache != null ) {
+      sessionCaches.remove( cache );
+    }
     cacheManager.removeFromSessionCache( iPentahoSession, ENTRY_COLLECTOR );
+    cacheManager.removeFromSessionCache( iPentahoSession, ENTRY_COLLECTOR_PRINCIPALS );
+  }
+
+  /**
+   * The current session as far as its entries are concerned: the key of the entries it shares with other sessions,
+   * and the principal magic ACEs are granted to.
+   */
+  private static final class SessionPrincipals {
+    private final String rolesKey;
+    private final String userPrincipal;
 
-    synchronized ( futuresBySession ) {
-      if ( futuresBySession.containsKey( iPentahoSession ) ) {
-        futuresBySession.get( iPentahoSession ).clear();
-        futuresBySession.remove( iPentahoSession );
+    private SessionPrincipals( String rolesKey, String userPrincipal ) {
+      this.rolesKey = rolesKey;
+      this.userPrincipal = userPrincipal;
+    }
+  }
+
+  private SessionPrincipals getPrincipals() {
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    // no magic ACEs without a session, see PentahoEntryCollector#getAcesIncludingMagicAces
+    if ( session == null || session.getId() == null || session.getId().trim().equals( "" ) ) { //$NON-NLS-1$
+      return new SessionPrincipals( NO_SESSION, null );
+    }
+    SessionPrincipals principals =
+        (SessionPrincipals) cacheManager.getFromSessionCache( session, ENTRY_COLLECTOR_PRINCIPALS );
+    if ( principals == null ) {
+      ITenant tenant = JcrTenantUtils.getTenant();
+      StringBuilder rolesKey = new StringBuilder( tenant.getRootFolderAbsolutePath() );
+      for ( String role : new TreeSet<String>( getLogicalRoleNames( session ) ) ) {
+        rolesKey.append( '\t' ).append( role );
+      }
+      principals =
+          new SessionPrincipals( rolesKey.toString(), JcrTenantUtils.getTenantedUser( session.getName() ) );
+      cacheManager.putInSessionCache( session, ENTRY_COLLECTOR_PRINCIPALS, principals );
+    }
+    return principals;
+  }
+
+  /**
+   * Magic ACEs are granted by logical role, so sessions bound to the same logical roles get the same ACEs. Falls back
+   * to the runtime roles if the role bindings cannot be read.
+   */
+  private Collection<String> getLogicalRoleNames( IPentahoSession session ) {
+    List<String> runtimeRoleNames = getRuntimeRoleNames();
+    try {
+      IRoleAuthorizationPolicyRoleBindingDao roleBindingDao =
+          PentahoSystem.getObjectFactory().get( IRoleAuthorizationPolicyRoleBindingDao.class,
+              "roleAuthorizationPolicyRoleBindingDaoTarget", session );
+      if ( roleBindingDao != null ) {
+        List<String> logicalRoleNames = new ArrayList<String>();
+        logicalRoleNames.add( "logical:" ); //$NON-NLS-1$
+        logicalRoleNames.addAll( roleBindingDao.getBoundLogicalRoleNames( systemSession, runtimeRoleNames ) );
+        return logicalRoleNames;
       }
+    } catch ( ObjectFactoryException | RepositoryException e ) {
+      log.debug( "Could not read the logical roles of the session, using its runtime roles", e );
     }
+    return runtimeRoleNames;
   }
 
-  private EntryCache getCache() {
+  private EntryCache getSharedCache( SessionPrincipals principals ) {
+    EntryCache cache = sharedCaches.get( principals.rolesKey );
+    if ( cache == null ) {
+      EntryCache newCache = new EntryCache();
+      cache = sharedCaches.putIfAbsent( principals.rolesKey, newCache );
+      if ( cache == null ) {
+        cache = newCache;
+      }
+    }
+    return cache;
+  }
+
+  private EntryCache getSessionCache( boolean create ) {
     IPentahoSession session = PentahoSessionHolder.getSession();
     EntryCache cache = (EntryCache) cacheManager.getFromSessionCache( session, ENTRY_COLLECTOR );
-    if ( cache == null ) {
+    if ( cache == null && create ) {
       cache = new EntryCache();
       cacheManager.putInSessionCache( session, ENTRY_COLLECTOR, cache );
+      sessionCaches.add( cache );
     }
 
     return cache;
   }
 
-  private ConcurrentMap<NodeId, FutureEntries> getFutures() {
-    IPentahoSession session = PentahoSessionHolder.getSession();
-    if ( futuresBySession.containsKey( session ) ) {
-      return futuresBySession.get( session );
+  private Entries getCachedEntries( SessionPrincipals principals, NodeId nodeId ) {
+    Entries entries = getSharedCache( principals ).get( nodeId );
+    if ( entries == null && principals.userPrincipal != null ) {
+      EntryCache sessionCache = getSessionCache( false );
+      if ( sessionCache != null ) {
+        entries = sessionCache.get( nodeId );
+      }
+    }
+    if ( entries != null ) {
+      hitCount.incrementAndGet();
+    } else {
+      missCount.incrementAndGet();
+    }
+    return entries;
+  }
+
+  /**
+   * Entries naming the user of the session, as magic ACEs do, cannot be shared with other users.
+   */
+  private static boolean isUserSpecific( Entries entries, String userPrincipal ) {
+    if ( userPrincipal == null || entries.getACEs() == null ) {
+      return false;
+    }
+    for ( Object ace : entries.getACEs() ) {
+      if ( ace instanceof PentahoEntry && !( (PentahoEntry) ace ).isGroupEntry()
+          && userPrincipal.equals( ( (PentahoEntry) ace ).getPrincipalName() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ConcurrentMap<NodeId, FutureEntries> getFutures( SessionPrincipals principals ) {
+    ConcurrentMap<NodeId, FutureEntries> futures = futuresByRoles.get( principals.rolesKey );
+    if ( futures == null ) {
+      ConcurrentMap<NodeId, FutureEntries> newFutures = new ConcurrentHashMap<NodeId, FutureEntries>();
+      futures = futuresByRoles.putIfAbsent( principals.rolesKey, newFutures );
+      if ( futures == null ) {
+        futures = newFutures;
+      }
     }
-    ConcurrentMap<NodeId, FutureEntries> futures = new ConcurrentHashMap<NodeId, FutureEntries>();
-    futuresBySession.put( session, futures );
     return futures;
   }
 
+  private List<EntryCache> getAllCaches() {
+    List<EntryCache> caches = new ArrayList<EntryCache>( sharedCaches.values() );
+    synchronized ( sessionCaches ) {
+      caches.addAll( sessionCaches );
+    }
+    return caches;
+  }
+
   @Override
   protected void close() {
     super.close();
@@ -128,14 +266,58 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
         cache.clear();
       }
     } );
+    sharedCaches.clear();
+    sessionCaches.clear();
+    futuresByRoles.clear();
+  }
 
-    synchronized ( futuresBySession ) {
-      for ( Map.Entry<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>> entry : this.futuresBySession
-          .entrySet() ) {
-        entry.getValue().clear();
-      }
-      futuresBySession.clear();
+  /**
+   * @return the number of entry lookups answered from the cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of entry lookups that had to read the ACLs
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * @return the number of distinct tenant and logical role combinations entries are cached for
+   */
+  public int getSharedCacheCount() {
+    return sharedCaches.size();
+  }
+
+  /**
+   * @return the number of nodes entries are cached for, over all caches
+   */
+  public int getCachedEntriesCount() {
+    int count = 0;
+    for ( EntryCache cache : getAllCaches() ) {
+      count += cache.size();
     }
+    return count;
+  }
+
+  /**
+   * @return the number of ACEs held in the caches, as a measure of their memory use
+   */
+  public long getCachedAceCount() {
+    long count = 0;
+    for ( EntryCache cache : getAllCaches() ) {
+      count += cache.aceCount();
+    }
+    return count;
   }
 
   // -----------------------------------------------------< EntryCollector >---
@@ -146,10 +328,11 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
   @Override
   protected PentahoEntries getEntries( NodeImpl node ) throws RepositoryException {
     NodeId nodeId = node.getNodeId();
-    Entries entries = getCache().get( nodeId );
+    SessionPrincipals principals = getPrincipals();
+    Entries entries = getCachedEntries( principals, nodeId );
     if ( entries == null ) {
       // fetch entries and update the cache
-      entries = updateCache( node );
+      entries = updateCache( node, principals );
     }
     return entries instanceof PentahoEntries ? (PentahoEntries) entries : new PentahoEntries( entries );
   }
@@ -159,11 +342,12 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    */
   @Override
   protected Entries getEntries( NodeId nodeId ) throws RepositoryException {
-    Entries entries = getCache().get( nodeId );
+    SessionPrincipals principals = getPrincipals();
+    Entries entries = getCachedEntries( principals, nodeId );
     if ( entries == null ) {
       // fetch entries and update the cache
       NodeImpl n = getNodeById( nodeId );
-      entries = updateCache( n );
+      entries = updateCache( n, principals );
     }
     return entries;
   }
@@ -175,17 +359,29 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    * @return The list of entries present on the specified node or an empty list.
    * @throws RepositoryException If an error occurs.
    */
-  private Entries internalUpdateCache( NodeImpl node ) throws RepositoryException {
-    Entries entries = super.getEntries( node );
-    if ( ( isRootId( node.getNodeId() ) && getCache().specialCasesRoot() ) || !entries.isEmpty() ) {
+  private Entries internalUpdateCache( NodeImpl node, SessionPrincipals principals ) throws RepositoryException {
+    Entries entries = readEntries( node );
+    EntryCache sharedCache = getSharedCache( principals );
+    if ( ( isRootId( node.getNodeId() ) && sharedCache.specialCasesRoot() ) || !entries.isEmpty() ) {
       // adjust the 'nextId' to point to the next access controlled
       // ancestor node instead of the parent and remember the entries.
       // entries.setNextId(getNextID(node));
-      getCache().put( node.getNodeId(), entries );
+      if ( isUserSpecific( entries, principals.userPrincipal ) ) {
+        getSessionCache( true ).put( node.getNodeId(), entries );
+      } else {
+        sharedCache.put( node.getNodeId(), entries );
+      }
     } // else: not access controlled -> ignore.
     return entries;
   }
 
+  /**
+   * Read the entries of the given node for the current session, bypassing the cache.
+   */
+  PentahoEntries readEntries( NodeImpl node ) throws RepositoryException {
+    return super.getEntries( node );
+  }
+
   /**
    * Update cache for the given node id
    *
@@ -193,38 +389,44 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    * @return The list of entries present on the specified node or an empty list.
    * @throws RepositoryException
    */
-  private Entries updateCache( NodeImpl node ) throws RepositoryException {
-    return throttledUpdateCache( node );
+  private Entries updateCache( NodeImpl node, SessionPrincipals principals ) throws RepositoryException {
+    return throttledUpdateCache( node, principals );
   }
 
   /**
    * See {@link CachingEntryCollector#updateCache(NodeImpl)} ; this variant blocks the current thread if a concurrent
-   * update for the same node id takes place
+   * update for the same node id and roles takes place
    */
-  private Entries throttledUpdateCache( NodeImpl node ) throws RepositoryException {
+  private Entries throttledUpdateCache( NodeImpl node, SessionPrincipals principals ) throws RepositoryException {
     NodeId id = node.getNodeId();
+    ConcurrentMap<NodeId, FutureEntries> futures = getFutures( principals );
     FutureEntries fe = null;
-    FutureEntries nfe = new FutureEntries();
+    FutureEntries nfe = new FutureEntries( principals.userPrincipal );
     boolean found = true;
 
-    fe = getFutures().putIfAbsent( id, nfe );
+    fe = futures.putIfAbsent( id, nfe );
     if ( fe == null ) {
       found = false;
       fe = nfe;
     }
 
     if ( found ) {
-      // we have found a previous FutureEntries object, so use it
-      return fe.get();
+      // we have found a previous FutureEntries object, so use it unless it was specific to another user
+      Entries e = fe.get();
+      if ( fe.userPrincipal != null && !fe.userPrincipal.equals( principals.userPrincipal )
+          && isUserSpecific( e, fe.userPrincipal ) ) {
+        return internalUpdateCache( node, principals );
+      }
+      return e;
     } else {
       // otherwise obtain result and when done notify waiting FutureEntries
       try {
-        Entries e = internalUpdateCache( node );
-        getFutures().remove( id );
+        Entries e = internalUpdateCache( node, principals );
+        futures.remove( id );
         fe.setResult( e );
         return e;
       } catch ( Throwable problem ) {
-        getFutures().remove( id );
+        futures.remove( id );
         fe.setProblem( problem );
         if ( problem instanceof RepositoryException ) {
           throw (RepositoryException) problem;
@@ -246,7 +448,7 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
     NodeId nextId = null;
     while ( nextId == null && !isRootId( n.getNodeId() ) ) {
       NodeId parentId = n.getParentId();
-      if ( getCache().containsKey( parentId ) ) {
+      if ( getSharedCache( getPrincipals() ).containsKey( parentId ) ) {
         nextId = parentId;
       } else {
         NodeImpl parent = (NodeImpl) n.getParent();
@@ -295,21 +497,9 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
     void call( EntryCache cache );
   }
 
-  private static final Pattern SESSION_KEY_PATTERN = Pattern.compile( "[^\\t]*\\t(.*)" );
-
   private void performAgainstAllInCache( CacheCallable callable ) {
-    Set allKeysFromRegionCache = cacheManager.getAllKeysFromRegionCache( ICacheManager.SESSION );
-    for ( Object compositeKey : allKeysFromRegionCache ) {
-      Matcher matcher = SESSION_KEY_PATTERN.matcher( compositeKey.toString() );
-      if ( matcher.matches() ) {
-        String key = matcher.toMatchResult().group( 1 );
-        if ( ENTRY_COLLECTOR.equals( key ) ) {
-          Object fromRegionCache = cacheManager.getFromRegionCache( ICacheManager.SESSION, compositeKey );
-          if ( EntryCache.class.isAssignableFrom( fromRegionCache.getClass() ) ) {
-            callable.call( (EntryCache) fromRegionCache );
-          }
-        }
-      }
+    for ( EntryCache cache : getAllCaches() ) {
+      callable.call( cache );
     }
   }
 
@@ -342,18 +532,20 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
       } else if ( ( type & POLICY_REMOVED ) == POLICY_REMOVED ) {
 
         // clear the entry and change the entries having a nextID
-        // pointing to this node.
+        // pointing to this node, as well as the entries inheriting its ACEs.
         performAgainstAllInCache( new CacheCallable() {
           @Override public void call( EntryCache cache ) {
             cache.remove( nodeId, true );
+            cache.removeInheriting( nodeId );
           }
         } );
 
       } else if ( ( type & POLICY_MODIFIED ) == POLICY_MODIFIED ) {
-        // simply clear the cache entry -> reload upon next access.
+        // simply clear the cache entry and the entries inheriting its ACEs -> reload upon next access.
         performAgainstAllInCache( new CacheCallable() {
           @Override public void call( EntryCache cache ) {
             cache.remove( nodeId, false );
+            cache.removeInheriting( nodeId );
           }
         } );
 
@@ -377,10 +569,15 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    */
   private class FutureEntries {
 
+    private final String userPrincipal;
     private boolean ready = false;
     private Entries result = null;
     private Throwable problem = null;
 
+    FutureEntries( String userPrincipal ) {
+      this.userPrincipal = userPrincipal;
+    }
+
     public synchronized Entries get() throws RepositoryException {
       while ( !ready ) {
         try {
@@ -420,7 +617,7 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
   private class EntryCache {
 
     private final Map<NodeId, Entries> cache;
-    private Entries rootEntries;
+    private volatile Entries rootEntries;
     private boolean specialCaseRoot = true;
 
     @SuppressWarnings( "unchecked" )
@@ -457,6 +654,49 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
       }
     }
 
+    public int size() {
+      synchronized ( cache ) {
+        return cache.size() + ( rootEntries != null ? 1 : 0 );
+      }
+    }
+
+    public long aceCount() {
+      long count = rootEntries != null && rootEntries.getACEs() != null ? rootEntries.getACEs().size() : 0;
+      synchronized ( cache ) {
+        for ( Entries entries : cache.values() ) {
+          count += entries.getACEs() != null ? entries.getACEs().size() : 0;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Removes the entries that include ACEs defined on the given node, i.e. inherited from it.
+     */
+    public void removeInheriting( NodeId id ) {
+      synchronized ( cache ) {
+        if ( rootEntries != null && isInheriting( rootEntries, id ) ) {
+          rootEntries = null;
+        }
+        for ( Iterator<Entries> it = cache.values().iterator(); it.hasNext(); ) {
+          if ( isInheriting( it.next(), id ) ) {
+            it.remove();
+          }
+        }
+      }
+    }
+
+    private boolean isInheriting( Entries entries, NodeId id ) {
+      if ( entries.getACEs() != null ) {
+        for ( Object ace : entries.getACEs() ) {
+          if ( ace instanceof PentahoEntry && ( (PentahoEntry) ace ).isLocal( id ) ) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
     public void clear() {
       rootEntries = null;
       synchronized ( cache ) {
@@ -20,6 +20,8 @@
 
 package org.pentaho.platform.repository.usersettings;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -31,6 +33,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.repository.usersettings.pojo.UserSetting;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadAction;
@@ -39,22 +42,52 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores user settings as metadata of the user's home folder, and global settings as metadata of the tenant's etc
+ * folder.
+ * <p>
+ * The settings of each folder are cached once read, so that repeated lookups (theme, recent files and favorites on
+ * every page load) don't go back to the repository. Settings written through this service update the cache as they
+ * are stored; settings changed by other means (another server, direct metadata edits) are picked up once the cached
+ * copy is older than {@link #CACHE_SECONDS_PROPERTY} seconds.
+ */
 public class UserSettingService implements IAnyUserSettingService, IUserSettingService {
 
   public static final String SETTING_PREFIX = "_USERSETTING"; //$NON-NLS-1$
+
+  /**
+   * System property holding how long, in seconds, the settings of a folder are served from the cache. Zero or less
+   * disables the cache.
+   */
+  public static final String CACHE_SECONDS_PROPERTY = "pentaho.usersettings.cacheSeconds"; //$NON-NLS-1$
+
+  private static final long DEFAULT_CACHE_SECONDS = 300;
+
+  private static final long MAX_CACHED_FOLDERS = 10000;
+
   IPentahoSession session = null;
   private static final byte[] lock = new byte[0];
 
   protected IUnifiedRepository repository;
   private Logger log = LoggerFactory.getLogger( getClass() );
 
+  // tenant and folder path -> setting values by setting name
+  private final Cache<String, Map<String, String>> settingsCache;
+
   public UserSettingService( IUnifiedRepository repository ) {
     this.repository = repository;
+    long cacheSeconds = Long.getLong( CACHE_SECONDS_PROPERTY, DEFAULT_CACHE_SECONDS );
+    this.settingsCache =
+      CacheBuilder.newBuilder().expireAfterWrite( Math.max( 0, cacheSeconds ), TimeUnit.SECONDS )
+        .maximumSize( cacheSeconds > 0 ? MAX_CACHED_FOLDERS : 0 ).build();
   }
 
   public void init( IPentahoSession session ) {
@@ -78,17 +111,15 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
         finalMetadata.put( key, entry.getValue() );
       }
     }
+    settingsCache.invalidate( cacheKey( homePath ) );
     repository.setFileMetadata( id, finalMetadata );
+    settingsCache.put( cacheKey( homePath ), toSettings( finalMetadata ) );
   }
 
   // ////////////////////////////////////////////////////////////////////////////////////////////////
   // USER SETTINGS METHODS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
-  private static UserSetting createSetting( String name, Serializable value ) {
-    return createSetting( name, value.toString() );
-  }
-
   private static UserSetting createSetting( String name, String value ) {
     UserSetting setting = new UserSetting();
     setting.setSettingName( name );
@@ -100,33 +131,22 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     // get the global settings and the user settings
     // merge unseen global settings into the user settings list
     List<IUserSetting> userSettings = new ArrayList<IUserSetting>();
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        userSettings.add( setting );
-      }
+    for ( Map.Entry<String, String> entry : getUserSettingValues().entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
+    return userSettings;
+  }
 
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-    Serializable userHomeId = repository.getFile( homePath ).getId();
-    Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
+  @Override
+  public Map<String, String> getUserSettingValues() {
+    Map<String, String> userSettings =
+      new LinkedHashMap<String, String>( getSettings( ClientRepositoryPaths.getEtcFolderPath() ) );
 
-    for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        // see if a global setting exists which will be overridden
-        if ( userSettings.contains( setting ) ) {
-          userSettings.remove( setting );
-        }
-        userSettings.add( setting );
-      }
+    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
+    for ( Map.Entry<String, String> entry : getSettings( homePath ).entrySet() ) {
+      // a user setting overrides the global setting of the same name
+      userSettings.remove( entry.getKey() );
+      userSettings.put( entry.getKey(), entry.getValue() );
     }
     return userSettings;
   }
@@ -138,31 +158,12 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       try {
         String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
 
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        String value = getSettings( homePath ).get( settingName );
+        if ( value == null ) {
+          value = getSettings( ClientRepositoryPaths.getEtcFolderPath() ).get( settingName );
         }
-
-        String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-        Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-        Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -184,6 +185,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
 
       final Map<String, Serializable> fileMetadata = repository.getFileMetadata( id );
       fileMetadata.put( SETTING_PREFIX + settingName, settingValue );
+      settingsCache.invalidate( cacheKey( homePath ) );
       try {
         SecurityHelper.getInstance().runAsSystem( new Callable<Void>() {
           @Override
@@ -192,6 +194,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
             return null;
           }
         } );
+        settingsCache.put( cacheKey( homePath ), toSettings( fileMetadata ) );
       } catch ( Exception e ) {
         if ( log.isDebugEnabled() ) {
           log.debug( "Error storing user setting for user: " + name + ", setting: " + settingName + ", value: "
@@ -215,7 +218,9 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
           finalMetadata.put( key, entry.getValue() );
         }
       }
+      settingsCache.invalidate( cacheKey( homePath ) );
       repository.setFileMetadata( id, finalMetadata );
+      settingsCache.put( cacheKey( homePath ), toSettings( finalMetadata ) );
     } else {
       throw new SecurityException( "Unauthorized User" );
     }
@@ -228,15 +233,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       try {
         String homePath = ClientRepositoryPaths.getUserHomeFolderPath( username );
 
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            userSettings.add( createSetting( settingFromKey, entry.getValue() ) );
-          }
+        for ( Map.Entry<String, String> entry : getSettings( homePath ).entrySet() ) {
+          userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -257,17 +255,9 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       try {
         String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
 
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        String value = getSettings( homePath ).get( settingName );
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -293,6 +283,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
 
         final Map<String, Serializable> fileMetadata = repository.getFileMetadata( id );
         fileMetadata.put( SETTING_PREFIX + settingName, settingValue );
+        settingsCache.invalidate( cacheKey( homePath ) );
         try {
           SecurityHelper.getInstance().runAsSystem( new Callable<Void>() {
             @Override
@@ -301,6 +292,7 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
               return null;
             }
           } );
+          settingsCache.put( cacheKey( homePath ), toSettings( fileMetadata ) );
         } catch ( Exception e ) {
           if ( log.isDebugEnabled() ) {
             log.debug( "Error storing user setting for user: " + username + ", setting: " + settingName + ", value: "
@@ -319,14 +311,9 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
   public IUserSetting getGlobalUserSetting( String settingName, String defaultValue ) {
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    String key = SETTING_PREFIX + settingName;
-    Serializable value = tenantMetadata.get( key );
+    String value = getSettings( ClientRepositoryPaths.getEtcFolderPath() ).get( settingName );
     if ( value != null ) {
-      return createSetting( settingName, value.toString() );
+      return createSetting( settingName, value );
     }
 
     return createSetting( settingName, defaultValue );
@@ -334,16 +321,11 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
 
   public List<IUserSetting> getGlobalUserSettings() {
 
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
+    Map<String, String> tenantSettings = getSettings( ClientRepositoryPaths.getEtcFolderPath() );
 
-    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( tenantMetadata.size() );
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        userSettings.add( createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() ) );
-      }
+    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( tenantSettings.size() );
+    for ( Map.Entry<String, String> entry : tenantSettings.entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
     return userSettings;
   }
@@ -354,8 +336,46 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
       Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
       tenantMetadata.put( SETTING_PREFIX + settingName, settingValue );
+      settingsCache.invalidate( cacheKey( tentantHomePath ) );
       repository.setFileMetadata( tenantHomeId, tenantMetadata );
+      settingsCache.put( cacheKey( tentantHomePath ), toSettings( tenantMetadata ) );
+    }
+  }
+
+  /**
+   * Reads the settings stored on a folder, from the cache when they are there.
+   */
+  private Map<String, String> getSettings( String folderPath ) {
+    String key = cacheKey( folderPath );
+    Map<String, String> settings = settingsCache.getIfPresent( key );
+    if ( settings == null ) {
+      Serializable folderId = repository.getFile( folderPath ).getId();
+      settings = toSettings( repository.getFileMetadata( folderId ) );
+      // don't replace settings stored while these were being read
+      Map<String, String> stored = settingsCache.asMap().putIfAbsent( key, settings );
+      if ( stored != null ) {
+        settings = stored;
+      }
+    }
+    return settings;
+  }
+
+  /**
+   * Folder paths are relative to the tenant of the current session, and this service is shared by all tenants.
+   */
+  private static String cacheKey( String folderPath ) {
+    return JcrTenantUtils.getTenant().getId() + folderPath;
+  }
+
+  private static Map<String, String> toSettings( Map<String, Serializable> metadata ) {
+    Map<String, String> settings = new LinkedHashMap<String, String>();
+    for ( Map.Entry<String, Serializable> entry : metadata.entrySet() ) {
+      String key = entry.getKey();
+      if ( key.startsWith( SETTING_PREFIX ) && entry.getValue() != null ) {
+        settings.put( key.substring( SETTING_PREFIX.length() ), entry.getValue().toString() );
+      }
     }
+    return Collections.unmodifiableMap( settings );
   }
 
   protected boolean canAdminister() {
@@ -0,0 +1,638 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.locale.IPentahoLocale;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAce;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
+import org.pentaho.platform.api.repository2.unified.VersionSummary;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+import org.springframework.util.Assert;
+
+/**
+ * Decorates another {@code IUnifiedRepository} instance and keeps the content of small files in memory, so that files
+ * read over and over (actions, reports, stylesheets, schemas) don't open a binary stream from the repository each time.
+ * <p/>
+ * Only {@link SimpleRepositoryFileData} read through {@link #getDataForRead(Serializable, Class)} and
+ * {@link #getDataForExecute(Serializable, Class)} is cached. Every read still looks up the file through the decorated
+ * repository, which checks the read access of the current user and tells the version and last modification date of
+ * the content. Cached content is only served for the same file, version and modification date; it is also dropped
+ * when the file is updated, deleted, moved or restored through this repository.
+ */
+public class ContentCachingDecorator implements IUnifiedRepository {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( ContentCachingDecorator.class );
+
+  // ~ Instance fields
+  // =================================================================================================
+
+  private final IUnifiedRepository delegatee;
+
+  private final long maxCacheBytes;
+
+  private final long maxEntryBytes;
+
+  private final LinkedHashMap<Serializable, CachedContent> contentByFileId =
+      new LinkedHashMap<Serializable, CachedContent>( 256, 0.75f, true );
+
+  private long cachedBytes;
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong bytesServed = new AtomicLong();
+
+  // ~ Constructors
+  // ====================================================================================================
+
+  /**
+   * @param delegatee
+   *          the repository to read from and to check access with
+   * @param maxCacheBytes
+   *          the number of content bytes to keep at most, least recently read content is dropped first
+   * @param maxEntryBytes
+   *          files larger than this are never cached
+   */
+  public ContentCachingDecorator( final IUnifiedRepository delegatee, final long maxCacheBytes,
+                                  final long maxEntryBytes ) {
+    super();
+    Assert.notNull( delegatee );
+    this.delegatee = delegatee;
+    this.maxCacheBytes = maxCacheBytes;
+    this.maxEntryBytes = Math.min( maxEntryBytes, maxCacheBytes );
+  }
+
+  // ~ Methods
+  // =========================================================================================================
+
+  /**
+   * The content of one version of a file
+   */
+  private static final class CachedContent {
+    private final String versionKey;
+
+    private final byte[] bytes;
+
+    private final String encoding;
+
+    private final String mimeType;
+
+    private CachedContent( String versionKey, byte[] bytes, String encoding, String mimeType ) {
+      this.versionKey = versionKey;
+      this.bytes = bytes;
+      this.encoding = encoding;
+      this.mimeType = mimeType;
+    }
+  }
+
+  private static String getVersionKey( final RepositoryFile file ) {
+    return file.getVersionId() + "\t" //$NON-NLS-1$
+        + ( file.getLastModifiedDate() == null ? "" : file.getLastModifiedDate().getTime() ); //$NON-NLS-1$
+  }
+
+  private boolean isCacheable( final RepositoryFile file ) {
+    return file != null && !file.isFolder() && file.getFileSize() != null && file.getFileSize() > 0
+        && file.getFileSize() <= maxEntryBytes;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private <T extends IRepositoryFileData> T getCachedData( final Serializable fileId, final Class<T> dataClass,
+                                                          final boolean forExecute ) {
+    if ( fileId == null || dataClass != SimpleRepositoryFileData.class ) {
+      return forExecute ? delegatee.getDataForExecute( fileId, dataClass ) : delegatee.getDataForRead( fileId,
+          dataClass );
+    }
+    // goes through the access checks of the decorated repository on every read
+    RepositoryFile file = delegatee.getFileById( fileId );
+    if ( !isCacheable( file ) ) {
+      return forExecute ? delegatee.getDataForExecute( fileId, dataClass ) : delegatee.getDataForRead( fileId,
+          dataClass );
+    }
+    String versionKey = getVersionKey( file );
+    CachedContent content;
+    synchronized ( contentByFileId ) {
+      content = contentByFileId.get( fileId );
+    }
+    if ( content != null && content.versionKey.equals( versionKey ) ) {
+      hitCount.incrementAndGet();
+      bytesServed.addAndGet( content.bytes.length );
+      return (T) toData( content );
+    }
+    missCount.incrementAndGet();
+
+    SimpleRepositoryFileData data =
+        forExecute ? delegatee.getDataForExecute( fileId, SimpleRepositoryFileData.class ) : delegatee
+            .getDataForRead( fileId, SimpleRepositoryFileData.class );
+    if ( data == null || data.getInputStream() == null ) {
+      return (T) data;
+    }
+    byte[] bytes;
+    InputStream stream = data.getInputStream();
+    try {
+      bytes = IOUtils.toByteArray( stream );
+    } catch ( IOException e ) {
+      throw new UnifiedRepositoryException( e );
+    } finally {
+      IOUtils.closeQuietly( stream );
+    }
+    content = new CachedContent( versionKey, bytes, data.getEncoding(), data.getMimeType() );
+    if ( bytes.length <= maxEntryBytes ) {
+      put( fileId, content );
+    }
+    return (T) toData( content );
+  }
+
+  private static SimpleRepositoryFileData toData( final CachedContent content ) {
+    return new SimpleRepositoryFileData( new ByteArrayInputStream( content.bytes ), content.encoding,
+        content.mimeType );
+  }
+
+  private void put( final Serializable fileId, final CachedContent content ) {
+    synchronized ( contentByFileId ) {
+      CachedContent previous = contentByFileId.put( fileId, content );
+      if ( previous != null ) {
+        cachedBytes -= previous.bytes.length;
+      }
+      cachedBytes += content.bytes.length;
+      Iterator<CachedContent> it = contentByFileId.values().iterator();
+      while ( cachedBytes > maxCacheBytes && it.hasNext() ) {
+        cachedBytes -= it.next().bytes.length;
+        it.remove();
+      }
+    }
+  }
+
+  private void evict( final Serializable fileId ) {
+    if ( fileId == null ) {
+      return;
+    }
+    synchronized ( contentByFileId ) {
+      CachedContent previous = contentByFileId.remove( fileId );
+      if ( previous != null ) {
+        cachedBytes -= previous.bytes.length;
+      }
+    }
+  }
+
+  /**
+   * Drops all cached content.
+   */
+  public void clear() {
+    synchronized ( contentByFileId ) {
+      contentByFileId.clear();
+      cachedBytes = 0;
+    }
+    logger.debug( "Cleared the repository content cache" ); //$NON-NLS-1$
+  }
+
+  /**
+   * @return the number of reads served from the cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of cacheable reads that went to the repository
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public double getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * @return the number of content bytes served from the cache
+   */
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  /**
+   * @return the number of content bytes held by the cache
+   */
+  public long getCachedBytes() {
+    synchronized ( contentByFileId ) {
+      return cachedBytes;
+    }
+  }
+
+  public int getCachedFileCount() {
+    synchronized ( contentByFileId ) {
+      return contentByFileId.size();
+    }
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> T getDataForRead( final Serializable fileId, final Class<T> dataClass ) {
+    return getCachedData( fileId, dataClass, false );
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> T getDataForExecute( final Serializable fileId, final Class<T> dataClass ) {
+    return getCachedData( fileId, dataClass, true );
+  }
+
+  @Override
+  public RepositoryFile updateFile( final RepositoryFile file, final IRepositoryFileData data,
+                                    final String versionMessage ) {
+    evict( file.getId() );
+    try {
+      return delegatee.updateFile( file, data, versionMessage );
+    } finally {
+      evict( file.getId() );
+    }
+  }
+
+  @Override
+  public void deleteFile( final Serializable fileId, final boolean permanent, final String versionMessage ) {
+    evict( fileId );
+    delegatee.deleteFile( fileId, permanent, versionMessage );
+  }
+
+  @Override
+  public void deleteFile( final Serializable fileId, final String versionMessage ) {
+    evict( fileId );
+    delegatee.deleteFile( fileId, versionMessage );
+  }
+
+  @Override
+  public void moveFile( final Serializable fileId, final String destAbsPath, final String versionMessage ) {
+    evict( fileId );
+    delegatee.moveFile( fileId, destAbsPath, versionMessage );
+  }
+
+  @Override
+  public void undeleteFile( final Serializable fileId, final String versionMessage ) {
+    evict( fileId );
+    delegatee.undeleteFile( fileId, versionMessage );
+  }
+
+  @Override
+  public void deleteFileAtVersion( final Serializable fileId, final Serializable versionId ) {
+    evict( fileId );
+    delegatee.deleteFileAtVersion( fileId, versionId );
+  }
+
+  @Override
+  public void restoreFileAtVersion( final Serializable fileId, final Serializable versionId,
+                                    final String versionMessage ) {
+    evict( fileId );
+    try {
+      delegatee.restoreFileAtVersion( fileId, versionId, versionMessage );
+    } finally {
+      evict( fileId );
+    }
+  }
+
+  // ~ Delegated methods
+  // =========================================================================================================
+
+  @Override
+  public RepositoryFile getFile( final String path ) {
+    return delegatee.getFile( path );
+  }
+
+  @Override
+  public RepositoryFileTree getTree( final String path, final int depth, final String filter,
+                                     final boolean showHidden ) {
+    return delegatee.getTree( path, depth, filter, showHidden );
+  }
+
+  @Override
+  public RepositoryFileTree getTree( final RepositoryRequest repositoryRequest ) {
+    return delegatee.getTree( repositoryRequest );
+  }
+
+  @Override
+  public RepositoryFile getFileAtVersion( final Serializable fileId, final Serializable versionId ) {
+    return delegatee.getFileAtVersion( fileId, versionId );
+  }
+
+  @Override
+  public RepositoryFile getFileById( final Serializable fileId ) {
+    return delegatee.getFileById( fileId );
+  }
+
+  @Override
+  public RepositoryFile getFile( final String path, final boolean loadLocaleMaps ) {
+    return delegatee.getFile( path, loadLocaleMaps );
+  }
+
+  @Override
+  public RepositoryFile getFileById( final Serializable fileId, final boolean loadLocaleMaps ) {
+    return delegatee.getFileById( fileId, loadLocaleMaps );
+  }
+
+  @Override
+  public RepositoryFile getFile( final String path, final IPentahoLocale locale ) {
+    return delegatee.getFile( path, locale );
+  }
+
+  @Override
+  public RepositoryFile getFileById( final Serializable fileId, final IPentahoLocale locale ) {
+    return delegatee.getFileById( fileId, locale );
+  }
+
+  @Override
+  public RepositoryFile getFile( final String path, final boolean loadLocaleMaps, final IPentahoLocale locale ) {
+    return delegatee.getFile( path, loadLocaleMaps, locale );
+  }
+
+  @Override
+  public RepositoryFile getFileById( final Serializable fileId, final boolean loadLocaleMaps,
+                                     final IPentahoLocale locale ) {
+    return delegatee.getFileById( fileId, loadLocaleMaps, locale );
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> T getDataAtVersionForRead( final Serializable fileId,
+                                                                   final Serializable versionId,
+                                                                   final Class<T> dataClass ) {
+    return delegatee.getDataAtVersionForRead( fileId, versionId, dataClass );
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> T getDataAtVersionForExecute( final Serializable fileId,
+                                                                      final Serializable versionId,
+                                                                      final Class<T> dataClass ) {
+    return delegatee.getDataAtVersionForExecute( fileId, versionId, dataClass );
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> List<T> getDataForReadInBatch( final List<RepositoryFile> files,
+                                                                       final Class<T> dataClass ) {
+    return delegatee.getDataForReadInBatch( files, dataClass );
+  }
+
+  @Override
+  public <T extends IRepositoryFileData> List<T> getDataForExecuteInBatch( final List<RepositoryFile> files,
+                                                                          final Class<T> dataClass ) {
+    return delegatee.getDataForExecuteInBatch( files, dataClass );
+  }
+
+  @Override
+  public RepositoryFile createFile( final Serializable parentFolderId, final RepositoryFile file,
+                                    final IRepositoryFileData data, final String versionMessage ) {
+    return delegatee.createFile( parentFolderId, file, data, versionMessage );
+  }
+
+  @Override
+  public RepositoryFile createFile( final Serializable parentFolderId, final RepositoryFile file,
+                                    final IRepositoryFileData data, final RepositoryFileAcl acl,
+                                    final String versionMessage ) {
+    return delegatee.createFile( parentFolderId, file, data, acl, versionMessage );
+  }
+
+  @Override
+  public RepositoryFile createFolder( final Serializable parentFolderId, final RepositoryFile file,
+                                      final String versionMessage ) {
+    return delegatee.createFolder( parentFolderId, file, versionMessage );
+  }
+
+  @Override
+  public RepositoryFile createFolder( final Serializable parentFolderId, final RepositoryFile file,
+                                      final RepositoryFileAcl acl, final String versionMessage ) {
+    return delegatee.createFolder( parentFolderId, file, acl, versionMessage );
+  }
+
+  @Override
+  public RepositoryFile updateFolder( final RepositoryFile folder, final String versionMessage ) {
+    return delegatee.updateFolder( folder, versionMessage );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildren( final Serializable folderId ) {
+    return delegatee.getChildren( folderId );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildren( final Serializable folderId, final String filter ) {
+    return delegatee.getChildren( folderId, filter );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildren( final Serializable folderId, final String filter,
+                                           final Boolean showHiddenFiles ) {
+    return delegatee.getChildren( folderId, filter, showHiddenFiles );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildren( final RepositoryRequest repositoryRequest ) {
+    return delegatee.getChildren( repositoryRequest );
+  }
+
+  @Override
+  public void copyFile( final Serializable fileId, final String destAbsPath, final String versionMessage ) {
+    delegatee.copyFile( fileId, destAbsPath, versionMessage );
+  }
+
+  @Override
+  public List<RepositoryFile> getDeletedFiles( final String origParentFolderPath ) {
+    return delegatee.getDeletedFiles( origParentFolderPath );
+  }
+
+  @Override
+  public List<RepositoryFile> getDeletedFiles( final String origParentFolderPath, final String filter ) {
+    return delegatee.getDeletedFiles( origParentFolderPath, filter );
+  }
+
+  @Override
+  public List<RepositoryFile> getDeletedFiles() {
+    return delegatee.getDeletedFiles();
+  }
+
+  @Override
+  public List<RepositoryFile> getAllDeletedFiles() {
+    return delegatee.getAllDeletedFiles();
+  }
+
+  @Override
+  public boolean canUnlockFile( final Serializable fileId ) {
+    return delegatee.canUnlockFile( fileId );
+  }
+
+  @Override
+  public void lockFile( final Serializable fileId, final String message ) {
+    delegatee.lockFile( fileId, message );
+  }
+
+  @Override
+  public void unlockFile( final Serializable fileId ) {
+    delegatee.unlockFile( fileId );
+  }
+
+  @Override
+  public RepositoryFileAcl getAcl( final Serializable fileId ) {
+    return delegatee.getAcl( fileId );
+  }
+
+  @Override
+  public RepositoryFileAcl updateAcl( final RepositoryFileAcl acl ) {
+    return delegatee.updateAcl( acl );
+  }
+
+  @Override
+  public boolean hasAccess( final String path, final EnumSet<RepositoryFilePermission> permissions ) {
+    return delegatee.hasAccess( path, permissions );
+  }
+
+  @Override
+  public Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> paths,
+                                                                   final EnumSet<RepositoryFilePermission> permissions ) {
+    return delegatee.hasAccess( paths, permissions );
+  }
+
+  @Override
+  public List<RepositoryFileAce> getEffectiveAces( final Serializable fileId ) {
+    return delegatee.getEffectiveAces( fileId );
+  }
+
+  @Override
+  public List<RepositoryFileAce> getEffectiveAces( final Serializable fileId, final boolean forceEntriesInheriting ) {
+    return delegatee.getEffectiveAces( fileId, forceEntriesInheriting );
+  }
+
+  @Override
+  public VersionSummary getVersionSummary( final Serializable fileId, final Serializable versionId ) {
+    return delegatee.getVersionSummary( fileId, versionId );
+  }
+
+  @Override
+  public List<VersionSummary> getVersionSummaryInBatch( final List<RepositoryFile> files ) {
+    return delegatee.getVersionSummaryInBatch( files );
+  }
+
+  @Override
+  public List<VersionSummary> getVersionSummaries( final Serializable fileId ) {
+    return delegatee.getVersionSummaries( fileId );
+  }
+
+  @Override
+  public List<RepositoryFile> getReferrers( final Serializable fileId ) {
+    return delegatee.getReferrers( fileId );
+  }
+
+  @Override
+  public void setFileMetadata( final Serializable fileId, final Map<String, Serializable> metadataMap ) {
+    delegatee.setFileMetadata( fileId, metadataMap );
+  }
+
+  @Override
+  public Map<String, Serializable> getFileMetadata( final Serializable fileId ) {
+    return delegatee.getFileMetadata( fileId );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+                                                     final String value ) {
+    return delegatee.getChildrenByMetadata( folderId, metadataKey, value );
+  }
+
+  @Override
+  public List<Character> getReservedChars() {
+    return delegatee.getReservedChars();
+  }
+
+  @Override
+  public List<Locale> getAvailableLocalesForFileById( final Serializable fileId ) {
+    return delegatee.getAvailableLocalesForFileById( fileId );
+  }
+
+  @Override
+  public List<Locale> getAvailableLocalesForFileByPath( final String relPath ) {
+    return delegatee.getAvailableLocalesForFileByPath( relPath );
+  }
+
+  @Override
+  public List<Locale> getAvailableLocalesForFile( final RepositoryFile repositoryFile ) {
+    return delegatee.getAvailableLocalesForFile( repositoryFile );
+  }
+
+  @Override
+  public Properties getLocalePropertiesForFileById( final Serializable fileId, final String locale ) {
+    return delegatee.getLocalePropertiesForFileById( fileId, locale );
+  }
+
+  @Override
+  public Properties getLocalePropertiesForFileByPath( final String relPath, final String locale ) {
+    return delegatee.getLocalePropertiesForFileByPath( relPath, locale );
+  }
+
+  @Override
+  public Properties getLocalePropertiesForFile( final RepositoryFile repositoryFile, final String locale ) {
+    return delegatee.getLocalePropertiesForFile( repositoryFile, locale );
+  }
+
+  @Override
+  public void setLocalePropertiesForFileById( final Serializable fileId, final String locale,
+                                              final Properties properties ) {
+    delegatee.setLocalePropertiesForFileById( fileId, locale, properties );
+  }
+
+  @Override
+  public void setLocalePropertiesForFileByPath( final String relPath, final String locale,
+                                                final Properties properties ) {
+    delegatee.setLocalePropertiesForFileByPath( relPath, locale, properties );
+  }
+
+  @Override
+  public void setLocalePropertiesForFile( final RepositoryFile repoFile, final String locale,
+                                          final Properties properties ) {
+    delegatee.setLocalePropertiesForFile( repoFile, locale, properties );
+  }
+
+  @Override
+  public void deleteLocalePropertiesForFile( final RepositoryFile repositoryFile, final String locale ) {
+    delegatee.deleteLocalePropertiesForFile( repositoryFile, locale );
+  }
+}
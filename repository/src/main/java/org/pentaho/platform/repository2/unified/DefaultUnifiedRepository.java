@@ -95,6 +95,17 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileAclDao.hasAccess( path, permissions );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Assert.notNull( paths );
+    Assert.notEmpty( permissions );
+    return repositoryFileAclDao.hasAccess( paths, permissions );
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -542,6 +553,18 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String value ) {
+    Assert.notNull( folderId );
+    Assert.hasText( metadataKey );
+    Assert.notNull( value );
+    return repositoryFileDao.getChildrenByMetadata( folderId, metadataKey, value );
+  }
+
   public List<Character> getReservedChars() {
     return repositoryFileDao.getReservedChars();
   }
@@ -385,6 +385,15 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.hasAccess", path ) ); //$NON-NLS-1$
   }
 
+  public Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> paths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    return callLogThrow( new Callable<Map<String, EnumSet<RepositoryFilePermission>>>() {
+      public Map<String, EnumSet<RepositoryFilePermission>> call() throws Exception {
+        return delegatee.hasAccess( paths, permissions );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.hasAccessInBatch", paths.size() ) ); //$NON-NLS-1$
+  }
+
   public void lockFile( final Serializable fileId, final String message ) {
     callLogThrow( new Callable<Void>() {
       public Void call() throws Exception {
@@ -596,6 +605,16 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadata", fileId ) ); //$NON-NLS-1$
   }
 
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String value ) {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getChildrenByMetadata( folderId, metadataKey, value );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getChildrenByMetadata", folderId, metadataKey, //$NON-NLS-1$
+        value ) );
+  }
+
   public List<Character> getReservedChars() {
     return callLogThrow( new Callable<List<Character>>() {
       public List<Character> call() throws Exception {
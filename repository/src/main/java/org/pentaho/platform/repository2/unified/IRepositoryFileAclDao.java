@@ -27,7 +27,9 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 
 import java.io.Serializable;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A data access object for reading and writing {@code RepositoryFileAcl} instances. The methods in this interface
@@ -62,6 +64,31 @@ public interface IRepositoryFileAclDao {
    */
   boolean hasAccess( final String relPath, final EnumSet<RepositoryFilePermission> permissions );
 
+  /**
+   * Checks the permissions of several files at once.
+   * 
+   * @param relPaths
+   *          paths to files
+   * @param permissions
+   *          permissions to check, each one on its own
+   * @return for each path, the subset of {@code permissions} the user has; empty if the file does not exist
+   */
+  default Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> relPaths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    Map<String, EnumSet<RepositoryFilePermission>> access =
+        new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+    for ( String relPath : relPaths ) {
+      EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+      for ( RepositoryFilePermission permission : permissions ) {
+        if ( hasAccess( relPath, EnumSet.of( permission ) ) ) {
+          granted.add( permission );
+        }
+      }
+      access.put( relPath, granted );
+    }
+    return access;
+  }
+
   /**
    * Returns ACL for file.
    * 
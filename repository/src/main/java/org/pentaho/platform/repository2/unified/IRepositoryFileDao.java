@@ -21,6 +21,7 @@
 package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -124,6 +125,17 @@ public interface IRepositoryFileDao {
 
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  default List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String value ) {
+    List<RepositoryFile> matches = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile child : getChildren( folderId, null, null ) ) {
+      if ( !child.isFolder() && value.equals( getFileMetadata( child.getId() ).get( metadataKey ) ) ) {
+        matches.add( child );
+      }
+    }
+    return matches;
+  }
+
   List<Character> getReservedChars();
 
   List<Locale> getAvailableLocalesForFileById( final Serializable fileId );
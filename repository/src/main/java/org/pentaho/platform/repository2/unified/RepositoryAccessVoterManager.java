@@ -58,6 +58,13 @@ public class RepositoryAccessVoterManager implements IRepositoryAccessVoterManag
     voters.add( voter );
   }
 
+  /**
+   * @return whether any voter is registered; when none is, {@link #hasAccess} never looks at the file ACL
+   */
+  public boolean hasVoters() {
+    return voters != null && !voters.isEmpty();
+  }
+
   @Override
   public boolean hasAccess( RepositoryFile file, RepositoryFilePermission operation,
       RepositoryFileAcl repositoryFileAcl, IPentahoSession session ) {
@@ -20,6 +20,7 @@
 
 package org.pentaho.platform.repository2.unified.fileio;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.platform.api.repository2.unified.Converter;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
@@ -32,18 +33,38 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Buffers what is written and stores it in the repository on {@link #flush()} or {@link #close()}.
+ * <p/>
+ * Content is kept in memory up to a threshold (16 MB by default, see {@link #SPILL_THRESHOLD_PROPERTY}). Past it the
+ * buffered bytes are moved to a temporary file, further writes go to that file, and the repository reads the content
+ * from the file. A negative threshold keeps everything in memory.
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
+  /**
+   * System property holding the default number of bytes kept in memory before spilling to a temporary file.
+   */
+  public static final String SPILL_THRESHOLD_PROPERTY = "pentaho.repository.outputStream.spillThreshold";
+
+  static final int DEFAULT_SPILL_THRESHOLD = 16 * 1024 * 1024;
+
   private static final String TRANS_EXT = "ktr";
   private static final String JOB_EXT = "kjb";
 
@@ -57,6 +78,10 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean flushed = false;
   protected boolean forceFlush = true;
   protected ArrayList<IStreamListener> listeners = new ArrayList<>();
+  protected int spillThreshold = Integer.getInteger( SPILL_THRESHOLD_PROPERTY, DEFAULT_SPILL_THRESHOLD );
+  private File spillFile;
+  private OutputStream spillStream;
+  private long spilledBytes;
 
   public RepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
       final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
@@ -163,16 +188,23 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    byte[] data = toByteArray();
-
-    if ( !forceFlush && data.length == 0 ) {
+    if ( !forceFlush && size() == 0 ) {
       for ( IStreamListener listener : listeners ) {
         listener.streamComplete();
       }
       flushed = true;
       return;
     }
-    ByteArrayInputStream bis = new ByteArrayInputStream( data );
+    InputStream bis = getContentInputStream();
+    try {
+      store( bis );
+    } finally {
+      bis.close();
+    }
+    flushed = true;
+  }
+
+  private void store( InputStream bis ) throws IOException {
 
     // make an effort to determine the correct mime type, default to application/octet-stream
     String extension = RepositoryFilenameUtils.getExtension( path );
@@ -290,19 +322,148 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
       RepositoryFile file = repository.getFile( path );
       repository.updateFile( file, payload, "New File" ); //$NON-NLS-1$
     }
-    flushed = true;
   }
 
   @Override
   public void close() throws IOException {
     if ( !closed ) {
-      flush();
-      closed = true;
-      reset();
+      try {
+        flush();
+      } finally {
+        closed = true;
+        reset();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void write( int b ) {
+    if ( spillStream == null && count + 1 > spillThreshold && spillThreshold >= 0 ) {
+      spill();
+    }
+    if ( spillStream != null ) {
+      try {
+        spillStream.write( b );
+        spilledBytes++;
+        return;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+    super.write( b );
+  }
+
+  @Override
+  public synchronized void write( byte[] b, int off, int len ) {
+    if ( spillStream == null && (long) count + len > spillThreshold && spillThreshold >= 0 ) {
+      spill();
+    }
+    if ( spillStream != null ) {
+      try {
+        spillStream.write( b, off, len );
+        spilledBytes += len;
+        return;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+    super.write( b, off, len );
+  }
+
+  @Override
+  public synchronized int size() {
+    return (int) Math.min( Integer.MAX_VALUE, count + spilledBytes );
+  }
+
+  @Override
+  public synchronized byte[] toByteArray() {
+    if ( spillStream == null ) {
+      return super.toByteArray();
+    }
+    ByteArrayOutputStream content = new ByteArrayOutputStream( size() );
+    try {
+      writeTo( content );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    return content.toByteArray();
+  }
+
+  @Override
+  public synchronized void writeTo( OutputStream out ) throws IOException {
+    if ( spillStream == null ) {
+      super.writeTo( out );
+      return;
+    }
+    try ( InputStream in = getContentInputStream() ) {
+      IOUtils.copy( in, out );
+    }
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    discardSpillFile();
+  }
+
+  /**
+   * Sets the number of bytes kept in memory before the content is moved to a temporary file. A negative value never
+   * spills. Only affects content written afterwards.
+   */
+  public void setSpillThreshold( int spillThreshold ) {
+    this.spillThreshold = spillThreshold;
+  }
+
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * @return true if the content written so far lives in a temporary file rather than in memory
+   */
+  public synchronized boolean isSpilled() {
+    return spillStream != null;
+  }
+
+  /**
+   * Reads what has been written so far, from memory or from the spill file, without copying it into a new array.
+   */
+  protected synchronized InputStream getContentInputStream() throws IOException {
+    if ( spillStream == null ) {
+      return new ByteArrayInputStream( buf, 0, count );
+    }
+    spillStream.flush();
+    return new FileInputStream( spillFile );
+  }
+
+  private void spill() {
+    try {
+      spillFile = File.createTempFile( "repository-output", ".tmp" ); //$NON-NLS-1$ //$NON-NLS-2$
+      spillStream = new BufferedOutputStream( new FileOutputStream( spillFile ) );
+      spillStream.write( buf, 0, count );
+    } catch ( IOException e ) {
+      discardSpillFile();
+      throw new IllegalStateException( e );
+    }
+    spilledBytes = count;
+    // release the in-memory buffer, everything from here on goes to the file
+    buf = new byte[ 32 ];
+    count = 0;
+  }
+
+  private void discardSpillFile() {
+    if ( spillStream != null ) {
+      IOUtils.closeQuietly( spillStream );
+      spillStream = null;
+    }
+    if ( spillFile != null ) {
+      spillFile.delete();
+      spillFile = null;
     }
+    spilledBytes = 0;
   }
 
-  IRepositoryFileData convert( Converter converter, ByteArrayInputStream bis, String mimeType ) {
+  IRepositoryFileData convert( Converter converter, InputStream bis, String mimeType ) {
     final IRepositoryFileData payload;
     if ( converter != null ) {
       payload = converter.convert( bis, charsetName, mimeType );
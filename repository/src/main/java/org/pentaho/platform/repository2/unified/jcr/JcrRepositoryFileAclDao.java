@@ -54,8 +54,13 @@ import java.security.Principal;
 import java.security.acl.Group;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Jackrabbit-based implementation of {@link IRepositoryFileAclDao}.
@@ -197,6 +202,66 @@ public class JcrRepositoryFileAclDao implements IRepositoryFileAclDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * All paths are checked in one session, so the access control entries Jackrabbit compiles for a folder are reused
+   * for all of its children, and the privileges of each path are read once for all permissions.
+   */
+  @SuppressWarnings( "unchecked" )
+  public Map<String, EnumSet<RepositoryFilePermission>> hasAccess( final List<String> relPaths,
+      final EnumSet<RepositoryFilePermission> permissions ) {
+    return (Map<String, EnumSet<RepositoryFilePermission>>) jcrTemplate.execute( new JcrCallback() {
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        DefaultPermissionConversionHelper permissionConversionHelper = new DefaultPermissionConversionHelper( session );
+        Map<RepositoryFilePermission, Set<String>> requiredPrivileges =
+            new EnumMap<RepositoryFilePermission, Set<String>>( RepositoryFilePermission.class );
+        for ( RepositoryFilePermission permission : permissions ) {
+          requiredPrivileges.put( permission, getPrivilegeNames( permissionConversionHelper
+              .pentahoPermissionsToPrivileges( session, EnumSet.of( permission ) ) ) );
+        }
+        AccessControlManager acMgr = session.getAccessControlManager();
+        Map<String, EnumSet<RepositoryFilePermission>> access =
+            new LinkedHashMap<String, EnumSet<RepositoryFilePermission>>();
+        for ( String relPath : relPaths ) {
+          EnumSet<RepositoryFilePermission> granted = EnumSet.noneOf( RepositoryFilePermission.class );
+          try {
+            String absPath = pathConversionHelper.relToAbs( relPath );
+            Set<String> privileges = getPrivilegeNames( acMgr.getPrivileges( JcrStringHelper.pathEncode( absPath ) ) );
+            for ( Map.Entry<RepositoryFilePermission, Set<String>> required : requiredPrivileges.entrySet() ) {
+              if ( privileges.containsAll( required.getValue() ) ) {
+                granted.add( required.getKey() );
+              }
+            }
+          } catch ( PathNotFoundException e ) {
+            // never throw an exception if the path does not exist; just grant nothing
+          }
+          access.put( relPath, granted );
+        }
+        return access;
+      }
+    } );
+  }
+
+  /**
+   * @return the names of the non aggregate privileges in {@code privileges}, with aggregates expanded
+   */
+  private static Set<String> getPrivilegeNames( final Privilege[] privileges ) {
+    Set<String> names = new HashSet<String>();
+    for ( Privilege privilege : privileges ) {
+      if ( privilege.isAggregate() ) {
+        for ( Privilege aggregated : privilege.getAggregatePrivileges() ) {
+          if ( !aggregated.isAggregate() ) {
+            names.add( aggregated.getName() );
+          }
+        }
+      } else {
+        names.add( privilege.getName() );
+      }
+    }
+    return names;
+  }
+
   private RepositoryFileAcl toAcl( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Serializable id ) throws RepositoryException {
 
@@ -34,6 +34,7 @@ import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileAclDao.IPer
 import org.pentaho.platform.repository2.unified.jcr.jackrabbit.security.SpringSecurityRolePrincipal;
 import org.pentaho.platform.repository2.unified.jcr.jackrabbit.security.SpringSecurityUserPrincipal;
 
+import javax.jcr.AccessDeniedException;
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -51,7 +52,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -173,6 +176,75 @@ public class JcrRepositoryFileAclUtils {
     return internalUpdateAcl( session, pentahoJcrConstants, fileId, acl );
   }
 
+  /**
+   * Resolves the ACLs of a batch of sibling nodes sharing a single {@link AccessControlManager}. Nodes whose ACL the
+   * current session is not allowed to read are left out of the result rather than failing the whole batch.
+   *
+   * @return ACLs keyed by node identifier, in the order of {@code nodes}
+   */
+  public static Map<String, RepositoryFileAcl> getAcls( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final List<Node> nodes ) throws RepositoryException {
+    Map<String, RepositoryFileAcl> acls = new LinkedHashMap<String, RepositoryFileAcl>( nodes.size() * 2 );
+    if ( nodes.isEmpty() ) {
+      return acls;
+    }
+    AccessControlManager acMgr = session.getAccessControlManager();
+    for ( Node node : nodes ) {
+      String id = node.getIdentifier();
+      try {
+        acls.put( id, getAcl( session, acMgr, id, node.getPath() ) );
+      } catch ( AccessDeniedException e ) {
+        // not readable by this session; the caller treats the node as pruned
+      }
+    }
+    return acls;
+  }
+
+  /**
+   * Returns the identifiers of the nodes in the batch whose ACL the current session may read, without building the
+   * ACLs themselves. Used by callers that only need the read-access-control check and not the entries.
+   */
+  public static Set<String> getAclReadableIds( final Session session, final List<Node> nodes )
+    throws RepositoryException {
+    Set<String> ids = new HashSet<String>( nodes.size() * 2 );
+    if ( nodes.isEmpty() ) {
+      return ids;
+    }
+    AccessControlManager acMgr = session.getAccessControlManager();
+    Privilege[] readAccessControl = new Privilege[] { acMgr.privilegeFromName( Privilege.JCR_READ_ACCESS_CONTROL ) };
+    for ( Node node : nodes ) {
+      if ( acMgr.hasPrivileges( node.getPath(), readAccessControl ) ) {
+        ids.add( node.getIdentifier() );
+      }
+    }
+    return ids;
+  }
+
+  private static RepositoryFileAcl getAcl( final Session session, final AccessControlManager acMgr,
+      final Serializable id, final String absPath ) throws RepositoryException {
+    AccessControlList acList = getAccessControlList( acMgr, absPath );
+
+    RepositoryFileSid owner = null;
+    String ownerString = JcrTenantUtils.getUserNameUtils().getPrincipleName( getOwner( session, absPath, acList ) );
+
+    if ( ownerString != null ) {
+      // for now, just assume all owners are users; only has UI impact
+      owner = new RepositoryFileSid( ownerString, RepositoryFileSid.Type.USER );
+    }
+
+    RepositoryFileAcl.Builder aclBuilder = new RepositoryFileAcl.Builder( id, owner );
+
+    aclBuilder.entriesInheriting( isEntriesInheriting( session, absPath, acList ) );
+
+    List<AccessControlEntry> cleanedAcEntries =
+        JcrRepositoryFileAclUtils.removeAclMetadata( Arrays.asList( acList.getAccessControlEntries() ) );
+
+    for ( AccessControlEntry acEntry : cleanedAcEntries ) {
+      aclBuilder.ace( toAce( session, acEntry ) );
+    }
+    return aclBuilder.build();
+  }
+
   public static void
   addPermission( final Session session, final PentahoJcrConstants pentahoJcrConstants,
                    final Serializable fileId,
@@ -265,30 +337,7 @@ public class JcrRepositoryFileAclUtils {
       throw new RepositoryException( Messages.getInstance().getString(
           "JackrabbitRepositoryFileAclDao.ERROR_0001_NODE_NOT_FOUND", id.toString() ) ); //$NON-NLS-1$
     }
-    String absPath = node.getPath();
-    AccessControlManager acMgr = session.getAccessControlManager();
-    AccessControlList acList = getAccessControlList( acMgr, absPath );
-
-    RepositoryFileSid owner = null;
-    String ownerString = JcrTenantUtils.getUserNameUtils().getPrincipleName( getOwner( session, absPath, acList ) );
-
-    if ( ownerString != null ) {
-      // for now, just assume all owners are users; only has UI impact
-      owner = new RepositoryFileSid( ownerString, RepositoryFileSid.Type.USER );
-    }
-
-    RepositoryFileAcl.Builder aclBuilder = new RepositoryFileAcl.Builder( id, owner );
-
-    aclBuilder.entriesInheriting( isEntriesInheriting( session, absPath, acList ) );
-
-    List<AccessControlEntry> cleanedAcEntries =
-        JcrRepositoryFileAclUtils.removeAclMetadata( Arrays.asList( acList.getAccessControlEntries() ) );
-
-    for ( AccessControlEntry acEntry : cleanedAcEntries ) {
-      aclBuilder.ace( toAce( session, acEntry ) );
-    }
-    return aclBuilder.build();
-
+    return getAcl( session, session.getAccessControlManager(), id, node.getPath() );
   }
 
   private static AccessControlList getAccessControlList( final AccessControlManager acMgr, final String path )
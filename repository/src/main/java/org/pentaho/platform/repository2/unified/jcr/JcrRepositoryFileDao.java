@@ -1163,6 +1163,24 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String value ) {
+    Assert.notNull( folderId );
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        return JcrRepositoryFileUtils.getChildrenByMetadata( session, pentahoJcrConstants, pathConversionHelper,
+            lockHelper, folderId, metadataKey, value );
+      }
+    } );
+  }
+
   @Override
   public List<Character> getReservedChars() {
     return JcrRepositoryFileUtils.getReservedChars();
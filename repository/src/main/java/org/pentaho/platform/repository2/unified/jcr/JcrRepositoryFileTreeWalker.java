@@ -0,0 +1,225 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang.mutable.MutableBoolean;
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.util.ChildrenCollectorFilter;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManager;
+
+/**
+ * Builds a {@link RepositoryFileTree} in a single pass over each folder. It produces the same tree as the recursive
+ * {@link JcrRepositoryFileUtils#getTreeRecursive} but
+ * <ul>
+ * <li>iterates the children of a folder once, matching the child node filter in memory instead of asking JCR for a
+ * filtered and an unfiltered child list;</li>
+ * <li>resolves the ACLs of all candidate children of a folder in one batch, and only resolves the read-access-control
+ * privilege when no access voter will look at the ACL entries;</li>
+ * <li>drops unsupported and unreadable children before any {@link RepositoryFile} is built for them.</li>
+ * </ul>
+ * Instances are bound to one session and one request and are not thread safe.
+ */
+public class JcrRepositoryFileTreeWalker {
+
+  private final Session session;
+
+  private final PentahoJcrConstants pentahoJcrConstants;
+
+  private final IPathConversionHelper pathConversionHelper;
+
+  private final ILockHelper lockHelper;
+
+  private final IRepositoryAccessVoterManager accessVoterManager;
+
+  private final IPentahoSession pentahoSession;
+
+  private final String childNodeFilter;
+
+  private final boolean filterActive;
+
+  private final boolean showHidden;
+
+  private final RepositoryRequest.FILES_TYPE_FILTER types;
+
+  private final boolean includeSystemFolders;
+
+  private final boolean aclRequired;
+
+  public JcrRepositoryFileTreeWalker( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper,
+      final RepositoryRequest repositoryRequest, final IRepositoryAccessVoterManager accessVoterManager ) {
+    this.session = session;
+    this.pentahoJcrConstants = pentahoJcrConstants;
+    this.pathConversionHelper = pathConversionHelper;
+    this.lockHelper = lockHelper;
+    this.accessVoterManager = accessVoterManager;
+    this.pentahoSession = PentahoSessionHolder.getSession();
+    this.childNodeFilter = repositoryRequest.getChildNodeFilter();
+    this.filterActive = childNodeFilter != null && !childNodeFilter.equals( "*" ); //$NON-NLS-1$
+    this.showHidden = repositoryRequest.isShowHidden();
+    this.types = repositoryRequest.getTypes();
+    this.includeSystemFolders = repositoryRequest.isIncludeSystemFolders();
+    this.aclRequired = !( accessVoterManager instanceof RepositoryAccessVoterManager )
+        || ( (RepositoryAccessVoterManager) accessVoterManager ).hasVoters();
+  }
+
+  /**
+   * Walks the tree below {@code rootNode} down to {@code depth} levels (negative for unlimited).
+   *
+   * @return the tree, or {@code null} if the root itself is hidden, an ACL node or not readable
+   */
+  public RepositoryFileTree walk( final Node rootNode, final int depth ) throws RepositoryException {
+    RepositoryFile rootFile =
+        JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, rootNode,
+            false, null );
+    if ( !isVisible( rootFile ) || !accessVoterManager.hasAccess( rootFile, RepositoryFilePermission.READ,
+        JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, rootFile.getId() ), pentahoSession ) ) {
+      return null;
+    }
+    return walk( rootNode, rootFile, depth, true, new MutableBoolean( false ) );
+  }
+
+  private RepositoryFileTree walk( final Node node, final RepositoryFile file, final int depth,
+      final boolean treeRoot, final MutableBoolean foundFiltered ) throws RepositoryException {
+    if ( depth == 0 ) {
+      return new RepositoryFileTree( file, null );
+    }
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    if ( !file.isFolder() ) {
+      // files never hold pentaho hierarchy nodes, so there is nothing to descend into
+      return new RepositoryFileTree( file, children );
+    }
+
+    List<Node> candidates = new ArrayList<Node>();
+    List<Boolean> candidateMatched = new ArrayList<Boolean>();
+    collectCandidates( node, treeRoot, candidates, candidateMatched, foundFiltered );
+    if ( candidates.isEmpty() ) {
+      return new RepositoryFileTree( file, children );
+    }
+
+    Map<String, RepositoryFileAcl> acls = null;
+    Set<String> aclReadableIds = null;
+    if ( aclRequired ) {
+      acls = JcrRepositoryFileAclUtils.getAcls( session, pentahoJcrConstants, candidates );
+    } else {
+      aclReadableIds = JcrRepositoryFileAclUtils.getAclReadableIds( session, candidates );
+    }
+
+    for ( int i = 0; i < candidates.size(); i++ ) {
+      Node childNode = candidates.get( i );
+      String childId = childNode.getIdentifier();
+      RepositoryFileAcl childAcl = null;
+      if ( aclRequired ) {
+        childAcl = acls.get( childId );
+        if ( childAcl == null ) {
+          continue;
+        }
+      } else if ( !aclReadableIds.contains( childId ) ) {
+        continue;
+      }
+
+      RepositoryFile childFile =
+          JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+              childNode, false, null );
+      if ( !isVisible( childFile ) || !accessVoterManager.hasAccess( childFile, RepositoryFilePermission.READ,
+          childAcl, pentahoSession ) ) {
+        continue;
+      }
+
+      MutableBoolean foundBelow = new MutableBoolean( !childFile.isFolder() );
+      RepositoryFileTree childTree = walk( childNode, childFile, depth - 1, false, foundBelow );
+      if ( foundBelow.booleanValue() || candidateMatched.get( i ) ) {
+        foundFiltered.setValue( true );
+        children.add( childTree );
+      }
+    }
+    Collections.sort( children );
+    return new RepositoryFileTree( file, children );
+  }
+
+  /**
+   * Single pass over the children of {@code folderNode}. A child becomes a candidate when it matches the child node
+   * filter and the type filter, or, with an active filter, when it is a folder that may contain matching files further
+   * down.
+   */
+  private void collectCandidates( final Node folderNode, final boolean treeRoot, final List<Node> candidates,
+      final List<Boolean> candidateMatched, final MutableBoolean foundFiltered ) throws RepositoryException {
+    NodeIterator childNodes = folderNode.getNodes();
+    while ( childNodes.hasNext() ) {
+      Node childNode = childNodes.nextNode();
+      if ( !JcrRepositoryFileUtils.isSupportedNodeType( pentahoJcrConstants, childNode ) ) {
+        continue;
+      }
+      boolean pentahoFolder = JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode );
+      boolean matched = matchesFilter( childNode ) && matchesType( pentahoFolder )
+          && !( pentahoFolder && treeRoot && !includeSystemFolders && isSystemFolder( childNode ) );
+      if ( matched ) {
+        foundFiltered.setValue( true );
+        candidates.add( childNode );
+        candidateMatched.add( Boolean.TRUE );
+      } else if ( filterActive && pentahoFolder ) {
+        candidates.add( childNode );
+        candidateMatched.add( Boolean.FALSE );
+      }
+    }
+  }
+
+  private boolean matchesFilter( final Node childNode ) throws RepositoryException {
+    return !filterActive || ChildrenCollectorFilter.matches( childNode.getName(), childNodeFilter );
+  }
+
+  private boolean matchesType( final boolean pentahoFolder ) {
+    return !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS
+        || pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FILES );
+  }
+
+  private boolean isVisible( final RepositoryFile file ) {
+    return ( showHidden || !file.isHidden() ) && !file.isAclNode();
+  }
+
+  private boolean isSystemFolder( final Node childNode ) throws RepositoryException {
+    Map<String, Serializable> fileMeta =
+        JcrRepositoryFileUtils.getFileMetadata( session, ( (NodeImpl) childNode ).getNodeId() );
+    return fileMeta.containsKey( IUnifiedRepository.SYSTEM_FOLDER )
+        ? (Boolean) fileMeta.get( IUnifiedRepository.SYSTEM_FOLDER ) : false;
+  }
+}
@@ -48,6 +48,12 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.lock.Lock;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
@@ -105,6 +111,11 @@ public class JcrRepositoryFileUtils {
 
   private static IRepositoryVersionManager repositoryVersionManager = null;
 
+  /**
+   * System property that switches {@link #getTree} back to the recursive traversal.
+   */
+  public static final String LEGACY_TREE_TRAVERSAL_PROPERTY = "pentaho.repository.server.legacyTreeTraversal"; //$NON-NLS-1$
+
   /**
    * Try to get parameters from PentahoSystem, otherwise use default
    */
@@ -1133,11 +1144,39 @@ public class JcrRepositoryFileUtils {
     return toVersionSummary( pentahoJcrConstants, versionHistory, version );
   }
 
+  /**
+   * Returns the tree rooted at {@code absPath}. The tree is built by {@link JcrRepositoryFileTreeWalker} unless the
+   * {@value #LEGACY_TREE_TRAVERSAL_PROPERTY} system property is set to {@code true}, in which case the recursive
+   * traversal of {@link #getTreeRecursive} is used.
+   */
   public static RepositoryFileTree getTree( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final String absPath,
       final RepositoryRequest repositoryRequest, IRepositoryAccessVoterManager accessVoterManager )
     throws RepositoryException {
 
+    if ( Boolean.getBoolean( LEGACY_TREE_TRAVERSAL_PROPERTY ) ) {
+      return getTreeRecursive( session, pentahoJcrConstants, pathConversionHelper, lockHelper, absPath,
+          repositoryRequest, accessVoterManager );
+    }
+
+    Item fileItem = session.getItem( JcrStringHelper.pathEncode( absPath ) );
+    // items are nodes or properties; this must be a node
+    Assert.isTrue( fileItem.isNode() );
+    Node fileNode = (Node) fileItem;
+
+    return new JcrRepositoryFileTreeWalker( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+        repositoryRequest, accessVoterManager ).walk( fileNode, repositoryRequest.getDepth() );
+  }
+
+  /**
+   * Returns the tree rooted at {@code absPath} using the original recursive traversal, which lists the children of
+   * each folder twice when a child node filter is set and resolves the ACL of each node on its own.
+   */
+  public static RepositoryFileTree getTreeRecursive( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final String absPath, final RepositoryRequest repositoryRequest,
+      IRepositoryAccessVoterManager accessVoterManager ) throws RepositoryException {
+
     Item fileItem = session.getItem( JcrStringHelper.pathEncode( absPath ) );
     // items are nodes or properties; this must be a node
     Assert.isTrue( fileItem.isNode() );
@@ -1446,6 +1485,54 @@ public class JcrRepositoryFileUtils {
     return values;
   }
 
+  /**
+   * Finds the files directly inside a folder whose metadata item {@code metadataKey} equals {@code value}. Instead
+   * of reading the metadata node of every child, the metadata nodes below the folder are looked up with a single
+   * query, which the workspace search index (updated on every save) answers.
+   */
+  public static List<RepositoryFile> getChildrenByMetadata( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final Serializable folderId, final String metadataKey, final String value )
+    throws RepositoryException {
+    checkName( metadataKey );
+    Node folderNode = session.getNodeByIdentifier( folderId.toString() );
+    Assert.isTrue( isPentahoFolder( pentahoJcrConstants, folderNode ) );
+    String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS );
+    String metadataNodeName = pentahoJcrConstants.getPHO_METADATA();
+
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( "nt:base", selectorName ); //$NON-NLS-1$
+    Constraint metadataConstraint =
+        fac.comparison( fac.propertyValue( selectorName, prefix + ":" + metadataKey ), //$NON-NLS-1$
+            QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, fac.literal( session.getValueFactory().createValue(
+                value ) ) );
+    Constraint descendantNodeConstraint = fac.descendantNode( selectorName, folderNode.getPath() );
+    Query query = fac.createQuery( selector, fac.and( descendantNodeConstraint, metadataConstraint ), null, null );
+    QueryResult result =
+        session.getWorkspace().getQueryManager().createQuery( query.getStatement(), Query.JCR_JQOM ).execute();
+
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    NodeIterator nodeIterator = result.getNodes();
+    while ( nodeIterator.hasNext() ) {
+      Node metadataNode = nodeIterator.nextNode();
+      if ( !metadataNodeName.equals( metadataNode.getName() ) ) {
+        continue;
+      }
+      // only direct children of the folder, not files in its subfolders
+      Node fileNode = metadataNode.getParent();
+      if ( !folderNode.isSame( fileNode.getParent() ) || !isPentahoFile( pentahoJcrConstants, fileNode ) ) {
+        continue;
+      }
+      RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode );
+      if ( file != null && !file.isFolder() && !file.isAclNode() && !file.isHidden() ) {
+        children.add( file );
+      }
+    }
+    Collections.sort( children );
+    return children;
+  }
+
   /**
    * Use override list from PentahoSystem if it exists
    * 
@@ -14,35 +14,28 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2020 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.repository2.unified.jcr.sejcr;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import org.apache.jackrabbit.core.SessionImpl;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.extensions.jcr.SessionFactoryUtils;
 
 import javax.jcr.Credentials;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
-import javax.jcr.SimpleCredentials;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Properties;
 
 /**
- * JCR Session Factory which caches Sessions by Credentials per Thread. The size of the cache and TTL of the entries can
- * be configured with repository.spring.properties
+ * JCR Session Factory which pools Sessions by user. A Session is checked out of the pool for as long as it is used by a
+ * {@link PentahoJcrTemplate}, and can be checked out by any thread once returned. The number of idle Sessions kept per
+ * user and overall, and how long they are kept, can be configured with repository.spring.properties
  * <p>
  * Created by nbaker on 6/9/14.
  */
@@ -51,13 +44,20 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
 
   static final String USAGE_COUNT = "usage_count"; // attribute key for tracking session usages
 
-  private CredentialsStrategySessionFactory credentialsStrategySessionFactory;
   private int cacheDuration = 300;
   private int cacheSize = 100;
+  private int cacheSizePerUser = 10;
 
   private Logger logger = LoggerFactory.getLogger( getClass() );
   private PentahoTransactionManager transactionManager;
 
+  /**
+   * Sessions by user, thread independent. Sessions from the pool will have a "usage_count" attribute set to track if
+   * still in use, and are returned to the pool once it drops back to zero. See
+   * {@link PentahoJcrTemplate#execute(org.springframework.extensions.jcr.JcrCallback, boolean)}
+   */
+  private final JcrSessionPool sessionPool;
+
 
   public GuavaCachePoolPentahoJcrSessionFactory( Repository repository, String workspace ) {
     this( repository, workspace, null );
@@ -71,102 +71,37 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
     ISystemConfig systemConfig = PentahoSystem.get( ISystemConfig.class );
     if ( systemConfig != null && systemConfig.getConfiguration( "repository" ) != null ) {
       try {
-        this.cacheDuration =
-          Integer.parseInt( systemConfig.getConfiguration( "repository" ).getProperties().getProperty(
-            "cache-ttl", "300" ) );
-
-
-        this.cacheSize =
-          Integer.parseInt( systemConfig.getConfiguration( "repository" ).getProperties().getProperty(
-            "cache-size", "100" ) );
+        Properties properties = systemConfig.getConfiguration( "repository" ).getProperties();
+        this.cacheDuration = Integer.parseInt( properties.getProperty( "cache-ttl", "300" ) );
+        this.cacheSize = Integer.parseInt( properties.getProperty( "cache-size", "100" ) );
+        this.cacheSizePerUser = Integer.parseInt( properties.getProperty( "cache-size-per-user", "10" ) );
       } catch ( IOException e ) {
         logger.info( "Could not find repository.cache-duration" );
       }
     }
-  }
-
-  /**
-   * Session cache by credentials, partitioned by thread. Two threads obtaining sessions for the same credentials cannot
-   * use the same Session.
-   * <p>
-   * Sessions from the cache will have a "usage_count" attribute set to track if still in use, to verify they can be
-   * safely logged out on eviction. See
-   * {@link PentahoJcrTemplate#execute(org.springframework.extensions.jcr.JcrCallback,
-   * boolean)}
-   */
-  private LoadingCache<CacheKey, Session> sessionCache =
-    CacheBuilder.newBuilder()
-      .expireAfterAccess( cacheDuration, TimeUnit.SECONDS )
-      .maximumSize( cacheSize )
-      .removalListener( (RemovalListener<CacheKey, Session>) objectObjectRemovalNotification -> {
-        Session session = objectObjectRemovalNotification.getValue();
-        if ( sessionIsUnused( session ) ) {
-          logger.debug( "Logging out cached session after eviction " + session );
-          session.logout();
-        } else {
-          logger.warn( "Session has expired from cache, but still marked as in use.  May be orphaned.  " + session );
-        }
-      } ).recordStats()
-      .build( new CacheLoader<CacheKey, Session>() {
-        @Override public Session load( CacheKey credKey ) throws Exception {
-          Session session = GuavaCachePoolPentahoJcrSessionFactory.super.getSession( credKey.creds );
-          if ( session instanceof SessionImpl ) {
-            ( (SessionImpl) session ).setAttribute( USAGE_COUNT, new AtomicInteger( 0 ) );
-          } else {
-            logger.warn( "Expected a Jackrabbit SessionImpl.  Will not be tracking usage." );
-          }
-          return session;
-        }
-      } );
-
-  private boolean sessionIsUnused( Session session ) {
-    return session.getAttribute( USAGE_COUNT ) instanceof AtomicInteger
-      && ( (AtomicInteger) session.getAttribute( USAGE_COUNT ) ).get() == 0;
+    sessionPool =
+      new JcrSessionPool( super::getSession, cacheSizePerUser, cacheSize, cacheDuration * 1000L );
   }
 
   @Override public Session getSession( Credentials creds ) throws RepositoryException {
 
 
-    // Aquire from cache
+    // Aquire from pool
     Session session;
 
     if ( transactionManager == null || !transactionManager.isCreatingTransaction() ) {
       if ( logger.isDebugEnabled() ) {
-        logger.debug( "Thread is not transacted, checking cache for session: " + creds );
+        logger.debug( "Thread is not transacted, checking pool for session: " + creds );
       }
       try {
-        CacheKey key = new CacheKey( creds );
-        // find or create
-        session = sessionCache.get( key );
-        if ( !session.isLive() ) {
-          if ( logger.isDebugEnabled() ) {
-            logger.debug( "Cached session is not longer alive. disposing: " + creds );
-          }
-          sessionCache.invalidate( key );
-          session = sessionCache.get( key );
-        }
-
-        if ( SessionFactoryUtils.isSessionThreadBound( session, credentialsStrategySessionFactory ) ) {
-          if ( logger.isDebugEnabled() ) {
-            logger.debug(
-              "Session is bound to a transaction. This should never happen, ignoring this session and creating a new "
-                +
-                "session: "
-                + creds );
-          }
-          sessionCache.invalidate( key );
-          session = sessionCache.get( key );
-        }
-
-        session.refresh( false );
-
+        session = sessionPool.acquire( creds );
       } catch ( Exception e ) {
-        logger.error( "Error obtaining session from cache. Creating one directly instead: " + creds, e );
+        logger.error( "Error obtaining session from pool. Creating one directly instead: " + creds, e );
         session = super.getSession( creds );
       }
     } else {
       if ( logger.isDebugEnabled() ) {
-        logger.debug( "Thread is transacted, obtaining session directly, not cached: " + creds );
+        logger.debug( "Thread is transacted, obtaining session directly, not pooled: " + creds );
       }
       session = super.getSession( creds );
     }
@@ -174,44 +109,46 @@ class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFac
   }
 
   /**
-   * Used by the sessionCache as a key for Jcr Sessions.
+   * @return the number of sessions checked out of the pool
    */
-  private class CacheKey {
-    SimpleCredentials creds;
-    Long threadId;
+  public long getAcquireCount() {
+    return sessionPool.getAcquireCount();
+  }
 
-    private CacheKey( Credentials creds ) {
-      this.creds = (SimpleCredentials) creds;
-      this.threadId = Thread.currentThread().getId();
-    }
+  /**
+   * @return the average time in milliseconds it took to check out a session
+   */
+  public double getAverageAcquireMillis() {
+    return sessionPool.getAverageAcquireMillis();
+  }
 
-    @Override
-    public boolean equals( Object o ) {
-      if ( this == o ) {
-        return true;
-      }
-      if ( o == null || getClass() != o.getClass() ) {
-        return false;
-      }
+  /**
+   * @return the number of sessions logged in, as the pool held no idle session for the user
+   */
+  public long getLoginCount() {
+    return sessionPool.getLoginCount();
+  }
 
-      CacheKey cacheKey = (CacheKey) o;
+  /**
+   * @return the number of idle sessions refreshed on checkout, after the workspace changed
+   */
+  public long getRefreshCount() {
+    return sessionPool.getRefreshCount();
+  }
 
-      if ( creds != null ? !creds.getUserID().equals( cacheKey.creds.getUserID() ) : cacheKey.creds != null ) {
-        return false;
-      }
-      if ( threadId != null ? !threadId.equals( cacheKey.threadId ) : cacheKey.threadId != null ) {
-        return false;
-      }
+  /**
+   * @return the number of idle sessions logged out as a cap or the idle timeout was reached
+   */
+  public long getEvictionCount() {
+    return sessionPool.getEvictionCount();
+  }
 
-      return true;
-    }
+  public int getIdleSessionCount() {
+    return sessionPool.getIdleCount();
+  }
 
-    @Override
-    public int hashCode() {
-      int result = creds != null ? creds.getUserID().hashCode() : 0;
-      result = 31 * result + ( threadId != null ? threadId.hashCode() : 0 );
-      return result;
-    }
+  public int getCheckedOutSessionCount() {
+    return sessionPool.getCheckedOutCount();
   }
 
 }
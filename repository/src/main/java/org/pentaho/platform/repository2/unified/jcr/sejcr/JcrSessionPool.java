@@ -0,0 +1,392 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.pentaho.platform.repository2.unified.jcr.sejcr.GuavaCachePoolPentahoJcrSessionFactory.USAGE_COUNT;
+
+/**
+ * Pool of JCR sessions keyed by user. {@link #acquire(Credentials)} checks a session out of the idle sessions of the
+ * user, or logs in a new one, and {@link PooledSession#release()} puts it back, from whichever thread. While checked
+ * out, a session stays bound to the thread that acquired it, so that nested acquires on that thread for the same user
+ * share it, as they would share a thread bound session.
+ * <p>
+ * Idle sessions are capped per user and overall. Once a cap is reached the least recently used idle session is logged
+ * out, as is any idle session unused for longer than the idle timeout. Checked out sessions are not capped, as waiting
+ * for one could dead lock callers already holding another.
+ * <p>
+ * Each session listens for changes to the workspace, and is only refreshed when checked out after such a change or
+ * while still holding unsaved changes.
+ */
+class JcrSessionPool {
+
+  static final String POOLED_SESSION = "pooled_session"; // attribute key of the pool entry of a session
+
+  private static final int CHANGE_EVENTS = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+    | Event.PROPERTY_ADDED | Event.PROPERTY_REMOVED | Event.PROPERTY_CHANGED;
+
+  private static final Logger logger = LoggerFactory.getLogger( JcrSessionPool.class );
+
+  /**
+   * Logs in a new session for the given credentials.
+   */
+  interface Login {
+    Session login( Credentials credentials ) throws RepositoryException;
+  }
+
+  /**
+   * A session of the pool, set as the {@link #POOLED_SESSION} attribute of the session.
+   */
+  final class PooledSession implements EventListener {
+    private final String userId;
+
+    private final Session session;
+
+    private volatile boolean workspaceChanged;
+
+    private boolean observed;
+
+    private String boundTo;
+
+    private long lastUsed;
+
+    private PooledSession( String userId, Session session ) {
+      this.userId = userId;
+      this.session = session;
+    }
+
+    Session getSession() {
+      return session;
+    }
+
+    /**
+     * Returns the session to the idle sessions of its user.
+     */
+    void release() {
+      JcrSessionPool.this.release( this );
+    }
+
+    @Override
+    public void onEvent( EventIterator events ) {
+      workspaceChanged = true;
+    }
+
+    private boolean needsRefresh() throws RepositoryException {
+      return !observed || workspaceChanged || session.hasPendingChanges();
+    }
+
+    private void refresh() throws RepositoryException {
+      workspaceChanged = false;
+      session.refresh( false );
+    }
+  }
+
+  private final Login login;
+
+  private final int maxIdlePerUser;
+
+  private final int maxIdle;
+
+  private final long idleTimeoutMillis;
+
+  private final Map<String, Deque<PooledSession>> idleByUser = new HashMap<>();
+
+  /**
+   * All idle sessions, least recently released first
+   */
+  private final LinkedHashSet<PooledSession> idle = new LinkedHashSet<>();
+
+  /**
+   * Checked out sessions by thread and user
+   */
+  private final Map<String, PooledSession> checkedOut = new HashMap<>();
+
+  private long lastSweep = System.currentTimeMillis();
+
+  private final AtomicLong acquireCount = new AtomicLong();
+
+  private final AtomicLong acquireNanos = new AtomicLong();
+
+  private final AtomicLong loginCount = new AtomicLong();
+
+  private final AtomicLong refreshCount = new AtomicLong();
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  JcrSessionPool( Login login, int maxIdlePerUser, int maxIdle, long idleTimeoutMillis ) {
+    this.login = login;
+    this.maxIdlePerUser = maxIdlePerUser;
+    this.maxIdle = maxIdle;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * Checks out a session for the user of the credentials. Credentials without a user id are not pooled and always get
+   * a new session.
+   */
+  Session acquire( Credentials credentials ) throws RepositoryException {
+    long start = System.nanoTime();
+    try {
+      String userId = credentials instanceof SimpleCredentials ? ( (SimpleCredentials) credentials ).getUserID() : null;
+      if ( userId == null ) {
+        loginCount.incrementAndGet();
+        return login.login( credentials );
+      }
+      String key = Thread.currentThread().getId() + "\t" + userId; //$NON-NLS-1$
+      List<PooledSession> evicted = new ArrayList<>();
+      PooledSession pooled;
+      boolean fromIdle = false;
+      synchronized ( this ) {
+        evictExpired( evicted );
+        pooled = checkedOut.get( key );
+        if ( pooled == null ) {
+          pooled = pollIdle( userId );
+          fromIdle = pooled != null;
+        }
+        if ( pooled != null ) {
+          checkOut( pooled, key );
+        }
+      }
+      logout( evicted );
+
+      if ( pooled != null && !pooled.session.isLive() ) {
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Pooled session is no longer alive. disposing: " + pooled.session );
+        }
+        discard( pooled );
+        pooled = null;
+      }
+      if ( pooled == null ) {
+        Session session = login.login( credentials );
+        loginCount.incrementAndGet();
+        pooled = pool( session, userId );
+        if ( pooled == null ) {
+          return session;
+        }
+        synchronized ( this ) {
+          checkOut( pooled, key );
+        }
+      } else if ( fromIdle ) {
+        try {
+          if ( pooled.needsRefresh() ) {
+            refreshCount.incrementAndGet();
+            pooled.refresh();
+          }
+        } catch ( RepositoryException | RuntimeException e ) {
+          discard( pooled );
+          throw e;
+        }
+      }
+      return pooled.session;
+    } finally {
+      acquireCount.incrementAndGet();
+      acquireNanos.addAndGet( System.nanoTime() - start );
+    }
+  }
+
+  private PooledSession pool( Session session, String userId ) {
+    if ( !( session instanceof SessionImpl ) ) {
+      logger.warn( "Expected a Jackrabbit SessionImpl.  Will not be pooling it." );
+      return null;
+    }
+    PooledSession pooled = new PooledSession( userId, session );
+    ( (SessionImpl) session ).setAttribute( USAGE_COUNT, new AtomicInteger( 0 ) );
+    ( (SessionImpl) session ).setAttribute( POOLED_SESSION, pooled );
+    try {
+      session.getWorkspace().getObservationManager()
+        .addEventListener( pooled, CHANGE_EVENTS, "/", true, null, null, false ); //$NON-NLS-1$
+      pooled.observed = true;
+    } catch ( RepositoryException e ) {
+      logger.debug( "Could not observe the workspace, the session will be refreshed on every checkout", e );
+    }
+    return pooled;
+  }
+
+  private void checkOut( PooledSession pooled, String key ) {
+    pooled.boundTo = key;
+    pooled.lastUsed = System.currentTimeMillis();
+    checkedOut.put( key, pooled );
+  }
+
+  private PooledSession pollIdle( String userId ) {
+    Deque<PooledSession> sessions = idleByUser.get( userId );
+    if ( sessions == null ) {
+      return null;
+    }
+    PooledSession pooled = sessions.pollFirst();
+    if ( sessions.isEmpty() ) {
+      idleByUser.remove( userId );
+    }
+    if ( pooled != null ) {
+      idle.remove( pooled );
+    }
+    return pooled;
+  }
+
+  void release( PooledSession pooled ) {
+    List<PooledSession> evicted = new ArrayList<>();
+    synchronized ( this ) {
+      if ( pooled.boundTo == null ) {
+        return;
+      }
+      checkedOut.remove( pooled.boundTo, pooled );
+      pooled.boundTo = null;
+      if ( !pooled.session.isLive() ) {
+        return;
+      }
+      pooled.lastUsed = System.currentTimeMillis();
+      Deque<PooledSession> sessions = idleByUser.computeIfAbsent( pooled.userId, userId -> new ArrayDeque<>() );
+      sessions.addFirst( pooled );
+      idle.add( pooled );
+      while ( sessions.size() > maxIdlePerUser ) {
+        PooledSession last = sessions.pollLast();
+        idle.remove( last );
+        evicted.add( last );
+      }
+      while ( idle.size() > maxIdle ) {
+        evicted.add( removeLeastRecentlyUsed() );
+      }
+      evictExpired( evicted );
+    }
+    logout( evicted );
+  }
+
+  private PooledSession removeLeastRecentlyUsed() {
+    Iterator<PooledSession> it = idle.iterator();
+    PooledSession oldest = it.next();
+    it.remove();
+    Deque<PooledSession> sessions = idleByUser.get( oldest.userId );
+    sessions.remove( oldest );
+    if ( sessions.isEmpty() ) {
+      idleByUser.remove( oldest.userId );
+    }
+    return oldest;
+  }
+
+  /**
+   * Evicts the idle sessions past the idle timeout. Once per timeout, also evicts the checked out sessions that have
+   * not been used for as long and never were released, e.g. as they were obtained outside of a
+   * {@link PentahoJcrTemplate}.
+   */
+  private void evictExpired( List<PooledSession> evicted ) {
+    long now = System.currentTimeMillis();
+    while ( !idle.isEmpty() && now - idle.iterator().next().lastUsed > idleTimeoutMillis ) {
+      evicted.add( removeLeastRecentlyUsed() );
+    }
+    if ( now - lastSweep > idleTimeoutMillis ) {
+      lastSweep = now;
+      for ( Iterator<PooledSession> it = checkedOut.values().iterator(); it.hasNext(); ) {
+        PooledSession pooled = it.next();
+        if ( now - pooled.lastUsed > idleTimeoutMillis && isUnused( pooled.session ) ) {
+          it.remove();
+          pooled.boundTo = null;
+          evicted.add( pooled );
+        }
+      }
+    }
+  }
+
+  private void discard( PooledSession pooled ) {
+    synchronized ( this ) {
+      if ( pooled.boundTo != null ) {
+        checkedOut.remove( pooled.boundTo, pooled );
+        pooled.boundTo = null;
+      }
+    }
+    logout( pooled.session );
+  }
+
+  private void logout( List<PooledSession> evicted ) {
+    for ( PooledSession pooled : evicted ) {
+      evictionCount.incrementAndGet();
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Logging out pooled session after eviction " + pooled.session );
+      }
+      logout( pooled.session );
+    }
+  }
+
+  private void logout( Session session ) {
+    try {
+      session.logout();
+    } catch ( RuntimeException e ) {
+      logger.warn( "Could not log out pooled session " + session, e );
+    }
+  }
+
+  static boolean isUnused( Session session ) {
+    return session.getAttribute( USAGE_COUNT ) instanceof AtomicInteger
+      && ( (AtomicInteger) session.getAttribute( USAGE_COUNT ) ).get() == 0;
+  }
+
+  synchronized int getIdleCount() {
+    return idle.size();
+  }
+
+  synchronized int getCheckedOutCount() {
+    return checkedOut.size();
+  }
+
+  long getAcquireCount() {
+    return acquireCount.get();
+  }
+
+  /**
+   * @return the average time it took to check out a session, including logins and refreshes
+   */
+  double getAverageAcquireMillis() {
+    long count = acquireCount.get();
+    return count == 0 ? 0 : acquireNanos.get() / 1000000d / count;
+  }
+
+  long getLoginCount() {
+    return loginCount.get();
+  }
+
+  long getRefreshCount() {
+    return refreshCount.get();
+  }
+
+  long getEvictionCount() {
+    return evictionCount.get();
+  }
+}
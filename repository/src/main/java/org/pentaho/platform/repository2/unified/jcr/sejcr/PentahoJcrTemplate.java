@@ -37,6 +37,7 @@ import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.pentaho.platform.repository2.unified.jcr.sejcr.GuavaCachePoolPentahoJcrSessionFactory.USAGE_COUNT;
+import static org.pentaho.platform.repository2.unified.jcr.sejcr.JcrSessionPool.POOLED_SESSION;
 
 /**
  * Copy of superclass' execute with better exception conversions.
@@ -94,13 +95,19 @@ public class PentahoJcrTemplate extends JcrTemplate {
   }
 
   private void releaseSession( Session session ) {
-    getUsageCount( session ).decrementAndGet();
+    if ( getUsageCount( session ).decrementAndGet() == 0 ) {
+      Object pooledSession = session.getAttribute( POOLED_SESSION );
+      if ( pooledSession instanceof JcrSessionPool.PooledSession ) {
+        ( (JcrSessionPool.PooledSession) pooledSession ).release();
+      }
+    }
   }
 
   /**
-   * Cached Sessions retrieved from {@link GuavaCachePoolPentahoJcrSessionFactory}
+   * Pooled Sessions retrieved from {@link GuavaCachePoolPentahoJcrSessionFactory}
    * will have a "usage_count" attribute indicating whether the session is
-   * currently in use.  This allows safe eviction.
+   * currently in use.  This allows safe eviction, and the session goes back
+   * to the pool once no longer used.
    */
   private AtomicInteger getUsageCount( Session session ) {
     Objects.requireNonNull( session );
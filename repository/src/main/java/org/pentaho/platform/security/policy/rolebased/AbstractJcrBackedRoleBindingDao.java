@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -135,6 +135,7 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
             if ( cacheManager.cacheEnabled( LOGICAL_ROLE_BINDINGS_REGION ) ) {
               cacheManager.removeRegionCache( LOGICAL_ROLE_BINDINGS_REGION );
             }
+            clearAuthorizationSnapshots();
             loaded = true;
           }
         }
@@ -314,6 +315,16 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     // update cache
     String roleId = tenantedRoleNameUtils.getPrincipleId( tenant, runtimeRoleName );
     cacheManager.putInRegionCache( LOGICAL_ROLE_BINDINGS_REGION, roleId, logicalRoleNames );
+    clearAuthorizationSnapshots();
+  }
+
+  /**
+   * Drops the logical roles compiled by {@link RoleAuthorizationPolicy}, as they may include the changed bindings.
+   */
+  protected void clearAuthorizationSnapshots() {
+    if ( cacheManager.cacheEnabled( RoleAuthorizationPolicy.AUTHORIZATION_SNAPSHOT_REGION ) ) {
+      cacheManager.clearRegionCache( RoleAuthorizationPolicy.AUTHORIZATION_SNAPSHOT_REGION );
+    }
   }
 
   private String getPrincipalName( String principalId ) {
@@ -14,17 +14,26 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.security.policy.rolebased;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -32,6 +41,11 @@ import org.springframework.util.Assert;
 
 /**
  * An authorization policy based on roles.
+ * <p>
+ * The logical roles bound to a set of runtime roles are compiled once into an {@link AuthorizationSnapshot} and kept in
+ * the {@link #AUTHORIZATION_SNAPSHOT_REGION} cache region, keyed by the tenant and the runtime roles. The region is
+ * cleared by {@link AbstractJcrBackedRoleBindingDao} whenever role bindings are saved or the authorization actions are
+ * reloaded.
  * 
  * @author mlowery
  */
@@ -40,18 +54,38 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
   // ~ Static fields/initializers
   // ======================================================================================
 
+  public static final String AUTHORIZATION_SNAPSHOT_REGION = "roleAuthorizationSnapshotCache"; //$NON-NLS-1$
+
+  /**
+   * Bit index of each logical role name, shared by all snapshots
+   */
+  private static final ConcurrentMap<String, Integer> LOGICAL_ROLE_INDEX = new ConcurrentHashMap<String, Integer>();
+
+  private static final AtomicInteger NEXT_LOGICAL_ROLE_INDEX = new AtomicInteger();
+
   // ~ Instance fields
   // =================================================================================================
 
   private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
 
+  private final ICacheManager cacheManager;
+
   // ~ Constructors
   // ====================================================================================================
 
   public RoleAuthorizationPolicy( final IRoleAuthorizationPolicyRoleBindingDao roleBindingDao ) {
+    this( roleBindingDao, PentahoSystem.getCacheManager( null ) );
+  }
+
+  public RoleAuthorizationPolicy( final IRoleAuthorizationPolicyRoleBindingDao roleBindingDao,
+                                  final ICacheManager cacheManager ) {
     super();
     Assert.notNull( roleBindingDao );
     this.roleBindingDao = roleBindingDao;
+    this.cacheManager = cacheManager;
+    if ( cacheManager != null && !cacheManager.cacheEnabled( AUTHORIZATION_SNAPSHOT_REGION ) ) {
+      cacheManager.addCacheRegion( AUTHORIZATION_SNAPSHOT_REGION );
+    }
   }
 
   // ~ Methods
@@ -63,12 +97,12 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
   public List<String> getAllowedActions( String actionNamespace ) {
     List<String> assignedRolesInNamespace = new ArrayList<String>();
     if ( actionNamespace == null ) {
-      assignedRolesInNamespace.addAll( roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) );
+      assignedRolesInNamespace.addAll( getSnapshot().getLogicalRoleNames() );
     } else {
       if ( !actionNamespace.endsWith( "." ) ) {
         actionNamespace += ".";
       }
-      for ( String assignedRole : roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) ) {
+      for ( String assignedRole : getSnapshot().getLogicalRoleNames() ) {
         if ( assignedRole.startsWith( actionNamespace ) ) {
           assignedRolesInNamespace.add( assignedRole );
         }
@@ -81,7 +115,31 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    * {@inheritDoc}
    */
   public boolean isAllowed( String actionName ) {
-    return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ).contains( actionName );
+    return getSnapshot().isAllowed( actionName );
+  }
+
+  /**
+   * Returns the compiled logical roles of the current authentication, from the cache if its runtime roles were seen
+   * before.
+   */
+  protected AuthorizationSnapshot getSnapshot() {
+    List<String> runtimeRoleNames = getRuntimeRoleNames();
+    if ( cacheManager == null ) {
+      return new AuthorizationSnapshot( roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ) );
+    }
+    // untenanted runtime roles are bound in the tenant of the session, so the same role names may have different
+    // logical roles in different tenants; the order of the authorities doesn't matter, and names can't contain tabs
+    StringBuilder key = new StringBuilder( JcrTenantUtils.getTenant().getId() ).append( '\t' );
+    for ( String runtimeRoleName : new TreeSet<String>( runtimeRoleNames ) ) {
+      key.append( runtimeRoleName ).append( '\t' );
+    }
+    AuthorizationSnapshot snapshot =
+        (AuthorizationSnapshot) cacheManager.getFromRegionCache( AUTHORIZATION_SNAPSHOT_REGION, key.toString() );
+    if ( snapshot == null ) {
+      snapshot = new AuthorizationSnapshot( roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ) );
+      cacheManager.putInRegionCache( AUTHORIZATION_SNAPSHOT_REGION, key.toString(), snapshot );
+    }
+    return snapshot;
   }
 
   protected List<String> getRuntimeRoleNames() {
@@ -95,4 +153,46 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
     return runtimeRoles;
   }
 
+  private static int getLogicalRoleIndex( String logicalRoleName ) {
+    Integer index = LOGICAL_ROLE_INDEX.get( logicalRoleName );
+    if ( index == null ) {
+      synchronized ( LOGICAL_ROLE_INDEX ) {
+        index = LOGICAL_ROLE_INDEX.get( logicalRoleName );
+        if ( index == null ) {
+          index = NEXT_LOGICAL_ROLE_INDEX.getAndIncrement();
+          LOGICAL_ROLE_INDEX.put( logicalRoleName, index );
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * The immutable set of logical roles bound to a set of runtime roles, as a bit set for {@link #isAllowed(String)}.
+   */
+  protected static final class AuthorizationSnapshot {
+
+    private final BitSet allowed = new BitSet();
+
+    private final List<String> logicalRoleNames;
+
+    AuthorizationSnapshot( Collection<String> logicalRoleNames ) {
+      this.logicalRoleNames = Collections.unmodifiableList( new ArrayList<String>( new TreeSet<String>(
+          logicalRoleNames ) ) );
+      for ( String logicalRoleName : this.logicalRoleNames ) {
+        allowed.set( getLogicalRoleIndex( logicalRoleName ) );
+      }
+    }
+
+    public boolean isAllowed( String logicalRoleName ) {
+      // a name without an index isn't bound to any runtime role
+      Integer index = logicalRoleName == null ? null : LOGICAL_ROLE_INDEX.get( logicalRoleName );
+      return index != null && allowed.get( index );
+    }
+
+    public List<String> getLogicalRoleNames() {
+      return logicalRoleNames;
+    }
+  }
+
 }
@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2021 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -25,6 +25,8 @@ import org.apache.commons.collections.map.LRUMap;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.AuthorizableExistsException;
 import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.Query;
+import org.apache.jackrabbit.api.security.user.QueryBuilder;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.core.SessionImpl;
@@ -39,6 +41,7 @@ import org.pentaho.platform.api.engine.security.userroledao.IPentahoRole;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
 import org.pentaho.platform.api.engine.security.userroledao.NotFoundException;
+import org.pentaho.platform.api.engine.security.userroledao.UserRolePage;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
 import org.pentaho.platform.api.repository2.unified.IRepositoryDefaultAclHandler;
@@ -685,6 +688,98 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     return users;
   }
 
+  /**
+   * Returns a page of the users of a tenant whose name starts with the given filter, ordered by principal name, along
+   * with the number of matching users. Only the users of the page are converted.
+   */
+  public UserRolePage<IPentahoUser> getUsers( Session session, ITenant theTenant, String nameFilter, int offset,
+                                              int limit ) throws RepositoryException {
+    List<Authorizable> page = new ArrayList<Authorizable>();
+    int totalCount = searchAuthorizables( session, theTenant, User.class, nameFilter, offset, limit, page );
+    List<IPentahoUser> users = new ArrayList<IPentahoUser>( page.size() );
+    for ( Authorizable authorizable : page ) {
+      users.add( convertToPentahoUser( (User) authorizable ) );
+    }
+    return new UserRolePage<IPentahoUser>( users, totalCount );
+  }
+
+  /**
+   * Returns a page of the roles of a tenant whose name starts with the given filter, ordered by principal name, along
+   * with the number of matching roles. Only the roles of the page are converted.
+   */
+  public UserRolePage<IPentahoRole> getRoles( Session session, ITenant theTenant, String nameFilter, int offset,
+                                              int limit ) throws RepositoryException {
+    List<Authorizable> page = new ArrayList<Authorizable>();
+    int totalCount = searchAuthorizables( session, theTenant, Group.class, nameFilter, offset, limit, page );
+    List<IPentahoRole> roles = new ArrayList<IPentahoRole>( page.size() );
+    for ( Authorizable authorizable : page ) {
+      roles.add( convertToPentahoRole( (Group) authorizable ) );
+    }
+    return new UserRolePage<IPentahoRole>( roles, totalCount );
+  }
+
+  /**
+   * Runs a query for the users or groups of the tenant whose principal name starts with the name filter, sorted by
+   * principal name. The matches are counted from their id, so nothing is read from the authorizables outside of the
+   * page.
+   *
+   * @param page
+   *          receives the matches from offset to offset + limit
+   * @return the number of matches
+   */
+  private int searchAuthorizables( Session session, ITenant theTenant, final Class<? extends Authorizable> type,
+                                   String nameFilter, int offset, int limit, List<Authorizable> page )
+      throws RepositoryException {
+    if ( theTenant == null || theTenant.getId() == null ) {
+      theTenant = JcrTenantUtils.getTenant();
+    }
+    if ( !TenantUtils.isAccessibleTenant( theTenant ) ) {
+      return 0;
+    }
+    ITenantedPrincipleNameResolver nameUtils = type == User.class ? tenantedUserNameUtils : tenantedRoleNameUtils;
+    String prefix = nameFilter == null ? "" : nameFilter; //$NON-NLS-1$
+    offset = Math.max( 0, offset );
+
+    UserManager userMgr = getUserManager( theTenant, session );
+    pPrincipalName = getJcrName( session );
+    final String principalNameProperty = "@" + pPrincipalName; //$NON-NLS-1$
+    // the principal id of a name matching the filter, whatever side of the tenant the resolver puts the name on
+    final String principalIdPattern = nameUtils.getPrincipleId( theTenant, escapeLikePattern( prefix ) + "%" ); //$NON-NLS-1$
+    Iterator<Authorizable> it = userMgr.findAuthorizables( new Query() {
+      @Override
+      public <T> void build( QueryBuilder<T> builder ) {
+        builder.setSelector( type );
+        builder.setCondition( builder.like( principalNameProperty, principalIdPattern ) );
+        builder.setSortOrder( principalNameProperty, QueryBuilder.Direction.ASCENDING );
+      }
+    } );
+    int matches = 0;
+    while ( it.hasNext() ) {
+      Authorizable authorizable = it.next();
+      String id = authorizable.getID();
+      ITenant tenant = nameUtils.getTenant( id );
+      if ( tenant == null || !tenant.equals( theTenant ) ) {
+        continue;
+      }
+      // Exclude the system roles, as getRoles does
+      if ( type == Group.class && extraRoles.contains( nameUtils.getPrincipleName( id ) ) ) {
+        continue;
+      }
+      if ( matches >= offset && ( limit < 0 || matches < offset + limit ) ) {
+        page.add( authorizable );
+      }
+      matches++;
+    }
+    return matches;
+  }
+
+  /**
+   * Escapes the wildcards of a like condition, so that the given text is matched literally.
+   */
+  private static String escapeLikePattern( String text ) {
+    return text.replace( "\\", "\\\\" ).replace( "%", "\\%" ).replace( "_", "\\_" );
+  }
+
   public IPentahoRole getRole( Session session, final ITenant tenant, final String name ) throws RepositoryException {
     Group jackrabbitGroup = getJackrabbitGroup( tenant, name, session );
     return jackrabbitGroup != null
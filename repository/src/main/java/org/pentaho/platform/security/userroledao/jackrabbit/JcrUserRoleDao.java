@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -29,6 +29,7 @@ import org.pentaho.platform.api.engine.security.userroledao.IPentahoRole;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.NotFoundException;
 import org.pentaho.platform.api.engine.security.userroledao.UncategorizedUserRoleDaoException;
+import org.pentaho.platform.api.engine.security.userroledao.UserRolePage;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
 import org.pentaho.platform.api.repository2.unified.IRepositoryDefaultAclHandler;
@@ -303,6 +304,38 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public UserRolePage<IPentahoUser> getUsers( final ITenant tenant, final String nameFilter, final int offset,
+                                             final int limit ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (UserRolePage<IPentahoUser>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getUsers( session, tenant, nameFilter, offset, limit );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0009_LISTING_USERS", e.getLocalizedMessage() ), e );
+    }
+  }
+
+  @Override
+  public UserRolePage<IPentahoRole> getRoles( final ITenant tenant, final String nameFilter, final int offset,
+                                             final int limit ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (UserRolePage<IPentahoRole>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getRoles( session, tenant, nameFilter, offset, limit );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0008_LISTING_ROLES", e.getLocalizedMessage() ), e );
+    }
+  }
+
   @Override
   public IPentahoRole getRole( final ITenant tenant, final String name ) throws UncategorizedUserRoleDaoException {
     try {
@@ -0,0 +1,301 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
+import org.apache.jackrabbit.core.security.authorization.AccessControlObserver;
+import org.apache.jackrabbit.spi.Name;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachingPentahoEntryCollectorTest {
+
+  private static final String TENANT0 = "/pentaho/tenant0";
+  private static final String TENANT1 = "/pentaho/tenant1";
+  private static final String AUTHENTICATED = "Authenticated";
+  private static final String POWER_USER = "Power User";
+
+  private TestEntryCollector collector;
+
+  @Before
+  public void setUp() throws Exception {
+    collector = new TestEntryCollector( mock( SessionImpl.class, RETURNS_DEEP_STUBS ), new NodeId() );
+  }
+
+  @After
+  public void tearDown() {
+    collector.close();
+    PentahoSystem.getCacheManager( null ).killSessionCaches();
+    PentahoSessionHolder.removeSession();
+  }
+
+  @Test
+  public void testEntriesAreSharedBySessionsOfTheSameTenantAndRoles() throws Exception {
+    NodeImpl node = createNode( null );
+    collector.roles.put( "joe", Arrays.asList( AUTHENTICATED ) );
+    collector.roles.put( "suzy", Arrays.asList( AUTHENTICATED ) );
+
+    login( "joe", TENANT0 );
+    PentahoEntryCollector.PentahoEntries joeEntries = collector.getEntries( node );
+    login( "suzy", TENANT0 );
+    PentahoEntryCollector.PentahoEntries suzyEntries = collector.getEntries( node );
+
+    assertSame( joeEntries, suzyEntries );
+    assertEquals( 1, collector.reads.get() );
+    assertEquals( 1, collector.getHitCount() );
+    assertEquals( 1, collector.getSharedCacheCount() );
+  }
+
+  @Test
+  public void testEntriesAreNotSharedAcrossTenantsOrRoles() throws Exception {
+    NodeImpl node = createNode( null );
+    collector.roles.put( "joe", Arrays.asList( AUTHENTICATED ) );
+    collector.roles.put( "suzy", Arrays.asList( AUTHENTICATED ) );
+    collector.roles.put( "tiffany", Arrays.asList( AUTHENTICATED, POWER_USER ) );
+
+    login( "joe", TENANT0 );
+    collector.getEntries( node );
+    login( "suzy", TENANT1 );
+    collector.getEntries( node );
+    login( "tiffany", TENANT0 );
+    collector.getEntries( node );
+
+    assertEquals( 3, collector.reads.get() );
+    assertEquals( 0, collector.getHitCount() );
+    assertEquals( 3, collector.getSharedCacheCount() );
+  }
+
+  @Test
+  public void testEntriesNamingTheUserStayInItsSession() throws Exception {
+    NodeImpl node = createNode( null );
+    collector.userSpecific.add( node.getNodeId() );
+    collector.roles.put( "joe", Arrays.asList( AUTHENTICATED ) );
+    collector.roles.put( "suzy", Arrays.asList( AUTHENTICATED ) );
+
+    login( "joe", TENANT0 );
+    collector.getEntries( node );
+    assertTrue( namesUser( collector.getEntries( node ), "joe" ) );
+    assertEquals( 1, collector.reads.get() );
+
+    login( "suzy", TENANT0 );
+    PentahoEntryCollector.PentahoEntries suzyEntries = collector.getEntries( node );
+    assertTrue( namesUser( suzyEntries, "suzy" ) );
+    assertFalse( namesUser( suzyEntries, "joe" ) );
+    assertEquals( 2, collector.reads.get() );
+    assertEquals( 2, collector.getCachedEntriesCount() );
+  }
+
+  @Test
+  public void testWaiterDoesNotReuseEntriesOfAnotherUser() throws Exception {
+    final NodeImpl node = createNode( null );
+    collector.userSpecific.add( node.getNodeId() );
+    collector.roles.put( "joe", Arrays.asList( AUTHENTICATED ) );
+    collector.roles.put( "suzy", Arrays.asList( AUTHENTICATED ) );
+    collector.blockedUser = "joe";
+
+    final AtomicReference<PentahoEntryCollector.PentahoEntries> suzyEntries =
+        new AtomicReference<PentahoEntryCollector.PentahoEntries>();
+    final AtomicReference<Throwable> problem = new AtomicReference<Throwable>();
+    Thread joe = new Thread( new Runnable() {
+      @Override public void run() {
+        login( "joe", TENANT0 );
+        try {
+          collector.getEntries( node );
+        } catch ( Throwable t ) {
+          problem.set( t );
+        }
+      }
+    } );
+    Thread suzy = new Thread( new Runnable() {
+      @Override public void run() {
+        login( "suzy", TENANT0 );
+        try {
+          suzyEntries.set( collector.getEntries( node ) );
+        } catch ( Throwable t ) {
+          problem.set( t );
+        }
+      }
+    } );
+
+    joe.start();
+    assertTrue( collector.reading.await( 10, TimeUnit.SECONDS ) );
+    suzy.start();
+    // suzy waits for the entries joe is loading
+    for ( int i = 0; i < 1000 && suzy.getState() != Thread.State.WAITING; i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( Thread.State.WAITING, suzy.getState() );
+    collector.release.countDown();
+    joe.join( 10000 );
+    suzy.join( 10000 );
+
+    assertNull( problem.get() );
+    assertTrue( namesUser( suzyEntries.get(), "suzy" ) );
+    assertFalse( namesUser( suzyEntries.get(), "joe" ) );
+    assertEquals( 2, collector.reads.get() );
+  }
+
+  @Test
+  public void testPolicyModifiedRemovesInheritingEntries() throws Exception {
+    assertPolicyChangeRemovesInheritingEntries( AccessControlObserver.POLICY_MODIFIED );
+  }
+
+  @Test
+  public void testPolicyRemovedRemovesInheritingEntries() throws Exception {
+    assertPolicyChangeRemovesInheritingEntries( AccessControlObserver.POLICY_REMOVED );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void assertPolicyChangeRemovesInheritingEntries( int type ) throws Exception {
+    NodeImpl parent = createNode( null );
+    NodeImpl child = createNode( parent.getNodeId() );
+    NodeImpl other = createNode( null );
+    collector.roles.put( "joe", Arrays.asList( AUTHENTICATED ) );
+    login( "joe", TENANT0 );
+    collector.getEntries( parent );
+    collector.getEntries( child );
+    collector.getEntries( other );
+    assertEquals( 3, collector.reads.get() );
+
+    AccessControlModifications modifications = mock( AccessControlModifications.class );
+    when( modifications.getNodeIdentifiers() ).thenReturn( Collections.singleton( parent.getNodeId() ) );
+    when( modifications.getType( parent.getNodeId() ) ).thenReturn( type );
+    collector.notifyListeners( modifications );
+
+    collector.getEntries( parent );
+    collector.getEntries( child );
+    collector.getEntries( other );
+    // the parent and the child inheriting its ACEs are read again, the other node is still cached
+    assertEquals( 5, collector.reads.get() );
+  }
+
+  /**
+   * A node whose entries hold an ACE defined on the node itself, and one inherited from the given parent if any
+   */
+  private NodeImpl createNode( NodeId parentId ) throws RepositoryException {
+    NodeId nodeId = new NodeId();
+    NodeImpl node = mock( NodeImpl.class );
+    when( node.getNodeId() ).thenReturn( nodeId );
+    List<PentahoEntry> aces = new ArrayList<PentahoEntry>();
+    aces.add( createAce( nodeId, AUTHENTICATED, true ) );
+    if ( parentId != null ) {
+      aces.add( createAce( parentId, AUTHENTICATED, true ) );
+    }
+    collector.aces.put( nodeId, aces );
+    return node;
+  }
+
+  private static PentahoEntry createAce( NodeId nodeId, String principalName, boolean isGroupEntry )
+    throws RepositoryException {
+    return new PentahoEntry( nodeId, principalName, isGroupEntry, null, true, null, (Map<Name, Value>) null );
+  }
+
+  private static boolean namesUser( PentahoEntryCollector.PentahoEntries entries, String userName ) {
+    for ( Object ace : entries.getACEs() ) {
+      if ( !( (PentahoEntry) ace ).isGroupEntry() && userName.equals( ( (PentahoEntry) ace ).getPrincipalName() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void login( String userName, String tenantId ) {
+    IPentahoSession session = mock( IPentahoSession.class );
+    when( session.getId() ).thenReturn( userName );
+    when( session.getName() ).thenReturn( userName );
+    when( session.getAttribute( IPentahoSession.TENANT_ID_KEY ) ).thenReturn( tenantId );
+    PentahoSessionHolder.setSession( session );
+  }
+
+  /**
+   * Reads the entries set up by the test instead of the ACLs of the repository, granting an ACE to the user of the
+   * session on user specific nodes as a magic ACE would.
+   */
+  private static class TestEntryCollector extends CachingPentahoEntryCollector {
+
+    private final Map<String, List<String>> roles = new HashMap<String, List<String>>();
+    private final Map<NodeId, List<PentahoEntry>> aces = new HashMap<NodeId, List<PentahoEntry>>();
+    private final Set<NodeId> userSpecific = new HashSet<NodeId>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CountDownLatch reading = new CountDownLatch( 1 );
+    private final CountDownLatch release = new CountDownLatch( 1 );
+    private volatile String blockedUser;
+
+    TestEntryCollector( SessionImpl systemSession, NodeId rootID ) throws RepositoryException {
+      super( systemSession, rootID, Collections.emptyMap() );
+    }
+
+    @Override
+    protected List<String> getRuntimeRoleNames() {
+      return roles.get( PentahoSessionHolder.getSession().getName() );
+    }
+
+    @Override
+    PentahoEntries readEntries( NodeImpl node ) throws RepositoryException {
+      reads.incrementAndGet();
+      String userName = PentahoSessionHolder.getSession().getName();
+      if ( userName.equals( blockedUser ) ) {
+        reading.countDown();
+        try {
+          release.await( 10, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          throw new RepositoryException( e );
+        }
+      }
+      List<PentahoEntry> nodeAces = new ArrayList<PentahoEntry>( aces.get( node.getNodeId() ) );
+      if ( userSpecific.contains( node.getNodeId() ) ) {
+        nodeAces.add( createAce( node.getNodeId(), userName, false ) );
+      }
+      return new PentahoEntries( nodeAces, null );
+    }
+  }
+}
@@ -52,6 +52,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -399,6 +400,69 @@ public class UserSettingServiceTest {
     verify( repository ).setFileMetadata( eq( TENANT_FOLDER_ID ), anyMap() );
   }
 
+  @Test
+  public void testGetUserSettingIsCached() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+
+    for ( int i = 0; i < 3; i++ ) {
+      assertEquals( USER_SETTING_VALUE_3, userSettingService.getUserSetting( USER_SETTING_NAME_3, null )
+        .getSettingValue() );
+      assertEquals( GLOBAL_SETTING_VALUE_3, userSettingService.getUserSetting( GLOBAL_SETTING_NAME_3, null )
+        .getSettingValue() );
+      assertEquals( 3, userSettingService.getUserSettings().size() );
+    }
+
+    verify( repository, times( 1 ) ).getFileMetadata( eq( USER_FOLDER_ID ) );
+    verify( repository, times( 1 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+  }
+
+  @Test
+  public void testSetUserSettingUpdatesCache() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+
+    assertEquals( COMMON_USER_SETTING_VALUE, userSettingService.getUserSetting( COMMON_SETTING_NAME, null )
+      .getSettingValue() );
+    userSettingService.setUserSetting( COMMON_SETTING_NAME, "newValue" );
+
+    assertEquals( "newValue", userSettingService.getUserSetting( COMMON_SETTING_NAME, null ).getSettingValue() );
+    assertEquals( "newValue", userSettingService.getUserSettingValues().get( COMMON_SETTING_NAME ) );
+  }
+
+  @Test
+  public void testSetGlobalUserSettingUpdatesCache() throws Exception {
+    ( (UserSettingServiceForTesting) userSettingService ).setCanAdministerOverrideValue( true );
+
+    assertEquals( "defaultValue", userSettingService.getGlobalUserSetting( "settingName", "defaultValue" )
+      .getSettingValue() );
+    userSettingService.setGlobalUserSetting( "settingName", "settingValue" );
+
+    assertEquals( "settingValue", userSettingService.getGlobalUserSetting( "settingName", "defaultValue" )
+      .getSettingValue() );
+  }
+
+  @Test
+  public void testSettingsAreCachedPerTenant() throws Exception {
+    when( session.getAttribute( eq( IPentahoSession.TENANT_ID_KEY ) ) ).thenReturn( "/pentaho/tenant0" );
+    userSettingService.getGlobalUserSetting( GLOBAL_SETTING_NAME_3, null );
+    userSettingService.getGlobalUserSetting( GLOBAL_SETTING_NAME_3, null );
+    verify( repository, times( 1 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+
+    // the same tenant relative folder of another tenant is read from that tenant
+    when( session.getAttribute( eq( IPentahoSession.TENANT_ID_KEY ) ) ).thenReturn( "/pentaho/tenant1" );
+    userSettingService.getGlobalUserSetting( GLOBAL_SETTING_NAME_3, null );
+    verify( repository, times( 2 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+  }
+
+  @Test
+  public void testGetUserSettingValues() throws Exception {
+    final Map<String, String> values = userSettingService.getUserSettingValues();
+
+    assertEquals( 3, values.size() );
+    assertEquals( COMMON_USER_SETTING_VALUE, values.get( COMMON_SETTING_NAME ) );
+    assertEquals( USER_SETTING_VALUE_3, values.get( USER_SETTING_NAME_3 ) );
+    assertEquals( GLOBAL_SETTING_VALUE_3, values.get( GLOBAL_SETTING_NAME_3 ) );
+  }
+
   private class UserSettingServiceForTesting extends UserSettingService {
 
     private Boolean canAdministerOverrideValue = null;
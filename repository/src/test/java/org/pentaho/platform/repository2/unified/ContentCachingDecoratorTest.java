@@ -0,0 +1,166 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+public class ContentCachingDecoratorTest {
+
+  private static final String FILE_ID = "fileId";
+
+  private IUnifiedRepository repository;
+
+  private ContentCachingDecorator decorator;
+
+  @Before
+  public void setUp() {
+    repository = mock( IUnifiedRepository.class );
+    decorator = new ContentCachingDecorator( repository, 100, 10 );
+  }
+
+  private static RepositoryFile file( String versionId, long modified, long size ) {
+    return new RepositoryFile.Builder( FILE_ID, "file.xaction" ).versionId( versionId ).lastModificationDate(
+        new Date( modified ) ).fileSize( size ).build();
+  }
+
+  private void stub( Serializable fileId, RepositoryFile file, String content ) {
+    when( repository.getFileById( fileId ) ).thenReturn( file );
+    when( repository.getDataForRead( fileId, SimpleRepositoryFileData.class ) ).thenAnswer(
+        invocation -> new SimpleRepositoryFileData( new ByteArrayInputStream( content.getBytes( "UTF-8" ) ),
+            "UTF-8", "text/xml" ) );
+  }
+
+  private String read( Serializable fileId ) throws IOException {
+    SimpleRepositoryFileData data = decorator.getDataForRead( fileId, SimpleRepositoryFileData.class );
+    assertEquals( "UTF-8", data.getEncoding() );
+    assertEquals( "text/xml", data.getMimeType() );
+    return IOUtils.toString( data.getInputStream(), "UTF-8" );
+  }
+
+  @Test
+  public void testReadsAreServedFromCache() throws Exception {
+    stub( FILE_ID, file( "1.0", 1000L, 5 ), "hello" );
+
+    assertEquals( "hello", read( FILE_ID ) );
+    assertEquals( "hello", read( FILE_ID ) );
+    assertEquals( "hello", read( FILE_ID ) );
+
+    verify( repository, times( 1 ) ).getDataForRead( FILE_ID, SimpleRepositoryFileData.class );
+    // access is checked on every read
+    verify( repository, times( 3 ) ).getFileById( FILE_ID );
+    assertEquals( 2, decorator.getHitCount() );
+    assertEquals( 1, decorator.getMissCount() );
+    assertEquals( 10, decorator.getBytesServed() );
+    assertEquals( 5, decorator.getCachedBytes() );
+    assertEquals( 2d / 3, decorator.getHitRatio(), 0.0001 );
+  }
+
+  @Test
+  public void testNewVersionIsReadFromRepository() throws Exception {
+    stub( FILE_ID, file( "1.0", 1000L, 5 ), "hello" );
+    assertEquals( "hello", read( FILE_ID ) );
+
+    stub( FILE_ID, file( "1.0", 2000L, 5 ), "world" );
+    assertEquals( "world", read( FILE_ID ) );
+    assertEquals( "world", read( FILE_ID ) );
+
+    assertEquals( 1, decorator.getHitCount() );
+    assertEquals( 1, decorator.getCachedFileCount() );
+  }
+
+  @Test
+  public void testNoAccessIsNotServedFromCache() throws Exception {
+    stub( FILE_ID, file( "1.0", 1000L, 5 ), "hello" );
+    assertEquals( "hello", read( FILE_ID ) );
+
+    // the decorated repository hides files the user can't read
+    when( repository.getFileById( FILE_ID ) ).thenReturn( null );
+    when( repository.getDataForRead( FILE_ID, SimpleRepositoryFileData.class ) ).thenReturn( null );
+    assertNull( decorator.getDataForRead( FILE_ID, SimpleRepositoryFileData.class ) );
+    assertEquals( 0, decorator.getHitCount() );
+  }
+
+  @Test
+  public void testLargeFilesAreNotCached() throws Exception {
+    stub( FILE_ID, file( "1.0", 1000L, 11 ), "hello world" );
+
+    assertEquals( "hello world", read( FILE_ID ) );
+    assertEquals( "hello world", read( FILE_ID ) );
+
+    verify( repository, times( 2 ) ).getDataForRead( FILE_ID, SimpleRepositoryFileData.class );
+    assertEquals( 0, decorator.getCachedFileCount() );
+    assertEquals( 0, decorator.getMissCount() );
+  }
+
+  @Test
+  public void testLeastRecentlyReadIsEvicted() throws Exception {
+    for ( int i = 0; i < 11; i++ ) {
+      RepositoryFile file =
+          new RepositoryFile.Builder( "id" + i, "file" + i ).versionId( "1.0" ).fileSize( 10 ).build();
+      stub( "id" + i, file, "0123456789" );
+      read( "id" + i );
+      read( "id0" );
+    }
+
+    assertEquals( 10, decorator.getCachedFileCount() );
+    assertEquals( 100, decorator.getCachedBytes() );
+    // id1 was the least recently read when id10 came in
+    read( "id1" );
+    assertEquals( 12, decorator.getMissCount() );
+  }
+
+  @Test
+  public void testChangesEvictContent() throws Exception {
+    RepositoryFile file = file( "1.0", 1000L, 5 );
+    stub( FILE_ID, file, "hello" );
+
+    read( FILE_ID );
+    decorator.updateFile( file, new SimpleRepositoryFileData( null, "UTF-8", "text/xml" ), null );
+    assertEquals( 0, decorator.getCachedFileCount() );
+
+    read( FILE_ID );
+    decorator.moveFile( FILE_ID, "/public/other", null );
+    assertEquals( 0, decorator.getCachedFileCount() );
+
+    read( FILE_ID );
+    decorator.deleteFile( FILE_ID, null );
+    assertEquals( 0, decorator.getCachedFileCount() );
+    assertEquals( 0, decorator.getCachedBytes() );
+    assertEquals( 3, decorator.getMissCount() );
+  }
+}
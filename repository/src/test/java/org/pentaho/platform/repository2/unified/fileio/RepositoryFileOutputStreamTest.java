@@ -30,14 +30,21 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.node.NodeRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 
+import org.apache.commons.io.IOUtils;
+
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -121,4 +128,67 @@ public class RepositoryFileOutputStreamTest {
     verify( streamListener, times( 1 ) ).streamComplete();
     verify( streamListener, times( 0 ) ).fileCreated( any() );
   }
+
+  @Test
+  public void testSpillsToTempFilePastThreshold() throws IOException {
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    RepositoryFile parent = new RepositoryFile.Builder( "parent-id", "out" ).path( "/out" ).folder( true ).build();
+    when( repository.getFile( "/out" ) ).thenReturn( parent );
+    final byte[][] stored = new byte[ 1 ][];
+    when( repository.createFile( eq( "parent-id" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      any( String.class ) ) ).thenAnswer( invocation -> {
+        SimpleRepositoryFileData data = invocation.getArgument( 2 );
+        stored[ 0 ] = IOUtils.toByteArray( data.getInputStream() );
+        return invocation.getArgument( 1 );
+      } );
+
+    RepositoryFileOutputStream out = new RepositoryFileOutputStream( "/out/report.csv", false, false, repository, false );
+    out.setSpillThreshold( 8 );
+    byte[] content = new byte[ 100 ];
+    Arrays.fill( content, (byte) 'x' );
+    out.write( content, 0, 5 );
+    assertFalse( out.isSpilled() );
+    out.write( content, 5, 95 );
+    assertTrue( out.isSpilled() );
+    assertEquals( 100, out.size() );
+    assertArrayEquals( content, out.toByteArray() );
+
+    out.close();
+    assertArrayEquals( content, stored[ 0 ] );
+    assertFalse( out.isSpilled() );
+    assertEquals( 0, out.size() );
+  }
+
+  @Test
+  public void testSpillFileIsDeletedWhenWriteFails() throws IOException {
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    RepositoryFile parent = new RepositoryFile.Builder( "parent-id", "out" ).path( "/out" ).folder( true ).build();
+    when( repository.getFile( "/out" ) ).thenReturn( parent );
+    when( repository.createFile( eq( "parent-id" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      any( String.class ) ) ).thenThrow( new IllegalStateException( "broken" ) );
+
+    RepositoryFileOutputStream out = new RepositoryFileOutputStream( "/out/report.csv", false, false, repository, false );
+    out.setSpillThreshold( 8 );
+    out.write( new byte[ 100 ], 0, 100 );
+    assertTrue( out.isSpilled() );
+
+    try {
+      out.close();
+      fail();
+    } catch ( IllegalStateException e ) {
+      assertEquals( "broken", e.getMessage() );
+    }
+    assertFalse( out.isSpilled() );
+    assertEquals( 0, out.size() );
+  }
+
+  @Test
+  public void testNegativeThresholdNeverSpills() throws IOException {
+    RepositoryFileOutputStream out =
+      new RepositoryFileOutputStream( "/out/report.csv", false, false, mock( IUnifiedRepository.class ), false );
+    out.setSpillThreshold( -1 );
+    out.write( new byte[ 1024 ], 0, 1024 );
+    assertFalse( out.isSpilled() );
+    assertEquals( 1024, out.size() );
+  }
 }
@@ -0,0 +1,191 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.locale.IPentahoLocale;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManager;
+
+public class JcrRepositoryFileTreeWalkerTest {
+
+  private Session session = mock( Session.class );
+  private PentahoJcrConstants pentahoJcrConstants = mock( PentahoJcrConstants.class );
+  private IPathConversionHelper pathConversionHelper = new DefaultPathConversionHelper();
+  private ILockHelper lockHelper = mock( ILockHelper.class );
+  private RepositoryAccessVoterManager accessVoterManager =
+      new RepositoryAccessVoterManager( mock( IAuthorizationPolicy.class ), "admin" );
+
+  private Map<Node, RepositoryFile> files = new HashMap<>();
+  private Set<Node> folders = new HashSet<>();
+  private Set<String> aclReadableIds = new HashSet<>();
+  private List<Node> builtFiles = new ArrayList<>();
+
+  private MockedStatic<JcrRepositoryFileUtils> fileUtils;
+  private MockedStatic<JcrRepositoryFileAclUtils> aclUtils;
+
+  private Node root;
+  private Node folderA;
+  private Node fileX;
+  private Node fileY;
+  private Node fileB;
+  private Node metadata;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder( "root", false );
+    folderA = folder( "a", false );
+    fileX = file( "x.prpt", false );
+    fileY = file( "y.txt", false );
+    fileB = file( "b.prpt", true );
+    metadata = mock( Node.class );
+    when( metadata.getName() ).thenReturn( "pho:metadata" );
+    children( root, folderA, fileB, metadata );
+    children( folderA, fileX, fileY );
+
+    fileUtils = mockStatic( JcrRepositoryFileUtils.class );
+    fileUtils.when( () -> JcrRepositoryFileUtils.nodeToFile( any( Session.class ), any( PentahoJcrConstants.class ),
+        any( IPathConversionHelper.class ), any( ILockHelper.class ), any( Node.class ), anyBoolean(),
+        nullable( IPentahoLocale.class ) ) ).thenAnswer( invocation -> {
+          Node node = invocation.getArgument( 4 );
+          builtFiles.add( node );
+          return files.get( node );
+        } );
+    fileUtils.when( () -> JcrRepositoryFileUtils.isSupportedNodeType( eq( pentahoJcrConstants ), any( Node.class ) ) )
+        .thenAnswer( invocation -> files.containsKey( invocation.getArgument( 1 ) ) );
+    fileUtils.when( () -> JcrRepositoryFileUtils.isPentahoFolder( eq( pentahoJcrConstants ), any( Node.class ) ) )
+        .thenAnswer( invocation -> folders.contains( invocation.getArgument( 1 ) ) );
+
+    aclUtils = mockStatic( JcrRepositoryFileAclUtils.class );
+    aclUtils.when( () -> JcrRepositoryFileAclUtils.getAcl( eq( session ), eq( pentahoJcrConstants ), any() ) )
+        .thenReturn( mock( RepositoryFileAcl.class ) );
+    aclUtils.when( () -> JcrRepositoryFileAclUtils.getAclReadableIds( eq( session ), anyList() ) )
+        .thenAnswer( invocation -> aclReadableIds );
+  }
+
+  @After
+  public void tearDown() {
+    aclUtils.close();
+    fileUtils.close();
+  }
+
+  @Test
+  public void testFilterKeepsFoldersWithMatchingDescendants() throws Exception {
+    RepositoryFileTree tree = walk( "*.prpt", true, -1 );
+
+    assertEquals( Arrays.asList( "a", "b.prpt" ), names( tree.getChildren() ) );
+    assertEquals( Collections.singletonList( "x.prpt" ), names( tree.getChildren().get( 0 ).getChildren() ) );
+  }
+
+  @Test
+  public void testUnreadableChildIsPrunedBeforeFileIsBuilt() throws Exception {
+    aclReadableIds.remove( "b.prpt" );
+
+    RepositoryFileTree tree = walk( null, true, -1 );
+
+    assertEquals( Collections.singletonList( "a" ), names( tree.getChildren() ) );
+    assertTrue( !builtFiles.contains( fileB ) );
+    assertTrue( !builtFiles.contains( metadata ) );
+  }
+
+  @Test
+  public void testHiddenChildIsSkipped() throws Exception {
+    RepositoryFileTree tree = walk( null, false, 1 );
+
+    assertEquals( Collections.singletonList( "a" ), names( tree.getChildren() ) );
+    assertNull( tree.getChildren().get( 0 ).getChildren() );
+  }
+
+  @Test
+  public void testDepthZeroHasNoChildren() throws Exception {
+    RepositoryFileTree tree = walk( null, true, 0 );
+
+    assertEquals( "root", tree.getFile().getName() );
+    assertNull( tree.getChildren() );
+  }
+
+  private RepositoryFileTree walk( String filter, boolean showHidden, int depth ) throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/", showHidden, depth, filter );
+    return new JcrRepositoryFileTreeWalker( session, pentahoJcrConstants, pathConversionHelper, lockHelper, request,
+        accessVoterManager ).walk( root, depth );
+  }
+
+  private Node folder( String name, boolean hidden ) throws Exception {
+    Node node = file( name, hidden );
+    folders.add( node );
+    files.put( node, new RepositoryFile.Builder( name, name ).folder( true ).hidden( hidden ).build() );
+    return node;
+  }
+
+  private Node file( String name, boolean hidden ) throws Exception {
+    Node node = mock( Node.class );
+    when( node.getName() ).thenReturn( name );
+    when( node.getIdentifier() ).thenReturn( name );
+    when( node.getNodes() ).thenReturn( new NodeIteratorAdapter( Collections.emptyList() ) );
+    files.put( node, new RepositoryFile.Builder( name, name ).hidden( hidden ).build() );
+    aclReadableIds.add( name );
+    return node;
+  }
+
+  private void children( Node parent, Node... children ) throws Exception {
+    when( parent.getNodes() ).thenAnswer( invocation -> new NodeIteratorAdapter( Arrays.asList( children ) ) );
+  }
+
+  private List<String> names( List<RepositoryFileTree> trees ) {
+    List<String> names = new ArrayList<>();
+    for ( RepositoryFileTree tree : trees ) {
+      names.add( tree.getFile().getName() );
+    }
+    return names;
+  }
+}
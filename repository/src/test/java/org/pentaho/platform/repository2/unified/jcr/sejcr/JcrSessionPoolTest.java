@@ -0,0 +1,161 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.apache.jackrabbit.core.SessionImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Credentials;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.Workspace;
+import javax.jcr.observation.ObservationManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.pentaho.platform.repository2.unified.jcr.sejcr.JcrSessionPool.POOLED_SESSION;
+
+public class JcrSessionPoolTest {
+
+  private final Credentials suzy = new SimpleCredentials( "suzy", new char[0] );
+
+  private final List<Session> logins = new ArrayList<>();
+
+  private JcrSessionPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new JcrSessionPool( credentials -> newSession(), 2, 3, 60000 );
+  }
+
+  private Session newSession() throws RepositoryException {
+    Map<String, Object> attributes = new HashMap<>();
+    SessionImpl session = mock( SessionImpl.class );
+    doAnswer( invocation -> attributes.put( invocation.getArgument( 0 ), invocation.getArgument( 1 ) ) )
+      .when( session ).setAttribute( anyString(), any() );
+    when( session.getAttribute( anyString() ) ).thenAnswer( invocation -> attributes.get( invocation.getArgument( 0 ) ) );
+    when( session.isLive() ).thenReturn( true );
+    Workspace workspace = mock( Workspace.class );
+    when( session.getWorkspace() ).thenReturn( workspace );
+    when( workspace.getObservationManager() ).thenReturn( mock( ObservationManager.class ) );
+    logins.add( session );
+    return session;
+  }
+
+  private static JcrSessionPool.PooledSession pooled( Session session ) {
+    return (JcrSessionPool.PooledSession) session.getAttribute( POOLED_SESSION );
+  }
+
+  private Session acquireOnOtherThread( Credentials credentials ) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor.submit( () -> pool.acquire( credentials ) ).get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testReleasedSessionIsReusedByAnyThread() throws Exception {
+    Session session = pool.acquire( suzy );
+    pooled( session ).release();
+
+    assertSame( session, acquireOnOtherThread( suzy ) );
+    assertEquals( 1, pool.getLoginCount() );
+    assertEquals( 2, pool.getAcquireCount() );
+  }
+
+  @Test
+  public void testNestedAcquireSharesCheckedOutSession() throws Exception {
+    Session outer = pool.acquire( suzy );
+    Session nested = pool.acquire( suzy );
+
+    assertSame( outer, nested );
+    assertEquals( 1, pool.getCheckedOutCount() );
+    assertNotSame( outer, acquireOnOtherThread( suzy ) );
+    assertEquals( 2, pool.getLoginCount() );
+  }
+
+  @Test
+  public void testRefreshOnlyAfterWorkspaceChange() throws Exception {
+    Session session = pool.acquire( suzy );
+    pooled( session ).release();
+    pool.acquire( suzy );
+    verify( session, never() ).refresh( false );
+
+    pooled( session ).release();
+    pooled( session ).onEvent( null );
+    pool.acquire( suzy );
+    verify( session, times( 1 ) ).refresh( false );
+    assertEquals( 1, pool.getRefreshCount() );
+  }
+
+  @Test
+  public void testIdleSessionsAreCappedPerUserAndOverall() throws Exception {
+    Session first = pool.acquire( suzy );
+    Session second = acquireOnOtherThread( suzy );
+    Session third = acquireOnOtherThread( suzy );
+    Session admin = acquireOnOtherThread( new SimpleCredentials( "admin", new char[0] ) );
+    Session tiffany = acquireOnOtherThread( new SimpleCredentials( "tiffany", new char[0] ) );
+
+    // released from this thread, whichever thread checked them out
+    pooled( first ).release();
+    pooled( second ).release();
+    pooled( third ).release();
+    verify( first ).logout();
+    assertEquals( 2, pool.getIdleCount() );
+
+    pooled( admin ).release();
+    pooled( tiffany ).release();
+    verify( second ).logout();
+    assertEquals( 3, pool.getIdleCount() );
+    assertEquals( 2, pool.getEvictionCount() );
+    assertEquals( 0, pool.getCheckedOutCount() );
+  }
+
+  @Test
+  public void testDeadSessionIsReplaced() throws Exception {
+    Session session = pool.acquire( suzy );
+    pooled( session ).release();
+    when( session.isLive() ).thenReturn( false );
+
+    Session replacement = pool.acquire( suzy );
+    assertNotSame( session, replacement );
+    assertEquals( 2, logins.size() );
+  }
+}
@@ -0,0 +1,167 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RoleAuthorizationPolicyTest {
+
+  private static final String READ = "org.pentaho.repository.read"; //$NON-NLS-1$
+  private static final String CREATE = "org.pentaho.repository.create"; //$NON-NLS-1$
+  private static final String ADMINISTER = "org.pentaho.security.administerSecurity"; //$NON-NLS-1$
+
+  private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
+  private RoleAuthorizationPolicy policy;
+
+  @Before
+  public void setUp() {
+    SimpleMapCacheManager.getInstance().clearRegionCache( RoleAuthorizationPolicy.AUTHORIZATION_SNAPSHOT_REGION );
+    roleBindingDao = mock( IRoleAuthorizationPolicyRoleBindingDao.class );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated", "Power User" ) ) ).thenReturn(
+        Arrays.asList( READ, CREATE ) );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Power User", "Authenticated" ) ) ).thenReturn(
+        Arrays.asList( READ, CREATE ) );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Administrator" ) ) ).thenReturn(
+        Arrays.asList( READ, CREATE, ADMINISTER ) );
+    policy = new RoleAuthorizationPolicy( roleBindingDao, SimpleMapCacheManager.getInstance() );
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    PentahoSessionHolder.removeSession();
+    SimpleMapCacheManager.getInstance().clearRegionCache( RoleAuthorizationPolicy.AUTHORIZATION_SNAPSHOT_REGION );
+  }
+
+  private static void login( String userName, String... roles ) {
+    List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( userName, null, authorities ) );
+  }
+
+  @Test
+  public void testIsAllowed() {
+    login( "suzy", "Authenticated", "Power User" );
+    assertTrue( policy.isAllowed( READ ) );
+    assertTrue( policy.isAllowed( CREATE ) );
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+    assertFalse( policy.isAllowed( "unknown" ) );
+    assertFalse( policy.isAllowed( null ) );
+
+    login( "admin", "Administrator" );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+  }
+
+  @Test
+  public void testGetAllowedActions() {
+    login( "suzy", "Authenticated", "Power User" );
+    assertEquals( Arrays.asList( CREATE, READ ), policy.getAllowedActions( null ) );
+    assertEquals( Arrays.asList( CREATE, READ ), policy.getAllowedActions( "org.pentaho.repository" ) );
+    assertTrue( policy.getAllowedActions( "org.pentaho.security" ).isEmpty() );
+  }
+
+  @Test
+  public void testSnapshotIsSharedByAuthoritiesInAnyOrder() {
+    login( "suzy", "Authenticated", "Power User" );
+    assertTrue( policy.isAllowed( READ ) );
+    login( "tiffany", "Power User", "Authenticated" );
+    assertTrue( policy.isAllowed( CREATE ) );
+    assertEquals( 2, policy.getAllowedActions( null ).size() );
+
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testSnapshotIsRebuiltAfterBindingsChange() {
+    login( "suzy", "Authenticated", "Power User" );
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated", "Power User" ) ) ).thenReturn(
+        Arrays.asList( READ, CREATE, ADMINISTER ) );
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+    // what AbstractJcrBackedRoleBindingDao does on save
+    SimpleMapCacheManager.getInstance().clearRegionCache( RoleAuthorizationPolicy.AUTHORIZATION_SNAPSHOT_REGION );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+  }
+
+  @Test
+  public void testSnapshotsAreNotSharedAcrossTenants() {
+    IPentahoSession session = mock( IPentahoSession.class );
+    PentahoSessionHolder.setSession( session );
+    login( "admin", "Administrator" );
+
+    when( session.getAttribute( IPentahoSession.TENANT_ID_KEY ) ).thenReturn( "/pentaho/tenant0" );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+
+    // the same role name of another tenant is resolved again
+    when( session.getAttribute( IPentahoSession.TENANT_ID_KEY ) ).thenReturn( "/pentaho/tenant1" );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Administrator" ) ) ).thenReturn(
+        Arrays.asList( READ ) );
+    assertFalse( policy.isAllowed( ADMINISTER ) );
+    assertTrue( policy.isAllowed( READ ) );
+
+    when( session.getAttribute( IPentahoSession.TENANT_ID_KEY ) ).thenReturn( "/pentaho/tenant0" );
+    assertTrue( policy.isAllowed( ADMINISTER ) );
+    verify( roleBindingDao, times( 2 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  /**
+   * Once the snapshot is compiled, isAllowed doesn't go back to the role binding DAO.
+   */
+  @Test
+  public void testRoleBindingsAreReadOnce() {
+    login( "suzy", "Authenticated", "Power User" );
+    int allowed = 0;
+    for ( int i = 0; i < 1000; i++ ) {
+      if ( policy.isAllowed( i % 2 == 0 ? READ : ADMINISTER ) ) {
+        allowed++;
+      }
+    }
+
+    assertEquals( 500, allowed );
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+}
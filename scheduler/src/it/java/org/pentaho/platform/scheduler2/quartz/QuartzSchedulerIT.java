@@ -25,11 +25,13 @@ import org.junit.Test;
 import org.pentaho.platform.api.action.IAction;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
 import org.pentaho.platform.api.scheduler2.IBackgroundExecutionStreamProvider;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.ISchedulerListener;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.boot.PlatformInitializationException;
@@ -234,6 +236,85 @@ public class QuartzSchedulerIT {
     assertEquals( trigger.getNextFireTime(), job.getNextRun() );
   }
 
+  @Test
+  public void queryJobsTest() throws Exception {
+    final String[] jobIds = new String[ 50 ];
+    for ( int i = 0; i < jobIds.length; i++ ) {
+      jobIds[ i ] = USER_NAME + "\t" + JOB_NAME + "\t" + String.format( "%03d", i );
+      final JobDetail jobDetail = new JobDetail( jobIds[ i ], USER_NAME, BlockingQuartzJob.class );
+      jobDetail.setJobDataMap( new JobDataMap( jobDetails ) );
+      when( quartzScheduler.getJobDetail( eq( jobIds[ i ] ), eq( USER_NAME ) ) ).thenReturn( jobDetail );
+      final Trigger trigger = mock( Trigger.class );
+      when( trigger.getNextFireTime() ).thenReturn( new Date( System.currentTimeMillis() + 60000 ) );
+      when( quartzScheduler.getTriggersOfJob( eq( jobIds[ i ] ), eq( USER_NAME ) ) )
+          .thenReturn( new Trigger[] { trigger } );
+    }
+    when( quartzScheduler.getJobGroupNames() ).thenReturn( new String[] { USER_NAME } );
+    when( quartzScheduler.getJobNames( eq( USER_NAME ) ) ).thenReturn( jobIds );
+
+    JobQuery query = new JobQuery();
+    query.setUserName( USER_NAME );
+    query.setActionClass( "RESERVEDMAPKEY_ACTIONCLASS" );
+    query.setOffset( 10 );
+    query.setLimit( 5 );
+    List<Job> jobs = scheduler.queryJobs( query );
+
+    assertEquals( 5, jobs.size() );
+    assertEquals( jobIds[ 10 ], jobs.get( 0 ).getJobId() );
+    assertEquals( jobIds[ 14 ], jobs.get( 4 ).getJobId() );
+
+    // a second page is answered from the index: only the jobs of the page are loaded
+    query.setOffset( 20 );
+    jobs = scheduler.queryJobs( query );
+    assertEquals( 5, jobs.size() );
+    verify( quartzScheduler, times( 1 ) ).getJobNames( eq( USER_NAME ) );
+    verify( quartzScheduler, times( 2 ) ).getJobDetail( eq( jobIds[ 20 ] ), eq( USER_NAME ) );
+    verify( quartzScheduler, times( 1 ) ).getJobDetail( eq( jobIds[ 30 ] ), eq( USER_NAME ) );
+
+    query = new JobQuery();
+    query.setUserName( "someoneElse" );
+    assertTrue( scheduler.queryJobs( query ).isEmpty() );
+
+    query = new JobQuery();
+    query.setNextRunTo( new Date() );
+    assertTrue( scheduler.queryJobs( query ).isEmpty() );
+  }
+
+  @Test
+  public void queryBlockOutJobsSeesOtherNodesTest() throws Exception {
+    when( quartzScheduler.getJobGroupNames() ).thenReturn( new String[] { USER_NAME } );
+    when( quartzScheduler.getJobNames( eq( USER_NAME ) ) ).thenReturn( new String[ 0 ] );
+    JobQuery query = new JobQuery();
+    query.setBlockout( true );
+    assertTrue( scheduler.queryJobs( query ).isEmpty() );
+
+    // a block-out created by another cluster node, well within the index refresh interval
+    final String blockOutId = USER_NAME + "\t" + IBlockoutManager.BLOCK_OUT_JOB_NAME + "\t" + "1";
+    final JobDetail jobDetail = new JobDetail( blockOutId, USER_NAME, BlockingQuartzJob.class );
+    jobDetail.setJobDataMap( new JobDataMap( jobDetails ) );
+    when( quartzScheduler.getJobDetail( eq( blockOutId ), eq( USER_NAME ) ) ).thenReturn( jobDetail );
+    when( quartzScheduler.getJobNames( eq( USER_NAME ) ) ).thenReturn( new String[] { blockOutId } );
+    when( quartzScheduler.getTriggersOfJob( eq( blockOutId ), eq( USER_NAME ) ) ).thenReturn(
+        new Trigger[] { mock( Trigger.class ) } );
+
+    List<Job> blockOuts = scheduler.queryJobs( query );
+    assertEquals( 1, blockOuts.size() );
+    assertEquals( blockOutId, blockOuts.get( 0 ).getJobId() );
+  }
+
+  @Test
+  public void queryJobsDropsRemovedJobsTest() throws Exception {
+    when( quartzScheduler.getJobGroupNames() ).thenReturn( new String[] { USER_NAME } );
+    when( quartzScheduler.getJobNames( eq( USER_NAME ) ) ).thenReturn( new String[] { JOB_ID } );
+    setJobDataMap( USER_NAME );
+    when( quartzScheduler.getTriggersOfJob( eq( JOB_ID ), eq( USER_NAME ) ) ).thenReturn( new Trigger[ 0 ] );
+
+    assertTrue( scheduler.queryJobs( new JobQuery() ).isEmpty() );
+    assertTrue( scheduler.queryJobs( new JobQuery() ).isEmpty() );
+
+    verify( quartzScheduler, times( 1 ) ).getTriggersOfJob( eq( JOB_ID ), eq( USER_NAME ) );
+  }
+
   private JobDetail setJobDataMap( String groupName ) throws org.quartz.SchedulerException {
     final JobDetail jobDetail = new JobDetail( JOB_ID, USER_NAME, BlockingQuartzJob.class );
     jobDetail.setJobDataMap( new JobDataMap( jobDetails ) );
@@ -21,6 +21,7 @@
 package org.pentaho.platform.api.scheduler2;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -251,6 +252,22 @@ public interface IScheduler {
    */
   public List<Job> getJobs( IJobFilter filter ) throws SchedulerException;
 
+  /**
+   * Lists the currently scheduled jobs matching a typed query, one page at a time. The default implementation
+   * applies the query as a filter to {@link #getJobs(IJobFilter)}; implementations able to index jobs should override
+   * it.
+   * 
+   * @param query
+   *          the criteria and page of jobs to return
+   * @return the matching scheduled jobs within the requested page
+   */
+  default List<Job> queryJobs( JobQuery query ) throws SchedulerException {
+    List<Job> jobs = getJobs( query );
+    int from = Math.min( query.getOffset(), jobs.size() );
+    int to = query.getLimit() < 0 ? jobs.size() : (int) Math.min( jobs.size(), (long) from + query.getLimit() );
+    return new ArrayList<Job>( jobs.subList( from, to ) );
+  }
+
   /**
    * Returns a history of the runs for a particular job.
    * 
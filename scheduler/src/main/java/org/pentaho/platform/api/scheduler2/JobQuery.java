@@ -0,0 +1,211 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.util.ActionUtil;
+
+/**
+ * Typed criteria for {@link IScheduler#queryJobs(JobQuery)}. Unlike an arbitrary {@link IJobFilter}, every criterion
+ * is known to the scheduler, so an implementation can answer the query from an index instead of loading every job.
+ * Criteria left unset ({@code null}) match all jobs. A query is also an {@link IJobFilter}, so it can be handed to
+ * {@link IScheduler#getJobs(IJobFilter)} as is.
+ */
+public class JobQuery implements IJobFilter {
+
+  private String userName;
+
+  private String jobName;
+
+  private Boolean blockout;
+
+  private String actionClass;
+
+  private Set<JobState> states;
+
+  private Date nextRunFrom;
+
+  private Date nextRunTo;
+
+  private int offset = 0;
+
+  private int limit = -1;
+
+  public String getUserName() {
+    return userName;
+  }
+
+  /**
+   * @param userName
+   *          only match jobs owned by this user
+   */
+  public void setUserName( String userName ) {
+    this.userName = userName;
+  }
+
+  public String getJobName() {
+    return jobName;
+  }
+
+  /**
+   * @param jobName
+   *          only match jobs with this user defined name
+   */
+  public void setJobName( String jobName ) {
+    this.jobName = jobName;
+  }
+
+  public Boolean getBlockout() {
+    return blockout;
+  }
+
+  /**
+   * @param blockout
+   *          {@code true} to only match block-out jobs, {@code false} to exclude them
+   */
+  public void setBlockout( Boolean blockout ) {
+    this.blockout = blockout;
+  }
+
+  public String getActionClass() {
+    return actionClass;
+  }
+
+  /**
+   * @param actionClass
+   *          only match jobs running this {@link org.pentaho.platform.api.action.IAction} class
+   */
+  public void setActionClass( String actionClass ) {
+    this.actionClass = actionClass;
+  }
+
+  public Set<JobState> getStates() {
+    return states;
+  }
+
+  /**
+   * @param states
+   *          only match jobs currently in one of these states
+   */
+  public void setStates( Set<JobState> states ) {
+    this.states = states == null ? null : EnumSet.copyOf( states );
+  }
+
+  public Date getNextRunFrom() {
+    return nextRunFrom;
+  }
+
+  /**
+   * @param nextRunFrom
+   *          only match jobs whose next run is at or after this time
+   */
+  public void setNextRunFrom( Date nextRunFrom ) {
+    this.nextRunFrom = nextRunFrom;
+  }
+
+  public Date getNextRunTo() {
+    return nextRunTo;
+  }
+
+  /**
+   * @param nextRunTo
+   *          only match jobs whose next run is before this time
+   */
+  public void setNextRunTo( Date nextRunTo ) {
+    this.nextRunTo = nextRunTo;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @param offset
+   *          the number of matching jobs to skip
+   */
+  public void setOffset( int offset ) {
+    this.offset = Math.max( 0, offset );
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @param limit
+   *          the maximum number of jobs to return, negative for no limit
+   */
+  public void setLimit( int limit ) {
+    this.limit = limit;
+  }
+
+  /**
+   * Matches the criteria that never change over the life of a job.
+   *
+   * @return <code>true</code> if a job with these attributes may be part of the results
+   */
+  public boolean acceptsDefinition( String jobUserName, String jobJobName, String jobActionClass ) {
+    if ( userName != null && !userName.equals( jobUserName ) ) {
+      return false;
+    }
+    if ( jobName != null && !jobName.equals( jobJobName ) ) {
+      return false;
+    }
+    if ( blockout != null && blockout != IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobJobName ) ) {
+      return false;
+    }
+    return actionClass == null || actionClass.equals( jobActionClass );
+  }
+
+  /**
+   * Matches the criteria that move as the job fires, is paused or is resumed.
+   *
+   * @return <code>true</code> if a job in this state and with this next run may be part of the results
+   */
+  public boolean acceptsSchedule( JobState state, Date nextRun ) {
+    if ( states != null && !states.contains( state ) ) {
+      return false;
+    }
+    if ( nextRunFrom != null && ( nextRun == null || nextRun.before( nextRunFrom ) ) ) {
+      return false;
+    }
+    return nextRunTo == null || ( nextRun != null && nextRun.before( nextRunTo ) );
+  }
+
+  /**
+   * @return <code>true</code> if the query reads the state of a job
+   */
+  public boolean hasStateCriteria() {
+    return states != null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean accept( Job job ) {
+    Object jobActionClass = job.getJobParams() == null ? null : job.getJobParams().get( ActionUtil.QUARTZ_ACTIONCLASS );
+    return acceptsDefinition( job.getUserName(), job.getJobName(), jobActionClass == null ? null : jobActionClass
+        .toString() ) && acceptsSchedule( job.getState(), job.getNextRun() );
+  }
+}
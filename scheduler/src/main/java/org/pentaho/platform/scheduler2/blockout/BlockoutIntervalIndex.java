@@ -0,0 +1,236 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzJobKey;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+import org.quartz.Trigger;
+
+/**
+ * The upcoming blocked windows of a set of block-out jobs, merged into one sorted, non-overlapping list so that
+ * {@link #isBlocked(long)} is a binary search.
+ * <p>
+ * Windows are only expanded up to a horizon, after which the index has to be brought up to date with
+ * {@link #update(List, long)}. An update only recomputes the windows of block-outs that were added or changed since
+ * the previous one, or whose own windows ran out.
+ */
+public class BlockoutIntervalIndex {
+
+  /**
+   * How far ahead of the update time windows are expanded
+   */
+  static final long HORIZON = TIME.DAY.time;
+
+  /**
+   * Upper bound of windows kept for a single block-out, e.g. a block-out firing every second
+   */
+  static final int MAX_WINDOWS_PER_BLOCKOUT = 10000;
+
+  private static final class Windows {
+    private final String signature;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long validUntil;
+
+    private Windows( String signature, long[] starts, long[] ends, long validUntil ) {
+      this.signature = signature;
+      this.starts = starts;
+      this.ends = ends;
+      this.validUntil = validUntil;
+    }
+  }
+
+  private Map<String, Windows> windowsByJobId = new HashMap<String, Windows>();
+
+  private long[] starts = new long[0];
+
+  private long[] ends = new long[0];
+
+  private long validFrom = Long.MAX_VALUE;
+
+  private long validUntil = Long.MIN_VALUE;
+
+  /**
+   * @return <code>true</code> if {@link #isBlocked(long)} can answer for the given time without an update
+   */
+  public synchronized boolean isValidAt( long time ) {
+    return validFrom <= time && time < validUntil;
+  }
+
+  /**
+   * @return <code>true</code> if the time falls inside a blocked window, bounds included
+   */
+  public synchronized boolean isBlocked( long time ) {
+    // the last window starting at or before time is the only candidate, as windows don't overlap
+    int i = Arrays.binarySearch( starts, time );
+    if ( i < 0 ) {
+      i = -i - 2;
+    }
+    return i >= 0 && time <= ends[i];
+  }
+
+  /**
+   * Brings the windows up to date with the given block-out jobs. Windows of new or changed block-outs, and of those
+   * with less than half the {@link #HORIZON} left, are expanded from {@code now} to the horizon; the others are kept.
+   */
+  public synchronized void update( List<Job> blockOutJobs, long now ) {
+    Map<String, Windows> updated = new HashMap<String, Windows>();
+    long until = now + HORIZON;
+    for ( Job blockOutJob : blockOutJobs ) {
+      IJobTrigger trigger = blockOutJob.getJobTrigger();
+      if ( trigger == null ) {
+        continue;
+      }
+      String signature = getSignature( trigger );
+      Windows windows = windowsByJobId.get( blockOutJob.getJobId() );
+      if ( windows == null || !windows.signature.equals( signature ) || windows.validUntil < now + HORIZON / 2 ) {
+        windows = computeWindows( trigger, signature, now, until );
+      }
+      updated.put( blockOutJob.getJobId(), windows );
+    }
+    windowsByJobId = updated;
+    merge( now, until );
+  }
+
+  private void merge( long now, long until ) {
+    int total = 0;
+    long mergedValidUntil = until;
+    for ( Windows windows : windowsByJobId.values() ) {
+      total += windows.starts.length;
+      mergedValidUntil = Math.min( mergedValidUntil, windows.validUntil );
+    }
+    long[][] all = new long[total][];
+    int n = 0;
+    for ( Windows windows : windowsByJobId.values() ) {
+      for ( int i = 0; i < windows.starts.length; i++ ) {
+        all[n++] = new long[] { windows.starts[i], windows.ends[i] };
+      }
+    }
+    Arrays.sort( all, ( a, b ) -> Long.compare( a[0], b[0] ) );
+
+    long[] mergedStarts = new long[total];
+    long[] mergedEnds = new long[total];
+    int m = -1;
+    for ( long[] window : all ) {
+      if ( m >= 0 && window[0] <= mergedEnds[m] ) {
+        mergedEnds[m] = Math.max( mergedEnds[m], window[1] );
+      } else {
+        m++;
+        mergedStarts[m] = window[0];
+        mergedEnds[m] = window[1];
+      }
+    }
+    starts = Arrays.copyOf( mergedStarts, m + 1 );
+    ends = Arrays.copyOf( mergedEnds, m + 1 );
+    validFrom = now;
+    validUntil = mergedValidUntil;
+  }
+
+  /**
+   * Expands the windows of one block-out that overlap [from, until]. A window is clipped to the start and end time of
+   * its trigger, as a block-out doesn't block outside of them.
+   */
+  private static Windows computeWindows( IJobTrigger trigger, String signature, long from, long until ) {
+    long duration = trigger.getDuration();
+    long startTime = trigger.getStartTime() == null ? Long.MIN_VALUE : trigger.getStartTime().getTime();
+    long endTime = trigger.getEndTime() == null ? Long.MAX_VALUE : trigger.getEndTime().getTime();
+    List<long[]> windows = new ArrayList<long[]>();
+    long validUntil = until;
+
+    if ( BlockoutManagerUtil.isComplexTrigger( trigger ) ) {
+      Trigger quartzTrigger;
+      try {
+        quartzTrigger = QuartzScheduler.createQuartzTrigger( trigger, new QuartzJobKey( "test", "test" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+      } catch ( SchedulerException e ) {
+        throw new RuntimeException( e );
+      }
+      // start one duration back so that a window in progress is included; a new trigger would start from now
+      Date after = new Date( from - duration - 1 );
+      quartzTrigger.setStartTime( new Date( Math.max( after.getTime(), startTime ) ) );
+      Date fireTime = quartzTrigger.getFireTimeAfter( after );
+      while ( fireTime != null && fireTime.getTime() <= until && fireTime.getTime() <= endTime ) {
+        if ( windows.size() == MAX_WINDOWS_PER_BLOCKOUT ) {
+          validUntil = fireTime.getTime();
+          break;
+        }
+        addWindow( windows, fireTime.getTime(), duration, startTime, endTime );
+        fireTime = quartzTrigger.getFireTimeAfter( fireTime );
+      }
+    } else {
+      long interval = ( (SimpleJobTrigger) trigger ).getRepeatInterval() * 1000;
+      long first = trigger.getStartTime() == null ? from : trigger.getStartTime().getTime();
+      if ( interval <= 0 ) {
+        addWindow( windows, first, duration, startTime, endTime );
+      } else {
+        long k = Math.max( 0, ( from - duration - first ) / interval );
+        for ( long fire = first + k * interval; fire <= until && fire <= endTime; fire += interval ) {
+          if ( windows.size() == MAX_WINDOWS_PER_BLOCKOUT ) {
+            validUntil = fire;
+            break;
+          }
+          addWindow( windows, fire, duration, startTime, endTime );
+        }
+      }
+    }
+
+    long[] starts = new long[windows.size()];
+    long[] ends = new long[windows.size()];
+    for ( int i = 0; i < windows.size(); i++ ) {
+      starts[i] = windows.get( i )[0];
+      ends[i] = windows.get( i )[1];
+    }
+    return new Windows( signature, starts, ends, validUntil );
+  }
+
+  private static void addWindow( List<long[]> windows, long fireTime, long duration, long startTime, long endTime ) {
+    long start = Math.max( fireTime, startTime );
+    long end = Math.min( fireTime + duration, endTime );
+    if ( start <= end ) {
+      windows.add( new long[] { start, end } );
+    }
+  }
+
+  static String getSignature( IJobTrigger trigger ) {
+    StringBuilder b = new StringBuilder();
+    b.append( trigger.getClass().getName() );
+    b.append( '|' ).append( trigger.getCronString() );
+    b.append( '|' ).append( trigger );
+    b.append( '|' ).append( trigger.getStartTime() == null ? null : trigger.getStartTime().getTime() );
+    b.append( '|' ).append( trigger.getEndTime() == null ? null : trigger.getEndTime().getTime() );
+    b.append( '|' ).append( trigger.getDuration() );
+    return b.toString();
+  }
+}
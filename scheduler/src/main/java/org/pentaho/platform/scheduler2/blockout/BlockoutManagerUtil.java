@@ -104,13 +104,42 @@ public class BlockoutManagerUtil {
 
   public static boolean willBlockSchedule( IJobTrigger scheduleTrigger, IJobTrigger blockOutJobTrigger,
       IScheduler scheduler ) {
+    List<Date> blockOutFireTimes = isComplexTrigger( blockOutJobTrigger )
+        ? getFireTimes( blockOutJobTrigger, scheduler ) : null;
+    return willBlockSchedule( scheduleTrigger, blockOutJobTrigger, blockOutFireTimes, scheduler );
+  }
+
+  /**
+   * Tests a block-out against many schedules, computing the fire times of the block-out only once.
+   *
+   * @return the schedule triggers that the block-out would block at least once
+   */
+  public static List<IJobTrigger> willBlockSchedules( List<IJobTrigger> scheduleTriggers,
+      IJobTrigger blockOutJobTrigger, IScheduler scheduler ) {
+    List<IJobTrigger> blockedSchedules = new ArrayList<IJobTrigger>();
+    if ( scheduleTriggers.isEmpty() ) {
+      return blockedSchedules;
+    }
+    List<Date> blockOutFireTimes = isComplexTrigger( blockOutJobTrigger )
+        ? getFireTimes( blockOutJobTrigger, scheduler ) : null;
+    for ( IJobTrigger scheduleTrigger : scheduleTriggers ) {
+      if ( willBlockSchedule( scheduleTrigger, blockOutJobTrigger, blockOutFireTimes, scheduler ) ) {
+        blockedSchedules.add( scheduleTrigger );
+      }
+    }
+    return blockedSchedules;
+  }
+
+  private static boolean willBlockSchedule( IJobTrigger scheduleTrigger, IJobTrigger blockOutJobTrigger,
+      List<Date> blockOutFireTimes, IScheduler scheduler ) {
 
     boolean isScheduleTriggerComplex = isComplexTrigger( scheduleTrigger );
     boolean isBlockOutTriggerComplex = isComplexTrigger( blockOutJobTrigger );
 
     // Both Schedule and BlockOut are complex
     if ( isScheduleTriggerComplex && isBlockOutTriggerComplex ) {
-      return willComplexBlockOutBlockComplexScheduleTrigger( blockOutJobTrigger, scheduleTrigger, scheduler );
+      return willComplexBlockOutBlockComplexScheduleTrigger( blockOutJobTrigger, blockOutFireTimes, scheduleTrigger,
+          scheduler );
     }
 
     // Complex Schedule Trigger
@@ -120,7 +149,8 @@ public class BlockoutManagerUtil {
 
     // Complex BlockOut Trigger
     if ( isBlockOutTriggerComplex ) {
-      return willComplexBlockOutTriggerBlockSchedule( blockOutJobTrigger, scheduleTrigger, scheduler );
+      return willComplexBlockOutTriggerBlockSchedule( blockOutJobTrigger, blockOutFireTimes, scheduleTrigger,
+          scheduler );
     }
 
     /*
@@ -163,7 +193,7 @@ public class BlockoutManagerUtil {
   }
 
   private static boolean willComplexBlockOutTriggerBlockSchedule( IJobTrigger blockOutJobTrigger,
-      IJobTrigger scheduleTrigger, IScheduler scheduler ) {
+      List<Date> blockOutFireTimes, IJobTrigger scheduleTrigger, IScheduler scheduler ) {
 
     // Short circuit if schedule trigger after end time of block out trigger
     if ( ( blockOutJobTrigger.getEndTime() != null && scheduleTrigger.getStartTime().after(
@@ -176,7 +206,7 @@ public class BlockoutManagerUtil {
     long duration = blockOutJobTrigger.getDuration();
 
     // Loop through fire times of block out trigger
-    for ( Date blockOutStartDate : getFireTimes( blockOutJobTrigger, scheduler ) ) {
+    for ( Date blockOutStartDate : blockOutFireTimes ) {
       Date blockOutEndDate = new Date( blockOutStartDate.getTime() + duration );
 
       if ( willBlockOutRangeBlockSimpleTrigger( blockOutStartDate, blockOutEndDate, scheduleTrigger, scheduler ) ) {
@@ -212,8 +242,7 @@ public class BlockoutManagerUtil {
   }
 
   private static boolean willComplexBlockOutBlockComplexScheduleTrigger( IJobTrigger blockOutJobTrigger,
-      IJobTrigger jobTrigger, IScheduler scheduler ) {
-    List<Date> blockOutFireTimes = getFireTimes( blockOutJobTrigger, scheduler );
+      List<Date> blockOutFireTimes, IJobTrigger jobTrigger, IScheduler scheduler ) {
 
     int iStart = 0;
     for ( Date scheduleFireTime : getFireTimes( jobTrigger, scheduler ) ) {
@@ -24,15 +24,22 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.pentaho.platform.api.scheduler2.IBlockoutManager;
-import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 public class PentahoBlockoutManager implements IBlockoutManager {
 
+  /*
+   * The blocked windows of the block-outs seen by the previous check. The block-outs themselves are read from the
+   * scheduler on every check, so that changes made by other cluster nodes are seen right away; only the windows of
+   * block-outs that changed since the previous check are recomputed.
+   */
+  private final BlockoutIntervalIndex blockOutIntervals = new BlockoutIntervalIndex();
+
   private IScheduler scheduler;
 
   public PentahoBlockoutManager() {
@@ -54,15 +61,12 @@ public class PentahoBlockoutManager implements IBlockoutManager {
   @Override
   public List<Job> getBlockOutJobs() {
     try {
-      List<Job> jobs = scheduler.getJobs( new IJobFilter() {
-        public boolean accept( Job job ) {
-          if ( BLOCK_OUT_JOB_NAME.equals( job.getJobName() ) ) {
-            job.getJobTrigger().setDuration( ( (Number) job.getJobParams().get( DURATION_PARAM ) ).longValue() );
-            return true;
-          }
-          return false;
-        }
-      } );
+      JobQuery query = new JobQuery();
+      query.setBlockout( true );
+      List<Job> jobs = scheduler.queryJobs( query );
+      for ( Job job : jobs ) {
+        job.getJobTrigger().setDuration( ( (Number) job.getJobParams().get( DURATION_PARAM ) ).longValue() );
+      }
       return jobs;
 
     } catch ( SchedulerException e ) {
@@ -79,37 +83,31 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   @Override
   public boolean shouldFireNow() {
-    return BlockoutManagerUtil.shouldFireNow( getBlockOutJobTriggers(), this.scheduler );
+    List<Job> blockOutJobs = getBlockOutJobs();
+    long now = System.currentTimeMillis();
+    synchronized ( blockOutIntervals ) {
+      blockOutIntervals.update( blockOutJobs, now );
+      return !blockOutIntervals.isBlocked( now );
+    }
   }
 
   @Override
   public List<IJobTrigger> willBlockSchedules( IJobTrigger testBlockOutJobTrigger ) {
-    List<IJobTrigger> blockedSchedules = new ArrayList<IJobTrigger>();
-
     List<Job> scheduledJobs = new ArrayList<Job>();
     try {
-      scheduledJobs = this.scheduler.getJobs( new IJobFilter() {
-
-        @Override
-        public boolean accept( Job job ) {
-          return !BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
-        }
-      } );
+      JobQuery query = new JobQuery();
+      query.setBlockout( false );
+      scheduledJobs = this.scheduler.queryJobs( query );
     } catch ( SchedulerException e ) {
       throw new RuntimeException( e );
     }
 
-    // Loop over trigger group names
+    List<IJobTrigger> scheduleTriggers = new ArrayList<IJobTrigger>();
     for ( Job scheduledJob : scheduledJobs ) {
-
-      // Add schedule to list if block out conflicts at all
-      if ( BlockoutManagerUtil.willBlockSchedule( scheduledJob.getJobTrigger(),
-              testBlockOutJobTrigger, this.scheduler ) ) {
-        blockedSchedules.add( scheduledJob.getJobTrigger() );
-      }
+      scheduleTriggers.add( scheduledJob.getJobTrigger() );
     }
 
-    return blockedSchedules;
+    return BlockoutManagerUtil.willBlockSchedules( scheduleTriggers, testBlockOutJobTrigger, this.scheduler );
   }
 
   @Override
@@ -27,6 +27,7 @@ import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MDCUtil;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.scheduler2.blockout.BlockoutAction;
 import org.pentaho.platform.scheduler2.blockout.PentahoBlockoutManager;
 import org.quartz.Job;
@@ -86,7 +87,9 @@ public class BlockingQuartzJob implements Job {
   }
 
   IBlockoutManager getBlockoutManager() throws SchedulerException {
-    return new PentahoBlockoutManager();
+    // the shared manager keeps the blocked windows computed by previous firings
+    IBlockoutManager blockoutManager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$
+    return blockoutManager != null ? blockoutManager : new PentahoBlockoutManager();
   }
 
   Job createUnderlyingJob() {
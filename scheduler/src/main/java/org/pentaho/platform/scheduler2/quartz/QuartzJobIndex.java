@@ -0,0 +1,227 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.quartz;
+
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.api.scheduler2.JobQuery;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of the jobs known to a {@link QuartzScheduler}, keyed by the attributes that never change over the
+ * life of a job: owner, name (and with it the block-out flag) and action class. It lets
+ * {@link QuartzScheduler#queryJobs(JobQuery)} narrow a query down to its candidates without loading the
+ * {@link JobDetail} of every job in the store. State and next run change every time a trigger fires, so they are not
+ * indexed and are read from the live trigger of each candidate instead.
+ * <p>
+ * The scheduler keeps the index current as it creates and removes jobs. Jobs that appear or disappear behind its back
+ * (other cluster nodes, finished one-shot triggers) are picked up by {@link #refresh(Scheduler)}, which only loads
+ * the details of job ids it has not seen before.
+ */
+class QuartzJobIndex {
+
+  static final class Entry {
+    private final String jobId;
+
+    private final String groupName;
+
+    private final String jobName;
+
+    private final String actionClass;
+
+    Entry( String jobId, String groupName, String jobName, String actionClass ) {
+      this.jobId = jobId;
+      this.groupName = groupName;
+      this.jobName = jobName;
+      this.actionClass = actionClass;
+    }
+
+    String getJobId() {
+      return jobId;
+    }
+
+    String getGroupName() {
+      return groupName;
+    }
+
+    String getJobName() {
+      return jobName;
+    }
+
+    String getActionClass() {
+      return actionClass;
+    }
+  }
+
+  private final TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+
+  private final Map<String, Set<String>> jobIdsByUser = new HashMap<String, Set<String>>();
+
+  private final Map<String, Set<String>> jobIdsByActionClass = new HashMap<String, Set<String>>();
+
+  private final Set<String> blockoutJobIds = new TreeSet<String>();
+
+  private volatile long lastRefresh = -1;
+
+  /**
+   * @return <code>true</code> if the index has never been loaded or was last refreshed more than the given number of
+   *         milliseconds ago
+   */
+  boolean isStale( long maxAgeMillis ) {
+    return lastRefresh < 0 || System.currentTimeMillis() - lastRefresh >= maxAgeMillis;
+  }
+
+  /**
+   * Reconciles the index with the job names held by the store. Only jobs missing from the index have their details
+   * loaded.
+   */
+  synchronized void refresh( Scheduler scheduler ) throws org.quartz.SchedulerException {
+    Set<String> storedJobIds = new HashSet<String>();
+    for ( String groupName : scheduler.getJobGroupNames() ) {
+      for ( String jobId : scheduler.getJobNames( groupName ) ) {
+        storedJobIds.add( jobId );
+        if ( !entries.containsKey( jobId ) ) {
+          JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
+          if ( jobDetail != null ) {
+            put( jobId, groupName, getActionClass( jobDetail ) );
+          }
+        }
+      }
+    }
+    for ( String jobId : new ArrayList<String>( entries.keySet() ) ) {
+      if ( !storedJobIds.contains( jobId ) ) {
+        remove( jobId );
+      }
+    }
+    lastRefresh = System.currentTimeMillis();
+  }
+
+  synchronized void put( String jobId, String groupName, String actionClass ) {
+    String jobName;
+    try {
+      jobName = QuartzJobKey.parse( jobId ).getJobName();
+    } catch ( SchedulerException e ) {
+      // not created through the platform scheduler; keep it listed under its raw id
+      jobName = jobId;
+    }
+    remove( jobId );
+    entries.put( jobId, new Entry( jobId, groupName, jobName, actionClass ) );
+    addTo( jobIdsByUser, groupName, jobId );
+    if ( actionClass != null ) {
+      addTo( jobIdsByActionClass, actionClass, jobId );
+    }
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobName ) ) {
+      blockoutJobIds.add( jobId );
+    }
+  }
+
+  synchronized void remove( String jobId ) {
+    Entry entry = entries.remove( jobId );
+    if ( entry != null ) {
+      removeFrom( jobIdsByUser, entry.getGroupName(), jobId );
+      if ( entry.getActionClass() != null ) {
+        removeFrom( jobIdsByActionClass, entry.getActionClass(), jobId );
+      }
+      blockoutJobIds.remove( jobId );
+    }
+  }
+
+  synchronized void clear() {
+    entries.clear();
+    jobIdsByUser.clear();
+    jobIdsByActionClass.clear();
+    blockoutJobIds.clear();
+    lastRefresh = -1;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the indexed jobs matching the unchanging criteria of the query, ordered by job id so that paging over the
+   * results is stable.
+   */
+  synchronized List<Entry> find( JobQuery query ) {
+    Collection<String> candidates = entries.keySet();
+    if ( query.getUserName() != null ) {
+      candidates = smallest( candidates, jobIdsByUser.get( query.getUserName() ) );
+    }
+    if ( query.getActionClass() != null ) {
+      candidates = smallest( candidates, jobIdsByActionClass.get( query.getActionClass() ) );
+    }
+    if ( Boolean.TRUE.equals( query.getBlockout() ) ) {
+      candidates = smallest( candidates, blockoutJobIds );
+    }
+    List<Entry> found = new ArrayList<Entry>();
+    for ( String jobId : candidates ) {
+      Entry entry = entries.get( jobId );
+      if ( query.acceptsDefinition( entry.getGroupName(), entry.getJobName(), entry.getActionClass() ) ) {
+        found.add( entry );
+      }
+    }
+    return found;
+  }
+
+  static String getActionClass( JobDetail jobDetail ) {
+    Object actionClass =
+        jobDetail.getJobDataMap() == null ? null : jobDetail.getJobDataMap().get(
+            QuartzScheduler.RESERVEDMAPKEY_ACTIONCLASS );
+    return actionClass == null ? null : actionClass.toString();
+  }
+
+  private static Collection<String> smallest( Collection<String> current, Set<String> other ) {
+    if ( other == null ) {
+      return new TreeSet<String>();
+    }
+    return other.size() < current.size() ? other : current;
+  }
+
+  private static void addTo( Map<String, Set<String>> index, String key, String jobId ) {
+    Set<String> jobIds = index.get( key );
+    if ( jobIds == null ) {
+      jobIds = new TreeSet<String>();
+      index.put( key, jobIds );
+    }
+    jobIds.add( jobId );
+  }
+
+  private static void removeFrom( Map<String, Set<String>> index, String key, String jobId ) {
+    Set<String> jobIds = index.get( key );
+    if ( jobIds != null ) {
+      jobIds.remove( jobId );
+      if ( jobIds.isEmpty() ) {
+        index.remove( key );
+      }
+    }
+  }
+}
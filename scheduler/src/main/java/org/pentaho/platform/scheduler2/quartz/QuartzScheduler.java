@@ -38,6 +38,7 @@ import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.ISchedulerListener;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
@@ -106,6 +107,15 @@ public class QuartzScheduler implements IScheduler {
 
   public static final String RESERVEDMAPKEY_APPEND_DATE_FORMAT = ActionUtil.QUARTZ_APPEND_DATE_FORMAT;
 
+  /**
+   * How long, in seconds, {@link #queryJobs(JobQuery)} trusts its job index before reconciling it with the job store.
+   * Jobs created or removed through this scheduler are reflected immediately; the interval bounds how long jobs added
+   * by other cluster nodes can go unlisted. A negative value disables the index and queries scan every job.
+   */
+  public static final String JOB_INDEX_REFRESH_PROPERTY = "pentaho.scheduler.jobIndexRefreshSeconds"; //$NON-NLS-1$
+
+  private static final long DEFAULT_JOB_INDEX_REFRESH_SECONDS = 60;
+
   private static final Log logger = LogFactory.getLog( QuartzScheduler.class );
 
   private SchedulerFactory quartzSchedulerFactory;
@@ -114,6 +124,8 @@ public class QuartzScheduler implements IScheduler {
 
   private ArrayList<ISchedulerListener> listeners = new ArrayList<ISchedulerListener>();
 
+  private final QuartzJobIndex jobIndex = new QuartzJobIndex();
+
   private static final Pattern listPattern = Pattern.compile( "\\d+" ); //$NON-NLS-1$
 
   private static final Pattern dayOfWeekRangePattern = Pattern.compile( ".*\\-.*" ); //$NON-NLS-1$
@@ -149,6 +161,7 @@ public class QuartzScheduler implements IScheduler {
       this.shutdown();
       quartzScheduler = null;
     }
+    jobIndex.clear();
   }
 
   public Scheduler getQuartzScheduler() throws org.quartz.SchedulerException {
@@ -326,6 +339,7 @@ public class QuartzScheduler implements IScheduler {
       }
 
       scheduler.scheduleJob( jobDetail, quartzTrigger );
+      jobIndex.put( jobId.toString(), jobId.getUserName(), QuartzJobIndex.getActionClass( jobDetail ) );
 
       logger.debug( MessageFormat.format( "Scheduled job {0} successfully", jobId.toString() ) ); //$NON-NLS-1$
     } catch ( org.quartz.SchedulerException e ) {
@@ -384,6 +398,7 @@ public class QuartzScheduler implements IScheduler {
 
       JobDetail jobDetail = createJobDetails( jobKey, jobParams );
       scheduler.addJob( jobDetail, true );
+      jobIndex.put( jobId, jobKey.getUserName(), QuartzJobIndex.getActionClass( jobDetail ) );
       if ( triggerCalendar != null ) {
         scheduler.addCalendar( jobId.toString(), triggerCalendar, true, true );
         quartzTrigger.setCalendarName( jobId.toString() );
@@ -490,23 +505,7 @@ public class QuartzScheduler implements IScheduler {
             if ( "MANUAL_TRIGGER".equals( trigger.getGroup() ) ) {
               continue;
             }
-            Job job = new Job();
-            job.setGroupName( groupName );
-            JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
-            if ( jobDetail != null ) {
-              job.setUserName( jobDetail.getGroup() );
-              JobDataMap jobDataMap = jobDetail.getJobDataMap();
-              if ( jobDataMap != null ) {
-                Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
-                job.setJobParams( wrappedMap );
-              }
-            }
-
-            job.setJobId( jobId );
-            setJobTrigger( scheduler, job, trigger );
-            job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
-            setJobNextRun( job, trigger );
-            job.setLastRun( trigger.getPreviousFireTime() );
+            Job job = toJob( scheduler, groupName, jobId, trigger );
             if ( ( filter == null ) || filter.accept( job ) ) {
               jobs.add( job );
             }
@@ -520,13 +519,128 @@ public class QuartzScheduler implements IScheduler {
     return jobs;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Candidates are taken from an in-memory index of the jobs' owner, name and action class. Their state and next run
+   * are read from the live trigger, and only the jobs that make it into the requested page have their details loaded
+   * from the job store. The index is reconciled with the job store before every block-out query.
+   */
+  @Override
+  public List<Job> queryJobs( JobQuery query ) throws SchedulerException {
+    long refreshSeconds = getJobIndexRefreshSeconds();
+    if ( refreshSeconds < 0 ) {
+      return IScheduler.super.queryJobs( query );
+    }
+    ArrayList<Job> jobs = new ArrayList<Job>();
+    if ( query.getLimit() == 0 ) {
+      return jobs;
+    }
+    try {
+      Scheduler scheduler = getQuartzScheduler();
+      // block-outs created on other cluster nodes must be seen right away, so they are always reconciled
+      if ( Boolean.TRUE.equals( query.getBlockout() ) || jobIndex.isStale( refreshSeconds * 1000 ) ) {
+        jobIndex.refresh( scheduler );
+      }
+      int skipped = 0;
+      for ( QuartzJobIndex.Entry entry : jobIndex.find( query ) ) {
+        Trigger[] triggers = scheduler.getTriggersOfJob( entry.getJobId(), entry.getGroupName() );
+        if ( triggers == null || triggers.length == 0 ) {
+          // the job was removed behind our back, e.g. when its last trigger completed
+          jobIndex.remove( entry.getJobId() );
+          continue;
+        }
+        for ( Trigger trigger : triggers ) {
+          if ( "MANUAL_TRIGGER".equals( trigger.getGroup() ) ) {
+            continue;
+          }
+          JobState state =
+              query.hasStateCriteria() ? getJobState( scheduler, entry.getJobId(), entry.getGroupName() ) : null;
+          if ( !query.acceptsSchedule( state, getNextRun( trigger ) ) ) {
+            continue;
+          }
+          if ( skipped < query.getOffset() ) {
+            skipped++;
+            continue;
+          }
+          jobs.add( toJob( scheduler, entry.getGroupName(), entry.getJobId(), trigger ) );
+          if ( query.getLimit() >= 0 && jobs.size() >= query.getLimit() ) {
+            return jobs;
+          }
+        }
+      }
+    } catch ( org.quartz.SchedulerException e ) {
+      jobIndex.clear();
+      throw new SchedulerException(
+          Messages.getInstance().getString( "QuartzScheduler.ERROR_0004_FAILED_TO_LIST_JOBS" ), e ); //$NON-NLS-1$
+    }
+    return jobs;
+  }
+
+  protected long getJobIndexRefreshSeconds() {
+    String refreshSeconds = System.getProperty( JOB_INDEX_REFRESH_PROPERTY );
+    if ( StringUtils.isNotBlank( refreshSeconds ) ) {
+      try {
+        return Long.parseLong( refreshSeconds.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( MessageFormat.format( "Ignoring invalid value \"{0}\" of {1}", refreshSeconds, //$NON-NLS-1$
+            JOB_INDEX_REFRESH_PROPERTY ) );
+      }
+    }
+    return DEFAULT_JOB_INDEX_REFRESH_SECONDS;
+  }
+
+  private Job toJob( Scheduler scheduler, String groupName, String jobId, Trigger trigger )
+    throws SchedulerException, org.quartz.SchedulerException {
+    Job job = new Job();
+    job.setGroupName( groupName );
+    JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
+    if ( jobDetail != null ) {
+      job.setUserName( jobDetail.getGroup() );
+      JobDataMap jobDataMap = jobDetail.getJobDataMap();
+      if ( jobDataMap != null ) {
+        Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
+        job.setJobParams( wrappedMap );
+      }
+    }
+
+    job.setJobId( jobId );
+    setJobTrigger( scheduler, job, trigger );
+    job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
+    setJobNextRun( job, trigger );
+    job.setLastRun( trigger.getPreviousFireTime() );
+    return job;
+  }
+
   protected void setJobNextRun( Job job, Trigger trigger ) {
+    job.setNextRun( getNextRun( trigger ) );
+  }
+
+  private Date getNextRun( Trigger trigger ) {
     //if getNextFireTime() is in the future, then we use it
     //if it is in past, we call getFireTimeAfter( new Date() ) to get the correct next date from today on
     Date nextFire = trigger.getNextFireTime();
-    job.setNextRun( nextFire != null && ( nextFire.getTime() < new Date().getTime() )
+    return nextFire != null && ( nextFire.getTime() < new Date().getTime() )
       ? trigger.getFireTimeAfter( new Date() )
-      : nextFire );
+      : nextFire;
+  }
+
+  private JobState getJobState( Scheduler scheduler, String jobId, String groupName )
+    throws org.quartz.SchedulerException {
+    switch ( scheduler.getTriggerState( jobId, groupName ) ) {
+      case Trigger.STATE_NORMAL:
+        return JobState.NORMAL;
+      case Trigger.STATE_BLOCKED:
+        return JobState.BLOCKED;
+      case Trigger.STATE_COMPLETE:
+        return JobState.COMPLETE;
+      case Trigger.STATE_ERROR:
+        return JobState.ERROR;
+      case Trigger.STATE_PAUSED:
+        return JobState.PAUSED;
+      default:
+        return JobState.UNKNOWN;
+    }
   }
 
   private void setJobTrigger( Scheduler scheduler, Job job, Trigger trigger ) throws SchedulerException,
@@ -572,27 +686,7 @@ public class QuartzScheduler implements IScheduler {
       complexJobTrigger.setCronString( ( (CronTrigger) trigger ).getCronExpression() );
     }
 
-    int triggerState = scheduler.getTriggerState( job.getJobId(), groupName );
-    switch ( triggerState ) {
-      case Trigger.STATE_NORMAL:
-        job.setState( JobState.NORMAL );
-        break;
-      case Trigger.STATE_BLOCKED:
-        job.setState( JobState.BLOCKED );
-        break;
-      case Trigger.STATE_COMPLETE:
-        job.setState( JobState.COMPLETE );
-        break;
-      case Trigger.STATE_ERROR:
-        job.setState( JobState.ERROR );
-        break;
-      case Trigger.STATE_PAUSED:
-        job.setState( JobState.PAUSED );
-        break;
-      default:
-        job.setState( JobState.UNKNOWN );
-        break;
-    }
+    job.setState( getJobState( scheduler, job.getJobId(), groupName ) );
 
     job.setJobName( QuartzJobKey.parse( job.getJobId() ).getJobName() );
     job.setNextRun( trigger.getNextFireTime() );
@@ -636,7 +730,9 @@ public class QuartzScheduler implements IScheduler {
   public void removeJob( String jobId ) throws SchedulerException {
     try {
       Scheduler scheduler = getQuartzScheduler();
-      scheduler.deleteJob( jobId, QuartzJobKey.parse( jobId ).getUserName() );
+      QuartzJobKey jobKey = QuartzJobKey.parse( jobId );
+      scheduler.deleteJob( jobId, jobKey.getUserName() );
+      jobIndex.remove( jobId );
     } catch ( org.quartz.SchedulerException e ) {
       throw new SchedulerException( Messages.getInstance()
           .getString( "QuartzScheduler.ERROR_0005_FAILED_TO_PAUSE_JOBS" ), e ); //$NON-NLS-1$
@@ -880,6 +976,7 @@ public class QuartzScheduler implements IScheduler {
       boolean waitForJobsToComplete = true;
       getQuartzScheduler().shutdown( waitForJobsToComplete );
       setQuartzScheduler( null );
+      jobIndex.clear();
     } catch ( org.quartz.SchedulerException e ) {
       throw new SchedulerException( e );
     }
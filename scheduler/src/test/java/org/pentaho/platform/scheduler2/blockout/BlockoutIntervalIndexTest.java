@@ -0,0 +1,130 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobTrigger;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockoutIntervalIndexTest {
+
+  private static Job blockOutJob( String jobId, IJobTrigger trigger, long duration ) {
+    trigger.setDuration( duration );
+    Job job = new Job();
+    job.setJobId( jobId );
+    job.setJobTrigger( (JobTrigger) trigger );
+    return job;
+  }
+
+  @Test
+  public void testSimpleBlockOutWindows() {
+    long start = System.currentTimeMillis() - TIME.HOUR.time * 10;
+    // every 4 hours, blocking for 1 hour
+    IJobTrigger trigger = new SimpleJobTrigger( new Date( start ), null, -1, TIME.HOUR.time * 4 / 1000 );
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex();
+    long now = start + TIME.HOUR.time * 10;
+    index.update( Collections.singletonList( blockOutJob( "a", trigger, TIME.HOUR.time ) ), now );
+
+    assertTrue( index.isValidAt( now ) );
+    assertTrue( index.isBlocked( start + TIME.HOUR.time * 12 ) );
+    assertTrue( index.isBlocked( start + TIME.HOUR.time * 13 ) );
+    assertFalse( index.isBlocked( start + TIME.HOUR.time * 13 + 1 ) );
+    assertFalse( index.isBlocked( start + TIME.HOUR.time * 15 ) );
+    assertTrue( index.isBlocked( start + TIME.HOUR.time * 16 + TIME.MINUTE.time ) );
+    assertFalse( index.isValidAt( now + BlockoutIntervalIndex.HORIZON ) );
+  }
+
+  @Test
+  public void testWindowInProgressAndEndTime() {
+    long now = System.currentTimeMillis();
+    // started half an hour ago for two hours, and the trigger ends in an hour
+    IJobTrigger trigger =
+        new SimpleJobTrigger( new Date( now - TIME.MINUTE.time * 30 ), new Date( now + TIME.HOUR.time ), -1,
+            TIME.DAY.time / 1000 );
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex();
+    index.update( Collections.singletonList( blockOutJob( "a", trigger, TIME.HOUR.time * 2 ) ), now );
+
+    assertTrue( index.isBlocked( now ) );
+    assertTrue( index.isBlocked( now + TIME.HOUR.time ) );
+    assertFalse( index.isBlocked( now + TIME.HOUR.time + 1 ) );
+  }
+
+  @Test
+  public void testComplexBlockOutInProgress() {
+    long now = System.currentTimeMillis();
+    // fires at the start of every hour and blocks for the whole hour
+    IJobTrigger trigger = new ComplexJobTrigger();
+    trigger.setStartTime( new Date( now - TIME.DAY.time ) );
+    trigger.setCronString( "0 0 * * * ? *" ); //$NON-NLS-1$
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex();
+    index.update( Collections.singletonList( blockOutJob( "a", trigger, TIME.HOUR.time ) ), now );
+
+    assertTrue( index.isBlocked( now ) );
+    assertTrue( index.isBlocked( now + TIME.HOUR.time * 5 ) );
+  }
+
+  @Test
+  public void testOverlappingBlockOutsAndRemoval() {
+    long now = System.currentTimeMillis();
+    IJobTrigger first = new SimpleJobTrigger( new Date( now + TIME.HOUR.time ), null, -1, TIME.DAY.time / 1000 );
+    IJobTrigger second =
+        new SimpleJobTrigger( new Date( now + TIME.HOUR.time * 2 ), null, -1, TIME.DAY.time / 1000 );
+    List<Job> jobs =
+        new ArrayList<Job>( Arrays.asList( blockOutJob( "a", first, TIME.HOUR.time * 2 ), blockOutJob( "b", second,
+            TIME.HOUR.time * 2 ) ) );
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex();
+    index.update( jobs, now );
+
+    assertFalse( index.isBlocked( now ) );
+    assertTrue( index.isBlocked( now + TIME.HOUR.time ) );
+    assertTrue( index.isBlocked( now + TIME.HOUR.time * 4 ) );
+    assertFalse( index.isBlocked( now + TIME.HOUR.time * 4 + 1 ) );
+
+    jobs.remove( 1 );
+    index.update( jobs, now );
+
+    assertTrue( index.isBlocked( now + TIME.HOUR.time * 3 ) );
+    assertFalse( index.isBlocked( now + TIME.HOUR.time * 4 ) );
+  }
+
+  @Test
+  public void testNoBlockOuts() {
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex();
+    assertFalse( index.isValidAt( System.currentTimeMillis() ) );
+
+    index.update( Collections.<Job>emptyList(), System.currentTimeMillis() );
+    assertTrue( index.isValidAt( System.currentTimeMillis() ) );
+    assertFalse( index.isBlocked( System.currentTimeMillis() ) );
+  }
+}
@@ -0,0 +1,144 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2023 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.quartz;
+
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.api.scheduler2.JobQuery;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QuartzJobIndexTest {
+
+  private static final String REPORT_ACTION = "org.pentaho.reporting.ReportAction";
+
+  private static final String CLEANER_ACTION = "org.pentaho.platform.admin.GeneratedContentCleaner";
+
+  private static String jobId( String userName, String jobName, int i ) {
+    return userName + "\t" + jobName + "\t" + i;
+  }
+
+  @Test
+  public void testFindByIndexedAttributes() {
+    QuartzJobIndex index = new QuartzJobIndex();
+    index.put( jobId( "admin", "daily", 1 ), "admin", REPORT_ACTION );
+    index.put( jobId( "admin", IBlockoutManager.BLOCK_OUT_JOB_NAME, 2 ), "admin", null );
+    index.put( jobId( "suzy", "weekly", 3 ), "suzy", REPORT_ACTION );
+    index.put( jobId( "admin", "cleaner", 4 ), "admin", CLEANER_ACTION );
+
+    JobQuery query = new JobQuery();
+    query.setUserName( "suzy" );
+    assertEquals( 1, index.find( query ).size() );
+
+    query = new JobQuery();
+    query.setBlockout( true );
+    List<QuartzJobIndex.Entry> blockouts = index.find( query );
+    assertEquals( 1, blockouts.size() );
+    assertEquals( IBlockoutManager.BLOCK_OUT_JOB_NAME, blockouts.get( 0 ).getJobName() );
+
+    query.setBlockout( false );
+    assertEquals( 3, index.find( query ).size() );
+
+    query = new JobQuery();
+    query.setUserName( "admin" );
+    query.setActionClass( REPORT_ACTION );
+    assertEquals( 1, index.find( query ).size() );
+
+    query.setActionClass( "unknown" );
+    assertTrue( index.find( query ).isEmpty() );
+  }
+
+  @Test
+  public void testRemove() {
+    QuartzJobIndex index = new QuartzJobIndex();
+    index.put( jobId( "admin", "daily", 1 ), "admin", REPORT_ACTION );
+    index.remove( jobId( "admin", "daily", 1 ) );
+
+    JobQuery query = new JobQuery();
+    query.setActionClass( REPORT_ACTION );
+    assertTrue( index.find( query ).isEmpty() );
+    assertEquals( 0, index.size() );
+  }
+
+  @Test
+  public void testRefreshOnlyLoadsUnknownJobs() throws Exception {
+    Scheduler scheduler = mock( Scheduler.class );
+    String known = jobId( "admin", "daily", 1 );
+    String added = jobId( "admin", "weekly", 2 );
+    String gone = jobId( "admin", "monthly", 3 );
+    JobDetail detail = new JobDetail( added, "admin", BlockingQuartzJob.class );
+    JobDataMap jobDataMap = new JobDataMap();
+    jobDataMap.put( QuartzScheduler.RESERVEDMAPKEY_ACTIONCLASS, REPORT_ACTION );
+    detail.setJobDataMap( jobDataMap );
+    when( scheduler.getJobGroupNames() ).thenReturn( new String[] { "admin" } );
+    when( scheduler.getJobNames( "admin" ) ).thenReturn( new String[] { known, added } );
+    when( scheduler.getJobDetail( added, "admin" ) ).thenReturn( detail );
+
+    QuartzJobIndex index = new QuartzJobIndex();
+    assertTrue( index.isStale( Long.MAX_VALUE ) );
+    index.put( known, "admin", REPORT_ACTION );
+    index.put( gone, "admin", REPORT_ACTION );
+    index.refresh( scheduler );
+
+    assertFalse( index.isStale( 60000 ) );
+    assertEquals( 2, index.size() );
+    verify( scheduler, times( 1 ) ).getJobDetail( eq( added ), anyString() );
+    verify( scheduler, never() ).getJobDetail( eq( known ), anyString() );
+    JobQuery query = new JobQuery();
+    query.setActionClass( REPORT_ACTION );
+    assertEquals( 2, index.find( query ).size() );
+  }
+
+  /**
+   * Candidate selection by owner and action class with 1k, 10k and 100k indexed jobs.
+   */
+  @Test
+  public void testFindScalesWithMatchesNotJobs() {
+    for ( int jobs : new int[] { 1000, 10000, 100000 } ) {
+      QuartzJobIndex index = new QuartzJobIndex();
+      for ( int i = 0; i < jobs; i++ ) {
+        String userName = "user" + ( i % 1000 );
+        index.put( jobId( userName, "job", i ), userName, i % 100 == 0 ? CLEANER_ACTION : REPORT_ACTION );
+      }
+      JobQuery query = new JobQuery();
+      query.setUserName( "user7" );
+      assertEquals( jobs / 1000, index.find( query ).size() );
+
+      query = new JobQuery();
+      query.setActionClass( CLEANER_ACTION );
+      assertEquals( jobs / 100, index.find( query ).size() );
+    }
+  }
+}